@@ -0,0 +1,11 @@
+package org.ssssssss.magicapi.benchmark;
+
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * 端到端测试使用的应用，数据源为内嵌H2
+ */
+@SpringBootApplication
+public class BenchmarkApplication {
+
+}
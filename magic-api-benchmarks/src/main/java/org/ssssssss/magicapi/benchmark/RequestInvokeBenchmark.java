@@ -0,0 +1,111 @@
+package org.ssssssss.magicapi.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.ssssssss.magicapi.model.ApiInfo;
+import org.ssssssss.magicapi.model.Constants;
+import org.ssssssss.magicapi.model.Group;
+import org.ssssssss.magicapi.provider.MagicAPIService;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * 从 DispatcherServlet 到 RequestHandler.invoke 的端到端性能，数据源为内嵌H2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RequestInvokeBenchmark {
+
+	private static final String BODY = "{\"name\":\"magic-api\",\"age\":18}";
+
+	private ConfigurableApplicationContext context;
+
+	private MockMvc mockMvc;
+
+	private Path workspace;
+
+	@Setup
+	public void setup() throws IOException {
+		workspace = Files.createTempDirectory("magic-api-benchmark");
+		context = new SpringApplicationBuilder(BenchmarkApplication.class)
+				.properties(
+						"server.port=0",
+						"spring.main.banner-mode=off",
+						"logging.level.root=warn",
+						"spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+						"magic-api.banner=false",
+						"magic-api.resource.location=" + workspace.toAbsolutePath()
+				)
+				.run();
+		JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+		jdbcTemplate.execute("create table sys_user(id bigint primary key, name varchar(64), age int)");
+		for (int i = 1; i <= 100; i++) {
+			jdbcTemplate.update("insert into sys_user(id, name, age) values(?, ?, ?)", i, "name" + i, 18 + i % 50);
+		}
+		MagicAPIService service = context.getBean(MagicAPIService.class);
+		Group group = new Group();
+		group.setName("benchmark");
+		group.setPath("/benchmark");
+		group.setType(Constants.GROUP_TYPE_API);
+		String groupId = service.createGroup(group);
+		service.saveApi(api(groupId, "GET", "hello", "return 'hello'"));
+		service.saveApi(api(groupId, "GET", "user", "return db.selectOne('select * from sys_user where id = #{id}')"));
+		service.saveApi(api(groupId, "GET", "users", "return db.select('select * from sys_user where age > #{age}')"));
+		service.saveApi(api(groupId, "POST", "body", "return body.name + body.age"));
+		mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		context.close();
+		Files.walk(workspace)
+				.sorted((a, b) -> b.compareTo(a))
+				.forEach(it -> it.toFile().delete());
+	}
+
+	@Benchmark
+	public Object script() throws Exception {
+		return mockMvc.perform(get("/benchmark/hello")).andReturn().getResponse().getContentAsString();
+	}
+
+	@Benchmark
+	public Object selectOne() throws Exception {
+		return mockMvc.perform(get("/benchmark/user").param("id", "50")).andReturn().getResponse().getContentAsString();
+	}
+
+	@Benchmark
+	public Object select() throws Exception {
+		return mockMvc.perform(get("/benchmark/users").param("age", "40")).andReturn().getResponse().getContentAsString();
+	}
+
+	@Benchmark
+	public Object requestBody() throws Exception {
+		return mockMvc.perform(post("/benchmark/body").contentType(MediaType.APPLICATION_JSON).content(BODY)).andReturn().getResponse().getContentAsString();
+	}
+
+	private static ApiInfo api(String groupId, String method, String path, String script) {
+		ApiInfo info = new ApiInfo();
+		info.setGroupId(groupId);
+		info.setName(path);
+		info.setMethod(method);
+		info.setPath(path);
+		info.setScript(script);
+		return info;
+	}
+}
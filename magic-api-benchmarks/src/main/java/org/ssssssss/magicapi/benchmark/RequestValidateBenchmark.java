@@ -0,0 +1,90 @@
+package org.ssssssss.magicapi.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.ssssssss.magicapi.config.MagicConfiguration;
+import org.ssssssss.magicapi.config.RequestPlan;
+import org.ssssssss.magicapi.controller.RequestHandler;
+import org.ssssssss.magicapi.model.*;
+import org.ssssssss.magicapi.provider.impl.DefaultResultProvider;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RequestHandler 对多层级请求体的验证性能
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestValidateBenchmark {
+
+	@Param({"10", "100"})
+	private int items;
+
+	private RequestHandler requestHandler;
+
+	private Method doValidate;
+
+	private RequestPlan.Validators validators;
+
+	private Object body;
+
+	@Setup
+	public void setup() throws Exception {
+		MagicConfiguration configuration = new MagicConfiguration();
+		configuration.setResultProvider(new DefaultResultProvider(null));
+		requestHandler = new RequestHandler(configuration);
+		doValidate = RequestHandler.class.getDeclaredMethod("doValidate", String.class, RequestPlan.Validators.class, Map.class, JsonCode.class);
+		doValidate.setAccessible(true);
+		// {name: string, age: integer(expression), items: [{id: long, code: string(pattern)}]}
+		BaseDefinition item = definition("", DataType.Object,
+				definition("id", DataType.Long),
+				validate(definition("code", DataType.String), Constants.VALIDATE_TYPE_PATTERN, "^[a-z]+\\d+$")
+		);
+		BaseDefinition root = definition("root", DataType.Object,
+				definition("name", DataType.String),
+				validate(definition("age", DataType.Integer), Constants.VALIDATE_TYPE_EXPRESSION, "value > 0 && value < 200"),
+				definition("items", DataType.Array, item)
+		);
+		root.setRequired(true);
+		// 与注册接口时一致，预先编译验证规则
+		validators = RequestPlan.Validators.compile(Collections.singletonList(root));
+		List<Object> list = new ArrayList<>();
+		for (int i = 0; i < items; i++) {
+			Map<String, Object> map = new HashMap<>();
+			map.put("id", i);
+			map.put("code", "code" + i);
+			list.add(map);
+		}
+		Map<String, Object> value = new HashMap<>();
+		value.put("name", "magic-api");
+		value.put("age", 18);
+		value.put("items", list);
+		body = value;
+	}
+
+	@Benchmark
+	public Object validate() throws Exception {
+		Map<String, Object> parameters = new HashMap<>();
+		parameters.put("root", body);
+		return doValidate.invoke(requestHandler, Constants.VAR_NAME_REQUEST_BODY, validators, parameters, JsonCodeConstants.BODY_INVALID);
+	}
+
+	private static BaseDefinition definition(String name, DataType dataType, BaseDefinition... children) {
+		BaseDefinition definition = new BaseDefinition();
+		definition.setName(name);
+		definition.setDataType(dataType);
+		definition.setChildren(new ArrayList<>(Arrays.asList(children)));
+		return definition;
+	}
+
+	private static BaseDefinition validate(BaseDefinition definition, String validateType, String expression) {
+		definition.setValidateType(validateType);
+		definition.setExpression(expression);
+		return definition;
+	}
+}
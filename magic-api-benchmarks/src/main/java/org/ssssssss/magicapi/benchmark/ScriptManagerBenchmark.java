@@ -0,0 +1,69 @@
+package org.ssssssss.magicapi.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.ssssssss.magicapi.model.ApiInfo;
+import org.ssssssss.magicapi.script.ScriptManager;
+import org.ssssssss.script.MagicScriptContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 脚本编译与执行的性能
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScriptManagerBenchmark {
+
+	private static final String SCRIPT = "var list = [];\n" +
+			"for(i in range(1, 100)){\n" +
+			"    list.add({id: i, name: 'name' + i});\n" +
+			"}\n" +
+			"return list.filter(it => it.id % 2 == 0).map(it => it.name).size();";
+
+	private ApiInfo info;
+
+	private int counter;
+
+	@Setup
+	public void setup() {
+		info = new ApiInfo();
+		info.setId("benchmark");
+		info.setName("benchmark");
+		info.setScript(SCRIPT);
+		info.setUpdateTime(System.currentTimeMillis());
+		ScriptManager.register(info);
+	}
+
+	@TearDown
+	public void tearDown() {
+		ScriptManager.unregister(info.getId());
+	}
+
+	/**
+	 * 每次编译不同的脚本，不命中编译缓存
+	 */
+	@Benchmark
+	public Object compile() {
+		return ScriptManager.compile("MagicScript", SCRIPT + "\n// " + (counter++));
+	}
+
+	/**
+	 * 通过脚本内容执行，命中编译缓存
+	 */
+	@Benchmark
+	public Object executeScript() {
+		return ScriptManager.executeScript(SCRIPT, new MagicScriptContext());
+	}
+
+	/**
+	 * 通过已注册的接口执行，使用预编译的脚本
+	 */
+	@Benchmark
+	public Object executeRegistered() {
+		return ScriptManager.executeScript(info, new MagicScriptContext());
+	}
+}
@@ -0,0 +1,88 @@
+package org.ssssssss.magicapi.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.ssssssss.magicapi.cache.ConcurrentSqlCache;
+import org.ssssssss.magicapi.cache.DefaultSqlCache;
+import org.ssssssss.magicapi.cache.SqlCache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL缓存并发读写的性能
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class SqlCacheBenchmark {
+
+	private static final int NAMES = 16;
+
+	private static final int KEYS = 2048;
+
+	@Param({"default", "concurrent"})
+	private String type;
+
+	@Param({"10000"})
+	private int capacity;
+
+	private SqlCache sqlCache;
+
+	private String[] names;
+
+	private String[] keys;
+
+	@Setup
+	public void setup() {
+		sqlCache = "default".equals(type) ? new DefaultSqlCache(capacity, -1) : new ConcurrentSqlCache(capacity, -1);
+		names = new String[NAMES];
+		for (int i = 0; i < NAMES; i++) {
+			names[i] = "cache" + i;
+		}
+		keys = new String[KEYS];
+		for (int i = 0; i < KEYS; i++) {
+			keys[i] = sqlCache.buildSqlCacheKey("select * from sys_user where id = ?", new Object[]{i});
+		}
+		for (String name : names) {
+			for (String key : keys) {
+				sqlCache.put(name, key, key);
+			}
+		}
+	}
+
+	@Benchmark
+	public Object get() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return sqlCache.get(names[random.nextInt(NAMES)], keys[random.nextInt(KEYS)]);
+	}
+
+	@Benchmark
+	public void put() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		String key = keys[random.nextInt(KEYS)];
+		sqlCache.put(names[random.nextInt(NAMES)], key, key);
+	}
+
+	/**
+	 * 读多写少，偶尔清空某个缓存名称
+	 */
+	@Benchmark
+	public Object mixed() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		String name = names[random.nextInt(NAMES)];
+		String key = keys[random.nextInt(KEYS)];
+		int op = random.nextInt(100);
+		if (op == 0) {
+			sqlCache.delete(name);
+			return null;
+		} else if (op < 10) {
+			sqlCache.put(name, key, key);
+			return null;
+		}
+		return sqlCache.get(name, key);
+	}
+}
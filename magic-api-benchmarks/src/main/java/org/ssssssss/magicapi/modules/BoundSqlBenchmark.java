@@ -0,0 +1,65 @@
+package org.ssssssss.magicapi.modules;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.ssssssss.script.MagicScriptContext;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BoundSql 解析 #{}、${}、?{} 的性能
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BoundSqlBenchmark {
+
+	private static final String SIMPLE_SQL = "select * from sys_user where id = #{id}";
+
+	private static final String COMPLEX_SQL = "select id, name, age, status from ${table}\n" +
+			"where 1 = 1\n" +
+			"?{name, and name like concat('%', #{name}, '%')}\n" +
+			"?{age, and age > #{age}}\n" +
+			"?{status, and status = #{status}}\n" +
+			"\n\n" +
+			"?{ids, and id in (#{ids})}\n" +
+			"order by ${orderBy}";
+
+	private MagicScriptContext context;
+
+	@Setup
+	public void setup() {
+		context = new MagicScriptContext();
+		context.set("id", 1);
+		context.set("table", "sys_user");
+		context.set("name", "magic");
+		context.set("age", 18);
+		context.set("status", null);
+		context.set("ids", Arrays.asList(1, 2, 3, 4, 5));
+		context.set("orderBy", "id desc");
+		MagicScriptContext.set(context);
+	}
+
+	@TearDown
+	public void tearDown() {
+		MagicScriptContext.set(null);
+	}
+
+	@Benchmark
+	public void simple(Blackhole blackhole) {
+		BoundSql boundSql = new BoundSql(SIMPLE_SQL);
+		blackhole.consume(boundSql.getSql());
+		blackhole.consume(boundSql.getParameters());
+	}
+
+	@Benchmark
+	public void complex(Blackhole blackhole) {
+		BoundSql boundSql = new BoundSql(COMPLEX_SQL);
+		blackhole.consume(boundSql.getSql());
+		blackhole.consume(boundSql.getParameters());
+	}
+}
@@ -0,0 +1,112 @@
+package org.ssssssss.magicapi.spring.boot.starter;
+
+/**
+ * 接口异步执行配置
+ * @since 1.3.4
+ */
+public class AsyncConfig {
+
+	/**
+	 * 是否默认异步执行接口，可在接口选项中单独配置
+	 */
+	private boolean enable = false;
+
+	/**
+	 * 线程池核心线程数，<=0时为CPU核心数 * 2
+	 */
+	private int corePoolSize = 0;
+
+	/**
+	 * 线程池最大线程数，<=0时与核心线程数一致
+	 */
+	private int maxPoolSize = 0;
+
+	/**
+	 * 等待队列容量，队列已满时返回繁忙
+	 */
+	private int queueCapacity = 1000;
+
+	/**
+	 * 是否使用虚拟线程（需JDK21及以上），启用后忽略线程池配置
+	 */
+	private boolean virtualThreads = false;
+
+	/**
+	 * 异步执行的超时时间，单位为毫秒，<=0时使用容器默认配置
+	 */
+	private long timeout = 0;
+
+	/**
+	 * 单个接口默认的最大并发数，<=0时不限制，可在接口选项中单独配置
+	 */
+	private int maxConcurrent = 0;
+
+	/**
+	 * 超出最大并发数时等待的时间，单位为毫秒，可在接口选项中单独配置
+	 */
+	private long queueTimeout = 0;
+
+	public boolean isEnable() {
+		return enable;
+	}
+
+	public void setEnable(boolean enable) {
+		this.enable = enable;
+	}
+
+	public int getCorePoolSize() {
+		return corePoolSize;
+	}
+
+	public void setCorePoolSize(int corePoolSize) {
+		this.corePoolSize = corePoolSize;
+	}
+
+	public int getMaxPoolSize() {
+		return maxPoolSize;
+	}
+
+	public void setMaxPoolSize(int maxPoolSize) {
+		this.maxPoolSize = maxPoolSize;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	public long getTimeout() {
+		return timeout;
+	}
+
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	public int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	public void setMaxConcurrent(int maxConcurrent) {
+		this.maxConcurrent = maxConcurrent;
+	}
+
+	public long getQueueTimeout() {
+		return queueTimeout;
+	}
+
+	public void setQueueTimeout(long queueTimeout) {
+		this.queueTimeout = queueTimeout;
+	}
+}
@@ -20,6 +20,46 @@ public class CacheConfig {
 	 */
 	private long ttl = -1;
 
+	/**
+	 * 后台清理过期缓存的间隔,单位为毫秒，小于等于0时不启用
+	 */
+	private long sweepInterval = 60000;
+
+	/**
+	 * 缓存类型，可选值：memory、redis，默认为memory，集群环境下可使用redis共享缓存
+	 *
+	 * @since 1.3.4
+	 */
+	private String type = "memory";
+
+	/**
+	 * 使用Redis缓存时key的前缀
+	 *
+	 * @since 1.3.4
+	 */
+	private String redisPrefix = "magic-api:sql-cache:";
+
+	/**
+	 * 使用Redis缓存时数据最长保留的时间,单位为毫秒，小于等于0时不限制
+	 *
+	 * @since 1.3.4
+	 */
+	private long redisMaxTtl = 86400000;
+
+	/**
+	 * 使用Redis缓存时本地近端缓存的容量
+	 *
+	 * @since 1.3.4
+	 */
+	private int nearCapacity = 1000;
+
+	/**
+	 * 使用Redis缓存时本地近端缓存的有效期,单位为毫秒
+	 *
+	 * @since 1.3.4
+	 */
+	private long nearTtl = 5000;
+
 	public int getCapacity() {
 		return capacity;
 	}
@@ -36,6 +76,14 @@ public class CacheConfig {
 		this.ttl = ttl;
 	}
 
+	public long getSweepInterval() {
+		return sweepInterval;
+	}
+
+	public void setSweepInterval(long sweepInterval) {
+		this.sweepInterval = sweepInterval;
+	}
+
 	public boolean isEnable() {
 		return enable;
 	}
@@ -43,4 +91,44 @@ public class CacheConfig {
 	public void setEnable(boolean enable) {
 		this.enable = enable;
 	}
+
+	public String getType() {
+		return type;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public String getRedisPrefix() {
+		return redisPrefix;
+	}
+
+	public void setRedisPrefix(String redisPrefix) {
+		this.redisPrefix = redisPrefix;
+	}
+
+	public long getRedisMaxTtl() {
+		return redisMaxTtl;
+	}
+
+	public void setRedisMaxTtl(long redisMaxTtl) {
+		this.redisMaxTtl = redisMaxTtl;
+	}
+
+	public int getNearCapacity() {
+		return nearCapacity;
+	}
+
+	public void setNearCapacity(int nearCapacity) {
+		this.nearCapacity = nearCapacity;
+	}
+
+	public long getNearTtl() {
+		return nearTtl;
+	}
+
+	public void setNearTtl(long nearTtl) {
+		this.nearTtl = nearTtl;
+	}
 }
@@ -0,0 +1,61 @@
+package org.ssssssss.magicapi.spring.boot.starter;
+
+/**
+ * 历史记录配置
+ *
+ * @since 1.3.4
+ */
+public class HistoryConfig {
+
+	/**
+	 * 每个接口、函数最多保留的历史记录数，<=0时不限制
+	 */
+	private int maxCount = 0;
+
+	/**
+	 * 历史记录最长保留的天数，<=0时不限制，最新的一条始终保留
+	 */
+	private int maxDays = 0;
+
+	/**
+	 * 压缩时每多少个版本合并为一个分段，分段以完整快照开头，其余版本只保存差异
+	 */
+	private int snapshotInterval = 20;
+
+	/**
+	 * 后台压缩历史记录的间隔时间，单位为分钟，<=0时不压缩，保留策略及差异存储均在压缩时生效
+	 */
+	private int compactInterval = 60;
+
+	public int getMaxCount() {
+		return maxCount;
+	}
+
+	public void setMaxCount(int maxCount) {
+		this.maxCount = maxCount;
+	}
+
+	public int getMaxDays() {
+		return maxDays;
+	}
+
+	public void setMaxDays(int maxDays) {
+		this.maxDays = maxDays;
+	}
+
+	public int getSnapshotInterval() {
+		return snapshotInterval;
+	}
+
+	public void setSnapshotInterval(int snapshotInterval) {
+		this.snapshotInterval = snapshotInterval;
+	}
+
+	public int getCompactInterval() {
+		return compactInterval;
+	}
+
+	public void setCompactInterval(int compactInterval) {
+		this.compactInterval = compactInterval;
+	}
+}
@@ -0,0 +1,99 @@
+package org.ssssssss.magicapi.spring.boot.starter;
+
+/**
+ * http模块配置，引入httpclient时使用连接池
+ * @since 1.3.4
+ */
+public class HttpConfig {
+
+	/**
+	 * 连接池最大连接数
+	 */
+	private int maxTotal = 200;
+
+	/**
+	 * 每个路由（目标主机）的最大连接数
+	 */
+	private int maxPerRoute = 50;
+
+	/**
+	 * 连接超时时间，单位为毫秒
+	 */
+	private int connectTimeout = 5000;
+
+	/**
+	 * 读取超时时间，单位为毫秒
+	 */
+	private int readTimeout = 30000;
+
+	/**
+	 * 空闲连接保持的时间，单位为毫秒
+	 */
+	private long keepAlive = 60000;
+
+	/**
+	 * 异步请求线程池的线程数，<=0时为CPU核心数 * 4
+	 */
+	private int asyncPoolSize = 0;
+
+	/**
+	 * 异步请求线程池的队列长度，队列已满时由调用方线程执行
+	 */
+	private int asyncQueueSize = 1024;
+
+	public int getMaxTotal() {
+		return maxTotal;
+	}
+
+	public void setMaxTotal(int maxTotal) {
+		this.maxTotal = maxTotal;
+	}
+
+	public int getMaxPerRoute() {
+		return maxPerRoute;
+	}
+
+	public void setMaxPerRoute(int maxPerRoute) {
+		this.maxPerRoute = maxPerRoute;
+	}
+
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	public long getKeepAlive() {
+		return keepAlive;
+	}
+
+	public void setKeepAlive(long keepAlive) {
+		this.keepAlive = keepAlive;
+	}
+
+	public int getAsyncPoolSize() {
+		return asyncPoolSize;
+	}
+
+	public void setAsyncPoolSize(int asyncPoolSize) {
+		this.asyncPoolSize = asyncPoolSize;
+	}
+
+	public int getAsyncQueueSize() {
+		return asyncQueueSize;
+	}
+
+	public void setAsyncQueueSize(int asyncQueueSize) {
+		this.asyncQueueSize = asyncQueueSize;
+	}
+}
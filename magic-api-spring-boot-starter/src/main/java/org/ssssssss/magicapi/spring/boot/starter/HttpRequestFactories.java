@@ -0,0 +1,97 @@
+package org.ssssssss.magicapi.spring.boot.starter;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.util.ClassUtils;
+import org.ssssssss.magicapi.modules.HttpModule;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 创建http模块的请求工厂，引入httpclient时使用连接池，否则使用JDK自带的连接（keep-alive由JDK管理）
+ */
+class HttpRequestFactories {
+
+	private static final boolean HTTP_CLIENT_PRESENT = ClassUtils.isPresent("org.apache.http.impl.client.HttpClientBuilder", HttpRequestFactories.class.getClassLoader());
+
+	static HttpModule.RequestFactoryCreator create(HttpConfig config) {
+		if (HTTP_CLIENT_PRESENT) {
+			return Pooled.create(config);
+		}
+		return (connectTimeout, readTimeout) -> {
+			SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+			factory.setConnectTimeout(connectTimeout < 0 ? config.getConnectTimeout() : connectTimeout);
+			factory.setReadTimeout(readTimeout < 0 ? config.getReadTimeout() : readTimeout);
+			return factory;
+		};
+	}
+
+	/**
+	 * 关闭请求工厂持有的连接池，未使用连接池时不处理
+	 */
+	static void close(HttpModule.RequestFactoryCreator creator) throws IOException {
+		if (creator instanceof Closeable) {
+			((Closeable) creator).close();
+		}
+	}
+
+	/**
+	 * 单独的类，未引入httpclient时不会加载
+	 */
+	static class Pooled implements HttpModule.RequestFactoryCreator, Closeable {
+
+		private final HttpConfig config;
+
+		/**
+		 * 所有请求工厂共享同一个连接池
+		 */
+		private final CloseableHttpClient httpClient;
+
+		private Pooled(HttpConfig config, CloseableHttpClient httpClient) {
+			this.config = config;
+			this.httpClient = httpClient;
+		}
+
+		static HttpModule.RequestFactoryCreator create(HttpConfig config) {
+			long keepAlive = config.getKeepAlive();
+			PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(keepAlive, TimeUnit.MILLISECONDS);
+			connectionManager.setMaxTotal(config.getMaxTotal());
+			connectionManager.setDefaultMaxPerRoute(config.getMaxPerRoute());
+			CloseableHttpClient httpClient = HttpClients.custom()
+					.setConnectionManager(connectionManager)
+					.setKeepAliveStrategy((response, context) -> {
+						long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+						return duration > 0 ? Math.min(duration, keepAlive) : keepAlive;
+					})
+					.evictExpiredConnections()
+					.evictIdleConnections(keepAlive, TimeUnit.MILLISECONDS)
+					.build();
+			return new Pooled(config, httpClient);
+		}
+
+		@Override
+		public ClientHttpRequestFactory create(int connectTimeout, int readTimeout) {
+			HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(httpClient);
+			int timeout = connectTimeout < 0 ? config.getConnectTimeout() : connectTimeout;
+			factory.setConnectTimeout(timeout);
+			factory.setConnectionRequestTimeout(timeout);
+			factory.setReadTimeout(readTimeout < 0 ? config.getReadTimeout() : readTimeout);
+			return factory;
+		}
+
+		/**
+		 * 关闭连接池及清理空闲连接的后台线程
+		 */
+		@Override
+		public void close() throws IOException {
+			httpClient.close();
+		}
+	}
+}
@@ -1,8 +1,10 @@
 package org.ssssssss.magicapi.spring.boot.starter;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
@@ -35,7 +37,7 @@ import org.ssssssss.magicapi.adapter.DialectAdapter;
 import org.ssssssss.magicapi.adapter.Resource;
 import org.ssssssss.magicapi.adapter.ResourceAdapter;
 import org.ssssssss.magicapi.adapter.resource.DatabaseResource;
-import org.ssssssss.magicapi.cache.DefaultSqlCache;
+import org.ssssssss.magicapi.cache.ConcurrentSqlCache;
 import org.ssssssss.magicapi.cache.SqlCache;
 import org.ssssssss.magicapi.config.*;
 import org.ssssssss.magicapi.controller.*;
@@ -46,12 +48,14 @@ import org.ssssssss.magicapi.interceptor.DefaultAuthorizationInterceptor;
 import org.ssssssss.magicapi.interceptor.RequestInterceptor;
 import org.ssssssss.magicapi.interceptor.SQLInterceptor;
 import org.ssssssss.magicapi.logging.LoggerManager;
+import org.ssssssss.magicapi.metrics.MagicMetrics;
 import org.ssssssss.magicapi.model.Constants;
 import org.ssssssss.magicapi.modules.*;
 import org.ssssssss.magicapi.provider.*;
 import org.ssssssss.magicapi.provider.impl.*;
 import org.ssssssss.magicapi.utils.ClassScanner;
 import org.ssssssss.magicapi.utils.Mapping;
+import org.ssssssss.magicapi.utils.ParallelUtils;
 import org.ssssssss.magicapi.utils.PathUtils;
 import org.ssssssss.script.MagicResourceLoader;
 import org.ssssssss.script.MagicScript;
@@ -67,13 +71,15 @@ import java.io.IOException;
 import java.lang.reflect.Method;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 
 @Configuration
 @ConditionalOnClass({RequestMappingHandlerMapping.class})
 @EnableConfigurationProperties(MagicAPIProperties.class)
-@Import({MagicRedisAutoConfiguration.class, MagicMongoAutoConfiguration.class, MagicSwaggerConfiguration.class, MagicJsonAutoConfiguration.class, ApplicationUriPrinter.class})
-public class MagicAPIAutoConfiguration implements WebMvcConfigurer {
+@Import({MagicRedisAutoConfiguration.class, MagicMongoAutoConfiguration.class, MagicSwaggerConfiguration.class, MagicJsonAutoConfiguration.class, MagicMetricsConfiguration.class, ApplicationUriPrinter.class})
+public class MagicAPIAutoConfiguration implements WebMvcConfigurer, DisposableBean {
 
 	private static final Logger logger = LoggerFactory.getLogger(MagicAPIAutoConfiguration.class);
 
@@ -129,6 +135,21 @@ public class MagicAPIAutoConfiguration implements WebMvcConfigurer {
 
 	private final ObjectProvider<RestTemplate> restTemplateProvider;
 
+	/**
+	 * 历史记录存储，销毁时停止后台压缩
+	 */
+	private HistoryStore historyStore;
+
+	/**
+	 * http模块异步请求的线程池，销毁时关闭
+	 */
+	private ExecutorService httpExecutor;
+
+	/**
+	 * http模块的请求工厂，销毁时关闭其连接池
+	 */
+	private HttpModule.RequestFactoryCreator requestFactoryCreator;
+
 	private String ALL_CLASS_TXT;
 
 	public MagicAPIAutoConfiguration(MagicAPIProperties properties,
@@ -186,7 +207,7 @@ public class MagicAPIAutoConfiguration implements WebMvcConfigurer {
 	/**
 	 * 注入动态数据源
 	 */
-	@Bean
+	@Bean(destroyMethod = "shutdown")
 	@ConditionalOnMissingBean(MagicDynamicDataSource.class)
 	public MagicDynamicDataSource magicDynamicDataSource(@Autowired(required = false) DataSource dataSource) {
 		MagicDynamicDataSource dynamicDataSource = new MagicDynamicDataSource();
@@ -284,8 +305,8 @@ public class MagicAPIAutoConfiguration implements WebMvcConfigurer {
 	@ConditionalOnMissingBean(SqlCache.class)
 	public SqlCache sqlCache() {
 		CacheConfig cacheConfig = properties.getCacheConfig();
-		logger.info("未找到SQL缓存实现，采用默认缓存实现(LRU+TTL)，缓存配置:(容量={},TTL={})", cacheConfig.getCapacity(), cacheConfig.getTtl());
-		return new DefaultSqlCache(cacheConfig.getCapacity(), cacheConfig.getTtl());
+		logger.info("未找到SQL缓存实现，采用默认缓存实现(LRU+TTL)，缓存配置:(容量={},TTL={},清理间隔={})", cacheConfig.getCapacity(), cacheConfig.getTtl(), cacheConfig.getSweepInterval());
+		return new ConcurrentSqlCache(cacheConfig.getCapacity(), cacheConfig.getTtl(), cacheConfig.getSweepInterval());
 	}
 
 	/**
@@ -297,6 +318,53 @@ public class MagicAPIAutoConfiguration implements WebMvcConfigurer {
 		return new MappingHandlerMapping(prefix, properties.isAllowOverride());
 	}
 
+	/**
+	 * 注入动态接口的请求映射，在应用接口之后匹配
+	 */
+	@Bean
+	public ApiHandlerMapping apiHandlerMapping(MappingHandlerMapping mappingHandlerMapping) {
+		ApiHandlerMapping apiHandlerMapping = new ApiHandlerMapping(mappingHandlerMapping);
+		apiHandlerMapping.setOrder(1);
+		apiHandlerMapping.copyCorsConfiguration(requestMappingHandlerMapping);
+		return apiHandlerMapping;
+	}
+
+	/**
+	 * 注入接口执行器
+	 */
+	@Bean(destroyMethod = "shutdown")
+	@ConditionalOnMissingBean(RequestExecutor.class)
+	public RequestExecutor requestExecutor() {
+		AsyncConfig asyncConfig = properties.getAsyncConfig();
+		RequestExecutor requestExecutor = new RequestExecutor(createAsyncExecutor(asyncConfig));
+		requestExecutor.setAsync(asyncConfig.isEnable());
+		requestExecutor.setTimeout(asyncConfig.getTimeout());
+		requestExecutor.setMaxConcurrent(asyncConfig.getMaxConcurrent());
+		requestExecutor.setQueueTimeout(asyncConfig.getQueueTimeout());
+		return requestExecutor;
+	}
+
+	/**
+	 * 创建异步执行接口的线程池，JDK21及以上可使用虚拟线程
+	 */
+	private ExecutorService createAsyncExecutor(AsyncConfig asyncConfig) {
+		if (asyncConfig.isVirtualThreads()) {
+			try {
+				return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (ReflectiveOperationException e) {
+				logger.warn("当前JDK不支持虚拟线程，使用线程池执行异步接口");
+			}
+		}
+		int corePoolSize = asyncConfig.getCorePoolSize() > 0 ? asyncConfig.getCorePoolSize() : Runtime.getRuntime().availableProcessors() * 2;
+		int maxPoolSize = Math.max(asyncConfig.getMaxPoolSize(), corePoolSize);
+		AtomicInteger threadNumber = new AtomicInteger();
+		return new ThreadPoolExecutor(corePoolSize, maxPoolSize, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(Math.max(asyncConfig.getQueueCapacity(), 1)), runnable -> {
+			Thread thread = new Thread(runnable, "magic-api-async-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
 
 	@Bean
 	@ConditionalOnMissingBean(FunctionServiceProvider.class)
@@ -378,8 +446,10 @@ public class MagicAPIAutoConfiguration implements WebMvcConfigurer {
 	public SQLModule magicSqlModule(MagicDynamicDataSource dynamicDataSource,
 									ResultProvider resultProvider,
 									PageProvider pageProvider,
-									SqlCache sqlCache) {
+									SqlCache sqlCache,
+									ObjectProvider<ObjectMapper> objectMapperProvider) {
 		SQLModule sqlModule = new SQLModule(dynamicDataSource);
+		objectMapperProvider.ifAvailable(sqlModule::setObjectMapper);
 		sqlModule.setResultProvider(resultProvider);
 		sqlModule.setPageProvider(pageProvider);
 		sqlModule.setSqlInterceptors(sqlInterceptorsProvider.getIfAvailable(Collections::emptyList));
@@ -444,7 +514,16 @@ public class MagicAPIAutoConfiguration implements WebMvcConfigurer {
 		});
 		if (MagicResourceLoader.loadModule("http") == null) {
 			logger.info("注册模块:{} -> {}", "http", HttpModule.class);
-			MagicResourceLoader.addModule("http", new HttpModule(this.restTemplateProvider.getIfAvailable(this::createRestTemplate)));
+			HttpConfig httpConfig = properties.getHttpConfig();
+			this.httpExecutor = createHttpExecutor(httpConfig);
+			RestTemplate restTemplate = this.restTemplateProvider.getIfAvailable();
+			if (restTemplate == null) {
+				this.requestFactoryCreator = HttpRequestFactories.create(httpConfig);
+				MagicResourceLoader.addModule("http", new HttpModule(createRestTemplate(this.requestFactoryCreator), this.requestFactoryCreator, this.httpExecutor));
+			} else {
+				// 自定义的RestTemplate保持原有配置，不替换其请求工厂
+				MagicResourceLoader.addModule("http", new HttpModule(restTemplate, null, this.httpExecutor));
+			}
 		}
 		MagicResourceLoader.getModuleNames().stream().filter(importModules::contains).forEach(moduleName -> {
 			logger.info("自动导入模块：{}", moduleName);
@@ -476,15 +555,18 @@ public class MagicAPIAutoConfiguration implements WebMvcConfigurer {
 												 MappingHandlerMapping mappingHandlerMapping,
 												 FunctionServiceProvider functionServiceProvider,
 												 MagicNotifyService magicNotifyService,
-												 MagicFunctionManager magicFunctionManager) throws NoSuchMethodException {
+												 MagicFunctionManager magicFunctionManager,
+												 RequestExecutor requestExecutor) throws NoSuchMethodException {
 		logger.info("magic-api工作目录:{}", magicResource);
 		setupSpringSecurity();
 		AsyncCall.setThreadPoolExecutorSize(properties.getThreadPoolExecutorSize());
+		MagicMetrics.setEnabled(properties.getMetricsConfig().isEnable());
 		// 设置响应结果的code值
 		ResponseCodeConfig responseCodeConfig = properties.getResponseCodeConfig();
 		Constants.RESPONSE_CODE_SUCCESS = responseCodeConfig.getSuccess();
 		Constants.RESPONSE_CODE_INVALID = responseCodeConfig.getInvalid();
 		Constants.RESPONSE_CODE_EXCEPTION = responseCodeConfig.getException();
+		Constants.RESPONSE_CODE_BUSY = responseCodeConfig.getBusy();
 		// 设置模块和扩展方法
 		setupMagicModules(resultProvider, magicModules, extensionMethodsProvider.getIfAvailable(Collections::emptyList), languageProviders);
 		MagicConfiguration configuration = new MagicConfiguration();
@@ -499,6 +581,7 @@ public class MagicAPIAutoConfiguration implements WebMvcConfigurer {
 		configuration.setDebugTimeout(properties.getDebugConfig().getTimeout());
 		configuration.setHttpMessageConverters(httpMessageConvertersProvider.getIfAvailable(Collections::emptyList));
 		configuration.setResultProvider(resultProvider);
+		configuration.setRequestExecutor(requestExecutor);
 		configuration.setThrowException(properties.isThrowException());
 		configuration.setEditorConfig(properties.getEditorConfig());
 		configuration.setWorkspace(magicResource);
@@ -521,7 +604,8 @@ public class MagicAPIAutoConfiguration implements WebMvcConfigurer {
 					dataSourceController,
 					magicWorkbenchController,
 					new MagicGroupController(configuration),
-					new MagicFunctionController(configuration)
+					new MagicFunctionController(configuration),
+					new MagicMetricsController(configuration)
 			));
 			controllers.forEach(item -> mappingHandlerMapping.registerController(item, base));
 		}
@@ -542,6 +626,19 @@ public class MagicAPIAutoConfiguration implements WebMvcConfigurer {
 			configuration.printBanner();
 		}
 		configuration.setMagicFunctionManager(magicFunctionManager);
+		boolean lazyLoadScript = properties.getResource().isLazyLoadScript();
+		apiServiceProvider.setLazyLoadScript(lazyLoadScript);
+		functionServiceProvider.setLazyLoadScript(lazyLoadScript);
+		// 接口和函数共用历史记录存储
+		HistoryConfig historyConfig = properties.getHistoryConfig();
+		HistoryStore historyStore = apiServiceProvider.getHistoryStore();
+		historyStore.setMaxCount(historyConfig.getMaxCount());
+		historyStore.setMaxAge(TimeUnit.DAYS.toMillis(historyConfig.getMaxDays()));
+		historyStore.setSnapshotInterval(historyConfig.getSnapshotInterval());
+		functionServiceProvider.setHistoryStore(historyStore);
+		historyStore.startCompaction(TimeUnit.MINUTES.toMillis(historyConfig.getCompactInterval()));
+		this.historyStore = historyStore;
+		long start = System.currentTimeMillis();
 		// 注册函数加载器
 		magicFunctionManager.registerFunctionLoader();
 		// 注册所有函数
@@ -551,6 +648,7 @@ public class MagicAPIAutoConfiguration implements WebMvcConfigurer {
 		mappingHandlerMapping.setGroupServiceProvider(groupServiceProvider);
 		// 注册所有映射
 		mappingHandlerMapping.registerAllMapping();
+		logger.info("magic-api加载完毕，耗时{}ms", System.currentTimeMillis() - start);
 		return configuration;
 	}
 
@@ -559,8 +657,23 @@ public class MagicAPIAutoConfiguration implements WebMvcConfigurer {
 		return new DefaultAuthorizationInterceptor(securityConfig.getUsername(), securityConfig.getPassword());
 	}
 
-	private RestTemplate createRestTemplate() {
-		RestTemplate restTemplate = new RestTemplate();
+	/**
+	 * 创建http模块异步请求的线程池，与异步接口的线程池分开，避免接口等待请求结果时互相占用
+	 */
+	private ExecutorService createHttpExecutor(HttpConfig httpConfig) {
+		int poolSize = httpConfig.getAsyncPoolSize() > 0 ? httpConfig.getAsyncPoolSize() : Runtime.getRuntime().availableProcessors() * 4;
+		AtomicInteger threadNumber = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(Math.max(1, httpConfig.getAsyncQueueSize())), runnable -> {
+			Thread thread = new Thread(runnable, "magic-api-http-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}, new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private RestTemplate createRestTemplate(HttpModule.RequestFactoryCreator requestFactoryCreator) {
+		RestTemplate restTemplate = new RestTemplate(requestFactoryCreator.create(-1, -1));
 		restTemplate.getMessageConverters().add(new StringHttpMessageConverter(StandardCharsets.UTF_8) {
 			{
 				setSupportedMediaTypes(Collections.singletonList(MediaType.ALL));
@@ -574,4 +687,26 @@ public class MagicAPIAutoConfiguration implements WebMvcConfigurer {
 		return restTemplate;
 	}
 
+	/**
+	 * 关闭线程池、http连接池及后台任务
+	 */
+	@Override
+	public void destroy() {
+		ParallelUtils.shutdown();
+		SQLModule.shutdown();
+		if (this.historyStore != null) {
+			this.historyStore.shutdown();
+		}
+		if (this.httpExecutor != null) {
+			this.httpExecutor.shutdown();
+		}
+		if (this.requestFactoryCreator != null) {
+			try {
+				HttpRequestFactories.close(this.requestFactoryCreator);
+			} catch (IOException e) {
+				logger.warn("关闭http连接池失败", e);
+			}
+		}
+	}
+
 }
@@ -122,6 +122,18 @@ public class MagicAPIProperties {
 	@NestedConfigurationProperty
 	private ClusterConfig clusterConfig = new ClusterConfig();
 
+	@NestedConfigurationProperty
+	private MetricsConfig metricsConfig = new MetricsConfig();
+
+	@NestedConfigurationProperty
+	private AsyncConfig asyncConfig = new AsyncConfig();
+
+	@NestedConfigurationProperty
+	private HttpConfig httpConfig = new HttpConfig();
+
+	@NestedConfigurationProperty
+	private HistoryConfig historyConfig = new HistoryConfig();
+
 	public String getEditorConfig() {
 		return editorConfig;
 	}
@@ -310,6 +322,38 @@ public class MagicAPIProperties {
 		this.clusterConfig = clusterConfig;
 	}
 
+	public MetricsConfig getMetricsConfig() {
+		return metricsConfig;
+	}
+
+	public void setMetricsConfig(MetricsConfig metricsConfig) {
+		this.metricsConfig = metricsConfig;
+	}
+
+	public AsyncConfig getAsyncConfig() {
+		return asyncConfig;
+	}
+
+	public void setAsyncConfig(AsyncConfig asyncConfig) {
+		this.asyncConfig = asyncConfig;
+	}
+
+	public HttpConfig getHttpConfig() {
+		return httpConfig;
+	}
+
+	public void setHttpConfig(HttpConfig httpConfig) {
+		this.httpConfig = httpConfig;
+	}
+
+	public HistoryConfig getHistoryConfig() {
+		return historyConfig;
+	}
+
+	public void setHistoryConfig(HistoryConfig historyConfig) {
+		this.historyConfig = historyConfig;
+	}
+
 	public String getSecretKey() {
 		return secretKey;
 	}
@@ -0,0 +1,25 @@
+package org.ssssssss.magicapi.spring.boot.starter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.ssssssss.magicapi.metrics.MagicMetrics;
+import org.ssssssss.magicapi.metrics.MicrometerMetricsRecorder;
+
+/**
+ * Micrometer指标配置，存在Micrometer时将指标发布到MeterRegistry
+ */
+@Configuration
+@ConditionalOnClass(MeterRegistry.class)
+@ConditionalOnProperty(prefix = "magic-api", name = "metrics-config.enable", havingValue = "true", matchIfMissing = true)
+public class MagicMetricsConfiguration {
+
+	@Bean
+	public SmartInitializingSingleton magicMicrometerMetricsRecorder(ObjectProvider<MeterRegistry> meterRegistryProvider) {
+		return () -> meterRegistryProvider.ifAvailable(registry -> MagicMetrics.addRecorder(new MicrometerMetricsRecorder(registry)));
+	}
+}
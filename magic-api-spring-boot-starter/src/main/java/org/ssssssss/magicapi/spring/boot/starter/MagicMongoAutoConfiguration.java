@@ -1,7 +1,9 @@
 package org.ssssssss.magicapi.spring.boot.starter;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.context.annotation.Bean;
@@ -24,9 +26,11 @@ public class MagicMongoAutoConfiguration {
 	 * 注入mongo模块
 	 */
 	@Bean
-	public MongoModule mongoFunctions(MongoTemplate mongoTemplate) {
+	public MongoModule mongoFunctions(MongoTemplate mongoTemplate, ObjectProvider<ObjectMapper> objectMapperProvider) {
+		MongoFindIterableExtension findIterableExtension = new MongoFindIterableExtension();
+		objectMapperProvider.ifAvailable(findIterableExtension::setObjectMapper);
 		AbstractReflection.getInstance().registerMethodExtension(MongoCollection.class, new MongoCollectionExtension());
-		AbstractReflection.getInstance().registerMethodExtension(FindIterable.class, new MongoFindIterableExtension());
+		AbstractReflection.getInstance().registerMethodExtension(FindIterable.class, findIterableExtension);
 		return new MongoModule(mongoTemplate);
 	}
 }
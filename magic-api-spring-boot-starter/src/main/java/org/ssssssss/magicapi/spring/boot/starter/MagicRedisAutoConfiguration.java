@@ -15,6 +15,9 @@ import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.ssssssss.magicapi.adapter.Resource;
 import org.ssssssss.magicapi.adapter.resource.RedisResource;
+import org.ssssssss.magicapi.cache.RedisSqlCache;
+import org.ssssssss.magicapi.cache.SqlCache;
+import org.ssssssss.magicapi.model.Constants;
 import org.ssssssss.magicapi.model.MagicNotify;
 import org.ssssssss.magicapi.modules.RedisModule;
 import org.ssssssss.magicapi.provider.MagicAPIService;
@@ -61,6 +64,22 @@ public class MagicRedisAutoConfiguration {
 		return new RedisResource(new StringRedisTemplate(connectionFactory), resource.getPrefix(), resource.isReadonly());
 	}
 
+	/**
+	 * 使用Redis作为SQL缓存
+	 */
+	@Bean
+	@ConditionalOnMissingBean(SqlCache.class)
+	@ConditionalOnProperty(prefix = "magic-api", name = "cache-config.type", havingValue = "redis")
+	public SqlCache magicRedisSqlCache(RedisConnectionFactory connectionFactory, ObjectProvider<MagicNotifyService> magicNotifyServiceProvider) {
+		CacheConfig cacheConfig = properties.getCacheConfig();
+		logger.info("采用Redis缓存实现，缓存配置:(前缀={},TTL={},近端缓存容量={},近端缓存TTL={})", cacheConfig.getRedisPrefix(), cacheConfig.getTtl(), cacheConfig.getNearCapacity(), cacheConfig.getNearTtl());
+		RedisSqlCache sqlCache = new RedisSqlCache(connectionFactory, cacheConfig.getRedisPrefix(), cacheConfig.getTtl(), cacheConfig.getRedisMaxTtl(), cacheConfig.getNearCapacity(), cacheConfig.getNearTtl());
+		if (properties.getClusterConfig().isEnable()) {
+			sqlCache.setMagicNotifyService(magicNotify -> magicNotifyServiceProvider.ifAvailable(it -> it.sendNotify(magicNotify)));
+		}
+		return sqlCache;
+	}
+
 	/**
 	 * 使用Redis推送通知
 	 */
@@ -76,12 +95,23 @@ public class MagicRedisAutoConfiguration {
 	 */
 	@Bean
 	@ConditionalOnProperty(prefix = "magic-api", name = "cluster-config.enable", havingValue = "true")
-	public RedisMessageListenerContainer magicRedisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory, MagicAPIService magicAPIService) {
+	public RedisMessageListenerContainer magicRedisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory, MagicAPIService magicAPIService, ObjectProvider<SqlCache> sqlCacheProvider) {
 		ClusterConfig config = properties.getClusterConfig();
 		logger.info("开启集群通知监听， Redis channel: {}", config.getChannel());
 		RedisMessageListenerContainer redisMessageListenerContainer = new RedisMessageListenerContainer();
 		redisMessageListenerContainer.setConnectionFactory(redisConnectionFactory);
-		redisMessageListenerContainer.addMessageListener((message, pattern) -> magicAPIService.processNotify(JsonUtils.readValue(message.getBody(), MagicNotify.class)), ChannelTopic.of(config.getChannel()));
+		redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+			MagicNotify magicNotify = JsonUtils.readValue(message.getBody(), MagicNotify.class);
+			if (magicNotify != null && magicNotify.getType() == Constants.NOTIFY_ACTION_SQL_CACHE) {
+				// SQL缓存的通知由缓存自身处理
+				SqlCache sqlCache = sqlCacheProvider.getIfAvailable();
+				if (sqlCache instanceof RedisSqlCache) {
+					((RedisSqlCache) sqlCache).processNotify(magicNotify);
+				}
+				return;
+			}
+			magicAPIService.processNotify(magicNotify);
+		}, ChannelTopic.of(config.getChannel()));
 		return redisMessageListenerContainer;
 	}
 }
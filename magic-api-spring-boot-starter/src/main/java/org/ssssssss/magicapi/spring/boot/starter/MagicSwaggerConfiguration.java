@@ -1,5 +1,8 @@
 package org.ssssssss.magicapi.spring.boot.starter;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
@@ -49,7 +52,7 @@ public class MagicSwaggerConfiguration {
 
 	@Bean
 	@Primary
-	public SwaggerResourcesProvider magicSwaggerResourcesProvider(MappingHandlerMapping handlerMapping, GroupServiceProvider groupServiceProvider, ServletContext servletContext) throws NoSuchMethodException {
+	public SwaggerResourcesProvider magicSwaggerResourcesProvider(MappingHandlerMapping handlerMapping, GroupServiceProvider groupServiceProvider, ServletContext servletContext, ObjectProvider<ObjectMapper> objectMapperProvider) throws NoSuchMethodException {
 		SwaggerConfig config = properties.getSwaggerConfig();
 		RequestMappingInfo requestMappingInfo = RequestMappingInfo.paths(config.getLocation()).build();
 
@@ -60,10 +63,16 @@ public class MagicSwaggerConfiguration {
 		SwaggerEntity.License license = new SwaggerEntity.License("MIT", "https://gitee.com/ssssssss-team/magic-api/blob/master/LICENSE");
 		swaggerProvider.setInfo(new SwaggerEntity.Info(config.getDescription(), config.getVersion(), config.getTitle(), license, config.getConcat()));
 		swaggerProvider.setBasePath(servletContext.getContextPath());
+		objectMapperProvider.ifAvailable(swaggerProvider::setObjectMapper);
 
 
 		// 注册swagger.json
-		Mapping.create(requestMappingHandlerMapping).register(requestMappingInfo, swaggerProvider, SwaggerProvider.class.getDeclaredMethod("swaggerJson"));
+		Mapping mapping = Mapping.create(requestMappingHandlerMapping);
+		mapping.register(requestMappingInfo, swaggerProvider, SwaggerProvider.class.getDeclaredMethod("swaggerJson"));
+		// 注册OpenAPI3文档
+		if (StringUtils.isNotBlank(config.getOpenApiLocation())) {
+			mapping.register(RequestMappingInfo.paths(config.getOpenApiLocation()).build(), swaggerProvider, SwaggerProvider.class.getDeclaredMethod("openApiJson"));
+		}
 
 		return () -> {
 			List<SwaggerResource> resources = new ArrayList<>();
@@ -0,0 +1,21 @@
+package org.ssssssss.magicapi.spring.boot.starter;
+
+/**
+ * 指标统计配置
+ * @since 1.3.4
+ */
+public class MetricsConfig {
+
+	/**
+	 * 是否启用指标统计，默认启用
+	 */
+	private boolean enable = true;
+
+	public boolean isEnable() {
+		return enable;
+	}
+
+	public void setEnable(boolean enable) {
+		this.enable = enable;
+	}
+}
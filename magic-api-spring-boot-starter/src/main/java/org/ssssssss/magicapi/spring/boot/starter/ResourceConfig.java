@@ -35,6 +35,13 @@ public class ResourceConfig {
 	 */
 	private String datasource;
 
+	/**
+	 * 是否延迟加载脚本，开启后启动时只加载接口、函数的元数据，脚本内容在首次调用时再读取并编译
+	 *
+	 * @since 1.3.4
+	 */
+	private boolean lazyLoadScript = false;
+
 	public String getType() {
 		return type;
 	}
@@ -82,4 +89,12 @@ public class ResourceConfig {
 	public void setDatasource(String datasource) {
 		this.datasource = datasource;
 	}
+
+	public boolean isLazyLoadScript() {
+		return lazyLoadScript;
+	}
+
+	public void setLazyLoadScript(boolean lazyLoadScript) {
+		this.lazyLoadScript = lazyLoadScript;
+	}
 }
@@ -21,6 +21,11 @@ public class ResponseCodeConfig {
 	 */
 	private int exception = -1;
 
+	/**
+	 * 超出并发数限制的code值
+	 */
+	private int busy = -2;
+
 	public int getSuccess() {
 		return success;
 	}
@@ -44,4 +49,12 @@ public class ResponseCodeConfig {
 	public void setException(int exception) {
 		this.exception = exception;
 	}
+
+	public int getBusy() {
+		return busy;
+	}
+
+	public void setBusy(int busy) {
+		this.busy = busy;
+	}
 }
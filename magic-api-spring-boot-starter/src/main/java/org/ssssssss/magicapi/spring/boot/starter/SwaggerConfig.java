@@ -18,6 +18,13 @@ public class SwaggerConfig {
 	 */
 	private String location = "/v2/api-docs/magic-api/swagger2.json";
 
+	/**
+	 * OpenAPI3文档位置
+	 *
+	 * @since 1.3.4
+	 */
+	private String openApiLocation = "/v3/api-docs/magic-api/openapi.json";
+
 	/**
 	 * 文档标题
 	 */
@@ -52,6 +59,14 @@ public class SwaggerConfig {
 		this.location = location;
 	}
 
+	public String getOpenApiLocation() {
+		return openApiLocation;
+	}
+
+	public void setOpenApiLocation(String openApiLocation) {
+		this.openApiLocation = openApiLocation;
+	}
+
 	public String getTitle() {
 		return title;
 	}
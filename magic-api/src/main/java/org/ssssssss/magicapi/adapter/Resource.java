@@ -1,9 +1,12 @@
 package org.ssssssss.magicapi.adapter;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -105,12 +108,44 @@ public interface Resource {
 	 */
 	byte[] read();
 
+	/**
+	 * 以流的方式读取，可只读取开头部分，默认读取全部内容后包装
+	 */
+	default InputStream getInputStream() throws IOException {
+		byte[] bytes = read();
+		return new ByteArrayInputStream(bytes == null ? new byte[0] : bytes);
+	}
+
+	/**
+	 * 忽略缓存，重新读取
+	 */
+	default byte[] reload() {
+		return read();
+	}
+
 	/**
 	 * 读取当前资源下的所有内容,主要是缓存作用。
 	 */
 	default void readAll() {
 	}
 
+	/**
+	 * 获取资源的摘要信息，不支持时返回null
+	 */
+	default ResourceStat stat() {
+		return null;
+	}
+
+	/**
+	 * 获取当前资源下所有文件的摘要清单，key为{@link #getAbsolutePath()}，无需读取内容
+	 *
+	 * @param suffix 文件后缀
+	 * @return 不支持时返回null
+	 */
+	default Map<String, ResourceStat> manifest(String suffix) {
+		return null;
+	}
+
 	/**
 	 * 获取子目录
 	 */
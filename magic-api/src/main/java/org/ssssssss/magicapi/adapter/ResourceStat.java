@@ -0,0 +1,101 @@
+package org.ssssssss.magicapi.adapter;
+
+import org.ssssssss.magicapi.utils.MD5Utils;
+
+import java.util.Objects;
+
+/**
+ * 资源的摘要信息（内容哈希、修改时间、大小），用于判断资源内容是否有变化，无需读取内容
+ */
+public class ResourceStat {
+
+	private final String path;
+
+	/**
+	 * 内容的MD5，不支持时为null
+	 */
+	private final String hash;
+
+	/**
+	 * 修改时间，不支持时为0
+	 */
+	private final long updateTime;
+
+	/**
+	 * 内容大小，不支持时为-1
+	 */
+	private final long size;
+
+	public ResourceStat(String path, String hash, long updateTime, long size) {
+		this.path = path;
+		this.hash = hash;
+		this.updateTime = updateTime;
+		this.size = size;
+	}
+
+	/**
+	 * 根据内容生成摘要
+	 */
+	public static ResourceStat of(String path, byte[] content, long updateTime) {
+		return new ResourceStat(path, MD5Utils.encrypt(content), updateTime, content.length);
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public String getHash() {
+		return hash;
+	}
+
+	public long getUpdateTime() {
+		return updateTime;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * 判断内容是否一致，有哈希时比较哈希，否则比较修改时间和大小
+	 */
+	public boolean isSame(ResourceStat other) {
+		if (other == null || !Objects.equals(path, other.path)) {
+			return false;
+		}
+		if (hash != null && other.hash != null) {
+			return hash.equals(other.hash);
+		}
+		return updateTime > 0 && updateTime == other.updateTime && size == other.size;
+	}
+
+	/**
+	 * 序列化为字符串，格式为hash,updateTime,size
+	 */
+	public String format() {
+		return Objects.toString(hash, "") + "," + updateTime + "," + size;
+	}
+
+	/**
+	 * 从字符串中解析，格式错误时返回null
+	 */
+	public static ResourceStat parse(String path, String value) {
+		if (value == null) {
+			return null;
+		}
+		String[] values = value.split(",");
+		if (values.length != 3) {
+			return null;
+		}
+		try {
+			return new ResourceStat(path, values[0].isEmpty() ? null : values[0], Long.parseLong(values[1]), Long.parseLong(values[2]));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return path + "@" + format();
+	}
+}
@@ -2,9 +2,11 @@ package org.ssssssss.magicapi.adapter.resource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.ssssssss.magicapi.adapter.Resource;
+import org.ssssssss.magicapi.adapter.ResourceStat;
 import org.ssssssss.magicapi.utils.Assert;
 import org.ssssssss.magicapi.utils.IoUtils;
 
@@ -16,15 +18,32 @@ import java.sql.Clob;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * 数据库存储
+ * <p>
+ * 表中包含file_hash、update_time列时支持增量加载，只读取内容有变化的资源，不包含时每次全量读取
+ */
 public class DatabaseResource extends KeyValueResource {
 
 	private static final Logger logger = LoggerFactory.getLogger(DatabaseResource.class);
+
+	/**
+	 * 增量加载时每次查询的最大数量
+	 */
+	private static final int FETCH_SIZE = 500;
 	private final JdbcTemplate template;
 	private final String tableName;
 	private Map<String, String> cachedContent = new ConcurrentHashMap<>();
+	private Map<String, ResourceStat> cachedStats = new ConcurrentHashMap<>();
+
+	/**
+	 * 表中是否包含file_hash、update_time列，为null时未检测
+	 */
+	private AtomicReference<Boolean> manifestSupported = new AtomicReference<>();
 
 	public DatabaseResource(JdbcTemplate template, String tableName) {
 		this(template, tableName, false);
@@ -49,6 +68,12 @@ public class DatabaseResource extends KeyValueResource {
 		this.cachedContent = cachedContent;
 	}
 
+	private DatabaseResource(JdbcTemplate template, String tableName, String path, boolean readonly, DatabaseResource parent) {
+		this(template, tableName, path, readonly, parent.cachedContent, parent);
+		this.cachedStats = parent.cachedStats;
+		this.manifestSupported = parent.manifestSupported;
+	}
+
 	@Override
 	public byte[] read() {
 		String value = this.cachedContent.get(path);
@@ -59,37 +84,154 @@ public class DatabaseResource extends KeyValueResource {
 		return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
 	}
 
+	@Override
+	public byte[] reload() {
+		this.cachedContent.remove(this.path);
+		this.cachedStats.remove(this.path);
+		byte[] bytes = read();
+		if (bytes.length > 0) {
+			this.cachedContent.put(this.path, new String(bytes, StandardCharsets.UTF_8));
+		}
+		return bytes;
+	}
+
+	/**
+	 * 读取当前资源下的所有内容，支持增量加载且已加载过时只读取有变化的内容
+	 */
 	@Override
 	public void readAll() {
-		String sql = String.format("select file_path, file_content from %s where file_path like '%s%%'", tableName, this.path);
-		SqlRowSet sqlRowSet = template.queryForRowSet(sql);
+		if (!isManifestSupported()) {
+			String sql = String.format("select file_path, file_content from %s where file_path like '%s%%'", tableName, this.path);
+			SqlRowSet sqlRowSet = template.queryForRowSet(sql);
+			while (sqlRowSet.next()) {
+				this.cachedContent.put(sqlRowSet.getString(1), readContent(sqlRowSet.getObject(2)));
+			}
+			return;
+		}
+		Map<String, ResourceStat> manifest = queryManifest(this.path);
+		// 移除已删除的
+		this.cachedContent.keySet().removeIf(key -> key.startsWith(this.path) && !manifest.containsKey(key));
+		this.cachedStats.keySet().removeIf(key -> key.startsWith(this.path) && !manifest.containsKey(key));
+		List<String> changed = manifest.values().stream()
+				.filter(it -> it.getHash() == null || !this.cachedContent.containsKey(it.getPath()) || !it.isSame(this.cachedStats.get(it.getPath())))
+				.map(ResourceStat::getPath)
+				.collect(Collectors.toList());
+		if (changed.isEmpty()) {
+			return;
+		}
+		if (changed.size() == manifest.size()) {
+			fetch(String.format("select file_path, file_content, file_hash, update_time from %s where file_path like '%s%%'", tableName, this.path));
+		} else {
+			for (int i = 0, size = changed.size(); i < size; i += FETCH_SIZE) {
+				List<String> paths = changed.subList(i, Math.min(size, i + FETCH_SIZE));
+				String sql = String.format("select file_path, file_content, file_hash, update_time from %s where file_path in (%s)", tableName, paths.stream().map(it -> "?").collect(Collectors.joining(",")));
+				fetch(sql, paths.toArray());
+			}
+		}
+		logger.debug("{}增量加载{}个资源", this, changed.size());
+	}
+
+	private void fetch(String sql, Object... args) {
+		SqlRowSet sqlRowSet = template.queryForRowSet(sql, args);
+		List<Object[]> backfill = new ArrayList<>();
 		while (sqlRowSet.next()) {
-			Object object = sqlRowSet.getObject(2);
-			String content = null;
-			if (object instanceof String) {
-				content = object.toString();
-			} else if (object instanceof byte[]) {
-				content = new String((byte[]) object, StandardCharsets.UTF_8);
-			} else if (object instanceof Blob) {
-				Blob blob = (Blob) object;
-				try (InputStream is = blob.getBinaryStream()) {
-					content = new String(IoUtils.bytes(is), StandardCharsets.UTF_8);
-				} catch (SQLException | IOException ex) {
-					logger.error("读取content失败", ex);
-				}
-			} else if (object instanceof Clob) {
-				Clob clob = (Clob) object;
-				try {
-					content = clob.getSubString(1, (int) clob.length());
-				} catch (SQLException ex) {
-					logger.error("读取content失败", ex);
-				}
+			String path = sqlRowSet.getString(1);
+			String content = readContent(sqlRowSet.getObject(2));
+			String hash = sqlRowSet.getString(3);
+			long updateTime = sqlRowSet.getLong(4);
+			ResourceStat stat;
+			if (hash == null) {
+				// 旧数据没有哈希，计算后回填
+				stat = ResourceStat.of(path, content.getBytes(StandardCharsets.UTF_8), updateTime > 0 ? updateTime : System.currentTimeMillis());
+				backfill.add(new Object[]{stat.getHash(), stat.getUpdateTime(), path});
+			} else {
+				stat = new ResourceStat(path, hash, updateTime, -1);
+			}
+			this.cachedContent.put(path, content);
+			this.cachedStats.put(path, stat);
+		}
+		if (!backfill.isEmpty() && !readonly()) {
+			try {
+				template.batchUpdate(String.format("update %s set file_hash = ?, update_time = ? where file_path = ? and file_hash is null", tableName), backfill);
+			} catch (DataAccessException e) {
+				logger.warn("回填{}的file_hash失败", tableName, e);
 			}
-			Assert.isNotNull(content, "读取content失败，请检查列类型是否正确");
-			this.cachedContent.put(sqlRowSet.getString(1), content);
 		}
 	}
 
+	private String readContent(Object object) {
+		String content = null;
+		if (object instanceof String) {
+			content = object.toString();
+		} else if (object instanceof byte[]) {
+			content = new String((byte[]) object, StandardCharsets.UTF_8);
+		} else if (object instanceof Blob) {
+			Blob blob = (Blob) object;
+			try (InputStream is = blob.getBinaryStream()) {
+				content = new String(IoUtils.bytes(is), StandardCharsets.UTF_8);
+			} catch (SQLException | IOException ex) {
+				logger.error("读取content失败", ex);
+			}
+		} else if (object instanceof Clob) {
+			Clob clob = (Clob) object;
+			try {
+				content = clob.getSubString(1, (int) clob.length());
+			} catch (SQLException ex) {
+				logger.error("读取content失败", ex);
+			}
+		}
+		Assert.isNotNull(content, "读取content失败，请检查列类型是否正确");
+		return content;
+	}
+
+	/**
+	 * 判断表中是否包含file_hash、update_time列
+	 */
+	private boolean isManifestSupported() {
+		Boolean supported = this.manifestSupported.get();
+		if (supported == null) {
+			try {
+				template.queryForRowSet(String.format("select file_hash, update_time from %s where 1 = 0", tableName));
+				supported = true;
+			} catch (DataAccessException e) {
+				logger.info("表{}中不包含file_hash、update_time列，将每次全量读取", tableName);
+				supported = false;
+			}
+			this.manifestSupported.compareAndSet(null, supported);
+		}
+		return supported;
+	}
+
+	private Map<String, ResourceStat> queryManifest(String prefix) {
+		String sql = String.format("select file_path, file_hash, update_time from %s where file_path like '%s%%'", tableName, prefix);
+		SqlRowSet sqlRowSet = template.queryForRowSet(sql);
+		Map<String, ResourceStat> manifest = new HashMap<>();
+		while (sqlRowSet.next()) {
+			String path = sqlRowSet.getString(1);
+			manifest.put(path, new ResourceStat(path, sqlRowSet.getString(2), sqlRowSet.getLong(3), -1));
+		}
+		return manifest;
+	}
+
+	@Override
+	public ResourceStat stat() {
+		if (!isManifestSupported()) {
+			return null;
+		}
+		ResourceStat stat = queryManifest(this.path).get(this.path);
+		return stat == null || stat.getHash() == null ? null : stat;
+	}
+
+	@Override
+	public Map<String, ResourceStat> manifest(String suffix) {
+		if (!isManifestSupported()) {
+			return null;
+		}
+		Map<String, ResourceStat> manifest = queryManifest(isDirectory() ? this.path : this.path + separator);
+		manifest.keySet().removeIf(it -> !it.endsWith(suffix));
+		return manifest;
+	}
+
 	@Override
 	public boolean exists() {
 		if (this.cachedContent.get(this.path) != null) {
@@ -102,6 +244,17 @@ public class DatabaseResource extends KeyValueResource {
 
 	@Override
 	public boolean write(String content) {
+		if (isManifestSupported()) {
+			ResourceStat stat = ResourceStat.of(this.path, content.getBytes(StandardCharsets.UTF_8), System.currentTimeMillis());
+			String sql = String.format("update %s set file_content = ?, file_hash = ?, update_time = ? where file_path = ?", tableName);
+			if ((exists() && template.update(sql, content, stat.getHash(), stat.getUpdateTime(), this.path) > 0)
+					|| template.update(String.format("insert into %s (file_path,file_content,file_hash,update_time) values(?,?,?,?)", tableName), this.path, content, stat.getHash(), stat.getUpdateTime()) > 0) {
+				this.cachedContent.put(this.path, content);
+				this.cachedStats.put(this.path, stat);
+				return true;
+			}
+			return false;
+		}
 		String sql = String.format("update %s set file_content = ? where file_path = ?", tableName);
 		if (exists()) {
 			if (template.update(sql, content, this.path) > 0) {
@@ -128,7 +281,14 @@ public class DatabaseResource extends KeyValueResource {
 		List<Object[]> args = renameKeys.entrySet().stream().map(entry -> new Object[]{entry.getValue(), entry.getKey()}).collect(Collectors.toList());
 		String sql = String.format("update %s set file_path = ? where file_path = ?", tableName);
 		if (Arrays.stream(template.batchUpdate(sql, args)).sum() > 0) {
-			renameKeys.forEach((oldKey, newKey) -> this.cachedContent.put(newKey, this.cachedContent.remove(oldKey)));
+			renameKeys.forEach((oldKey, newKey) -> {
+				String content = this.cachedContent.remove(oldKey);
+				if (content != null) {
+					this.cachedContent.put(newKey, content);
+				}
+				// 路径变化后需重新加载摘要
+				this.cachedStats.remove(oldKey);
+			});
 			return true;
 		}
 		return false;
@@ -140,6 +300,7 @@ public class DatabaseResource extends KeyValueResource {
 		String sql = String.format("delete from %s where file_path = ? or file_path like '%s%%'", tableName, path);
 		if (template.update(sql, this.path) > 0) {
 			this.cachedContent.entrySet().removeIf(entry -> entry.getKey().startsWith(path));
+			this.cachedStats.keySet().removeIf(key -> key.startsWith(path) || key.equals(this.path));
 			return true;
 		}
 		return false;
@@ -147,7 +308,7 @@ public class DatabaseResource extends KeyValueResource {
 
 	@Override
 	public Function<String, Resource> mappedFunction() {
-		return it -> new DatabaseResource(template, tableName, it, readonly, this.cachedContent, this);
+		return it -> new DatabaseResource(template, tableName, it, readonly, this);
 	}
 
 	@Override
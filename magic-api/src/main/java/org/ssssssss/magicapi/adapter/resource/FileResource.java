@@ -1,13 +1,14 @@
 package org.ssssssss.magicapi.adapter.resource;
 
 import org.ssssssss.magicapi.adapter.Resource;
+import org.ssssssss.magicapi.adapter.ResourceStat;
 import org.ssssssss.magicapi.utils.IoUtils;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.io.InputStream;
+import java.util.*;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -54,6 +55,32 @@ public class FileResource implements Resource {
 		return IoUtils.bytes(this.file);
 	}
 
+	@Override
+	public InputStream getInputStream() throws IOException {
+		return new FileInputStream(this.file);
+	}
+
+	@Override
+	public ResourceStat stat() {
+		return this.file.isFile() ? stat(this.file) : null;
+	}
+
+	/**
+	 * 文件以修改时间和大小作为摘要，无需读取内容
+	 */
+	@Override
+	public Map<String, ResourceStat> manifest(String suffix) {
+		Map<String, ResourceStat> manifest = new HashMap<>();
+		for (File it : IoUtils.files(this.file, suffix)) {
+			manifest.put(it.getAbsolutePath(), stat(it));
+		}
+		return manifest;
+	}
+
+	private static ResourceStat stat(File file) {
+		return new ResourceStat(file.getAbsolutePath(), null, file.lastModified(), file.length());
+	}
+
 	@Override
 	public boolean renameTo(Resource resource) {
 		if (!this.readonly()) {
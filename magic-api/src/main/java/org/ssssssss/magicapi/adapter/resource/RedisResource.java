@@ -7,37 +7,127 @@ import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.ssssssss.magicapi.adapter.Resource;
+import org.ssssssss.magicapi.adapter.ResourceStat;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Redis存储
+ * <p>
+ * 各资源的摘要保存在单独的Hash中（{前缀}.manifest），刷新时只读取内容有变化的资源
+ */
 public class RedisResource extends KeyValueResource {
 
 	private static final Logger logger = LoggerFactory.getLogger(RedisResource.class);
+
+	/**
+	 * 扫描key时每次返回的数量
+	 */
+	private static final long SCAN_COUNT = 1000;
 	private final StringRedisTemplate redisTemplate;
-	private final Map<String, String> cachedContent = new ConcurrentHashMap<>();
+	private final Map<String, String> cachedContent;
+	private final Map<String, ResourceStat> cachedStats;
+
+	/**
+	 * 保存摘要的Hash的key
+	 */
+	private final String manifestKey;
 
 	public RedisResource(StringRedisTemplate redisTemplate, String path, boolean readonly, RedisResource parent) {
 		super(":", path, readonly, parent);
 		this.redisTemplate = redisTemplate;
+		if (parent == null) {
+			this.cachedContent = new ConcurrentHashMap<>();
+			this.cachedStats = new ConcurrentHashMap<>();
+			this.manifestKey = (path.endsWith(separator) ? path.substring(0, path.length() - separator.length()) : path) + ".manifest";
+		} else {
+			this.cachedContent = parent.cachedContent;
+			this.cachedStats = parent.cachedStats;
+			this.manifestKey = parent.manifestKey;
+		}
 	}
 
 	public RedisResource(StringRedisTemplate redisTemplate, String path, boolean readonly) {
 		this(redisTemplate, path, readonly, null);
 	}
 
+	/**
+	 * 读取当前资源下的所有内容，已加载过且摘要一致的不再读取
+	 */
 	@Override
 	public void readAll() {
-		List<String> keys = new ArrayList<>(keys());
-		List<String> values = redisTemplate.opsForValue().multiGet(keys);
-		if (values != null) {
-			for (int i = 0, size = keys.size(); i < size; i++) {
-				this.cachedContent.put(keys.get(i), values.get(i));
+		Set<String> keys = keys();
+		Map<String, ResourceStat> manifest = queryManifest();
+		String prefix = isDirectory() ? this.path : this.path + separator;
+		this.cachedContent.keySet().removeIf(key -> key.startsWith(prefix) && !keys.contains(key));
+		this.cachedStats.keySet().removeIf(key -> key.startsWith(prefix) && !keys.contains(key));
+		List<String> changed = keys.stream()
+				.filter(key -> {
+					ResourceStat stat = manifest.get(key);
+					return stat == null || !this.cachedContent.containsKey(key) || !stat.isSame(this.cachedStats.get(key));
+				})
+				.collect(Collectors.toList());
+		if (changed.isEmpty()) {
+			return;
+		}
+		List<String> values = redisTemplate.opsForValue().multiGet(changed);
+		if (values == null) {
+			return;
+		}
+		Map<String, String> backfill = new HashMap<>();
+		for (int i = 0, size = changed.size(); i < size; i++) {
+			String key = changed.get(i);
+			String value = values.get(i);
+			if (value == null) {
+				continue;
+			}
+			ResourceStat stat = manifest.get(key);
+			if (stat == null) {
+				// 没有摘要的旧数据，计算后回填
+				stat = ResourceStat.of(key, value.getBytes(StandardCharsets.UTF_8), System.currentTimeMillis());
+				backfill.put(key, stat.format());
 			}
+			this.cachedContent.put(key, value);
+			this.cachedStats.put(key, stat);
 		}
+		if (!backfill.isEmpty() && !readonly()) {
+			redisTemplate.opsForHash().putAll(manifestKey, backfill);
+		}
+		logger.debug("{}加载{}个资源", this, changed.size());
+	}
+
+	private Map<String, ResourceStat> queryManifest() {
+		Map<Object, Object> entries = redisTemplate.opsForHash().entries(manifestKey);
+		Map<String, ResourceStat> manifest = new HashMap<>(entries.size());
+		entries.forEach((key, value) -> {
+			ResourceStat stat = ResourceStat.parse(key.toString(), Objects.toString(value, null));
+			if (stat != null) {
+				manifest.put(stat.getPath(), stat);
+			}
+		});
+		return manifest;
+	}
+
+	@Override
+	public ResourceStat stat() {
+		Object value = redisTemplate.opsForHash().get(manifestKey, this.path);
+		return ResourceStat.parse(this.path, Objects.toString(value, null));
+	}
+
+	/**
+	 * 没有摘要的资源不在清单中
+	 */
+	@Override
+	public Map<String, ResourceStat> manifest(String suffix) {
+		Set<String> keys = keys();
+		Map<String, ResourceStat> manifest = queryManifest();
+		manifest.keySet().removeIf(key -> !key.endsWith(suffix) || !keys.contains(key));
+		return manifest;
 	}
 
 	@Override
@@ -49,17 +139,39 @@ public class RedisResource extends KeyValueResource {
 		return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
 	}
 
+	@Override
+	public byte[] reload() {
+		this.cachedContent.remove(this.path);
+		this.cachedStats.remove(this.path);
+		return read();
+	}
+
 	@Override
 	public boolean write(String content) {
+		ResourceStat stat = ResourceStat.of(this.path, content.getBytes(StandardCharsets.UTF_8), System.currentTimeMillis());
 		this.redisTemplate.opsForValue().set(this.path, content);
+		this.redisTemplate.opsForHash().put(manifestKey, this.path, stat.format());
 		this.cachedContent.put(this.path, content);
+		this.cachedStats.put(this.path, stat);
 		return true;
 	}
 
 	@Override
 	protected boolean renameTo(Map<String, String> renameKeys) {
 		renameKeys.forEach(this.redisTemplate::rename);
-		renameKeys.forEach((oldKey, newKey) -> this.cachedContent.put(newKey, this.cachedContent.remove(oldKey)));
+		renameKeys.forEach((oldKey, newKey) -> {
+			String content = this.cachedContent.remove(oldKey);
+			if (content != null) {
+				this.cachedContent.put(newKey, content);
+			}
+			ResourceStat stat = this.cachedStats.remove(oldKey);
+			this.redisTemplate.opsForHash().delete(manifestKey, oldKey);
+			if (stat != null) {
+				stat = new ResourceStat(newKey, stat.getHash(), stat.getUpdateTime(), stat.getSize());
+				this.cachedStats.put(newKey, stat);
+				this.redisTemplate.opsForHash().put(manifestKey, newKey, stat.format());
+			}
+		});
 		return true;
 	}
 
@@ -75,7 +187,9 @@ public class RedisResource extends KeyValueResource {
 	@Override
 	protected boolean deleteByKey(String key) {
 		if (Boolean.TRUE.equals(this.redisTemplate.delete(key))) {
+			this.redisTemplate.opsForHash().delete(manifestKey, key);
 			this.cachedContent.remove(key);
+			this.cachedStats.remove(key);
 			return true;
 		}
 		return false;
@@ -90,7 +204,7 @@ public class RedisResource extends KeyValueResource {
 	protected Set<String> keys() {
 		Set<String> keys = this.redisTemplate.execute((RedisCallback<Set<String>>) connection -> {
 			ScanOptions options = new ScanOptions.ScanOptionsBuilder()
-					.count(Long.MAX_VALUE)
+					.count(SCAN_COUNT)
 					.match((isDirectory() ? this.path : (this.path + separator)) + "*")
 					.build();
 			Set<String> returnKeys = new HashSet<>();
@@ -0,0 +1,246 @@
+package org.ssssssss.magicapi.cache;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 并发SQL缓存实现
+ * <p>
+ * 按缓存名称分段存储，读取无锁，删除缓存名称时直接移除整段；
+ * 超出容量时按最近访问时间淘汰，过期数据由后台线程定时清理。
+ */
+public class ConcurrentSqlCache implements SqlCache {
+
+	/**
+	 * 超出容量时，淘汰至容量的 15/16，避免频繁淘汰
+	 */
+	private static final int EVICT_SHIFT = 4;
+
+	private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+	private final Map<String, Segment> segments = new ConcurrentHashMap<>();
+
+	/**
+	 * 当前缓存条数
+	 */
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * 同一时刻只允许一个线程执行淘汰
+	 */
+	private final ReentrantLock evictLock = new ReentrantLock();
+
+	private final int capacity;
+
+	private final long expire;
+
+	private ScheduledExecutorService sweeper;
+
+	/**
+	 * @param capacity 容量
+	 * @param expire   默认过期时间，-1为不过期
+	 */
+	public ConcurrentSqlCache(int capacity, long expire) {
+		this(capacity, expire, -1);
+	}
+
+	/**
+	 * @param capacity      容量
+	 * @param expire        默认过期时间，-1为不过期
+	 * @param sweepInterval 后台清理过期数据的间隔，单位为毫秒，小于等于0时不启用
+	 */
+	public ConcurrentSqlCache(int capacity, long expire, long sweepInterval) {
+		this.capacity = capacity;
+		this.expire = expire;
+		if (sweepInterval > 0) {
+			this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "magic-sql-cache-sweeper-" + THREAD_COUNTER.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.sweeper.scheduleWithFixedDelay(this::clean, sweepInterval, sweepInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public void put(String name, String key, Object value) {
+		put(name, key, value, this.expire);
+	}
+
+	@Override
+	public void put(String name, String key, Object value, long ttl) {
+		long expireTime = ttl > 0 ? (System.currentTimeMillis() + ttl) :
+				(this.expire > -1 ? System.currentTimeMillis() + this.expire : Long.MAX_VALUE);
+		Segment segment = segments.computeIfAbsent(name, it -> new Segment());
+		if (segment.nodes.put(key, new ExpireNode<>(expireTime, value)) == null) {
+			size.incrementAndGet();
+			// 与delete并发时，放入已移除分段的数据需撤销，只有成功移除的一方计数
+			if (segment.removed && segment.nodes.remove(key) != null) {
+				size.decrementAndGet();
+			}
+		}
+		if (size.get() > capacity) {
+			evict();
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(String name, String key) {
+		Segment segment = segments.get(name);
+		if (segment == null) {
+			return null;
+		}
+		ExpireNode<Object> node = segment.nodes.get(key);
+		if (node == null) {
+			return null;
+		}
+		// 惰性删除过期的
+		if (node.expire < System.currentTimeMillis()) {
+			if (segment.nodes.remove(key, node)) {
+				size.decrementAndGet();
+			}
+			return null;
+		}
+		node.access = System.nanoTime();
+		return (T) node.value;
+	}
+
+	@Override
+	public void delete(String name) {
+		Segment segment = segments.remove(name);
+		if (segment != null) {
+			segment.removed = true;
+			// 逐个移除，只扣减实际移除的条数，并发放入的由put自行撤销
+			for (String key : segment.nodes.keySet()) {
+				if (segment.nodes.remove(key) != null) {
+					size.decrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * 当前缓存条数
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	/**
+	 * 停止后台清理线程
+	 */
+	public void shutdown() {
+		if (sweeper != null) {
+			sweeper.shutdownNow();
+		}
+	}
+
+	/**
+	 * 清理已过期的数据
+	 */
+	public void clean() {
+		long now = System.currentTimeMillis();
+		segments.forEach((name, segment) -> segment.nodes.forEach((key, node) -> {
+			if (node.expire < now && segment.nodes.remove(key, node)) {
+				size.decrementAndGet();
+			}
+		}));
+	}
+
+	/**
+	 * 按最近访问时间淘汰
+	 */
+	private void evict() {
+		if (size.get() > capacity + (capacity >> EVICT_SHIFT)) {
+			// 超出较多时等待正在进行的淘汰，避免并发写入时无限增长
+			evictLock.lock();
+		} else if (!evictLock.tryLock()) {
+			return;
+		}
+		try {
+			// 其它线程已淘汰完成
+			if (size.get() <= capacity) {
+				return;
+			}
+			clean();
+			int count = size.get() - (capacity - (capacity >> EVICT_SHIFT));
+			if (count <= 0) {
+				return;
+			}
+			// 大顶堆，保留最久未访问的count条
+			PriorityQueue<Candidate> candidates = new PriorityQueue<>(count, (a, b) -> Long.compare(b.access, a.access));
+			segments.forEach((name, segment) -> segment.nodes.forEach((key, node) -> {
+				if (candidates.size() < count) {
+					candidates.offer(new Candidate(segment, key, node));
+				} else if (node.access < candidates.peek().access) {
+					candidates.poll();
+					candidates.offer(new Candidate(segment, key, node));
+				}
+			}));
+			for (Candidate candidate : candidates) {
+				if (candidate.segment.nodes.remove(candidate.key, candidate.node)) {
+					size.decrementAndGet();
+				}
+			}
+		} finally {
+			evictLock.unlock();
+		}
+	}
+
+	/**
+	 * 同一缓存名称下的数据
+	 */
+	static class Segment {
+
+		final Map<String, ExpireNode<Object>> nodes = new ConcurrentHashMap<>();
+
+		volatile boolean removed;
+	}
+
+	/**
+	 * 过期时间节点
+	 */
+	static class ExpireNode<V> {
+
+		final long expire;
+
+		final V value;
+
+		volatile long access = System.nanoTime();
+
+		ExpireNode(long expire, V value) {
+			this.expire = expire;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * 待淘汰的数据
+	 */
+	static class Candidate {
+
+		final Segment segment;
+
+		final String key;
+
+		final ExpireNode<Object> node;
+
+		/**
+		 * 访问时间快照，避免排序过程中发生变化
+		 */
+		final long access;
+
+		Candidate(Segment segment, String key, ExpireNode<Object> node) {
+			this.segment = segment;
+			this.key = key;
+			this.node = node;
+			this.access = node.access;
+		}
+	}
+}
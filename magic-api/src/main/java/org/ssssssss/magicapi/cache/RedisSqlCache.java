@@ -0,0 +1,200 @@
+package org.ssssssss.magicapi.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.ssssssss.magicapi.model.Constants;
+import org.ssssssss.magicapi.model.MagicNotify;
+import org.ssssssss.magicapi.provider.MagicNotifyService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于Redis的SQL缓存，多个实例共享缓存
+ * <p>
+ * 本地使用{@link ConcurrentSqlCache}作为近端缓存，未命中时再从Redis中读取；
+ * 每个缓存名称有一个版本号，删除缓存时只需将版本号加1，旧版本的数据等待过期，
+ * 同时通过集群通知让其它实例清除近端缓存。
+ */
+public class RedisSqlCache implements SqlCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(RedisSqlCache.class);
+
+	private final String instanceId = UUID.randomUUID().toString();
+
+	private final StringRedisTemplate redisTemplate;
+
+	private final String prefix;
+
+	/**
+	 * 默认过期时间，单位为毫秒，-1为不过期
+	 */
+	private final long expire;
+
+	/**
+	 * Redis中数据最长保留的时间，单位为毫秒，避免未设置过期时间时旧版本的数据一直残留
+	 */
+	private final long maxExpire;
+
+	/**
+	 * 近端缓存及缓存名称版本号的有效期，单位为毫秒
+	 */
+	private final long nearExpire;
+
+	private final ConcurrentSqlCache nearCache;
+
+	private final Map<String, Version> versions = new ConcurrentHashMap<>();
+
+	private MagicNotifyService magicNotifyService;
+
+	/**
+	 * @param prefix       Redis中key的前缀
+	 * @param expire       默认过期时间，-1为不过期
+	 * @param maxExpire    Redis中数据最长保留的时间，小于等于0时不限制
+	 * @param nearCapacity 近端缓存容量
+	 * @param nearExpire   近端缓存有效期
+	 */
+	public RedisSqlCache(RedisConnectionFactory connectionFactory, String prefix, long expire, long maxExpire, int nearCapacity, long nearExpire) {
+		this.redisTemplate = new StringRedisTemplate(connectionFactory);
+		this.prefix = prefix;
+		this.expire = expire;
+		this.maxExpire = maxExpire;
+		this.nearExpire = nearExpire;
+		this.nearCache = new ConcurrentSqlCache(nearCapacity, nearExpire);
+	}
+
+	/**
+	 * 设置集群通知服务，删除缓存时通知其它实例清除近端缓存
+	 */
+	public void setMagicNotifyService(MagicNotifyService magicNotifyService) {
+		this.magicNotifyService = magicNotifyService;
+	}
+
+	@Override
+	public void put(String name, String key, Object value) {
+		put(name, key, value, this.expire);
+	}
+
+	@Override
+	public void put(String name, String key, Object value, long ttl) {
+		long expire = ttl > 0 ? ttl : this.expire;
+		if (this.maxExpire > 0 && (expire <= 0 || expire > this.maxExpire)) {
+			expire = this.maxExpire;
+		}
+		nearCache.put(name, key, value, expire > 0 ? Math.min(expire, this.nearExpire) : this.nearExpire);
+		byte[] bytes;
+		try {
+			bytes = SqlCacheCodec.encode(value);
+		} catch (Exception e) {
+			// 无法序列化的值只保存在近端缓存中
+			logger.warn("序列化缓存{}:{}失败", name, key, e);
+			return;
+		}
+		Expiration expiration = expire > 0 ? Expiration.milliseconds(expire) : Expiration.persistent();
+		try {
+			byte[] redisKey = buildKey(name, key);
+			redisTemplate.execute((RedisCallback<Object>) connection -> connection.set(redisKey, bytes, expiration, RedisStringCommands.SetOption.upsert()));
+		} catch (Exception e) {
+			logger.warn("写入Redis缓存{}:{}失败", name, key, e);
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(String name, String key) {
+		Object value = nearCache.get(name, key);
+		if (value != null) {
+			return (T) value;
+		}
+		try {
+			byte[] redisKey = buildKey(name, key);
+			byte[] bytes = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.get(redisKey));
+			if (bytes == null) {
+				return null;
+			}
+			value = SqlCacheCodec.decode(bytes);
+		} catch (Exception e) {
+			logger.warn("读取Redis缓存{}:{}失败", name, key, e);
+			return null;
+		}
+		if (value != null) {
+			nearCache.put(name, key, value, this.nearExpire);
+		}
+		return (T) value;
+	}
+
+	@Override
+	public void delete(String name) {
+		try {
+			Long version = redisTemplate.opsForValue().increment(versionKey(name));
+			if (version != null) {
+				versions.put(name, new Version(version, System.currentTimeMillis() + this.nearExpire));
+			} else {
+				versions.remove(name);
+			}
+		} catch (Exception e) {
+			versions.remove(name);
+			logger.warn("删除Redis缓存{}失败", name, e);
+		}
+		nearCache.delete(name);
+		if (magicNotifyService != null) {
+			magicNotifyService.sendNotify(new MagicNotify(instanceId, name, Constants.NOTIFY_ACTION_DELETE, Constants.NOTIFY_ACTION_SQL_CACHE));
+		}
+	}
+
+	/**
+	 * 处理其它实例发送的缓存删除通知
+	 *
+	 * @return 是否已处理
+	 */
+	public boolean processNotify(MagicNotify magicNotify) {
+		if (magicNotify == null || magicNotify.getType() != Constants.NOTIFY_ACTION_SQL_CACHE || instanceId.equals(magicNotify.getFrom())) {
+			return false;
+		}
+		String name = magicNotify.getId();
+		versions.remove(name);
+		nearCache.delete(name);
+		return true;
+	}
+
+	private byte[] buildKey(String name, String key) {
+		return (prefix + name + ":" + getVersion(name) + ":" + key).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private String versionKey(String name) {
+		return prefix + name + ":version";
+	}
+
+	/**
+	 * 获取缓存名称当前的版本号，本地缓存nearExpire毫秒
+	 */
+	private long getVersion(String name) {
+		long now = System.currentTimeMillis();
+		Version version = versions.get(name);
+		if (version == null || version.expireTime < now) {
+			String value = redisTemplate.opsForValue().get(versionKey(name));
+			version = new Version(value == null ? 0 : Long.parseLong(value), now + this.nearExpire);
+			versions.put(name, version);
+		}
+		return version.value;
+	}
+
+	static class Version {
+
+		final long value;
+
+		final long expireTime;
+
+		Version(long value, long expireTime) {
+			this.value = value;
+			this.expireTime = expireTime;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package org.ssssssss.magicapi.cache;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * 合并相同key的并发调用，同一时刻只执行一次，其余调用方等待并共享结果
+ */
+public class SingleFlight {
+
+	private final Map<String, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+
+	/**
+	 * 执行调用，已有相同key的调用在执行时等待其结果
+	 *
+	 * @param key      调用的key
+	 * @param supplier 实际调用
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T execute(String key, Supplier<T> supplier) {
+		CompletableFuture<Object> call = new CompletableFuture<>();
+		CompletableFuture<Object> existing = calls.putIfAbsent(key, call);
+		if (existing != null) {
+			return (T) await(existing);
+		}
+		try {
+			T value = supplier.get();
+			call.complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			call.completeExceptionally(e);
+			throw e;
+		} finally {
+			calls.remove(key, call);
+		}
+	}
+
+	/**
+	 * 异步执行调用，已有相同key的调用在执行时忽略
+	 *
+	 * @param key      调用的key
+	 * @param supplier 实际调用
+	 * @param executor 执行的线程池
+	 * @return 是否提交执行
+	 */
+	public boolean executeAsync(String key, Supplier<?> supplier, Executor executor) {
+		CompletableFuture<Object> call = new CompletableFuture<>();
+		if (calls.putIfAbsent(key, call) != null) {
+			return false;
+		}
+		try {
+			executor.execute(() -> {
+				try {
+					call.complete(supplier.get());
+				} catch (Throwable e) {
+					call.completeExceptionally(e);
+				} finally {
+					calls.remove(key, call);
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			calls.remove(key, call);
+			call.completeExceptionally(e);
+			return false;
+		}
+	}
+
+	private Object await(CompletableFuture<Object> call) {
+		try {
+			return call.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+}
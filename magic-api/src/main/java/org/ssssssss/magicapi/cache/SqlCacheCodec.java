@@ -0,0 +1,346 @@
+package org.ssssssss.magicapi.cache;
+
+import org.ssssssss.magicapi.modules.CompactRowMap;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+
+/**
+ * SQL缓存的二进制编解码
+ * <p>
+ * 只支持查询结果中常见的类型（字符串、数字、日期、二进制、List、Map）及StaleableValue，按类型标记逐个写入，不使用Java序列化，
+ * 缓存中的数据被篡改时也不会实例化任意类。查询结果（列相同的Map列表）只写入一次列名，逐行写入值。
+ * 其它类型编码时抛出异常，不写入缓存。
+ */
+final class SqlCacheCodec {
+
+	/**
+	 * 格式标识，与旧格式（Java序列化）区分
+	 */
+	private static final int MAGIC = 0x4D430001;
+
+	/**
+	 * List、Map最大嵌套层数
+	 */
+	private static final int MAX_DEPTH = 64;
+
+	private static final byte TYPE_NULL = 0;
+	private static final byte TYPE_STRING = 1;
+	private static final byte TYPE_INT = 2;
+	private static final byte TYPE_LONG = 3;
+	private static final byte TYPE_DOUBLE = 4;
+	private static final byte TYPE_FLOAT = 5;
+	private static final byte TYPE_SHORT = 6;
+	private static final byte TYPE_BYTE = 7;
+	private static final byte TYPE_BOOLEAN = 8;
+	private static final byte TYPE_CHAR = 9;
+	private static final byte TYPE_BIG_DECIMAL = 10;
+	private static final byte TYPE_BIG_INTEGER = 11;
+	private static final byte TYPE_BYTES = 12;
+	private static final byte TYPE_DATE = 13;
+	private static final byte TYPE_SQL_DATE = 14;
+	private static final byte TYPE_SQL_TIME = 15;
+	private static final byte TYPE_TIMESTAMP = 16;
+	private static final byte TYPE_LOCAL_DATE = 17;
+	private static final byte TYPE_LOCAL_TIME = 18;
+	private static final byte TYPE_LOCAL_DATE_TIME = 19;
+	private static final byte TYPE_LIST = 20;
+	private static final byte TYPE_MAP = 21;
+	/**
+	 * 列相同的Map列表
+	 */
+	private static final byte TYPE_ROWS = 22;
+	/**
+	 * 允许过期后继续使用的缓存值
+	 */
+	private static final byte TYPE_STALEABLE = 23;
+
+	private SqlCacheCodec() {
+	}
+
+	static byte[] encode(Object value) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+		try (DataOutputStream out = new DataOutputStream(bos)) {
+			out.writeInt(MAGIC);
+			write(out, value, 0);
+		}
+		return bos.toByteArray();
+	}
+
+	static Object decode(byte[] bytes) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			if (bytes.length < 4 || in.readInt() != MAGIC) {
+				throw new IOException("不支持的缓存格式");
+			}
+			return read(in, bytes.length, 0);
+		}
+	}
+
+	private static void write(DataOutputStream out, Object value, int depth) throws IOException {
+		if (depth > MAX_DEPTH) {
+			throw new IOException("嵌套层数过多");
+		}
+		if (value == null) {
+			out.writeByte(TYPE_NULL);
+		} else if (value instanceof String) {
+			out.writeByte(TYPE_STRING);
+			writeString(out, (String) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(TYPE_INT);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(TYPE_LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Double) {
+			out.writeByte(TYPE_DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Float) {
+			out.writeByte(TYPE_FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Short) {
+			out.writeByte(TYPE_SHORT);
+			out.writeShort((Short) value);
+		} else if (value instanceof Byte) {
+			out.writeByte(TYPE_BYTE);
+			out.writeByte((Byte) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(TYPE_BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Character) {
+			out.writeByte(TYPE_CHAR);
+			out.writeChar((Character) value);
+		} else if (value instanceof BigDecimal) {
+			out.writeByte(TYPE_BIG_DECIMAL);
+			writeString(out, value.toString());
+		} else if (value instanceof BigInteger) {
+			out.writeByte(TYPE_BIG_INTEGER);
+			writeString(out, value.toString());
+		} else if (value instanceof byte[]) {
+			out.writeByte(TYPE_BYTES);
+			out.writeInt(((byte[]) value).length);
+			out.write((byte[]) value);
+		} else if (value instanceof Timestamp) {
+			out.writeByte(TYPE_TIMESTAMP);
+			out.writeLong(((Timestamp) value).getTime());
+			out.writeInt(((Timestamp) value).getNanos());
+		} else if (value instanceof java.sql.Date) {
+			out.writeByte(TYPE_SQL_DATE);
+			out.writeLong(((Date) value).getTime());
+		} else if (value instanceof Time) {
+			out.writeByte(TYPE_SQL_TIME);
+			out.writeLong(((Date) value).getTime());
+		} else if (value.getClass() == Date.class) {
+			out.writeByte(TYPE_DATE);
+			out.writeLong(((Date) value).getTime());
+		} else if (value instanceof LocalDate) {
+			out.writeByte(TYPE_LOCAL_DATE);
+			out.writeLong(((LocalDate) value).toEpochDay());
+		} else if (value instanceof LocalTime) {
+			out.writeByte(TYPE_LOCAL_TIME);
+			out.writeLong(((LocalTime) value).toNanoOfDay());
+		} else if (value instanceof LocalDateTime) {
+			LocalDateTime dateTime = (LocalDateTime) value;
+			out.writeByte(TYPE_LOCAL_DATE_TIME);
+			out.writeLong(dateTime.toLocalDate().toEpochDay());
+			out.writeLong(dateTime.toLocalTime().toNanoOfDay());
+		} else if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			List<String> columns = getColumns(list);
+			if (columns == null) {
+				out.writeByte(TYPE_LIST);
+				out.writeInt(list.size());
+				for (Object item : list) {
+					write(out, item, depth + 1);
+				}
+			} else {
+				out.writeByte(TYPE_ROWS);
+				out.writeBoolean(list.get(0) instanceof CompactRowMap);
+				out.writeInt(columns.size());
+				for (String column : columns) {
+					writeString(out, column);
+				}
+				out.writeInt(list.size());
+				for (Object row : list) {
+					Map<?, ?> map = (Map<?, ?>) row;
+					for (String column : columns) {
+						write(out, map.get(column), depth + 1);
+					}
+				}
+			}
+		} else if (value instanceof StaleableValue) {
+			out.writeByte(TYPE_STALEABLE);
+			out.writeLong(((StaleableValue) value).getFreshUntil());
+			write(out, ((StaleableValue) value).getValue(), depth + 1);
+		} else if (value instanceof Map) {
+			Map<?, ?> map = (Map<?, ?>) value;
+			out.writeByte(TYPE_MAP);
+			out.writeInt(map.size());
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				if (!(entry.getKey() instanceof String)) {
+					throw new IOException("不支持的Map键类型：" + entry.getKey());
+				}
+				writeString(out, (String) entry.getKey());
+				write(out, entry.getValue(), depth + 1);
+			}
+		} else {
+			throw new IOException("不支持缓存的类型：" + value.getClass().getName());
+		}
+	}
+
+	private static Object read(DataInputStream in, int limit, int depth) throws IOException {
+		if (depth > MAX_DEPTH) {
+			throw new IOException("嵌套层数过多");
+		}
+		byte type = in.readByte();
+		switch (type) {
+			case TYPE_NULL:
+				return null;
+			case TYPE_STRING:
+				return readString(in, limit);
+			case TYPE_INT:
+				return in.readInt();
+			case TYPE_LONG:
+				return in.readLong();
+			case TYPE_DOUBLE:
+				return in.readDouble();
+			case TYPE_FLOAT:
+				return in.readFloat();
+			case TYPE_SHORT:
+				return in.readShort();
+			case TYPE_BYTE:
+				return in.readByte();
+			case TYPE_BOOLEAN:
+				return in.readBoolean();
+			case TYPE_CHAR:
+				return in.readChar();
+			case TYPE_BIG_DECIMAL:
+				return new BigDecimal(readString(in, limit));
+			case TYPE_BIG_INTEGER:
+				return new BigInteger(readString(in, limit));
+			case TYPE_BYTES:
+				byte[] bytes = new byte[readSize(in, limit)];
+				in.readFully(bytes);
+				return bytes;
+			case TYPE_DATE:
+				return new Date(in.readLong());
+			case TYPE_SQL_DATE:
+				return new java.sql.Date(in.readLong());
+			case TYPE_SQL_TIME:
+				return new Time(in.readLong());
+			case TYPE_TIMESTAMP:
+				Timestamp timestamp = new Timestamp(in.readLong());
+				timestamp.setNanos(in.readInt());
+				return timestamp;
+			case TYPE_LOCAL_DATE:
+				return LocalDate.ofEpochDay(in.readLong());
+			case TYPE_LOCAL_TIME:
+				return LocalTime.ofNanoOfDay(in.readLong());
+			case TYPE_LOCAL_DATE_TIME:
+				return LocalDateTime.of(LocalDate.ofEpochDay(in.readLong()), LocalTime.ofNanoOfDay(in.readLong()));
+			case TYPE_LIST:
+				int size = readSize(in, limit);
+				List<Object> list = new ArrayList<>(size);
+				for (int i = 0; i < size; i++) {
+					list.add(read(in, limit, depth + 1));
+				}
+				return list;
+			case TYPE_MAP:
+				int count = readSize(in, limit);
+				Map<String, Object> map = new LinkedHashMap<>();
+				for (int i = 0; i < count; i++) {
+					map.put(readString(in, limit), read(in, limit, depth + 1));
+				}
+				return map;
+			case TYPE_ROWS:
+				return readRows(in, limit, depth);
+			case TYPE_STALEABLE:
+				long freshUntil = in.readLong();
+				return new StaleableValue(read(in, limit, depth + 1), freshUntil);
+			default:
+				throw new IOException("不支持的类型标记：" + type);
+		}
+	}
+
+	private static List<Map<String, Object>> readRows(DataInputStream in, int limit, int depth) throws IOException {
+		boolean compact = in.readBoolean();
+		String[] columns = new String[readSize(in, limit)];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = readString(in, limit);
+		}
+		// 查询结果行共用同一份列信息
+		CompactRowMap.Schema schema = compact && new HashSet<>(Arrays.asList(columns)).size() == columns.length ? new CompactRowMap.Schema(columns) : null;
+		int size = readSize(in, limit);
+		List<Map<String, Object>> rows = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			Map<String, Object> row = schema == null ? new LinkedHashMap<>() : new CompactRowMap(schema);
+			for (String column : columns) {
+				row.put(column, read(in, limit, depth + 1));
+			}
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in, int limit) throws IOException {
+		byte[] bytes = new byte[readSize(in, limit)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * 读取长度，不能超过数据的总长度，避免数据错误时分配过大的内存
+	 */
+	private static int readSize(DataInputStream in, int limit) throws IOException {
+		int size = in.readInt();
+		if (size < 0 || size > limit) {
+			throw new IOException("长度错误：" + size);
+		}
+		return size;
+	}
+
+	/**
+	 * 获取查询结果的列名，不是列相同的Map列表时返回null
+	 */
+	private static List<String> getColumns(List<?> rows) {
+		if (rows.isEmpty()) {
+			return null;
+		}
+		Object first = rows.get(0);
+		if (!(first instanceof Map)) {
+			return null;
+		}
+		List<String> columns = new ArrayList<>(((Map<?, ?>) first).size());
+		for (Object key : ((Map<?, ?>) first).keySet()) {
+			if (!(key instanceof String)) {
+				return null;
+			}
+			columns.add((String) key);
+		}
+		for (Object row : rows) {
+			if (row == null || row.getClass() != first.getClass() || ((Map<?, ?>) row).size() != columns.size()) {
+				return null;
+			}
+			int index = 0;
+			for (Object key : ((Map<?, ?>) row).keySet()) {
+				if (!columns.get(index++).equals(key)) {
+					return null;
+				}
+			}
+		}
+		return columns;
+	}
+}
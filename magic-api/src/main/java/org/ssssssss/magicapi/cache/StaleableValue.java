@@ -0,0 +1,35 @@
+package org.ssssssss.magicapi.cache;
+
+import java.io.Serializable;
+
+/**
+ * 允许过期后继续使用的缓存值
+ */
+public class StaleableValue implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Object value;
+
+	/**
+	 * 在此时间之前为新鲜数据，之后为过期数据
+	 */
+	private final long freshUntil;
+
+	public StaleableValue(Object value, long freshUntil) {
+		this.value = value;
+		this.freshUntil = freshUntil;
+	}
+
+	public Object getValue() {
+		return value;
+	}
+
+	public long getFreshUntil() {
+		return freshUntil;
+	}
+
+	public boolean isStale() {
+		return freshUntil < System.currentTimeMillis();
+	}
+}
@@ -0,0 +1,125 @@
+package org.ssssssss.magicapi.config;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.StringUtils;
+import org.springframework.web.HttpRequestHandler;
+import org.springframework.web.HttpRequestMethodNotSupportedException;
+import org.springframework.web.cors.CorsConfigurationSource;
+import org.springframework.web.cors.CorsUtils;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.handler.AbstractHandlerMapping;
+import org.ssssssss.magicapi.model.Constants;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 动态接口的请求映射，通过{@link ApiRouter}查找接口，不再逐个注册到Spring MVC中
+ */
+public class ApiHandlerMapping extends AbstractHandlerMapping {
+
+	private final MappingHandlerMapping mappingHandlerMapping;
+
+	public ApiHandlerMapping(MappingHandlerMapping mappingHandlerMapping) {
+		this.mappingHandlerMapping = mappingHandlerMapping;
+	}
+
+	/**
+	 * 沿用全局的跨域配置，与注册到RequestMappingHandlerMapping时保持一致
+	 *
+	 * @param source 如 RequestMappingHandlerMapping 中的配置
+	 */
+	public void copyCorsConfiguration(AbstractHandlerMapping source) {
+		CorsConfigurationSource corsConfigurationSource = source.getCorsConfigurationSource();
+		if (corsConfigurationSource != null) {
+			setCorsConfigurationSource(corsConfigurationSource);
+		}
+		setCorsProcessor(source.getCorsProcessor());
+	}
+
+	/**
+	 * 沿用{@link WebMvcConfigurer#addInterceptors(InterceptorRegistry)}中配置的拦截器（如登录验证）
+	 */
+	@Override
+	protected void extendInterceptors(List<Object> interceptors) {
+		InterceptorCollector collector = new InterceptorCollector();
+		obtainApplicationContext().getBeanProvider(WebMvcConfigurer.class).orderedStream()
+				.forEach(configurer -> configurer.addInterceptors(collector));
+		interceptors.addAll(collector.getInterceptors());
+	}
+
+	@Override
+	protected Object getHandlerInternal(HttpServletRequest request) throws Exception {
+		HandlerMethod handlerMethod = mappingHandlerMapping.getHandlerMethod();
+		if (handlerMethod == null) {
+			return null;
+		}
+		String lookupPath = initLookupPath(request);
+		String method = request.getMethod();
+		if (CorsUtils.isPreFlightRequest(request)) {
+			// 预检请求按实际的请求方法匹配
+			method = request.getHeader(HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD);
+		}
+		ApiRouter.Match match = mappingHandlerMapping.match(method, lookupPath);
+		if (match == null && HttpMethod.HEAD.matches(method)) {
+			// HEAD请求与Spring MVC一致，使用GET接口处理
+			match = mappingHandlerMapping.match(HttpMethod.GET.name(), lookupPath);
+		}
+		if (match == null) {
+			Set<String> allowedMethods = mappingHandlerMapping.getAllowedMethods(lookupPath);
+			if (allowedMethods.isEmpty()) {
+				return null;
+			}
+			if (HttpMethod.OPTIONS.matches(method)) {
+				return new OptionsHandler(allowedMethods);
+			}
+			throw new HttpRequestMethodNotSupportedException(request.getMethod(), allowedMethods);
+		}
+		request.setAttribute(Constants.ATTRIBUTE_MAGIC_API_INFO, match.getInfo());
+		request.setAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE, handlerMethod);
+		request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, match.getPattern());
+		request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, lookupPath);
+		request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, match.getVariables());
+		return handlerMethod;
+	}
+
+	/**
+	 * 收集拦截器，{@link InterceptorRegistry#getInterceptors()}仅对子类可见
+	 */
+	private static class InterceptorCollector extends InterceptorRegistry {
+
+		@Override
+		protected List<Object> getInterceptors() {
+			return super.getInterceptors();
+		}
+	}
+
+	/**
+	 * 响应OPTIONS请求，返回允许的请求方法
+	 */
+	private static class OptionsHandler implements HttpRequestHandler {
+
+		private final String allow;
+
+		OptionsHandler(Set<String> allowedMethods) {
+			Set<String> methods = new LinkedHashSet<>(allowedMethods);
+			if (methods.contains(HttpMethod.GET.name())) {
+				methods.add(HttpMethod.HEAD.name());
+			}
+			methods.add(HttpMethod.OPTIONS.name());
+			this.allow = StringUtils.collectionToCommaDelimitedString(methods);
+		}
+
+		@Override
+		public void handleRequest(HttpServletRequest request, HttpServletResponse response) {
+			response.setHeader(HttpHeaders.ALLOW, allow);
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package org.ssssssss.magicapi.config;
+
+import org.springframework.util.AntPathMatcher;
+import org.ssssssss.magicapi.model.ApiInfo;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 接口路由，按请求方法分别构建以路径段为节点的前缀树
+ * <p>
+ * 一次遍历即可找到接口信息及路径变量，静态路径段优先于路径变量匹配；
+ * 包含通配符、正则等复杂规则的路径退化为{@link AntPathMatcher}匹配。
+ * 读取无锁，注册、取消注册时加锁。
+ */
+public class ApiRouter {
+
+	private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+	private final Map<String, Node> roots = new ConcurrentHashMap<>();
+
+	private final Map<String, List<Route>> patternRoutes = new ConcurrentHashMap<>();
+
+	/**
+	 * 注册路由
+	 *
+	 * @param method 请求方法
+	 * @param path   请求路径
+	 * @param info   接口信息
+	 */
+	public synchronized void register(String method, String path, ApiInfo info) {
+		method = method.toUpperCase();
+		String[] segments = tokenize(path);
+		Route route = new Route(normalize(path), info);
+		if (!isSimple(segments)) {
+			List<Route> routes = patternRoutes.computeIfAbsent(method, it -> new CopyOnWriteArrayList<>());
+			routes.removeIf(it -> it.pattern.equals(route.pattern));
+			routes.add(route);
+			return;
+		}
+		Node node = roots.computeIfAbsent(method, it -> new Node());
+		for (String segment : segments) {
+			String variableName = getVariableName(segment);
+			if (variableName != null) {
+				if (node.variable == null) {
+					node.variable = new Node();
+				}
+				node = node.variable;
+				route.variableNames.add(variableName);
+			} else {
+				node = node.children.computeIfAbsent(segment, it -> new Node());
+			}
+		}
+		node.route = route;
+	}
+
+	/**
+	 * 取消注册路由，仅当该路由仍指向此接口时移除
+	 *
+	 * @param method 请求方法
+	 * @param path   请求路径
+	 * @param id     接口ID
+	 */
+	public synchronized void unregister(String method, String path, String id) {
+		method = method.toUpperCase();
+		String[] segments = tokenize(path);
+		if (!isSimple(segments)) {
+			List<Route> routes = patternRoutes.get(method);
+			if (routes != null) {
+				String pattern = normalize(path);
+				routes.removeIf(it -> it.pattern.equals(pattern) && Objects.equals(it.info.getId(), id));
+			}
+			return;
+		}
+		Node root = roots.get(method);
+		if (root != null) {
+			remove(root, segments, 0, id);
+		}
+	}
+
+	/**
+	 * 匹配路由
+	 *
+	 * @param method 请求方法
+	 * @param path   请求路径（不含contextPath）
+	 * @return 未匹配到时返回null
+	 */
+	public Match match(String method, String path) {
+		method = method.toUpperCase();
+		String[] segments = tokenize(path);
+		Node root = roots.get(method);
+		if (root != null) {
+			List<String> values = new ArrayList<>();
+			Route route = find(root, segments, 0, values);
+			if (route != null) {
+				Map<String, String> variables = new LinkedHashMap<>();
+				for (int i = 0, size = values.size(); i < size; i++) {
+					variables.put(route.variableNames.get(i), values.get(i));
+				}
+				return new Match(route, variables);
+			}
+		}
+		List<Route> routes = patternRoutes.get(method);
+		if (routes == null || routes.isEmpty()) {
+			return null;
+		}
+		String lookupPath = normalize(path);
+		Route best = null;
+		Comparator<String> comparator = null;
+		for (Route route : routes) {
+			if (pathMatcher.match(route.pattern, lookupPath)) {
+				if (best == null) {
+					best = route;
+					comparator = pathMatcher.getPatternComparator(lookupPath);
+				} else if (comparator.compare(route.pattern, best.pattern) < 0) {
+					best = route;
+				}
+			}
+		}
+		return best == null ? null : new Match(best, pathMatcher.extractUriTemplateVariables(best.pattern, lookupPath));
+	}
+
+	/**
+	 * 获取路径可匹配的请求方法，用于返回405
+	 */
+	public Set<String> getAllowedMethods(String path) {
+		Set<String> methods = new LinkedHashSet<>();
+		roots.keySet().forEach(method -> {
+			if (match(method, path) != null) {
+				methods.add(method);
+			}
+		});
+		patternRoutes.keySet().stream().filter(it -> !methods.contains(it)).forEach(method -> {
+			if (match(method, path) != null) {
+				methods.add(method);
+			}
+		});
+		return methods;
+	}
+
+	private Route find(Node node, String[] segments, int index, List<String> values) {
+		if (index == segments.length) {
+			return node.route;
+		}
+		String segment = segments[index];
+		Node child = node.children.get(segment);
+		if (child != null) {
+			Route route = find(child, segments, index + 1, values);
+			if (route != null) {
+				return route;
+			}
+		}
+		child = node.variable;
+		if (child != null) {
+			values.add(segment);
+			Route route = find(child, segments, index + 1, values);
+			if (route != null) {
+				return route;
+			}
+			values.remove(values.size() - 1);
+		}
+		return null;
+	}
+
+	/**
+	 * 移除路由，并清理无用的节点
+	 *
+	 * @return 节点是否已为空
+	 */
+	private boolean remove(Node node, String[] segments, int index, String id) {
+		if (index == segments.length) {
+			if (node.route != null && Objects.equals(node.route.info.getId(), id)) {
+				node.route = null;
+			}
+			return node.isEmpty();
+		}
+		String segment = segments[index];
+		if (getVariableName(segment) != null) {
+			if (node.variable != null && remove(node.variable, segments, index + 1, id)) {
+				node.variable = null;
+			}
+		} else {
+			Node child = node.children.get(segment);
+			if (child != null && remove(child, segments, index + 1, id)) {
+				node.children.remove(segment);
+			}
+		}
+		return node.isEmpty();
+	}
+
+	private static boolean isSimple(String[] segments) {
+		for (String segment : segments) {
+			if (getVariableName(segment) == null && (segment.indexOf('*') > -1 || segment.indexOf('?') > -1 || segment.indexOf('{') > -1)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 获取路径变量名，如：{id}，非路径变量时返回null
+	 */
+	private static String getVariableName(String segment) {
+		int length = segment.length();
+		if (length > 2 && segment.charAt(0) == '{' && segment.charAt(length - 1) == '}') {
+			String name = segment.substring(1, length - 1);
+			if (name.indexOf(':') == -1 && name.indexOf('{') == -1 && name.indexOf('}') == -1) {
+				return name;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 按 / 拆分路径，忽略空的路径段
+	 */
+	private static String[] tokenize(String path) {
+		List<String> segments = new ArrayList<>();
+		int start = 0;
+		int length = path == null ? 0 : path.length();
+		for (int i = 0; i <= length; i++) {
+			if (i == length || path.charAt(i) == '/') {
+				if (i > start) {
+					segments.add(path.substring(start, i));
+				}
+				start = i + 1;
+			}
+		}
+		return segments.toArray(new String[0]);
+	}
+
+	private static String normalize(String path) {
+		return "/" + String.join("/", tokenize(path));
+	}
+
+	static class Node {
+
+		final Map<String, Node> children = new ConcurrentHashMap<>();
+
+		volatile Node variable;
+
+		volatile Route route;
+
+		boolean isEmpty() {
+			return route == null && variable == null && children.isEmpty();
+		}
+	}
+
+	static class Route {
+
+		final String pattern;
+
+		final ApiInfo info;
+
+		final List<String> variableNames = new ArrayList<>();
+
+		Route(String pattern, ApiInfo info) {
+			this.pattern = pattern;
+			this.info = info;
+		}
+	}
+
+	/**
+	 * 匹配结果
+	 */
+	public static class Match {
+
+		private final Route route;
+
+		private final Map<String, String> variables;
+
+		Match(Route route, Map<String, String> variables) {
+			this.route = route;
+			this.variables = variables;
+		}
+
+		public ApiInfo getInfo() {
+			return route.info;
+		}
+
+		public String getPattern() {
+			return route.pattern;
+		}
+
+		public Map<String, String> getVariables() {
+			return variables;
+		}
+	}
+}
@@ -72,6 +72,11 @@ public class MagicConfiguration {
 
 	private boolean enableWeb = false;
 
+	/**
+	 * 接口执行器
+	 */
+	private RequestExecutor requestExecutor = new RequestExecutor();
+
 	public void addRequestInterceptor(RequestInterceptor requestInterceptor) {
 		this.requestInterceptors.add(requestInterceptor);
 	}
@@ -144,6 +149,14 @@ public class MagicConfiguration {
 		this.debugTimeout = debugTimeout;
 	}
 
+	public RequestExecutor getRequestExecutor() {
+		return requestExecutor;
+	}
+
+	public void setRequestExecutor(RequestExecutor requestExecutor) {
+		this.requestExecutor = requestExecutor;
+	}
+
 	public boolean isEnableWeb() {
 		return enableWeb;
 	}
@@ -3,9 +3,13 @@ package org.ssssssss.magicapi.config;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.ssssssss.magicapi.adapter.DialectAdapter;
 import org.ssssssss.magicapi.dialect.Dialect;
 import org.ssssssss.magicapi.exception.MagicAPIException;
@@ -15,12 +19,27 @@ import org.ssssssss.magicapi.utils.IoUtils;
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 public class MagicDynamicDataSource {
 
 	private static final Logger logger = LoggerFactory.getLogger(MagicDynamicDataSource.class);
 
-	private final Map<String, MagicDynamicDataSource.DataSourceNode> dataSourceMap = new HashMap<>();
+	private final Map<String, MagicDynamicDataSource.DataSourceNode> dataSourceMap = new ConcurrentHashMap<>();
+
+	/**
+	 * 从库健康检查的间隔，单位为毫秒
+	 */
+	private long replicaCheckInterval = 10000;
+
+	private ScheduledExecutorService replicaChecker;
 
 	/**
 	 * 注册默认数据源
@@ -56,11 +75,29 @@ public class MagicDynamicDataSource {
 	 * @param datasourceName 数据源名称
 	 */
 	public void put(String id, String dataSourceKey, String datasourceName, DataSource dataSource, int maxRows) {
+		put(id, dataSourceKey, datasourceName, dataSource, maxRows, Collections.emptyList(), LoadBalance.WEIGHTED);
+	}
+
+	/**
+	 * 注册带从库的数据源（可以运行时注册），查询自动路由到从库，更新及事务中的操作使用主库
+	 *
+	 * @param id             数据源ID
+	 * @param dataSourceKey  数据源Key
+	 * @param datasourceName 数据源名称
+	 * @param dataSource     主库
+	 * @param replicas       从库
+	 * @param loadBalance    从库的负载均衡策略
+	 */
+	public void put(String id, String dataSourceKey, String datasourceName, DataSource dataSource, int maxRows, List<ReplicaNode> replicas, LoadBalance loadBalance) {
 		if (dataSourceKey == null) {
 			dataSourceKey = "";
 		}
 		logger.info("注册数据源：{}", StringUtils.isNotBlank(dataSourceKey) ? dataSourceKey : "default");
-		DataSourceNode node = this.dataSourceMap.put(dataSourceKey, new DataSourceNode(dataSource, dataSourceKey, datasourceName, id, maxRows));
+		if (!replicas.isEmpty()) {
+			logger.info("数据源{}的从库：{}", StringUtils.isNotBlank(dataSourceKey) ? dataSourceKey : "default", replicas.stream().map(ReplicaNode::getName).collect(Collectors.joining(",")));
+			startReplicaChecker();
+		}
+		DataSourceNode node = this.dataSourceMap.put(dataSourceKey, new DataSourceNode(dataSource, dataSourceKey, datasourceName, id, maxRows, replicas, loadBalance));
 		if (node != null) {
 			node.close();
 		}
@@ -151,6 +188,46 @@ public class MagicDynamicDataSource {
 	}
 
 
+	public void setReplicaCheckInterval(long replicaCheckInterval) {
+		this.replicaCheckInterval = replicaCheckInterval;
+	}
+
+	/**
+	 * 停止从库检查线程
+	 */
+	public synchronized void shutdown() {
+		if (this.replicaChecker != null) {
+			this.replicaChecker.shutdownNow();
+			this.replicaChecker = null;
+		}
+	}
+
+	private synchronized void startReplicaChecker() {
+		if (this.replicaChecker == null && this.replicaCheckInterval > 0) {
+			this.replicaChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "magic-datasource-replica-checker");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.replicaChecker.scheduleWithFixedDelay(this::checkReplicas, this.replicaCheckInterval, this.replicaCheckInterval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * 检查全部从库，不可用或延迟过大的从库暂停使用，恢复后重新启用
+	 */
+	private void checkReplicas() {
+		for (DataSourceNode node : this.dataSourceMap.values()) {
+			for (ReplicaNode replica : node.replicas) {
+				try {
+					replica.check();
+				} catch (Throwable e) {
+					logger.warn("检查数据源{}的从库{}出错", node.getKey(), replica.getName(), e);
+				}
+			}
+		}
+	}
+
 	public void add(String dataSourceKey, DataSource dataSource) {
 		put(dataSourceKey, dataSource);
 	}
@@ -176,9 +253,25 @@ public class MagicDynamicDataSource {
 
 		private final DataSource dataSource;
 
+		/**
+		 * 从库
+		 */
+		private final List<ReplicaNode> replicas;
+
+		private final LoadBalance loadBalance;
+
+		/**
+		 * 请求中执行过更新操作的标记
+		 */
+		private final String primaryPinnedAttribute;
+
 		private Dialect dialect;
 
 		DataSourceNode(DataSource dataSource, String key, String name, String id, int maxRows) {
+			this(dataSource, key, name, id, maxRows, Collections.emptyList(), LoadBalance.WEIGHTED);
+		}
+
+		DataSourceNode(DataSource dataSource, String key, String name, String id, int maxRows, List<ReplicaNode> replicas, LoadBalance loadBalance) {
 			this.dataSource = dataSource;
 			this.key = key;
 			this.name = name;
@@ -186,6 +279,10 @@ public class MagicDynamicDataSource {
 			this.dataSourceTransactionManager = new DataSourceTransactionManager(this.dataSource);
 			this.jdbcTemplate = new JdbcTemplate(dataSource);
 			this.jdbcTemplate.setMaxRows(maxRows);
+			this.replicas = new ArrayList<>(replicas);
+			this.loadBalance = loadBalance == null ? LoadBalance.WEIGHTED : loadBalance;
+			this.primaryPinnedAttribute = DataSourceNode.class.getName() + ".written." + key;
+			this.replicas.forEach(replica -> replica.jdbcTemplate.setMaxRows(maxRows));
 		}
 
 		public String getId() {
@@ -200,7 +297,17 @@ public class MagicDynamicDataSource {
 			return key;
 		}
 
+		/**
+		 * 获取主库的JdbcTemplate，用于更新操作。
+		 * 配置了从库时，当前请求的后续查询将固定使用主库，避免主从延迟导致读不到刚写入的数据
+		 */
 		public JdbcTemplate getJdbcTemplate() {
+			if (!this.replicas.isEmpty()) {
+				RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+				if (attributes != null) {
+					attributes.setAttribute(this.primaryPinnedAttribute, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+				}
+			}
 			return this.jdbcTemplate;
 		}
 
@@ -208,6 +315,42 @@ public class MagicDynamicDataSource {
 			return dataSourceTransactionManager;
 		}
 
+		public List<ReplicaNode> getReplicas() {
+			return Collections.unmodifiableList(replicas);
+		}
+
+		/**
+		 * 执行查询，没有开启事务时路由到可用的从库，没有可用的从库或从库获取连接失败时使用主库。
+		 * 同一请求中已执行过更新操作时使用主库；非请求线程（如定时任务）中没有该保证，需要读到最新数据时请开启事务
+		 */
+		public <T> T read(Function<JdbcTemplate, T> function) {
+			ReplicaNode replica = selectReplica();
+			if (replica == null) {
+				return function.apply(this.jdbcTemplate);
+			}
+			replica.active.incrementAndGet();
+			try {
+				return function.apply(replica.jdbcTemplate);
+			} catch (CannotGetJdbcConnectionException e) {
+				replica.markDown("获取连接失败：" + e.getMessage());
+				return function.apply(this.jdbcTemplate);
+			} finally {
+				replica.active.decrementAndGet();
+			}
+		}
+
+		private ReplicaNode selectReplica() {
+			if (this.replicas.isEmpty() || TransactionSynchronizationManager.isActualTransactionActive()
+					|| TransactionSynchronizationManager.hasResource(this.dataSource)) {
+				return null;
+			}
+			RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+			if (attributes != null && attributes.getAttribute(this.primaryPinnedAttribute, RequestAttributes.SCOPE_REQUEST) != null) {
+				return null;
+			}
+			return this.loadBalance.select(this.replicas);
+		}
+
 		public Dialect getDialect(DialectAdapter dialectAdapter) {
 			if (this.dialect == null) {
 				Connection connection = null;
@@ -232,6 +375,183 @@ public class MagicDynamicDataSource {
 
 		public void close() {
 			IoUtils.closeDataSource(this.dataSource);
+			this.replicas.forEach(replica -> IoUtils.closeDataSource(replica.dataSource));
+		}
+	}
+
+	/**
+	 * 从库
+	 */
+	public static class ReplicaNode {
+
+		private final String name;
+
+		private final DataSource dataSource;
+
+		private final JdbcTemplate jdbcTemplate;
+
+		/**
+		 * 权重
+		 */
+		private final int weight;
+
+		/**
+		 * 查询复制延迟（单位为秒）的SQL，为空时不检查延迟
+		 */
+		private final String lagSql;
+
+		/**
+		 * 允许的最大复制延迟，单位为秒
+		 */
+		private final long maxLag;
+
+		/**
+		 * 正在执行的查询数
+		 */
+		private final AtomicInteger active = new AtomicInteger();
+
+		private volatile boolean available = true;
+
+		public ReplicaNode(String name, DataSource dataSource, int weight, String lagSql, long maxLag) {
+			this.name = name;
+			this.dataSource = dataSource;
+			this.jdbcTemplate = new JdbcTemplate(dataSource);
+			this.weight = Math.max(weight, 1);
+			this.lagSql = lagSql;
+			this.maxLag = maxLag;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public DataSource getDataSource() {
+			return dataSource;
+		}
+
+		public int getWeight() {
+			return weight;
+		}
+
+		public int getActive() {
+			return active.get();
+		}
+
+		public boolean isAvailable() {
+			return available;
+		}
+
+		void markDown(String reason) {
+			if (this.available) {
+				this.available = false;
+				logger.warn("从库{}暂停使用，{}", this.name, reason);
+			}
+		}
+
+		void markUp() {
+			if (!this.available) {
+				this.available = true;
+				logger.info("从库{}恢复使用", this.name);
+			}
+		}
+
+		void check() {
+			Connection connection = null;
+			try {
+				connection = this.dataSource.getConnection();
+				if (!connection.isValid(5)) {
+					markDown("连接不可用");
+					return;
+				}
+			} catch (Exception e) {
+				markDown("获取连接失败：" + e.getMessage());
+				return;
+			} finally {
+				DataSourceUtils.releaseConnection(connection, this.dataSource);
+			}
+			if (StringUtils.isNotBlank(this.lagSql) && this.maxLag > 0) {
+				Number lag;
+				try {
+					lag = this.jdbcTemplate.queryForObject(this.lagSql, Number.class);
+				} catch (Exception e) {
+					markDown("查询复制延迟失败：" + e.getMessage());
+					return;
+				}
+				if (lag != null && lag.doubleValue() > this.maxLag) {
+					markDown(String.format("复制延迟%s秒超过%s秒", lag, this.maxLag));
+					return;
+				}
+			}
+			markUp();
+		}
+	}
+
+	/**
+	 * 从库的负载均衡策略
+	 */
+	public enum LoadBalance {
+
+		/**
+		 * 按权重随机
+		 */
+		WEIGHTED {
+			@Override
+			ReplicaNode select(List<ReplicaNode> replicas) {
+				int total = 0;
+				for (ReplicaNode replica : replicas) {
+					if (replica.available) {
+						total += replica.weight;
+					}
+				}
+				if (total == 0) {
+					return null;
+				}
+				int random = ThreadLocalRandom.current().nextInt(total);
+				for (ReplicaNode replica : replicas) {
+					if (replica.available && (random -= replica.weight) < 0) {
+						return replica;
+					}
+				}
+				return null;
+			}
+		},
+		/**
+		 * 按权重选择正在执行的查询数最少的
+		 */
+		LEAST_CONNECTIONS {
+			@Override
+			ReplicaNode select(List<ReplicaNode> replicas) {
+				ReplicaNode selected = null;
+				long selectedActive = 0;
+				for (ReplicaNode replica : replicas) {
+					if (replica.available) {
+						long active = replica.active.get();
+						// 比较 active / weight
+						if (selected == null || active * selected.weight < selectedActive * replica.weight) {
+							selected = replica;
+							selectedActive = active;
+						}
+					}
+				}
+				return selected;
+			}
+		};
+
+		abstract ReplicaNode select(List<ReplicaNode> replicas);
+
+		/**
+		 * 根据名称获取，如：weighted、least-connections，默认为按权重随机
+		 */
+		public static LoadBalance of(String name) {
+			if (name != null) {
+				String normalized = name.trim().replace('-', '_').toUpperCase();
+				for (LoadBalance loadBalance : values()) {
+					if (loadBalance.name().equals(normalized)) {
+						return loadBalance;
+					}
+				}
+			}
+			return WEIGHTED;
 		}
 	}
 }
@@ -9,6 +9,7 @@ import org.ssssssss.magicapi.model.TreeNode;
 import org.ssssssss.magicapi.provider.FunctionServiceProvider;
 import org.ssssssss.magicapi.provider.GroupServiceProvider;
 import org.ssssssss.magicapi.script.ScriptManager;
+import org.ssssssss.magicapi.script.ScriptSearchIndex;
 import org.ssssssss.magicapi.utils.PathUtils;
 import org.ssssssss.script.MagicResourceLoader;
 import org.ssssssss.script.MagicScriptContext;
@@ -46,7 +47,7 @@ public class MagicFunctionManager {
 								functionContext.set(parameters.get(i).getName(), objects[i]);
 							}
 						}
-						return ScriptManager.executeScript(info.getScript(), functionContext);
+						return ScriptManager.executeScript(info, functionContext);
 					} finally {
 						MagicScriptContext.set(context);
 					}
@@ -63,11 +64,23 @@ public class MagicFunctionManager {
 		groups = groupServiceProvider.functionGroupTree();
 	}
 
+	/**
+	 * 注册所有函数，逐个注册路径后再并行预编译脚本
+	 */
 	public void registerAllFunction() {
+		long start = System.currentTimeMillis();
 		loadGroup();
-		functionServiceProvider.listWithScript().stream()
+		List<FunctionInfo> list = functionServiceProvider.listWithScript().stream()
 				.filter(it -> groupServiceProvider.getFullPath(it.getGroupId()) != null)
-				.forEach(this::register);
+				.collect(Collectors.toList());
+		long loaded = System.currentTimeMillis();
+		List<FunctionInfo> registered = list.stream()
+				.filter(it -> register(it, true))
+				.collect(Collectors.toList());
+		long mapped = System.currentTimeMillis();
+		ScriptManager.register(registered);
+		long end = System.currentTimeMillis();
+		logger.info("注册{}个函数，共耗时{}ms（加载{}ms，注册{}ms，编译{}ms）", registered.size(), end - start, loaded - start, mapped - loaded, end - mapped);
 	}
 
 	public boolean hasRegister(FunctionInfo info) {
@@ -101,14 +114,27 @@ public class MagicFunctionManager {
 
 
 	public void register(FunctionInfo functionInfo) {
+		if (register(functionInfo, false)) {
+			// 预编译脚本
+			ScriptManager.register(functionInfo);
+		}
+	}
+
+	/**
+	 * 注册函数，不编译脚本
+	 *
+	 * @param batch 是否批量注册
+	 * @return 是否需要编译脚本
+	 */
+	private boolean register(FunctionInfo functionInfo, boolean batch) {
 		if (functionInfo == null) {
-			return;
+			return false;
 		}
 		FunctionInfo oldFunctionInfo = mappings.get(functionInfo.getId());
 		if (oldFunctionInfo != null) {
 			// 完全一致时不用注册
 			if (functionInfo.equals(oldFunctionInfo)) {
-				return;
+				return false;
 			}
 			// 如果路径不一致，则需要取消注册
 			if (!Objects.equals(functionInfo.getPath(), oldFunctionInfo.getPath())) {
@@ -120,7 +146,13 @@ public class MagicFunctionManager {
 		path = PathUtils.replaceSlash(path + "/" + functionInfo.getPath());
 		functionInfo.setMappingPath(path);
 		mappings.put(path, functionInfo);
-		logger.info("注册函数:[{}:{}]", functionInfo.getName(), path);
+		ScriptSearchIndex.add(functionInfo, path);
+		if (batch) {
+			logger.debug("注册函数:[{}:{}]", functionInfo.getName(), path);
+		} else {
+			logger.info("注册函数:[{}:{}]", functionInfo.getName(), path);
+		}
+		return true;
 	}
 
 	public Collection<FunctionInfo> getFunctionInfos() {
@@ -202,6 +234,8 @@ public class MagicFunctionManager {
 		FunctionInfo functionInfo = mappings.remove(id);
 		if (functionInfo != null) {
 			mappings.remove(functionInfo.getMappingPath());
+			ScriptManager.unregister(id);
+			ScriptSearchIndex.remove(id);
 			logger.info("取消注册函数:[{},{}]", functionInfo.getName(), functionInfo.getMappingPath());
 		}
 	}
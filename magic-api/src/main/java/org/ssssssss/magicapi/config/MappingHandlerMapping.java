@@ -5,19 +5,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
-import org.springframework.web.context.request.NativeWebRequest;
-import org.springframework.web.context.request.RequestAttributes;
-import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.method.HandlerMethod;
-import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 import org.ssssssss.magicapi.controller.RequestHandler;
+import org.ssssssss.magicapi.metrics.MagicMetrics;
 import org.ssssssss.magicapi.model.ApiInfo;
 import org.ssssssss.magicapi.model.Group;
 import org.ssssssss.magicapi.model.TreeNode;
 import org.ssssssss.magicapi.provider.ApiServiceProvider;
 import org.ssssssss.magicapi.provider.GroupServiceProvider;
+import org.ssssssss.magicapi.script.ScriptManager;
+import org.ssssssss.magicapi.script.ScriptSearchIndex;
 import org.ssssssss.magicapi.utils.Mapping;
 import org.ssssssss.magicapi.utils.PathUtils;
 
@@ -26,9 +25,12 @@ import javax.servlet.http.HttpServletResponse;
 import java.lang.reflect.Method;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static org.ssssssss.magicapi.model.Constants.ATTRIBUTE_MAGIC_API_INFO;
+
 /**
  * 请求映射
  */
@@ -39,6 +41,16 @@ public class MappingHandlerMapping {
 	 */
 	private static final Map<String, MappingNode> mappings = new ConcurrentHashMap<>();
 
+	/**
+	 * 接口路由
+	 */
+	private static final ApiRouter router = new ApiRouter();
+
+	/**
+	 * 接口的请求计划，key为接口ID
+	 */
+	private static final Map<String, RequestPlan> plans = new ConcurrentHashMap<>();
+
 	private static final Logger logger = LoggerFactory.getLogger(MappingHandlerMapping.class);
 	/**
 	 * 接口分组
@@ -60,12 +72,24 @@ public class MappingHandlerMapping {
 	 * 缓存已映射的接口信息
 	 */
 	private final List<ApiInfo> apiInfos = Collections.synchronizedList(new ArrayList<>());
+	/**
+	 * 接口或分组变化时递增，用于判断由接口信息生成的缓存（如接口文档）是否需要重建
+	 */
+	private final AtomicLong version = new AtomicLong();
+	/**
+	 * 分组重新加载时递增
+	 */
+	private volatile long groupVersion;
 
 	private Mapping mappingHelper;
 	/**
 	 * 请求处理器
 	 */
 	private Object handler;
+	/**
+	 * 请求处理方法
+	 */
+	private HandlerMethod handlerMethod;
 	/**
 	 * 接口信息读取
 	 */
@@ -81,21 +105,10 @@ public class MappingHandlerMapping {
 	}
 
 	/**
-	 * 根据request获取对应的接口信息
+	 * 根据request获取对应的接口信息，由{@link ApiHandlerMapping}匹配时放入
 	 */
 	public static ApiInfo getMappingApiInfo(HttpServletRequest request) {
-		NativeWebRequest webRequest = new ServletWebRequest(request);
-		// 找到注册的路径
-		String requestMapping = (String) webRequest.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
-		// 根据请求方法和路径获取接口信息
-		return getMappingApiInfo(buildMappingKey(request.getMethod(), requestMapping));
-	}
-
-	/**
-	 * 根据绑定的key获取接口信息
-	 */
-	private static ApiInfo getMappingApiInfo(String key) {
-		return mappings.get(key).getInfo();
+		return (ApiInfo) request.getAttribute(ATTRIBUTE_MAGIC_API_INFO);
 	}
 
 	/**
@@ -111,6 +124,14 @@ public class MappingHandlerMapping {
 		return Objects.toString(requestMethod, "GET").toUpperCase() + ":" + requestMapping;
 	}
 
+	/**
+	 * 获取接口的请求计划，接口信息不是注册时的快照（如未注册）时重新构建
+	 */
+	public static RequestPlan getRequestPlan(ApiInfo info) {
+		RequestPlan plan = plans.get(info.getId());
+		return plan != null && plan.getInfo() == info ? plan : RequestPlan.of(info);
+	}
+
 	public static Group findGroup(String groupId) {
 		TreeNode<Group> node = groups.findTreeNode(it -> it.getId().equals(groupId));
 		return node != null ? node.getNode() : null;
@@ -136,6 +157,25 @@ public class MappingHandlerMapping {
 
 	public void setHandler(Object handler) {
 		this.handler = handler;
+		this.handlerMethod = new HandlerMethod(handler, method);
+	}
+
+	public HandlerMethod getHandlerMethod() {
+		return handlerMethod;
+	}
+
+	/**
+	 * 根据请求方法和请求路径匹配接口
+	 */
+	public ApiRouter.Match match(String method, String lookupPath) {
+		return router.match(method, lookupPath);
+	}
+
+	/**
+	 * 获取请求路径可匹配的请求方法
+	 */
+	public Set<String> getAllowedMethods(String lookupPath) {
+		return router.getAllowedMethods(lookupPath);
 	}
 
 	public void setMagicApiService(ApiServiceProvider magicApiService) {
@@ -150,31 +190,52 @@ public class MappingHandlerMapping {
 		return apiInfos;
 	}
 
+	public long getVersion() {
+		return version.get();
+	}
+
+	public long getGroupVersion() {
+		return groupVersion;
+	}
+
 	/**
 	 * 加载所有分组
 	 */
 	public synchronized void loadGroup() {
 		groups = groupServiceProvider.apiGroupTree();
+		groupVersion++;
+		version.incrementAndGet();
 	}
 
 	/**
 	 * 注册请求
+	 * <p>
+	 * 批量注册时只获取一次应用的映射，逐个注册路由后再并行预编译脚本，最后输出耗时
 	 */
 	public void registerAllMapping() {
 		try {
+			long start = System.currentTimeMillis();
 			loadGroup();
 			List<ApiInfo> list = magicApiService.listWithScript();
 			if (list != null) {
+				long loaded = System.currentTimeMillis();
 				list = list.stream().filter(it -> groupServiceProvider.getFullPath(it.getGroupId()) != null).collect(Collectors.toList());
+				Map<RequestMappingInfo, HandlerMethod> handlerMethods = this.mappingHelper.getHandlerMethods();
+				List<ApiInfo> registered = new ArrayList<>(list.size());
 				for (ApiInfo info : list) {
 					try {
 						// 当接口存在时，刷新缓存
-						registerMapping(info, true);
+						if (registerMapping(info, true, handlerMethods)) {
+							registered.add(info);
+						}
 					} catch (Exception e) {
 						logger.error("接口:{}注册失败", info.getName(), e);
 					}
 				}
-				List<String> resistedList = list.stream().map(ApiInfo::getId).collect(Collectors.toList());
+				long mapped = System.currentTimeMillis();
+				// 预编译脚本
+				ScriptManager.register(registered);
+				Set<String> resistedList = list.stream().map(ApiInfo::getId).collect(Collectors.toSet());
 				Iterator<ApiInfo> iterator = apiInfos.iterator();
 				while (iterator.hasNext()) {
 					String oldId = iterator.next().getId();
@@ -184,6 +245,9 @@ public class MappingHandlerMapping {
 						iterator.remove();
 					}
 				}
+				version.incrementAndGet();
+				long end = System.currentTimeMillis();
+				logger.info("注册{}个接口，共耗时{}ms（加载{}ms，注册{}ms，编译{}ms）", registered.size(), end - start, loaded - start, mapped - loaded, end - mapped);
 			}
 		} catch (Exception e) {
 			logger.info("注册接口映射失败", e);
@@ -340,9 +404,23 @@ public class MappingHandlerMapping {
 	 * 注册请求映射
 	 */
 	public void registerMapping(ApiInfo info, boolean delete) {
+		if (registerMapping(info, delete, null)) {
+			// 预编译脚本
+			ScriptManager.register(info);
+		}
+	}
+
+	/**
+	 * 注册请求映射，不编译脚本
+	 *
+	 * @param handlerMethods 批量注册时复用的应用映射，为null时实时获取
+	 * @return 是否需要编译脚本
+	 */
+	private boolean registerMapping(ApiInfo info, boolean delete, Map<RequestMappingInfo, HandlerMethod> handlerMethods) {
 		if(info == null){
-			return;
+			return false;
 		}
+		boolean batch = handlerMethods != null;
 		// 先判断是否已注册，如果已注册，则先取消注册在进行注册。
 		MappingNode mappingNode = mappings.get(info.getId());
 		String newMappingKey = getMappingKey(info);
@@ -354,46 +432,61 @@ public class MappingHandlerMapping {
 				if (!info.equals(oldInfo)) {
 					mappingNode.setInfo(info);
 					mappings.get(newMappingKey).setInfo(info);
+					registerRoute(mappingNode.getRequestPath(), info);
 					if (delete) {
 						refreshCache(info);
 					}
 					logger.info("刷新接口:{},{}", info.getName(), newMappingKey);
+					return true;
 				}
-				return;
+				return false;
 			}
 			// URL不一致时，需要取消注册旧接口，重新注册新接口
 			logger.info("取消注册接口:{},{}", oldInfo.getName(), oldMappingKey);
 			// 取消注册
 			mappings.remove(oldMappingKey);
-			mappingHelper.unregister(getRequestMapping(oldInfo));
+			router.unregister(oldInfo.getMethod(), mappingNode.getRequestPath(), oldInfo.getId());
 		}
+		String requestPath = getRequestPath(info.getGroupId(), info.getPath());
 		mappingNode = new MappingNode(info);
 		mappingNode.setMappingKey(newMappingKey);
+		mappingNode.setRequestPath(requestPath);
 		// 注册
 		RequestMappingInfo requestMapping = getRequestMapping(info);
-		mappingNode.setRequestMappingInfo(requestMapping);
-		mappingNode.setInfo(info);
 		// 如果与应用冲突
-		if (!overrideApplicationMapping(requestMapping)) {
+		if (!overrideApplicationMapping(requestMapping, batch ? handlerMethods : this.mappingHelper.getHandlerMethods())) {
 			logger.error("接口{},{}与应用冲突，无法注册", info.getName(), newMappingKey);
-			return;
+			return false;
+		}
+		if (batch) {
+			logger.debug("注册接口:{},{}", info.getName(), newMappingKey);
+		} else {
+			logger.info("注册接口:{},{}", info.getName(), newMappingKey);
 		}
-		logger.info("注册接口:{},{}", info.getName(), newMappingKey);
 		mappings.put(info.getId(), mappingNode);
 		mappings.put(newMappingKey, mappingNode);
-		registerMapping(requestMapping, handler, method);
+		registerRoute(requestPath, info);
 		if (delete) {   // 刷新缓存
 			refreshCache(info);
 		}
+		return true;
+	}
+
+	/**
+	 * 注册到路由中的为接口快照，请求时无需再复制，同时构建其请求计划
+	 */
+	private void registerRoute(String requestPath, ApiInfo info) {
+		ApiInfo snapshot = info.snapshot();
+		plans.put(info.getId(), RequestPlan.of(snapshot));
+		router.register(info.getMethod(), requestPath, snapshot);
+		ScriptSearchIndex.add(info, requestPath);
+		version.incrementAndGet();
 	}
 
 	private void refreshCache(ApiInfo info) {
 		apiInfos.removeIf(i -> i.getId().equalsIgnoreCase(info.getId()));
 		apiInfos.add(info);
-	}
-
-	private void registerMapping(RequestMappingInfo requestMapping, Object handler, Method method) {
-		mappingHelper.register(requestMapping, handler, method);
+		version.incrementAndGet();
 	}
 
 	/**
@@ -405,10 +498,15 @@ public class MappingHandlerMapping {
 			ApiInfo info = mappingNode.getInfo();
 			logger.info("取消注册接口:{}", info.getName());
 			mappings.remove(mappingNode.getMappingKey());
-			mappingHelper.unregister(mappingNode.getRequestMappingInfo());
+			router.unregister(info.getMethod(), mappingNode.getRequestPath(), info.getId());
+			plans.remove(id);
+			ScriptManager.unregister(id);
+			ScriptSearchIndex.remove(id);
 			if (delete) {   //刷新缓存
 				apiInfos.removeIf(i -> i.getId().equalsIgnoreCase(info.getId()));
+				MagicMetrics.remove(id);
 			}
+			version.incrementAndGet();
 		}
 	}
 
@@ -456,8 +554,8 @@ public class MappingHandlerMapping {
 	/**
 	 * 覆盖应用接口
 	 */
-	private boolean overrideApplicationMapping(RequestMappingInfo requestMapping) {
-		if (mappingHelper.getHandlerMethods().containsKey(requestMapping)) {
+	private boolean overrideApplicationMapping(RequestMappingInfo requestMapping, Map<RequestMappingInfo, HandlerMethod> handlerMethods) {
+		if (handlerMethods.containsKey(requestMapping)) {
 			if (!allowOverride) {
 				// 不允许覆盖
 				return false;
@@ -489,7 +587,7 @@ public class MappingHandlerMapping {
 
 		private String mappingKey;
 
-		private RequestMappingInfo requestMappingInfo;
+		private String requestPath;
 
 		public MappingNode(ApiInfo info) {
 			this.info = info;
@@ -511,12 +609,12 @@ public class MappingHandlerMapping {
 			this.mappingKey = mappingKey;
 		}
 
-		public RequestMappingInfo getRequestMappingInfo() {
-			return requestMappingInfo;
+		public String getRequestPath() {
+			return requestPath;
 		}
 
-		public void setRequestMappingInfo(RequestMappingInfo requestMappingInfo) {
-			this.requestMappingInfo = requestMappingInfo;
+		public void setRequestPath(String requestPath) {
+			this.requestPath = requestPath;
 		}
 	}
 }
@@ -0,0 +1,161 @@
+package org.ssssssss.magicapi.config;
+
+import org.apache.commons.lang3.StringUtils;
+import org.ssssssss.magicapi.exception.MagicBusyException;
+import org.ssssssss.magicapi.model.ApiInfo;
+import org.ssssssss.magicapi.model.Options;
+import org.ssssssss.script.functions.ObjectConvertExtension;
+
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * 接口执行器，负责异步执行及并发数限制
+ * <p>
+ * 异步执行的接口通过Servlet异步提交到独立的线程池中执行，不占用容器线程；
+ * 并发数限制对同步、异步执行的接口均生效，超出时等待，等待超时后返回繁忙。
+ */
+public class RequestExecutor {
+
+	/**
+	 * 异步执行的线程池，为null时仅支持同步执行
+	 */
+	private final Executor executor;
+
+	/**
+	 * 未配置时是否默认异步执行
+	 */
+	private boolean async = false;
+
+	/**
+	 * 异步执行的超时时间，单位为毫秒，<=0时使用容器默认配置
+	 */
+	private long timeout = 0;
+
+	/**
+	 * 未配置时默认的单个接口最大并发数，<=0时不限制
+	 */
+	private int maxConcurrent = 0;
+
+	/**
+	 * 超出并发数时等待的时间，单位为毫秒
+	 */
+	private long queueTimeout = 0;
+
+	private final Map<String, Limiter> limiters = new ConcurrentHashMap<>();
+
+	public RequestExecutor() {
+		this(null);
+	}
+
+	public RequestExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * 判断接口是否异步执行
+	 */
+	public boolean isAsync(RequestPlan plan) {
+		if (executor == null) {
+			return false;
+		}
+		String value = plan.getOptionValue(Options.ASYNC);
+		return StringUtils.isBlank(value) ? async : Boolean.parseBoolean(value);
+	}
+
+	/**
+	 * 提交到线程池执行
+	 *
+	 * @return 可用于超时后取消执行
+	 * @throws MagicBusyException 线程池已满时
+	 */
+	public Future<?> submit(Runnable runnable) {
+		FutureTask<?> task = new FutureTask<>(runnable, null);
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			throw new MagicBusyException("服务繁忙，请稍后再试");
+		}
+		return task;
+	}
+
+	/**
+	 * 获取执行许可后执行
+	 *
+	 * @throws MagicBusyException 超出接口最大并发数且等待超时时
+	 */
+	public <T> T execute(RequestPlan plan, Callable<T> callable) throws Exception {
+		ApiInfo info = plan.getInfo();
+		int limit = ObjectConvertExtension.asInt(plan.getOptionValue(Options.MAX_CONCURRENT), maxConcurrent);
+		if (limit <= 0) {
+			return callable.call();
+		}
+		Limiter limiter = limiters.get(info.getId());
+		if (limiter == null || limiter.limit != limit) {
+			// 并发数修改后重新创建
+			limiter = limiters.compute(info.getId(), (key, value) -> value != null && value.limit == limit ? value : new Limiter(limit));
+		}
+		long wait = ObjectConvertExtension.asLong(plan.getOptionValue(Options.QUEUE_TIMEOUT), queueTimeout);
+		if (!limiter.semaphore.tryAcquire(Math.max(wait, 0), TimeUnit.MILLISECONDS)) {
+			throw new MagicBusyException(String.format("接口[%s]并发数超出限制", info.getName()));
+		}
+		try {
+			return callable.call();
+		} finally {
+			limiter.semaphore.release();
+		}
+	}
+
+	/**
+	 * 关闭线程池
+	 */
+	public void shutdown() {
+		if (executor instanceof ExecutorService) {
+			((ExecutorService) executor).shutdown();
+		}
+	}
+
+	public long getTimeout() {
+		return timeout;
+	}
+
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	public boolean isAsync() {
+		return async;
+	}
+
+	public void setAsync(boolean async) {
+		this.async = async;
+	}
+
+	public int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	public void setMaxConcurrent(int maxConcurrent) {
+		this.maxConcurrent = maxConcurrent;
+	}
+
+	public long getQueueTimeout() {
+		return queueTimeout;
+	}
+
+	public void setQueueTimeout(long queueTimeout) {
+		this.queueTimeout = queueTimeout;
+	}
+
+	static class Limiter {
+
+		final int limit;
+
+		final Semaphore semaphore;
+
+		Limiter(int limit) {
+			this.limit = limit;
+			this.semaphore = new Semaphore(limit);
+		}
+	}
+}
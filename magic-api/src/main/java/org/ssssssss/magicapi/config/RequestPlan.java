@@ -0,0 +1,273 @@
+package org.ssssssss.magicapi.config;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ssssssss.magicapi.model.*;
+import org.ssssssss.magicapi.script.ScriptManager;
+
+import javax.script.CompiledScript;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static org.ssssssss.magicapi.model.Constants.*;
+
+/**
+ * 接口的请求计划
+ * <p>
+ * 注册接口时预先合并分组的路径变量、读取选项、编译参数验证规则（正则、表达式），
+ * 请求时直接使用，无需再遍历分组及重复解析。
+ */
+public class RequestPlan {
+
+	private static final Logger logger = LoggerFactory.getLogger(RequestPlan.class);
+
+	private final ApiInfo info;
+
+	private final Validators parameters;
+
+	private final Validators headers;
+
+	private final Validators paths;
+
+	/**
+	 * 请求体的验证规则，无需验证时为null
+	 */
+	private final Validators requestBody;
+
+	private final String requestBodyName;
+
+	/**
+	 * 合并分组后的选项
+	 */
+	private final Map<String, String> options = new HashMap<>();
+
+	RequestPlan(ApiInfo info) {
+		this.info = info;
+		List<Group> groups = MappingHandlerMapping.findGroups(info.getGroupId());
+		List<Path> paths = new ArrayList<>(info.getPaths() == null ? Collections.emptyList() : info.getPaths());
+		groups.stream()
+				.flatMap(it -> it.getPaths().stream())
+				.filter(it -> !paths.contains(it))
+				.forEach(paths::add);
+		this.parameters = Validators.compile(info.getParameters());
+		this.headers = Validators.compile(info.getHeaders());
+		this.paths = Validators.compile(paths);
+		BaseDefinition requestBody = info.getRequestBodyDefinition();
+		if (requestBody != null && requestBody.getChildren() != null && requestBody.getChildren().size() > 0) {
+			this.requestBodyName = StringUtils.defaultIfBlank(requestBody.getName(), "root");
+			requestBody.setName(this.requestBodyName);
+			this.requestBody = Validators.compile(Collections.singletonList(requestBody));
+		} else {
+			this.requestBodyName = null;
+			this.requestBody = null;
+		}
+		for (Options option : Options.values()) {
+			String value = info.getOptionValue(option);
+			if (value != null) {
+				this.options.put(option.getValue(), value);
+			}
+		}
+	}
+
+	/**
+	 * 构建请求计划
+	 */
+	public static RequestPlan of(ApiInfo info) {
+		return new RequestPlan(info);
+	}
+
+	public ApiInfo getInfo() {
+		return info;
+	}
+
+	public Validators getParameters() {
+		return parameters;
+	}
+
+	public Validators getHeaders() {
+		return headers;
+	}
+
+	public Validators getPaths() {
+		return paths;
+	}
+
+	public Validators getRequestBody() {
+		return requestBody;
+	}
+
+	public String getRequestBodyName() {
+		return requestBodyName;
+	}
+
+	public String getOptionValue(Options option) {
+		return this.options.get(option.getValue());
+	}
+
+	/**
+	 * 同一层级的验证规则
+	 */
+	public static class Validators {
+
+		private static final Validators EMPTY = new Validators(new Validator[0], new Validator[0]);
+
+		private final Validator[] validators;
+
+		/**
+		 * 需要表达式验证的规则，需在其它参数转换完毕后验证
+		 */
+		private final Validator[] expressions;
+
+		private Validators(Validator[] validators, Validator[] expressions) {
+			this.validators = validators;
+			this.expressions = expressions;
+		}
+
+		/**
+		 * 编译验证规则
+		 */
+		public static Validators compile(List<? extends BaseDefinition> definitions) {
+			if (definitions == null || definitions.isEmpty()) {
+				return EMPTY;
+			}
+			List<Validator> validators = new ArrayList<>(definitions.size());
+			List<Validator> expressions = new ArrayList<>();
+			for (BaseDefinition definition : definitions) {
+				Validator validator = new Validator(definition);
+				validators.add(validator);
+				if (validator.expression != null) {
+					expressions.add(validator);
+				}
+			}
+			return new Validators(validators.toArray(new Validator[0]), expressions.toArray(new Validator[0]));
+		}
+
+		public Validator[] getValidators() {
+			return validators;
+		}
+
+		public Validator[] getExpressions() {
+			return expressions;
+		}
+	}
+
+	/**
+	 * 单个参数的验证规则
+	 */
+	public static class Validator {
+
+		public static final int TYPE_SIMPLE = 0;
+
+		public static final int TYPE_OBJECT = 1;
+
+		public static final int TYPE_ARRAY = 2;
+
+		/**
+		 * 没有名称的简单类型，无需验证
+		 */
+		public static final int TYPE_NONE = 3;
+
+		private final BaseDefinition definition;
+
+		private final int type;
+
+		private final String defaultValue;
+
+		/**
+		 * 正则表达式，编译失败时为null，验证时再抛出异常
+		 */
+		private final String regex;
+
+		private final Pattern pattern;
+
+		private final String expression;
+
+		/**
+		 * 编译后的表达式，编译失败时为null，验证时再抛出异常
+		 */
+		private final CompiledScript compiledExpression;
+
+		private final Validators children;
+
+		Validator(BaseDefinition definition) {
+			this.definition = definition;
+			String javascriptType = definition.getDataType() == null ? null : definition.getDataType().getJavascriptType();
+			if (VAR_NAME_REQUEST_BODY_VALUE_TYPE_OBJECT.equalsIgnoreCase(javascriptType)) {
+				this.type = TYPE_OBJECT;
+			} else if (VAR_NAME_REQUEST_BODY_VALUE_TYPE_ARRAY.equalsIgnoreCase(javascriptType)) {
+				this.type = TYPE_ARRAY;
+			} else {
+				this.type = StringUtils.isNotBlank(definition.getName()) ? TYPE_SIMPLE : TYPE_NONE;
+			}
+			this.defaultValue = Objects.toString(definition.getDefaultValue(), EMPTY);
+			String expression = definition.getExpression();
+			boolean hasExpression = StringUtils.isNotBlank(expression);
+			this.regex = hasExpression && VALIDATE_TYPE_PATTERN.equals(definition.getValidateType()) ? expression : null;
+			this.pattern = compilePattern(this.regex);
+			this.expression = hasExpression && VALIDATE_TYPE_EXPRESSION.equals(definition.getValidateType()) ? expression : null;
+			this.compiledExpression = compileExpression(this.expression);
+			this.children = this.type == TYPE_OBJECT || this.type == TYPE_ARRAY ? Validators.compile(definition.getChildren()) : Validators.EMPTY;
+		}
+
+		private static Pattern compilePattern(String regex) {
+			if (regex == null) {
+				return null;
+			}
+			try {
+				return Pattern.compile(regex);
+			} catch (Exception e) {
+				logger.warn("编译正则表达式{}失败", regex, e);
+				return null;
+			}
+		}
+
+		private static CompiledScript compileExpression(String expression) {
+			if (expression == null) {
+				return null;
+			}
+			try {
+				return ScriptManager.compileExpression(expression);
+			} catch (Exception e) {
+				logger.warn("编译表达式{}失败", expression, e);
+				return null;
+			}
+		}
+
+		public BaseDefinition getDefinition() {
+			return definition;
+		}
+
+		public String getName() {
+			return definition.getName();
+		}
+
+		public int getType() {
+			return type;
+		}
+
+		public String getDefaultValue() {
+			return defaultValue;
+		}
+
+		public String getRegex() {
+			return regex;
+		}
+
+		public Pattern getPattern() {
+			return pattern;
+		}
+
+		public String getExpression() {
+			return expression;
+		}
+
+		public CompiledScript getCompiledExpression() {
+			return compiledExpression;
+		}
+
+		public Validators getChildren() {
+			return children;
+		}
+	}
+}
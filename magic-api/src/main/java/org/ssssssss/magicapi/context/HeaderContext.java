@@ -0,0 +1,21 @@
+package org.ssssssss.magicapi.context;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.HashMap;
+
+/**
+ * Header Context 用于脚本中获取header信息，读取时直接从request中获取
+ */
+public class HeaderContext extends HashMap<String, Object> {
+
+	private final HttpServletRequest request;
+
+	public HeaderContext(HttpServletRequest request) {
+		this.request = request;
+	}
+
+	@Override
+	public Object get(Object key) {
+		return request.getHeader(key.toString());
+	}
+}
@@ -1,5 +1,6 @@
 package org.ssssssss.magicapi.context;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 import java.util.HashMap;
 
@@ -8,19 +9,38 @@ import java.util.HashMap;
  */
 public class SessionContext extends HashMap<String, Object> {
 
-	private final HttpSession session;
+	private final HttpServletRequest request;
+
+	private HttpSession session;
 
 	public SessionContext(HttpSession session) {
+		this.request = null;
 		this.session = session;
 	}
 
+	/**
+	 * 使用时才获取Session，读取时不创建Session
+	 */
+	public SessionContext(HttpServletRequest request) {
+		this.request = request;
+	}
+
+	private HttpSession getSession(boolean create) {
+		if (session == null && request != null) {
+			session = request.getSession(create);
+		}
+		return session;
+	}
+
 	@Override
 	public Object get(Object key) {
+		HttpSession session = getSession(false);
 		return session != null ? session.getAttribute(key.toString()) : null;
 	}
 
 	@Override
 	public Object put(String key, Object value) {
+		HttpSession session = getSession(true);
 		Object oldValue = session.getAttribute(key);
 		session.setAttribute(key, value);
 		return oldValue;
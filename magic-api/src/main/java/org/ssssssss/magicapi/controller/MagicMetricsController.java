@@ -0,0 +1,40 @@
+package org.ssssssss.magicapi.controller;
+
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.ssssssss.magicapi.config.MagicConfiguration;
+import org.ssssssss.magicapi.config.Valid;
+import org.ssssssss.magicapi.metrics.MagicMetrics;
+import org.ssssssss.magicapi.model.JsonBean;
+
+import java.util.Map;
+
+/**
+ * 指标统计查看
+ */
+public class MagicMetricsController extends MagicController implements MagicExceptionHandler {
+
+	public MagicMetricsController(MagicConfiguration configuration) {
+		super(configuration);
+	}
+
+	/**
+	 * 查看接口、SQL及缓存的统计信息
+	 */
+	@RequestMapping("/metrics")
+	@ResponseBody
+	public JsonBean<Map<String, Object>> metrics() {
+		return new JsonBean<>(MagicMetrics.getDefaultRecorder().snapshot());
+	}
+
+	/**
+	 * 清空统计信息
+	 */
+	@RequestMapping("/metrics/reset")
+	@Valid(readonly = false)
+	@ResponseBody
+	public JsonBean<Boolean> reset() {
+		MagicMetrics.getDefaultRecorder().reset();
+		return new JsonBean<>(true);
+	}
+}
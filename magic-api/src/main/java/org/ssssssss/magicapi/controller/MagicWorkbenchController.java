@@ -26,12 +26,12 @@ import org.ssssssss.magicapi.model.*;
 import org.ssssssss.magicapi.modules.ResponseModule;
 import org.ssssssss.magicapi.modules.SQLModule;
 import org.ssssssss.magicapi.provider.MagicAPIService;
+import org.ssssssss.magicapi.script.ScriptSearchIndex;
 import org.ssssssss.magicapi.utils.IoUtils;
 import org.ssssssss.magicapi.utils.SignUtils;
 import org.ssssssss.script.MagicResourceLoader;
 import org.ssssssss.script.MagicScriptEngine;
 import org.ssssssss.script.ScriptClass;
-import org.ssssssss.script.parsing.Span;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -174,27 +174,19 @@ public class MagicWorkbenchController extends MagicController implements MagicEx
 		if (StringUtils.isBlank(keyword)) {
 			return new JsonBean<>(Collections.emptyList());
 		}
-		List<MagicEntity> entities = new ArrayList<>();
-		if (!Constants.GROUP_TYPE_FUNCTION.equals(type)) {
-			entities.addAll(configuration.getMappingHandlerMapping().getApiInfos());
+		Integer searchType = null;
+		if (Constants.GROUP_TYPE_API.equals(type)) {
+			searchType = ScriptSearchIndex.TYPE_API;
+		} else if (Constants.GROUP_TYPE_FUNCTION.equals(type)) {
+			searchType = ScriptSearchIndex.TYPE_FUNCTION;
 		}
-		if (!Constants.GROUP_TYPE_API.equals(type)) {
-			entities.addAll(configuration.getMagicFunctionManager().getFunctionInfos());
-		}
-		return new JsonBean<>(entities.stream().filter(it -> it.getScript().contains(keyword)).map(it -> {
-			String script = it.getScript();
-			int index = script.indexOf(keyword);
-			int endIndex = script.indexOf("\n", index + keyword.length());
-			index = script.lastIndexOf("\n", index) + 1;
-			Span span = new Span(script, index, endIndex == -1 ? script.length() : endIndex);
-			return new HashMap<String, Object>() {
-				{
-					put("id", it.getId());
-					put("text", span.getText().trim());
-					put("line", span.getLine().getLineNumber());
-					put("type", it instanceof ApiInfo ? 1 : 2);
-				}
-			};
+		return new JsonBean<>(ScriptSearchIndex.search(keyword, searchType).stream().map(it -> {
+			Map<String, Object> result = new HashMap<>(4);
+			result.put("id", it.getId());
+			result.put("text", it.getText());
+			result.put("line", it.getLine());
+			result.put("type", it.getType());
+			return result;
 		}).collect(Collectors.toList()));
 	}
 
@@ -16,17 +16,25 @@ import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.ssssssss.magicapi.config.MagicConfiguration;
 import org.ssssssss.magicapi.config.MappingHandlerMapping;
+import org.ssssssss.magicapi.config.RequestExecutor;
+import org.ssssssss.magicapi.config.RequestPlan;
 import org.ssssssss.magicapi.config.Valid;
 import org.ssssssss.magicapi.context.CookieContext;
+import org.ssssssss.magicapi.context.HeaderContext;
 import org.ssssssss.magicapi.context.RequestContext;
 import org.ssssssss.magicapi.context.SessionContext;
+import org.ssssssss.magicapi.exception.MagicBusyException;
 import org.ssssssss.magicapi.exception.ValidateException;
 import org.ssssssss.magicapi.interceptor.RequestInterceptor;
 import org.ssssssss.magicapi.logging.LogInfo;
 import org.ssssssss.magicapi.logging.MagicLoggerContext;
+import org.ssssssss.magicapi.metrics.ApiPhase;
+import org.ssssssss.magicapi.metrics.MagicMetrics;
 import org.ssssssss.magicapi.model.*;
 import org.ssssssss.magicapi.modules.ResponseModule;
 import org.ssssssss.magicapi.provider.ResultProvider;
@@ -48,7 +56,7 @@ import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.Future;
 
 import static org.springframework.http.HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS;
 import static org.ssssssss.magicapi.model.Constants.*;
@@ -59,11 +67,14 @@ public class RequestHandler extends MagicController {
 
 	private final ResultProvider resultProvider;
 
+	private final RequestExecutor requestExecutor;
+
 	private static final Map<String, Object> EMPTY_MAP = new HashMap<>();
 
 	public RequestHandler(MagicConfiguration configuration) {
 		super(configuration);
 		this.resultProvider = configuration.getResultProvider();
+		this.requestExecutor = configuration.getRequestExecutor();
 	}
 
 	/**
@@ -75,6 +86,24 @@ public class RequestHandler extends MagicController {
 						 @PathVariable(required = false) Map<String, Object> pathVariables,
 						 @RequestParam(required = false) Map<String, Object> parameters) throws Throwable {
 		RequestEntity requestEntity = new RequestEntity(request, response, isRequestedFromTest(request), parameters, pathVariables);
+		long start = System.nanoTime();
+		Object value = null;
+		try {
+			return value = doInvoke(requestEntity);
+		} finally {
+			if (value instanceof DeferredResult) {
+				// 异步执行时在执行完毕后记录
+				((DeferredResult<?>) value).onCompletion(() -> MagicMetrics.recordApi(requestEntity, ApiPhase.TOTAL, start));
+			} else {
+				MagicMetrics.recordApi(requestEntity, ApiPhase.TOTAL, start);
+			}
+		}
+	}
+
+	private Object doInvoke(RequestEntity requestEntity) throws Throwable {
+		HttpServletRequest request = requestEntity.getRequest();
+		HttpServletResponse response = requestEntity.getResponse();
+		Map<String, Object> parameters = requestEntity.getParameters();
 		if (requestEntity.isRequestedFromTest()) {
 			response.setHeader(HEADER_RESPONSE_WITH_MAGIC_API, CONST_STRING_TRUE);
 			response.setHeader(ACCESS_CONTROL_EXPOSE_HEADERS, HEADER_RESPONSE_WITH_MAGIC_API);
@@ -86,53 +115,50 @@ public class RequestHandler extends MagicController {
 			logger.error("{}找不到对应接口", request.getRequestURI());
 			return buildResult(requestEntity, API_NOT_FOUND, "接口不存在");
 		}
-		Map<String, Object> headers = new HashMap<String, Object>() {
-			@Override
-			public Object get(Object key) {
-				return request.getHeader(key.toString());
-			}
-		};
+		// 注册时已构建好路径、验证规则等
+		RequestPlan plan = MappingHandlerMapping.getRequestPlan(requestEntity.getApiInfo());
+		Map<String, Object> headers = new HeaderContext(request);
 		requestEntity.setHeaders(headers);
-		List<Path> paths = new ArrayList<>(requestEntity.getApiInfo().getPaths());
-		MappingHandlerMapping.findGroups(requestEntity.getApiInfo().getGroupId())
-				.stream()
-				.flatMap(it -> it.getPaths().stream())
-				.filter(it -> !paths.contains(it))
-				.forEach(paths::add);
 		Object bodyValue = readRequestBody(requestEntity.getRequest());
+		long start = System.nanoTime();
 		try {
 			// 验证参数
-			doValidate("参数", requestEntity.getApiInfo().getParameters(), parameters, PARAMETER_INVALID);
+			doValidate("参数", plan.getParameters(), parameters, PARAMETER_INVALID);
 			// 验证 header
-			doValidate("header", requestEntity.getApiInfo().getHeaders(), headers, HEADER_INVALID);
+			doValidate("header", plan.getHeaders(), headers, HEADER_INVALID);
 			// 验证 path
-			doValidate("path", paths, requestEntity.getPathVariables(), PATH_VARIABLE_INVALID);
-			BaseDefinition requestBody = requestEntity.getApiInfo().getRequestBodyDefinition();
-			if (requestBody != null && requestBody.getChildren().size() > 0) {
-				requestBody.setName(StringUtils.defaultIfBlank(requestBody.getName(), "root"));
-				doValidate(VAR_NAME_REQUEST_BODY, Collections.singletonList(requestBody), new HashMap<String, Object>() {{
-					put(requestBody.getName(), bodyValue);
-				}}, BODY_INVALID);
+			doValidate("path", plan.getPaths(), requestEntity.getPathVariables(), PATH_VARIABLE_INVALID);
+			if (plan.getRequestBody() != null) {
+				Map<String, Object> body = new HashMap<>(2);
+				body.put(plan.getRequestBodyName(), bodyValue);
+				doValidate(VAR_NAME_REQUEST_BODY, plan.getRequestBody(), body, BODY_INVALID);
 			}
 		} catch (ValidateException e) {
 			Object value = resultProvider.buildResult(requestEntity, RESPONSE_CODE_INVALID, e.getMessage());
 			return requestEntity.isRequestedFromTest() ? new JsonBean<>(e.getJsonCode(), value) : value;
 		} catch (Throwable root) {
 			return processException(requestEntity, root);
+		} finally {
+			MagicMetrics.recordApi(requestEntity, ApiPhase.VALIDATE, start);
 		}
-		MagicScriptContext context = createMagicScriptContext(requestEntity, bodyValue);
+		MagicScriptContext context = createMagicScriptContext(requestEntity, plan, bodyValue);
 		requestEntity.setMagicScriptContext(context);
 		RequestContext.setRequestEntity(requestEntity);
-		Object value;
 		// 执行前置拦截器
-		if ((value = doPreHandle(requestEntity)) != null) {
+		start = System.nanoTime();
+		Object value = doPreHandle(requestEntity);
+		MagicMetrics.recordApi(requestEntity, ApiPhase.PRE_HANDLE, start);
+		if (value != null) {
 			if (requestEntity.isRequestedFromTest()) {
 				// 修正前端显示，当拦截器返回时，原样输出显示
 				response.setHeader(HEADER_RESPONSE_WITH_MAGIC_API, CONST_STRING_FALSE);
 			}
 			return value;
 		}
-		return requestEntity.isRequestedFromTest() ?  invokeTestRequest(requestEntity) : invokeRequest(requestEntity);
+		if (requestEntity.isRequestedFromTest()) {
+			return invokeTestRequest(requestEntity);
+		}
+		return requestExecutor.isAsync(plan) ? invokeAsyncRequest(requestEntity, plan) : invokeRequest(requestEntity, plan);
 	}
 
 	private Object buildResult(RequestEntity requestEntity, JsonCode code, Object data) {
@@ -154,31 +180,33 @@ public class RequestHandler extends MagicController {
 		return false;
 	}
 
-	private <T extends BaseDefinition> void doValidate(String comment, List<T> validateParameters, Map<String, Object> parameters, JsonCode jsonCode) {
+	private void doValidate(String comment, RequestPlan.Validators validators, Map<String, Object> parameters, JsonCode jsonCode) {
 		parameters = parameters != null ? parameters : EMPTY_MAP;
-		for (BaseDefinition parameter : validateParameters) {
+		for (RequestPlan.Validator validator : validators.getValidators()) {
+			BaseDefinition parameter = validator.getDefinition();
 			// 针对requestBody多层级的情况
-			if (VAR_NAME_REQUEST_BODY_VALUE_TYPE_OBJECT.equalsIgnoreCase(parameter.getDataType().getJavascriptType())) {
+			if (validator.getType() == RequestPlan.Validator.TYPE_OBJECT) {
 				if (doValidateBody(comment, parameter, parameters, jsonCode, Map.class)) {
 					continue;
 				}
-				doValidate(VAR_NAME_REQUEST_BODY, parameter.getChildren(), (Map) parameters.get(parameter.getName()), jsonCode);
-			} else if (VAR_NAME_REQUEST_BODY_VALUE_TYPE_ARRAY.equalsIgnoreCase(parameter.getDataType().getJavascriptType())) {
+				doValidate(VAR_NAME_REQUEST_BODY, validator.getChildren(), (Map) parameters.get(parameter.getName()), jsonCode);
+			} else if (validator.getType() == RequestPlan.Validator.TYPE_ARRAY) {
 				if (doValidateBody(comment, parameter, parameters, jsonCode, List.class)) {
 					continue;
 				}
 				List list = (List) parameters.get(parameter.getName());
-				if (list != null) {
+				if (list != null && !list.isEmpty()) {
+					// 每个元素复用同一个map
+					Map<String, Object> item = new HashMap<>(2);
 					for (Object value : list) {
-						List<BaseDefinition> definitions = parameter.getChildren();
-						doValidate(VAR_NAME_REQUEST_BODY, definitions, new HashMap<String, Object>() {{
-							put("", value);
-						}}, jsonCode);
+						item.clear();
+						item.put("", value);
+						doValidate(VAR_NAME_REQUEST_BODY, validator.getChildren(), item, jsonCode);
 					}
 				}
 
-			} else if (StringUtils.isNotBlank(parameter.getName())) {
-				String requestValue = StringUtils.defaultIfBlank(Objects.toString(parameters.get(parameter.getName()), EMPTY), Objects.toString(parameter.getDefaultValue(), EMPTY));
+			} else if (validator.getType() == RequestPlan.Validator.TYPE_SIMPLE) {
+				String requestValue = StringUtils.defaultIfBlank(Objects.toString(parameters.get(parameter.getName()), EMPTY), validator.getDefaultValue());
 				if (StringUtils.isBlank(requestValue)) {
 					if (!parameter.isRequired()) {
 						continue;
@@ -187,9 +215,10 @@ public class RequestHandler extends MagicController {
 				}
 				try {
 					Object value = convertValue(parameter.getDataType(), parameter.getName(), requestValue);
-					if (VALIDATE_TYPE_PATTERN.equals(parameter.getValidateType())) {    // 正则验证
-						String expression = parameter.getExpression();
-						if (StringUtils.isNotBlank(expression) && !PatternUtils.match(Objects.toString(value, EMPTY), expression)) {
+					if (validator.getRegex() != null) {    // 正则验证
+						String content = Objects.toString(value, EMPTY);
+						boolean matched = validator.getPattern() != null ? validator.getPattern().matcher(content).find() : PatternUtils.match(content, validator.getRegex());
+						if (!matched) {
 							throw new ValidateException(jsonCode, StringUtils.defaultIfBlank(parameter.getError(), String.format("%s[%s]不满足正则表达式", comment, parameter.getName())));
 						}
 					}
@@ -199,17 +228,18 @@ public class RequestHandler extends MagicController {
 				}
 			}
 		}
-		// 取出表达式验证的参数
-		List<BaseDefinition> validates = validateParameters.stream().filter(it -> VALIDATE_TYPE_EXPRESSION.equals(it.getValidateType()) && StringUtils.isNotBlank(it.getExpression())).collect(Collectors.toList());
-		for (BaseDefinition parameter : validates) {
-			MagicScriptContext context = new MagicScriptContext();
-			// 将其他参数也放置脚本中，以实现“依赖”的情况
-			context.putMapIntoContext(parameters);
+		// 表达式验证的参数，每个表达式使用独立的上下文，避免表达式中定义的变量影响其它表达式
+		for (RequestPlan.Validator validator : validators.getExpressions()) {
+			BaseDefinition parameter = validator.getDefinition();
 			Object value = parameters.get(parameter.getName());
 			if (value != null) {
+				MagicScriptContext context = new MagicScriptContext();
+				// 将其他参数也放置脚本中，以实现“依赖”的情况
+				context.putMapIntoContext(parameters);
 				// 设置自身变量
 				context.set(EXPRESSION_DEFAULT_VAR_NAME, value);
-				if (!BooleanLiteral.isTrue(ScriptManager.executeExpression(parameter.getExpression(), context))) {
+				Object result = validator.getCompiledExpression() != null ? ScriptManager.executeScript(validator.getCompiledExpression(), context) : ScriptManager.executeExpression(validator.getExpression(), context);
+				if (!BooleanLiteral.isTrue(result)) {
 					throw new ValidateException(jsonCode, StringUtils.defaultIfBlank(parameter.getError(), String.format("%s[%s]不满足表达式", comment, parameter.getName())));
 				}
 			}
@@ -233,14 +263,13 @@ public class RequestHandler extends MagicController {
 			} else {
 				JavaInvoker<Method> invoker = dataType.getInvoker();
 				if (invoker != null) {
-					List<Object> params = new ArrayList<>();
+					Object[] params;
 					if (dataType.isNeedName()) {
-						params.add(name);
+						params = dataType.isNeedValue() ? new Object[]{name, value} : new Object[]{name};
+					} else {
+						params = dataType.isNeedValue() ? new Object[]{value} : new Object[0];
 					}
-					if (dataType.isNeedValue()) {
-						params.add(value);
-					}
-					return invoker.invoke0(null, null, params.toArray());
+					return invoker.invoke0(null, null, params);
 				}
 			}
 			return value;
@@ -284,7 +313,7 @@ public class RequestHandler extends MagicController {
 		try {
 			// 初始化debug操作
 			MagicScriptDebugContext context = initializeDebug(requestEntity);
-			Object result = ScriptManager.executeScript(requestEntity.getApiInfo().getScript(), requestEntity.getMagicScriptContext());
+			Object result = ScriptManager.executeScript(requestEntity.getApiInfo(), requestEntity.getMagicScriptContext());
 			if (context.isRunning()) {
 				return new JsonBodyBean<>(1000, context.getId(), resultProvider.buildResult(requestEntity, 1000, context.getId(), result), result);
 			} else if (context.isException()) {    //判断是否出现异常
@@ -304,16 +333,51 @@ public class RequestHandler extends MagicController {
 		}
 	}
 
-	private Object invokeRequest(RequestEntity requestEntity) throws Throwable {
+	/**
+	 * 通过Servlet异步提交到线程池中执行，不占用容器线程
+	 */
+	private Object invokeAsyncRequest(RequestEntity requestEntity, RequestPlan plan) {
+		Long timeout = requestExecutor.getTimeout() > 0 ? requestExecutor.getTimeout() : null;
+		DeferredResult<Object> deferredResult = new DeferredResult<>(timeout, () -> resultProvider.buildResult(requestEntity, RESPONSE_CODE_EXCEPTION, "接口执行超时"));
+		// 线程池中的线程会继承创建时的InheritableThreadLocal，需在执行时重新设置
+		String sessionId = MagicLoggerContext.SESSION.get();
+		RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
 		try {
-			Object result = ScriptManager.executeScript(requestEntity.getApiInfo().getScript(), requestEntity.getMagicScriptContext());
-			Object value = result;
-			// 执行后置拦截器
-			if ((value = doPostHandle(requestEntity, value)) != null) {
-				return value;
-			}
-			// 对返回结果包装处理
-			return response(requestEntity, result);
+			Future<?> future = requestExecutor.submit(() -> {
+				RequestContext.setRequestEntity(requestEntity);
+				MagicScriptContext.set(requestEntity.getMagicScriptContext());
+				RequestContextHolder.setRequestAttributes(requestAttributes);
+				if (sessionId != null) {
+					MagicLoggerContext.SESSION.set(sessionId);
+				} else {
+					MagicLoggerContext.SESSION.remove();
+				}
+				try {
+					deferredResult.setResult(invokeRequest(requestEntity, plan));
+				} catch (Throwable e) {
+					deferredResult.setErrorResult(e);
+				} finally {
+					MagicScriptContext.remove();
+					MagicLoggerContext.SESSION.remove();
+					RequestContextHolder.resetRequestAttributes();
+				}
+			});
+			// 超时或连接出错后中断执行，释放线程及并发许可
+			deferredResult.onTimeout(() -> future.cancel(true));
+			deferredResult.onError(e -> future.cancel(true));
+		} catch (MagicBusyException e) {
+			return resultProvider.buildResult(requestEntity, RESPONSE_CODE_BUSY, e.getMessage());
+		} finally {
+			RequestContext.remove();
+		}
+		return deferredResult;
+	}
+
+	private Object invokeRequest(RequestEntity requestEntity, RequestPlan plan) throws Throwable {
+		try {
+			return requestExecutor.execute(plan, () -> executeRequest(requestEntity));
+		} catch (MagicBusyException e) {
+			return resultProvider.buildResult(requestEntity, RESPONSE_CODE_BUSY, e.getMessage());
 		} catch (Throwable root) {
 			return processException(requestEntity, root);
 		} finally {
@@ -321,14 +385,36 @@ public class RequestHandler extends MagicController {
 		}
 	}
 
+	private Object executeRequest(RequestEntity requestEntity) throws Exception {
+		long start = System.nanoTime();
+		Object result = ScriptManager.executeScript(requestEntity.getApiInfo(), requestEntity.getMagicScriptContext());
+		MagicMetrics.recordApi(requestEntity, ApiPhase.EXECUTE, start);
+		// 执行后置拦截器
+		start = System.nanoTime();
+		Object value = doPostHandle(requestEntity, result);
+		MagicMetrics.recordApi(requestEntity, ApiPhase.POST_HANDLE, start);
+		if (value != null) {
+			return value;
+		}
+		// 对返回结果包装处理
+		start = System.nanoTime();
+		try {
+			return response(requestEntity, result);
+		} finally {
+			MagicMetrics.recordApi(requestEntity, ApiPhase.RESULT, start);
+		}
+	}
+
 	private Object processException(RequestEntity requestEntity, Throwable root) throws Throwable {
 		Throwable parent = root;
 		do {
 			if (parent instanceof MagicScriptAssertException) {
+				MagicMetrics.recordException(requestEntity, true);
 				MagicScriptAssertException sae = (MagicScriptAssertException) parent;
 				return resultProvider.buildResult(requestEntity, sae.getCode(), sae.getMessage());
 			}
 		} while ((parent = parent.getCause()) != null);
+		MagicMetrics.recordException(requestEntity, false);
 		if (configuration.isThrowException()) {
 			throw root;
 		}
@@ -466,18 +552,18 @@ public class RequestHandler extends MagicController {
 	/**
 	 * 构建 MagicScriptContext
 	 */
-	private MagicScriptContext createMagicScriptContext(RequestEntity requestEntity, Object requestBody) throws IOException {
+	private MagicScriptContext createMagicScriptContext(RequestEntity requestEntity, RequestPlan plan, Object requestBody) throws IOException {
 		// 构建脚本上下文
 		MagicScriptContext context = requestEntity.isRequestedFromTest() ? new MagicScriptDebugContext() : new MagicScriptContext();
-		Object wrap = requestEntity.getApiInfo().getOptionValue(Options.WRAP_REQUEST_PARAMETERS.getValue());
-		if (wrap != null && StringUtils.isNotBlank(wrap.toString())) {
-			context.set(wrap.toString(), requestEntity.getParameters());
+		String wrap = plan.getOptionValue(Options.WRAP_REQUEST_PARAMETERS);
+		if (StringUtils.isNotBlank(wrap)) {
+			context.set(wrap, requestEntity.getParameters());
 		}
 		context.putMapIntoContext(requestEntity.getParameters());
 		context.putMapIntoContext(requestEntity.getPathVariables());
 		context.set(VAR_NAME_COOKIE, new CookieContext(requestEntity.getRequest()));
 		context.set(VAR_NAME_HEADER, requestEntity.getHeaders());
-		context.set(VAR_NAME_SESSION, new SessionContext(requestEntity.getRequest().getSession()));
+		context.set(VAR_NAME_SESSION, new SessionContext(requestEntity.getRequest()));
 		context.set(VAR_NAME_PATH_VARIABLE, requestEntity.getPathVariables());
 		if (requestBody != null) {
 			context.set(VAR_NAME_REQUEST_BODY, requestBody);
@@ -2,12 +2,19 @@ package org.ssssssss.magicapi.dialect;
 
 
 import org.ssssssss.magicapi.modules.BoundSql;
+import org.ssssssss.magicapi.utils.Assert;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.regex.Pattern;
 
 public interface Dialect {
 
+	/**
+	 * 游标分页排序列允许的格式，列名由脚本传入，直接拼接到sql中，需防止注入
+	 */
+	Pattern CURSOR_COLUMN_PATTERN = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)*");
+
 	/**
 	 * 根据jdbcUrl匹配
 	 */
@@ -29,8 +36,43 @@ public interface Dialect {
 		return "select count(1) from (" + sql + ") count_";
 	}
 
+	/**
+	 * 获取流式查询使用的fetchSize，部分驱动需要特殊值才会逐行读取
+	 */
+	default int getStreamFetchSize(int fetchSize) {
+		return fetchSize;
+	}
+
 	/**
 	 * 获取分页sql
 	 */
 	String getPageSql(String sql, BoundSql boundSql, long offset, long limit);
+
+	/**
+	 * 获取游标分页sql，按指定列升序，查询大于上一页最后一条记录的数据
+	 *
+	 * @param sql       原始sql
+	 * @param boundSql  用于添加参数
+	 * @param column    排序列
+	 * @param lastValue 上一页最后一条记录的值，为null时查询第一页
+	 * @param limit     限制条数
+	 */
+	default String getCursorPageSql(String sql, BoundSql boundSql, String column, Object lastValue, long limit) {
+		return getPageSql(getCursorSql(sql, boundSql, column, lastValue), boundSql, 0, limit);
+	}
+
+	/**
+	 * 获取游标条件及排序的sql，不含分页
+	 */
+	default String getCursorSql(String sql, BoundSql boundSql, String column, Object lastValue) {
+		Assert.isTrue(column != null && CURSOR_COLUMN_PATTERN.matcher(column).matches(), "排序列名不合法：" + column);
+		// 外层查询只能引用子查询的列名，去掉表别名
+		column = "cursor_." + column.substring(column.lastIndexOf('.') + 1);
+		StringBuilder builder = new StringBuilder("select * from (").append(sql).append(") cursor_");
+		if (lastValue != null) {
+			builder.append(" where ").append(column).append(" > ?");
+			boundSql.addParameter(lastValue);
+		}
+		return builder.append(" order by ").append(column).toString();
+	}
 }
@@ -15,4 +15,11 @@ public class KingbaseSQLDialect implements Dialect {
 		boundSql.addParameter(offset);
 		return sql + " limit ? offset ?";
 	}
+
+	@Override
+	public String getCursorPageSql(String sql, BoundSql boundSql, String column, Object lastValue, long limit) {
+		String cursorSql = getCursorSql(sql, boundSql, column, lastValue);
+		boundSql.addParameter(limit);
+		return cursorSql + " limit ?";
+	}
 }
@@ -10,10 +10,25 @@ public class MySQLDialect implements Dialect {
 		return jdbcUrl.contains(":mysql:") || jdbcUrl.contains(":mariadb:") || jdbcUrl.contains(":cobar:");
 	}
 
+	/**
+	 * MySQL驱动只有fetchSize为Integer.MIN_VALUE时才会逐行读取，其它值会把全部结果读入内存
+	 */
+	@Override
+	public int getStreamFetchSize(int fetchSize) {
+		return Integer.MIN_VALUE;
+	}
+
 	@Override
 	public String getPageSql(String sql, BoundSql boundSql, long offset, long limit) {
 		boundSql.addParameter(offset);
 		boundSql.addParameter(limit);
 		return sql + " limit ?,?";
 	}
+
+	@Override
+	public String getCursorPageSql(String sql, BoundSql boundSql, String column, Object lastValue, long limit) {
+		String cursorSql = getCursorSql(sql, boundSql, column, lastValue);
+		boundSql.addParameter(limit);
+		return cursorSql + " limit ?";
+	}
 }
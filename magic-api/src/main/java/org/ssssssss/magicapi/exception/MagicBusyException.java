@@ -0,0 +1,11 @@
+package org.ssssssss.magicapi.exception;
+
+/**
+ * 接口繁忙（超出并发数限制或线程池已满）
+ */
+public class MagicBusyException extends RuntimeException {
+
+	public MagicBusyException(String message) {
+		super(message);
+	}
+}
@@ -45,6 +45,11 @@ public class Log4j2LoggerContext implements MagicLoggerContext {
 
 		@Override
 		public void append(LogEvent event) {
+			String sessionId = MagicLoggerContext.currentSessionId();
+			if (sessionId == null) {
+				// 没有打开的控制台，不做处理
+				return;
+			}
 			LogInfo logInfo = new LogInfo();
 			logInfo.setLevel(event.getLevel().name().toLowerCase());
 			logInfo.setMessage(event.getMessage().getFormattedMessage());
@@ -52,7 +57,7 @@ public class Log4j2LoggerContext implements MagicLoggerContext {
 			if (throwableProxy != null) {
 				logInfo.setThrowable(throwableProxy.getThrowable());
 			}
-			MagicLoggerContext.println(logInfo);
+			MagicLoggerContext.println(sessionId, logInfo);
 		}
 	}
 }
@@ -26,6 +26,11 @@ public class Log4jLoggerContext implements MagicLoggerContext {
 
 		@Override
 		protected void append(LoggingEvent event) {
+			String sessionId = MagicLoggerContext.currentSessionId();
+			if (sessionId == null) {
+				// 没有打开的控制台，不做处理
+				return;
+			}
 			LogInfo logInfo = new LogInfo();
 			logInfo.setLevel(event.getLevel().toString().toLowerCase());
 			logInfo.setMessage(String.valueOf(event.getMessage()));
@@ -33,7 +38,7 @@ public class Log4jLoggerContext implements MagicLoggerContext {
 			if (throwableInformation != null) {
 				logInfo.setThrowable(throwableInformation.getThrowable());
 			}
-			MagicLoggerContext.println(logInfo);
+			MagicLoggerContext.println(sessionId, logInfo);
 		}
 
 		@Override
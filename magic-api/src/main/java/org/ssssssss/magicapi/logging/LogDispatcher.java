@@ -0,0 +1,167 @@
+package org.ssssssss.magicapi.logging;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 将日志异步推送到控制台，不阻塞记录日志的线程
+ * <p>
+ * 使用有界的无锁环形队列（多生产者单消费者），由单个线程推送，队列已满时丢弃日志并计数。
+ */
+public final class LogDispatcher {
+
+	/**
+	 * 队列容量，必须是2的幂
+	 */
+	private static final int CAPACITY = 8192;
+
+	private static final int MASK = CAPACITY - 1;
+
+	/**
+	 * 队列为空时的最长等待时间
+	 */
+	private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private static final AtomicReferenceArray<PendingLog> BUFFER = new AtomicReferenceArray<>(CAPACITY);
+
+	/**
+	 * 下一个写入的位置，由生产者竞争
+	 */
+	private static final AtomicLong TAIL = new AtomicLong();
+
+	/**
+	 * 下一个读取的位置，仅由推送线程修改
+	 */
+	private static volatile long head;
+
+	/**
+	 * 队列已满被丢弃的日志数
+	 */
+	private static final AtomicLong DROPPED = new AtomicLong();
+
+	/**
+	 * 推送线程是否在等待中
+	 */
+	private static final AtomicBoolean WAITING = new AtomicBoolean();
+
+	private static volatile Thread thread;
+
+	private LogDispatcher() {
+	}
+
+	/**
+	 * 获取因队列已满被丢弃的日志数
+	 */
+	public static long getDroppedCount() {
+		return DROPPED.get();
+	}
+
+	/**
+	 * 提交日志，队列已满时丢弃
+	 */
+	static void dispatch(String sessionId, LogInfo logInfo) {
+		if (!offer(new PendingLog(sessionId, logInfo))) {
+			DROPPED.incrementAndGet();
+		}
+	}
+
+	/**
+	 * 在已提交的日志推送完毕后关闭会话，队列已满时直接关闭
+	 */
+	static void close(String sessionId) {
+		if (!offer(new PendingLog(sessionId, null))) {
+			doClose(sessionId);
+		}
+	}
+
+	private static boolean offer(PendingLog log) {
+		long tail;
+		do {
+			tail = TAIL.get();
+			if (tail - head >= CAPACITY) {
+				return false;
+			}
+		} while (!TAIL.compareAndSet(tail, tail + 1));
+		BUFFER.lazySet((int) (tail & MASK), log);
+		if (thread == null) {
+			start();
+		}
+		if (WAITING.get() && WAITING.compareAndSet(true, false)) {
+			LockSupport.unpark(thread);
+		}
+		return true;
+	}
+
+	private static synchronized void start() {
+		if (thread == null) {
+			Thread dispatcher = new Thread(LogDispatcher::run, "magic-api-log-dispatcher");
+			dispatcher.setDaemon(true);
+			dispatcher.start();
+			thread = dispatcher;
+		}
+	}
+
+	private static void run() {
+		while (!Thread.currentThread().isInterrupted()) {
+			int index = (int) (head & MASK);
+			PendingLog log = BUFFER.get(index);
+			if (log == null) {
+				// 队列为空，或生产者已占位但尚未写入
+				WAITING.set(true);
+				if (BUFFER.get(index) == null) {
+					LockSupport.parkNanos(PARK_NANOS);
+				}
+				WAITING.set(false);
+				continue;
+			}
+			BUFFER.lazySet(index, null);
+			head = head + 1;
+			if (log.logInfo == null) {
+				doClose(log.sessionId);
+			} else {
+				send(log.sessionId, log.logInfo);
+			}
+		}
+	}
+
+	private static void send(String sessionId, LogInfo logInfo) {
+		SseEmitter sseEmitter = MagicLoggerContext.emitterMap.get(sessionId);
+		if (sseEmitter != null) {
+			try {
+				// 推送日志事件
+				sseEmitter.send(SseEmitter.event().data(logInfo).name("log"));
+			} catch (Exception ignored) {
+			}
+		}
+	}
+
+	private static void doClose(String sessionId) {
+		SseEmitter sseEmitter = MagicLoggerContext.emitterMap.remove(sessionId);
+		if (sseEmitter != null) {
+			try {
+				sseEmitter.send(SseEmitter.event().data(sessionId).name("close"));
+			} catch (Exception ignored) {
+			}
+		}
+	}
+
+	private static class PendingLog {
+
+		private final String sessionId;
+
+		/**
+		 * 为null时表示关闭会话
+		 */
+		private final LogInfo logInfo;
+
+		PendingLog(String sessionId, LogInfo logInfo) {
+			this.sessionId = sessionId;
+			this.logInfo = logInfo;
+		}
+	}
+}
@@ -27,6 +27,11 @@ public class LogbackLoggerContext implements MagicLoggerContext {
 
 		@Override
 		protected void append(ILoggingEvent event) {
+			String sessionId = MagicLoggerContext.currentSessionId();
+			if (sessionId == null) {
+				// 没有打开的控制台，不做处理
+				return;
+			}
 			LogInfo logInfo = new LogInfo();
 			logInfo.setLevel(event.getLevel().levelStr.toLowerCase());
 			logInfo.setMessage(event.getFormattedMessage());
@@ -34,7 +39,7 @@ public class LogbackLoggerContext implements MagicLoggerContext {
 			if (throwableProxy != null) {
 				logInfo.setThrowable(throwableProxy.getThrowable());
 			}
-			MagicLoggerContext.println(logInfo);
+			MagicLoggerContext.println(sessionId, logInfo);
 		}
 	}
 }
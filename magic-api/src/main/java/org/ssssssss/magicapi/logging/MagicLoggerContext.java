@@ -4,7 +4,6 @@ import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.ssssssss.script.MagicScriptContext;
 import org.ssssssss.script.MagicScriptDebugContext;
 
-import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -28,29 +27,22 @@ public interface MagicLoggerContext {
 	}
 
 	/**
-	 * 删除会话
+	 * 删除会话，已提交的日志推送完毕后再关闭
 	 *
 	 * @param sessionId 会话id
 	 */
 	static void remove(String sessionId) {
-		SseEmitter sseEmitter = emitterMap.remove(sessionId);
 		SESSION.remove();
-		if (sseEmitter != null) {
-			try {
-				sseEmitter.send(SseEmitter.event().data(sessionId).name("close"));
-			} catch (IOException ignored) {
-			}
-		}
+		LogDispatcher.close(sessionId);
 	}
 
-
 	/**
-	 * 打印日志
-	 *
-	 * @param logInfo 日志信息
+	 * 获取当前线程对应的会话id，没有打开的控制台时直接返回null
 	 */
-	static void println(LogInfo logInfo) {
-		// 获取SessionId
+	static String currentSessionId() {
+		if (emitterMap.isEmpty()) {
+			return null;
+		}
 		MagicScriptContext context = MagicScriptContext.get();
 		String sessionId;
 		if (context instanceof MagicScriptDebugContext) {
@@ -58,18 +50,31 @@ public interface MagicLoggerContext {
 		} else {
 			sessionId = SESSION.get();
 		}
+		return sessionId != null && emitterMap.containsKey(sessionId) ? sessionId : null;
+	}
+
+	/**
+	 * 打印日志
+	 *
+	 * @param logInfo 日志信息
+	 */
+	static void println(LogInfo logInfo) {
+		String sessionId = currentSessionId();
 		if (sessionId != null) {
-			SseEmitter sseEmitter = emitterMap.get(sessionId);
-			if (sseEmitter != null) {
-				try {
-					// 推送日志事件
-					sseEmitter.send(SseEmitter.event().data(logInfo).name("log"));
-				} catch (IOException ignored) {
-				}
-			}
+			println(sessionId, logInfo);
 		}
 	}
 
+	/**
+	 * 异步推送日志
+	 *
+	 * @param sessionId 会话id
+	 * @param logInfo   日志信息
+	 */
+	static void println(String sessionId, LogInfo logInfo) {
+		LogDispatcher.dispatch(sessionId, logInfo);
+	}
+
 	/**
 	 * 生成appender
 	 */
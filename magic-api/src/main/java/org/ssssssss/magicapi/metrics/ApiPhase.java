@@ -0,0 +1,47 @@
+package org.ssssssss.magicapi.metrics;
+
+/**
+ * 接口请求的各个阶段
+ */
+public enum ApiPhase {
+
+	/**
+	 * 参数验证
+	 */
+	VALIDATE("validate"),
+
+	/**
+	 * 前置拦截器
+	 */
+	PRE_HANDLE("pre-handle"),
+
+	/**
+	 * 执行脚本
+	 */
+	EXECUTE("execute"),
+
+	/**
+	 * 后置拦截器
+	 */
+	POST_HANDLE("post-handle"),
+
+	/**
+	 * 构建返回结果
+	 */
+	RESULT("result"),
+
+	/**
+	 * 整个请求
+	 */
+	TOTAL("total");
+
+	private final String value;
+
+	ApiPhase(String value) {
+		this.value = value;
+	}
+
+	public String getValue() {
+		return value;
+	}
+}
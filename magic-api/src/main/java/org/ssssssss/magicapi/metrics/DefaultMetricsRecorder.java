@@ -0,0 +1,170 @@
+package org.ssssssss.magicapi.metrics;
+
+import org.ssssssss.magicapi.model.ApiInfo;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 内存中的指标统计，供页面查看
+ */
+public class DefaultMetricsRecorder implements MetricsRecorder {
+
+	private final Map<String, ApiStats> apis = new ConcurrentHashMap<>();
+
+	private final Map<String, TimerStats> sqls = new ConcurrentHashMap<>();
+
+	private final Map<String, CacheStats> caches = new ConcurrentHashMap<>();
+
+	@Override
+	public void recordApi(ApiInfo info, ApiPhase phase, long nanos) {
+		getApiStats(info).phases.get(phase).record(nanos, true);
+	}
+
+	@Override
+	public void recordException(ApiInfo info, boolean assertion) {
+		ApiStats stats = getApiStats(info);
+		(assertion ? stats.assertions : stats.exceptions).increment();
+	}
+
+	@Override
+	public void recordSql(String dataSource, long nanos, boolean success) {
+		sqls.computeIfAbsent(dataSource, it -> new TimerStats()).record(nanos, success);
+	}
+
+	@Override
+	public void recordCache(String cacheName, boolean hit) {
+		CacheStats stats = caches.computeIfAbsent(cacheName, it -> new CacheStats());
+		(hit ? stats.hits : stats.misses).increment();
+	}
+
+	/**
+	 * 清空统计
+	 */
+	public void reset() {
+		apis.clear();
+		sqls.clear();
+		caches.clear();
+	}
+
+	/**
+	 * 移除接口的统计（接口删除时）
+	 */
+	@Override
+	public void remove(String apiId) {
+		apis.remove(apiId);
+	}
+
+	/**
+	 * 获取当前的统计快照
+	 */
+	public Map<String, Object> snapshot() {
+		Map<String, Object> result = new LinkedHashMap<>();
+		List<Map<String, Object>> apiList = new ArrayList<>();
+		apis.forEach((id, stats) -> {
+			Map<String, Object> item = new LinkedHashMap<>();
+			item.put("id", id);
+			item.put("name", stats.name);
+			item.put("method", stats.method);
+			item.put("path", stats.path);
+			item.put("exceptions", stats.exceptions.sum());
+			item.put("assertions", stats.assertions.sum());
+			Map<String, Object> phases = new LinkedHashMap<>();
+			stats.phases.forEach((phase, timer) -> phases.put(phase.getValue(), timer.snapshot()));
+			item.put("phases", phases);
+			apiList.add(item);
+		});
+		result.put("apis", apiList);
+		Map<String, Object> sqlMap = new LinkedHashMap<>();
+		sqls.forEach((key, timer) -> sqlMap.put(key, timer.snapshot()));
+		result.put("sql", sqlMap);
+		Map<String, Object> cacheMap = new LinkedHashMap<>();
+		caches.forEach((key, stats) -> {
+			Map<String, Object> item = new LinkedHashMap<>();
+			long hits = stats.hits.sum();
+			long misses = stats.misses.sum();
+			item.put("hits", hits);
+			item.put("misses", misses);
+			item.put("hitRate", hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+			cacheMap.put(key, item);
+		});
+		result.put("cache", cacheMap);
+		return result;
+	}
+
+	private ApiStats getApiStats(ApiInfo info) {
+		ApiStats stats = apis.computeIfAbsent(info.getId(), it -> new ApiStats());
+		// 接口信息可能被修改，以最新的为准
+		stats.name = info.getName();
+		stats.method = info.getMethod();
+		stats.path = info.getPath();
+		return stats;
+	}
+
+	static class ApiStats {
+
+		volatile String name;
+
+		volatile String method;
+
+		volatile String path;
+
+		final Map<ApiPhase, TimerStats> phases = new EnumMap<>(ApiPhase.class);
+
+		final LongAdder exceptions = new LongAdder();
+
+		final LongAdder assertions = new LongAdder();
+
+		ApiStats() {
+			for (ApiPhase phase : ApiPhase.values()) {
+				phases.put(phase, new TimerStats());
+			}
+		}
+	}
+
+	static class TimerStats {
+
+		final LongAdder count = new LongAdder();
+
+		final LongAdder errors = new LongAdder();
+
+		final LongAdder totalNanos = new LongAdder();
+
+		final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+		void record(long nanos, boolean success) {
+			count.increment();
+			totalNanos.add(nanos);
+			maxNanos.accumulate(nanos);
+			if (!success) {
+				errors.increment();
+			}
+		}
+
+		Map<String, Object> snapshot() {
+			Map<String, Object> result = new LinkedHashMap<>();
+			long count = this.count.sum();
+			long total = totalNanos.sum();
+			result.put("count", count);
+			result.put("errors", errors.sum());
+			result.put("totalMillis", toMillis(total));
+			result.put("avgMillis", count == 0 ? 0 : toMillis(total / count));
+			result.put("maxMillis", toMillis(maxNanos.get()));
+			return result;
+		}
+
+		private static double toMillis(long nanos) {
+			return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+		}
+	}
+
+	static class CacheStats {
+
+		final LongAdder hits = new LongAdder();
+
+		final LongAdder misses = new LongAdder();
+	}
+}
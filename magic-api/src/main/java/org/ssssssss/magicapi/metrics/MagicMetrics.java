@@ -0,0 +1,126 @@
+package org.ssssssss.magicapi.metrics;
+
+import org.ssssssss.magicapi.model.ApiInfo;
+import org.ssssssss.magicapi.model.RequestEntity;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 指标统计入口，未启用时各方法直接返回
+ */
+public class MagicMetrics {
+
+	private static final DefaultMetricsRecorder DEFAULT_RECORDER = new DefaultMetricsRecorder();
+
+	private static final List<MetricsRecorder> RECORDERS = new CopyOnWriteArrayList<>();
+
+	private static volatile boolean enabled = true;
+
+	static {
+		RECORDERS.add(DEFAULT_RECORDER);
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean enabled) {
+		MagicMetrics.enabled = enabled;
+	}
+
+	/**
+	 * 添加指标记录
+	 */
+	public static void addRecorder(MetricsRecorder recorder) {
+		RECORDERS.add(recorder);
+	}
+
+	/**
+	 * 内置的内存统计
+	 */
+	public static DefaultMetricsRecorder getDefaultRecorder() {
+		return DEFAULT_RECORDER;
+	}
+
+	/**
+	 * 记录接口某阶段的耗时，测试请求不记录
+	 *
+	 * @param requestEntity 请求信息
+	 * @param phase         阶段
+	 * @param start         开始时间，{@link System#nanoTime()}
+	 */
+	public static void recordApi(RequestEntity requestEntity, ApiPhase phase, long start) {
+		ApiInfo info = getApiInfo(requestEntity);
+		if (info != null) {
+			long nanos = System.nanoTime() - start;
+			for (MetricsRecorder recorder : RECORDERS) {
+				recorder.recordApi(info, phase, nanos);
+			}
+		}
+	}
+
+	/**
+	 * 记录接口异常，测试请求不记录
+	 *
+	 * @param requestEntity 请求信息
+	 * @param assertion     是否是断言异常
+	 */
+	public static void recordException(RequestEntity requestEntity, boolean assertion) {
+		ApiInfo info = getApiInfo(requestEntity);
+		if (info != null) {
+			for (MetricsRecorder recorder : RECORDERS) {
+				recorder.recordException(info, assertion);
+			}
+		}
+	}
+
+	/**
+	 * 记录SQL执行耗时
+	 *
+	 * @param dataSource 数据源
+	 * @param start      开始时间，{@link System#nanoTime()}
+	 * @param success    是否执行成功
+	 */
+	public static void recordSql(String dataSource, long start, boolean success) {
+		if (enabled) {
+			long nanos = System.nanoTime() - start;
+			String key = dataSource == null || dataSource.isEmpty() ? "default" : dataSource;
+			for (MetricsRecorder recorder : RECORDERS) {
+				recorder.recordSql(key, nanos, success);
+			}
+		}
+	}
+
+	/**
+	 * 记录SQL缓存命中情况
+	 *
+	 * @param cacheName 缓存名
+	 * @param hit       是否命中
+	 */
+	public static void recordCache(String cacheName, boolean hit) {
+		if (enabled) {
+			for (MetricsRecorder recorder : RECORDERS) {
+				recorder.recordCache(cacheName, hit);
+			}
+		}
+	}
+
+	/**
+	 * 移除接口的指标（接口删除时）
+	 *
+	 * @param apiId 接口ID
+	 */
+	public static void remove(String apiId) {
+		for (MetricsRecorder recorder : RECORDERS) {
+			recorder.remove(apiId);
+		}
+	}
+
+	private static ApiInfo getApiInfo(RequestEntity requestEntity) {
+		if (!enabled || requestEntity == null || requestEntity.isRequestedFromTest()) {
+			return null;
+		}
+		return requestEntity.getApiInfo();
+	}
+}
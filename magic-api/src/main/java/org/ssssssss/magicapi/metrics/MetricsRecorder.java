@@ -0,0 +1,55 @@
+package org.ssssssss.magicapi.metrics;
+
+import org.ssssssss.magicapi.model.ApiInfo;
+
+/**
+ * 指标记录
+ */
+public interface MetricsRecorder {
+
+	/**
+	 * 记录接口某阶段的耗时
+	 *
+	 * @param info  接口信息
+	 * @param phase 阶段
+	 * @param nanos 耗时，单位为纳秒
+	 */
+	default void recordApi(ApiInfo info, ApiPhase phase, long nanos) {
+	}
+
+	/**
+	 * 记录接口异常
+	 *
+	 * @param info      接口信息
+	 * @param assertion 是否是断言异常(MagicScriptAssertException)
+	 */
+	default void recordException(ApiInfo info, boolean assertion) {
+	}
+
+	/**
+	 * 记录SQL执行耗时
+	 *
+	 * @param dataSource 数据源
+	 * @param nanos      耗时，单位为纳秒
+	 * @param success    是否执行成功
+	 */
+	default void recordSql(String dataSource, long nanos, boolean success) {
+	}
+
+	/**
+	 * 记录SQL缓存命中情况
+	 *
+	 * @param cacheName 缓存名
+	 * @param hit       是否命中
+	 */
+	default void recordCache(String cacheName, boolean hit) {
+	}
+
+	/**
+	 * 移除接口的指标（接口删除时）
+	 *
+	 * @param apiId 接口ID
+	 */
+	default void remove(String apiId) {
+	}
+}
@@ -0,0 +1,160 @@
+package org.ssssssss.magicapi.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.ssssssss.magicapi.model.ApiInfo;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通过Micrometer发布指标
+ * <p>
+ * 指标按接口、数据源、缓存名缓存，记录时无需再查找注册表；接口删除时移除其指标。
+ */
+public class MicrometerMetricsRecorder implements MetricsRecorder {
+
+	private static final String API_TIMER = "magic.api.request";
+
+	private static final String API_EXCEPTION = "magic.api.exceptions";
+
+	private static final String SQL_TIMER = "magic.sql";
+
+	private static final String SQL_CACHE = "magic.sql.cache";
+
+	private final MeterRegistry registry;
+
+	/**
+	 * 接口ID -> 接口的指标
+	 */
+	private final Map<String, ApiMeters> apiMeters = new ConcurrentHashMap<>();
+
+	/**
+	 * 数据源 -> [成功, 失败]
+	 */
+	private final Map<String, Timer[]> sqlTimers = new ConcurrentHashMap<>();
+
+	/**
+	 * 缓存名 -> [命中, 未命中]
+	 */
+	private final Map<String, Counter[]> cacheCounters = new ConcurrentHashMap<>();
+
+	public MicrometerMetricsRecorder(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public void recordApi(ApiInfo info, ApiPhase phase, long nanos) {
+		getApiMeters(info).timers[phase.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void recordException(ApiInfo info, boolean assertion) {
+		ApiMeters meters = getApiMeters(info);
+		(assertion ? meters.assertions : meters.errors).increment();
+	}
+
+	@Override
+	public void recordSql(String dataSource, long nanos, boolean success) {
+		Timer[] timers = sqlTimers.computeIfAbsent(dataSource, key -> new Timer[]{sqlTimer(key, "success"), sqlTimer(key, "error")});
+		timers[success ? 0 : 1].record(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void recordCache(String cacheName, boolean hit) {
+		Counter[] counters = cacheCounters.computeIfAbsent(cacheName, key -> new Counter[]{cacheCounter(key, "hit"), cacheCounter(key, "miss")});
+		counters[hit ? 0 : 1].increment();
+	}
+
+	@Override
+	public void remove(String apiId) {
+		ApiMeters meters = apiMeters.remove(apiId);
+		if (meters != null) {
+			meters.remove(registry);
+		}
+	}
+
+	private ApiMeters getApiMeters(ApiInfo info) {
+		String method = Objects.toString(info.getMethod(), "");
+		ApiMeters meters = apiMeters.get(info.getId());
+		if (meters == null || !meters.method.equals(method)) {
+			// 请求方法修改后重新注册
+			meters = apiMeters.compute(info.getId(), (id, value) -> {
+				if (value != null && value.method.equals(method)) {
+					return value;
+				}
+				if (value != null) {
+					value.remove(registry);
+				}
+				return new ApiMeters(registry, id, method);
+			});
+		}
+		return meters;
+	}
+
+	private Timer sqlTimer(String dataSource, String outcome) {
+		return Timer.builder(SQL_TIMER)
+				.description("magic-api SQL执行耗时")
+				.tag("datasource", dataSource)
+				.tag("outcome", outcome)
+				.register(registry);
+	}
+
+	private Counter cacheCounter(String cacheName, String result) {
+		return Counter.builder(SQL_CACHE)
+				.description("magic-api SQL缓存命中情况")
+				.tag("name", cacheName)
+				.tag("result", result)
+				.register(registry);
+	}
+
+	/**
+	 * 单个接口的指标，各阶段耗时按{@link ApiPhase#ordinal()}存放
+	 */
+	static class ApiMeters {
+
+		final String method;
+
+		final Timer[] timers;
+
+		final Counter assertions;
+
+		final Counter errors;
+
+		ApiMeters(MeterRegistry registry, String id, String method) {
+			this.method = method;
+			ApiPhase[] phases = ApiPhase.values();
+			this.timers = new Timer[phases.length];
+			for (ApiPhase phase : phases) {
+				this.timers[phase.ordinal()] = Timer.builder(API_TIMER)
+						.description("magic-api接口请求耗时")
+						.tag("id", id)
+						.tag("method", method)
+						.tag("phase", phase.getValue())
+						.register(registry);
+			}
+			this.assertions = exceptionCounter(registry, id, "assert");
+			this.errors = exceptionCounter(registry, id, "error");
+		}
+
+		private static Counter exceptionCounter(MeterRegistry registry, String id, String type) {
+			return Counter.builder(API_EXCEPTION)
+					.description("magic-api接口异常次数")
+					.tag("id", id)
+					.tag("type", type)
+					.register(registry);
+		}
+
+		void remove(MeterRegistry registry) {
+			for (Meter timer : timers) {
+				registry.remove(timer);
+			}
+			registry.remove(assertions);
+			registry.remove(errors);
+		}
+	}
+}
@@ -275,7 +275,7 @@ public class ApiInfo extends MagicEntity {
 		return Objects.equals(id, apiInfo.id) &&
 				Objects.equals(method, apiInfo.method) &&
 				Objects.equals(path, apiInfo.path) &&
-				Objects.equals(script, apiInfo.script) &&
+				scriptEquals(apiInfo) &&
 				Objects.equals(name, apiInfo.name) &&
 				Objects.equals(paths, apiInfo.paths) &&
 				Objects.equals(groupId, apiInfo.groupId) &&
@@ -291,7 +291,7 @@ public class ApiInfo extends MagicEntity {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(id, method, path, script, name, groupId, parameters, option, requestBody, headers, responseBody, description, requestBodyDefinition, responseBodyDefinition);
+		return Objects.hash(id, method, path, updateTime, name, groupId, parameters, option, requestBody, headers, responseBody, description, requestBodyDefinition, responseBodyDefinition);
 	}
 
 	public ApiInfo copy() {
@@ -300,9 +300,12 @@ public class ApiInfo extends MagicEntity {
 		info.setMethod(this.method);
 		info.setName(this.name);
 		info.setPath(this.path);
-		info.setScript(this.script);
+		copyScriptTo(info);
 		info.setGroupId(this.groupId);
+		info.setCreateTime(this.createTime);
+		info.setUpdateTime(this.updateTime);
 		info.setParameters(this.parameters);
+		info.option = this.option;
 		info.jsonNode = this.jsonNode;
 		info.setRequestBody(this.requestBody);
 		info.setHeaders(this.headers);
@@ -313,4 +316,20 @@ public class ApiInfo extends MagicEntity {
 		info.setResponseBodyDefinition(this.responseBodyDefinition);
 		return info;
 	}
+
+	/**
+	 * 创建只读的快照，注册到路由中供请求使用，集合均不可修改，之后对原对象的修改不会影响快照
+	 */
+	public ApiInfo snapshot() {
+		ApiInfo info = copy();
+		info.parameters = unmodifiable(this.parameters);
+		info.headers = unmodifiable(this.headers);
+		info.paths = unmodifiable(this.paths);
+		info.properties = this.properties == null ? Collections.emptyMap() : Collections.unmodifiableMap(new HashMap<>(this.properties));
+		return info;
+	}
+
+	private static <E> List<E> unmodifiable(List<E> list) {
+		return list == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(list));
+	}
 }
@@ -116,6 +116,8 @@ public class Constants {
 
 	public static final String ATTRIBUTE_MAGIC_USER = "MAGIC_API_ATTRIBUTE_USER";
 
+	public static final String ATTRIBUTE_MAGIC_API_INFO = "MAGIC_API_ATTRIBUTE_API_INFO";
+
 	public static final String MAGIC_TOKEN_HEADER = "Magic-Token";
 
 	public static final String GROUP_METABASE = "group.json";
@@ -144,6 +146,11 @@ public class Constants {
 	 */
 	public static int RESPONSE_CODE_INVALID = 0;
 
+	/**
+	 * 超出并发数限制的code值
+	 */
+	public static int RESPONSE_CODE_BUSY = -2;
+
 	/**
 	 * 通知新增
 	 */
@@ -184,4 +191,9 @@ public class Constants {
 	 */
 	public static final int NOTIFY_ACTION_DATASOURCE = 4;
 
+	/**
+	 * 通知清除SQL缓存
+	 */
+	public static final int NOTIFY_ACTION_SQL_CACHE = 5;
+
 }
@@ -0,0 +1,30 @@
+package org.ssssssss.magicapi.model;
+
+import java.util.List;
+
+/**
+ * 游标分页执行结果
+ */
+public class CursorPageResult<T> extends PageResult<T> {
+
+	/**
+	 * 下一页的游标，没有下一页时为null
+	 */
+	private Object nextCursor;
+
+	public CursorPageResult(long total, List<T> list, Object nextCursor) {
+		super(total, list);
+		this.nextCursor = nextCursor;
+	}
+
+	public CursorPageResult() {
+	}
+
+	public Object getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(Object nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+}
@@ -1,15 +1,49 @@
 package org.ssssssss.magicapi.model;
 
-import java.util.Collection;
-import java.util.Map;
-import java.util.Set;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * 数据源配置信息
+ * <p>
+ * 从库列表（replicas）为嵌套的配置，不放在Map中，通过{@link #getReplicas()}获取，JSON中与其它配置同级。
+ */
+@JsonSerialize(using = DataSourceInfo.Serializer.class)
+@JsonDeserialize(using = DataSourceInfo.Deserializer.class)
 public class DataSourceInfo extends Attributes<String> implements Map<String, String> {
 
+	/**
+	 * 从库列表在JSON中的字段名
+	 */
+	public static final String REPLICAS = "replicas";
+
+	/**
+	 * 从库的配置，未配置的项沿用主库的配置
+	 */
+	private List<Map<String, String>> replicas = new ArrayList<>();
+
 	public String getId() {
 		return get("id");
 	}
 
+	public List<Map<String, String>> getReplicas() {
+		return replicas;
+	}
+
+	public void setReplicas(List<Map<String, String>> replicas) {
+		this.replicas = replicas == null ? new ArrayList<>() : replicas;
+	}
+
 	@Override
 	public int size() {
 		return properties.size();
@@ -69,4 +103,60 @@ public class DataSourceInfo extends Attributes<String> implements Map<String, St
 	public Set<Entry<String, String>> entrySet() {
 		return properties.entrySet();
 	}
+
+	private static String asText(JsonNode node) {
+		if (node == null || node.isNull()) {
+			return null;
+		}
+		return node.isValueNode() ? node.asText() : node.toString();
+	}
+
+	static class Serializer extends JsonSerializer<DataSourceInfo> {
+
+		@Override
+		public void serialize(DataSourceInfo value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+			gen.writeStartObject();
+			for (Entry<String, String> entry : value.entrySet()) {
+				gen.writeStringField(entry.getKey(), entry.getValue());
+			}
+			if (!value.replicas.isEmpty()) {
+				gen.writeArrayFieldStart(REPLICAS);
+				for (Map<String, String> replica : value.replicas) {
+					gen.writeStartObject();
+					for (Entry<String, String> entry : replica.entrySet()) {
+						gen.writeStringField(entry.getKey(), entry.getValue());
+					}
+					gen.writeEndObject();
+				}
+				gen.writeEndArray();
+			}
+			gen.writeEndObject();
+		}
+	}
+
+	static class Deserializer extends JsonDeserializer<DataSourceInfo> {
+
+		@Override
+		public DataSourceInfo deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+			JsonNode node = p.getCodec().readTree(p);
+			DataSourceInfo info = new DataSourceInfo();
+			Iterator<Entry<String, JsonNode>> fields = node.fields();
+			while (fields.hasNext()) {
+				Entry<String, JsonNode> field = fields.next();
+				JsonNode value = field.getValue();
+				if (REPLICAS.equals(field.getKey()) && value.isArray()) {
+					for (JsonNode item : value) {
+						if (item.isObject()) {
+							Map<String, String> replica = new LinkedHashMap<>();
+							item.fields().forEachRemaining(it -> replica.put(it.getKey(), asText(it.getValue())));
+							info.replicas.add(replica);
+						}
+					}
+				} else {
+					info.put(field.getKey(), asText(value));
+				}
+			}
+			return info;
+		}
+	}
 }
@@ -74,7 +74,7 @@ public class FunctionInfo extends MagicEntity {
 		FunctionInfo functionInfo = (FunctionInfo) o;
 		return Objects.equals(id, functionInfo.id) &&
 				Objects.equals(path, functionInfo.path) &&
-				Objects.equals(script, functionInfo.script) &&
+				scriptEquals(functionInfo) &&
 				Objects.equals(name, functionInfo.name) &&
 				Objects.equals(groupId, functionInfo.groupId) &&
 				Objects.equals(description, functionInfo.description) &&
@@ -85,6 +85,6 @@ public class FunctionInfo extends MagicEntity {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(id, path, script, name, groupId, parameters, description, returnType);
+		return Objects.hash(id, path, updateTime, name, groupId, parameters, description, returnType);
 	}
 }
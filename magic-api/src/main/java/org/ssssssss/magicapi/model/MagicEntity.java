@@ -1,10 +1,15 @@
 package org.ssssssss.magicapi.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
 public class MagicEntity extends Attributes<Object> implements Cloneable {
 
 	protected String id;
 
-	protected String script;
+	protected volatile String script;
 
 	protected String groupId;
 
@@ -14,6 +19,12 @@ public class MagicEntity extends Attributes<Object> implements Cloneable {
 
 	protected Long updateTime;
 
+	/**
+	 * 延迟加载脚本时，首次获取脚本内容时通过此方法读取
+	 */
+	@JsonIgnore
+	protected volatile Supplier<String> scriptLoader;
+
 	public String getId() {
 		return id;
 	}
@@ -23,11 +34,62 @@ public class MagicEntity extends Attributes<Object> implements Cloneable {
 	}
 
 	public String getScript() {
+		if (scriptLoader != null) {
+			synchronized (this) {
+				// 先写入脚本再清除加载方法，其它线程看到加载方法为null时一定能看到脚本
+				Supplier<String> loader = scriptLoader;
+				if (loader != null) {
+					script = loader.get();
+					scriptLoader = null;
+				}
+			}
+		}
 		return script;
 	}
 
-	public void setScript(String script) {
+	public synchronized void setScript(String script) {
 		this.script = script;
+		this.scriptLoader = null;
+	}
+
+	/**
+	 * 设置脚本的延迟加载方法，仅加载元数据时使用
+	 */
+	@JsonIgnore
+	public synchronized void setScriptLoader(Supplier<String> scriptLoader) {
+		this.script = null;
+		this.scriptLoader = scriptLoader;
+	}
+
+	/**
+	 * 脚本内容是否已加载
+	 */
+	@JsonIgnore
+	public boolean isScriptLoaded() {
+		return scriptLoader == null;
+	}
+
+	/**
+	 * 复制脚本或其加载方法，不触发加载
+	 */
+	protected void copyScriptTo(MagicEntity target) {
+		// 先读取加载方法，为null时说明脚本已写入
+		Supplier<String> loader = this.scriptLoader;
+		if (loader != null) {
+			target.setScriptLoader(loader);
+		} else {
+			target.setScript(this.script);
+		}
+	}
+
+	/**
+	 * 比较脚本内容，任一方未加载时只比较修改时间，避免为比较而加载脚本
+	 */
+	protected boolean scriptEquals(MagicEntity other) {
+		if (!Objects.equals(updateTime, other.updateTime)) {
+			return false;
+		}
+		return !isScriptLoaded() || !other.isScriptLoaded() || Objects.equals(script, other.script);
 	}
 
 	public Long getCreateTime() {
@@ -22,6 +22,21 @@ public class MagicNotify {
 	 */
 	private int type = -1;
 
+	/**
+	 * 对应的分组id，用于定位需要重新加载的资源
+	 */
+	private String groupId;
+
+	/**
+	 * 对应的名称，用于定位需要重新加载的资源
+	 */
+	private String name;
+
+	/**
+	 * 修改时间，作为版本号
+	 */
+	private Long updateTime;
+
 	public MagicNotify() {
 	}
 
@@ -36,6 +51,13 @@ public class MagicNotify {
 		this.type = type;
 	}
 
+	public MagicNotify(String from, MagicEntity entity, int action, int type) {
+		this(from, entity.getId(), action, type);
+		this.groupId = entity.getGroupId();
+		this.name = entity.getName();
+		this.updateTime = entity.getUpdateTime();
+	}
+
 	public String getFrom() {
 		return from;
 	}
@@ -68,6 +90,30 @@ public class MagicNotify {
 		this.type = type;
 	}
 
+	public String getGroupId() {
+		return groupId;
+	}
+
+	public void setGroupId(String groupId) {
+		this.groupId = groupId;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public Long getUpdateTime() {
+		return updateTime;
+	}
+
+	public void setUpdateTime(Long updateTime) {
+		this.updateTime = updateTime;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
@@ -6,7 +6,10 @@ public enum Options {
 	PERMISSION("允许拥有该权限的访问", "permission"),
 	ROLE("允许拥有该角色的访问", "role"),
 	REQUIRE_LOGIN("该接口需要登录才允许访问", "require_login", "true"),
-	ANONYMOUS("该接口需要不登录也可访问", "anonymous", "true");
+	ANONYMOUS("该接口需要不登录也可访问", "anonymous", "true"),
+	ASYNC("异步执行该接口，不占用容器线程", "async", "true"),
+	MAX_CONCURRENT("该接口的最大并发数", "max_concurrent"),
+	QUEUE_TIMEOUT("超出最大并发数时等待的毫秒数", "queue_timeout");
 
 	private final String name;
 	private final String value;
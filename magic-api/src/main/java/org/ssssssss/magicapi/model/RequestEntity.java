@@ -46,8 +46,7 @@ public class RequestEntity {
 		this.requestedFromTest = requestedFromTest;
 		this.parameters = parameters;
 		this.pathVariables = pathVariables;
-		ApiInfo info = MappingHandlerMapping.getMappingApiInfo(request);
-		this.apiInfo = info != null ? info.copy() : null;
+		this.apiInfo = MappingHandlerMapping.getMappingApiInfo(request);
 	}
 
 	public RequestEntity(ApiInfo apiInfo, HttpServletRequest request, HttpServletResponse response, boolean requestedFromTest, Map<String, Object> parameters, Map<String, Object> pathVariables) {
@@ -60,8 +59,7 @@ public class RequestEntity {
 	}
 
 	public RequestEntity(HttpServletRequest request, HttpServletResponse response, boolean requestedFromTest, Map<String, Object> parameters, Map<String, Object> pathVariables, MagicScriptContext magicScriptContext, Map<String, Object> headers) {
-		ApiInfo info = MappingHandlerMapping.getMappingApiInfo(request);
-		this.apiInfo = info != null ? info.copy() : null;
+		this.apiInfo = MappingHandlerMapping.getMappingApiInfo(request);
 		this.request = request;
 		this.response = response;
 		this.requestedFromTest = requestedFromTest;
@@ -0,0 +1,32 @@
+package org.ssssssss.magicapi.modules;
+
+import java.util.List;
+
+/**
+ * 批量插入结果
+ */
+public class BatchResult {
+
+	/**
+	 * 每批受影响行数
+	 */
+	private final int[] counts;
+
+	/**
+	 * 生成的主键，与插入数据的顺序一致，无法对应的为null，驱动不支持时为空
+	 */
+	private final List<Object> keys;
+
+	public BatchResult(int[] counts, List<Object> keys) {
+		this.counts = counts;
+		this.keys = keys;
+	}
+
+	public int[] getCounts() {
+		return counts;
+	}
+
+	public List<Object> getKeys() {
+		return keys;
+	}
+}
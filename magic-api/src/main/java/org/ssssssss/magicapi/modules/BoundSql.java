@@ -1,32 +1,45 @@
 package org.ssssssss.magicapi.modules;
 
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.ssssssss.magicapi.cache.SingleFlight;
 import org.ssssssss.magicapi.cache.SqlCache;
+import org.ssssssss.magicapi.cache.StaleableValue;
 import org.ssssssss.magicapi.context.RequestContext;
 import org.ssssssss.magicapi.interceptor.SQLInterceptor;
+import org.ssssssss.magicapi.metrics.MagicMetrics;
 import org.ssssssss.script.MagicScriptContext;
-import org.ssssssss.script.functions.StreamExtension;
-import org.ssssssss.script.parsing.GenericTokenParser;
-import org.ssssssss.script.parsing.ast.literal.BooleanLiteral;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 public class BoundSql {
 
-	private static final GenericTokenParser concatTokenParser = new GenericTokenParser("${", "}", false);
+	/**
+	 * 合并相同SQL的并发查询
+	 */
+	private static final SingleFlight SINGLE_FLIGHT = new SingleFlight();
 
-	private static final GenericTokenParser replaceTokenParser = new GenericTokenParser("#{", "}", true);
+	/**
+	 * 缓存过期后在后台刷新的线程池，队列已满时放弃刷新，继续使用过期的数据
+	 */
+	private static final ThreadPoolExecutor REFRESH_EXECUTOR = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(256), new ThreadFactory() {
 
-	private static final GenericTokenParser ifTokenParser = new GenericTokenParser("?{", "}", true);
+		private final AtomicInteger counter = new AtomicInteger();
 
-	private static final GenericTokenParser ifParamTokenParser = new GenericTokenParser("?{", ",", true);
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "magic-sql-cache-refresh-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
 
-	private static final Pattern REPLACE_MULTI_WHITE_LINE = Pattern.compile("(\r?\n(\\s*\r?\n)+)");
+	static {
+		REFRESH_EXECUTOR.allowCoreThreadTimeOut(true);
+	}
 
 	private String sql;
 
@@ -38,45 +51,19 @@ public class BoundSql {
 
 	private long ttl;
 
+	private long staleTtl;
+
 	public BoundSql(String sql, List<Object> parameters, SQLModule sqlModule) {
 		this.sql = sql;
 		this.parameters = parameters;
 		this.sqlCache = sqlModule.getSqlCache();
 		this.cacheName = sqlModule.getCacheName();
 		this.ttl = sqlModule.getTtl();
+		this.staleTtl = sqlModule.getStaleTtl();
 	}
 
 	BoundSql(String sql) {
-		MagicScriptContext context = MagicScriptContext.get();
-		// 处理?{}参数
-		this.sql = ifTokenParser.parse(sql.trim(), text -> {
-			AtomicBoolean ifTrue = new AtomicBoolean(false);
-			String val = ifParamTokenParser.parse("?{" + text, param -> {
-				ifTrue.set(BooleanLiteral.isTrue(context.eval(param)));
-				return null;
-			});
-			return ifTrue.get() ? val : "";
-		});
-		// 处理${}参数
-		this.sql = concatTokenParser.parse(this.sql, text -> String.valueOf(context.eval(text)));
-		// 处理#{}参数
-		this.sql = replaceTokenParser.parse(this.sql, text -> {
-			Object value = context.eval(text);
-			if (value == null) {
-				parameters.add(null);
-				return "?";
-			}
-			try {
-				//对集合自动展开
-				List<Object> objects = StreamExtension.arrayLikeToList(value);
-				parameters.addAll(objects);
-				return IntStream.range(0, objects.size()).mapToObj(t -> "?").collect(Collectors.joining(","));
-			} catch (Exception e) {
-				parameters.add(value);
-				return "?";
-			}
-		});
-		this.sql = this.sql == null ? null : REPLACE_MULTI_WHITE_LINE.matcher(this.sql.trim()).replaceAll("\r\n");
+		this.sql = SqlTemplate.of(sql).render(MagicScriptContext.get(), parameters);
 	}
 
 	BoundSql(String sql, SQLModule sqlModule) {
@@ -84,6 +71,7 @@ public class BoundSql {
 		this.sqlCache = sqlModule.getSqlCache();
 		this.cacheName = sqlModule.getCacheName();
 		this.ttl = sqlModule.getTtl();
+		this.staleTtl = sqlModule.getStaleTtl();
 	}
 
 	private BoundSql() {
@@ -95,6 +83,7 @@ public class BoundSql {
 		boundSql.setParameters(new ArrayList<>(this.parameters));
 		boundSql.setSql(this.sql);
 		boundSql.ttl = this.ttl;
+		boundSql.staleTtl = this.staleTtl;
 		boundSql.cacheName = this.cacheName;
 		boundSql.sqlCache = this.sqlCache;
 		boundSql.sql = newSql;
@@ -145,12 +134,48 @@ public class BoundSql {
 			return supplier.get();
 		}
 		String cacheKey = sqlCache.buildSqlCacheKey(sql, params);
+		String flightKey = cacheName + ":" + cacheKey;
 		Object cacheValue = sqlCache.get(cacheName, cacheKey);
+		MagicMetrics.recordCache(cacheName, cacheValue != null);
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			// 事务中直接查询，不与其它事务共享结果，也不把未提交的数据放入缓存
+			if (cacheValue instanceof StaleableValue) {
+				StaleableValue staleableValue = (StaleableValue) cacheValue;
+				return staleableValue.isStale() ? supplier.get() : (T) staleableValue.getValue();
+			}
+			return cacheValue != null ? (T) cacheValue : supplier.get();
+		}
+		if (cacheValue instanceof StaleableValue) {
+			StaleableValue staleableValue = (StaleableValue) cacheValue;
+			if (staleableValue.isStale()) {
+				// 返回过期的数据，同时在后台刷新
+				SINGLE_FLIGHT.executeAsync(flightKey, () -> loadCacheValue(cacheKey, supplier), REFRESH_EXECUTOR);
+			}
+			return (T) staleableValue.getValue();
+		}
 		if (cacheValue != null) {
 			return (T) cacheValue;
 		}
+		// 并发未命中时只查询一次
+		return SINGLE_FLIGHT.execute(flightKey, () -> {
+			Object value = sqlCache.get(cacheName, cacheKey);
+			if (value instanceof StaleableValue) {
+				return (T) ((StaleableValue) value).getValue();
+			}
+			return value != null ? (T) value : loadCacheValue(cacheKey, supplier);
+		});
+	}
+
+	/**
+	 * 查询并放入缓存，启用过期刷新时缓存时间延长staleTtl
+	 */
+	private <T> T loadCacheValue(String cacheKey, Supplier<T> supplier) {
 		T value = supplier.get();
-		sqlCache.put(cacheName, cacheKey, value, ttl);
+		if (ttl > 0 && staleTtl > 0) {
+			sqlCache.put(cacheName, cacheKey, new StaleableValue(value, System.currentTimeMillis() + ttl), ttl + staleTtl);
+		} else {
+			sqlCache.put(cacheName, cacheKey, value, ttl);
+		}
 		return value;
 	}
 
@@ -161,4 +186,4 @@ public class BoundSql {
 		interceptors.forEach(interceptor -> interceptor.preHandle(this, RequestContext.getRequestEntity()));
 		return getCacheValue(this.getSql(), this.getParameters(), supplier);
 	}
-}
\ No newline at end of file
+}
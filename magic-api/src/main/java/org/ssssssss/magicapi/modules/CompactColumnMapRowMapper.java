@@ -0,0 +1,103 @@
+package org.ssssssss.magicapi.modules;
+
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.lang.ref.WeakReference;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 将行转为{@link CompactRowMap}，列信息按结果集只生成一次，转换后的列名全局缓存
+ */
+public class CompactColumnMapRowMapper extends ColumnMapRowMapper {
+
+	/**
+	 * 列名缓存的上限，超过后清空
+	 */
+	private static final int MAX_CACHED_COLUMNS = 4096;
+
+	/**
+	 * 当前线程正在读取的结果集及其列信息，弱引用避免持有已关闭的结果集
+	 */
+	private final ThreadLocal<CachedSchema> currentSchema = new ThreadLocal<>();
+
+	/**
+	 * 原始列名 -> 转换后的列名
+	 */
+	private final Map<String, String> columnKeys = new ConcurrentHashMap<>();
+
+	private final Function<String, String> mapping;
+
+	public CompactColumnMapRowMapper(Function<String, String> mapping) {
+		this.mapping = mapping;
+	}
+
+	@Override
+	public Map<String, Object> mapRow(ResultSet rs, int rowNum) throws SQLException {
+		CachedSchema cached = currentSchema.get();
+		if (rowNum == 0 || cached == null || cached.resultSet.get() != rs) {
+			cached = createSchema(rs);
+			currentSchema.set(cached);
+		}
+		int[] slots = cached.slots;
+		CompactRowMap row = new CompactRowMap(cached.schema);
+		for (int i = 0; i < slots.length; i++) {
+			// 列名重复时与LinkedHashMap一致，保留首次出现的位置，后面的值覆盖前面的值
+			row.set(slots[i], getColumnValue(rs, i + 1));
+		}
+		return row;
+	}
+
+	@Override
+	protected String getColumnKey(String columnName) {
+		String key = columnKeys.get(columnName);
+		if (key == null) {
+			key = mapping.apply(columnName);
+			if (key != null) {
+				if (columnKeys.size() >= MAX_CACHED_COLUMNS) {
+					columnKeys.clear();
+				}
+				columnKeys.put(columnName, key);
+			}
+		}
+		return key;
+	}
+
+	private CachedSchema createSchema(ResultSet rs) throws SQLException {
+		ResultSetMetaData metaData = rs.getMetaData();
+		int columnCount = metaData.getColumnCount();
+		Map<String, Integer> indexes = new LinkedHashMap<>(columnCount * 2);
+		int[] slots = new int[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			String key = getColumnKey(JdbcUtils.lookupColumnName(metaData, i + 1));
+			Integer index = indexes.get(key);
+			if (index == null) {
+				index = indexes.size();
+				indexes.put(key, index);
+			}
+			slots[i] = index;
+		}
+		return new CachedSchema(rs, new CompactRowMap.Schema(indexes.keySet().toArray(new String[0])), slots);
+	}
+
+	private static class CachedSchema {
+
+		private final WeakReference<ResultSet> resultSet;
+
+		private final CompactRowMap.Schema schema;
+
+		private final int[] slots;
+
+		CachedSchema(ResultSet resultSet, CompactRowMap.Schema schema, int[] slots) {
+			this.resultSet = new WeakReference<>(resultSet);
+			this.schema = schema;
+			this.slots = slots;
+		}
+	}
+}
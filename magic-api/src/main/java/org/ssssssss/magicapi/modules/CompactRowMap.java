@@ -0,0 +1,254 @@
+package org.ssssssss.magicapi.modules;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * 查询结果的行，同一结果集的所有行共用列信息（{@link Schema}），值保存在数组中
+ * <p>
+ * 新增或删除列时转为LinkedHashMap存储，不影响其它行。
+ */
+@JsonSerialize(using = CompactRowMap.Serializer.class)
+public class CompactRowMap extends AbstractMap<String, Object> implements Serializable {
+
+	private final Schema schema;
+
+	private final Object[] values;
+
+	/**
+	 * 结构被修改后的存储，为null时使用数组
+	 */
+	private LinkedHashMap<String, Object> inflated;
+
+	public CompactRowMap(Schema schema) {
+		this.schema = schema;
+		this.values = new Object[schema.keys.length];
+	}
+
+	public Schema getSchema() {
+		return schema;
+	}
+
+	/**
+	 * 按列下标设置值，仅在构建行时使用
+	 */
+	void set(int index, Object value) {
+		values[index] = value;
+	}
+
+	@Override
+	public int size() {
+		return inflated == null ? values.length : inflated.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return inflated == null ? schema.indexOf(key) > -1 : inflated.containsKey(key);
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (inflated != null) {
+			return inflated.get(key);
+		}
+		int index = schema.indexOf(key);
+		return index > -1 ? values[index] : null;
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		if (inflated == null) {
+			int index = schema.indexOf(key);
+			if (index > -1) {
+				Object old = values[index];
+				values[index] = value;
+				return old;
+			}
+		}
+		return inflate().put(key, value);
+	}
+
+	@Override
+	public Object remove(Object key) {
+		if (inflated == null && schema.indexOf(key) < 0) {
+			return null;
+		}
+		return inflate().remove(key);
+	}
+
+	@Override
+	public void clear() {
+		inflate().clear();
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return inflated == null ? new EntrySet() : inflated.entrySet();
+	}
+
+	private LinkedHashMap<String, Object> inflate() {
+		if (inflated == null) {
+			inflated = new LinkedHashMap<>(values.length + 4);
+			for (int i = 0; i < values.length; i++) {
+				inflated.put(schema.keys[i], values[i]);
+				values[i] = null;
+			}
+		}
+		return inflated;
+	}
+
+	/**
+	 * 序列化为LinkedHashMap
+	 */
+	private Object writeReplace() {
+		return new LinkedHashMap<>(this);
+	}
+
+	private class EntrySet extends AbstractSet<Entry<String, Object>> {
+
+		@Override
+		public Iterator<Entry<String, Object>> iterator() {
+			return new Iterator<Entry<String, Object>>() {
+
+				private int index;
+
+				@Override
+				public boolean hasNext() {
+					return index < schema.keys.length;
+				}
+
+				@Override
+				public Entry<String, Object> next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					String key = schema.keys[index++];
+					return new SimpleEntry<String, Object>(key, get(key)) {
+						@Override
+						public Object setValue(Object value) {
+							super.setValue(value);
+							return put(key, value);
+						}
+					};
+				}
+
+				@Override
+				public void remove() {
+					if (index == 0) {
+						throw new IllegalStateException();
+					}
+					CompactRowMap.this.remove(schema.keys[index - 1]);
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return values.length;
+		}
+	}
+
+	/**
+	 * 结果集的列信息，由结果集元数据生成一次，所有行共用
+	 */
+	public static class Schema {
+
+		private final String[] keys;
+
+		private final Map<String, Integer> indexes;
+
+		/**
+		 * @param keys 列名（已转换），不能重复
+		 */
+		public Schema(String[] keys) {
+			this.keys = keys;
+			this.indexes = new HashMap<>(keys.length * 2);
+			for (int i = 0; i < keys.length; i++) {
+				this.indexes.put(keys[i], i);
+			}
+		}
+
+		public int size() {
+			return keys.length;
+		}
+
+		public String getKey(int index) {
+			return keys[index];
+		}
+
+		public int indexOf(Object key) {
+			Integer index = indexes.get(key);
+			return index == null ? -1 : index;
+		}
+	}
+
+	/**
+	 * 按列顺序直接输出，不经过Map的遍历
+	 */
+	public static class Serializer extends StdSerializer<CompactRowMap> {
+
+		public Serializer() {
+			super(CompactRowMap.class);
+		}
+
+		@Override
+		public boolean isEmpty(SerializerProvider provider, CompactRowMap value) {
+			return value.isEmpty();
+		}
+
+		@Override
+		public void serialize(CompactRowMap value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+			gen.writeStartObject(value);
+			boolean writeNull = writeNullValues(provider);
+			if (value.inflated == null) {
+				String[] keys = value.schema.keys;
+				Object[] values = value.values;
+				for (int i = 0; i < keys.length; i++) {
+					writeField(keys[i], values[i], writeNull, gen, provider);
+				}
+			} else {
+				for (Entry<String, Object> entry : value.inflated.entrySet()) {
+					writeField(entry.getKey(), entry.getValue(), writeNull, gen, provider);
+				}
+			}
+			gen.writeEndObject();
+		}
+
+		private void writeField(String key, Object value, boolean writeNull, JsonGenerator gen, SerializerProvider provider) throws IOException {
+			if (value == null) {
+				if (writeNull) {
+					gen.writeFieldName(key);
+					provider.defaultSerializeNull(gen);
+				}
+			} else {
+				gen.writeFieldName(key);
+				provider.findValueSerializer(value.getClass()).serialize(value, gen, provider);
+			}
+		}
+
+		/**
+		 * 与Map的序列化保持一致，配置了不输出null值时跳过
+		 */
+		@SuppressWarnings("deprecation")
+		private boolean writeNullValues(SerializerProvider provider) {
+			if (!provider.isEnabled(SerializationFeature.WRITE_NULL_MAP_VALUES)) {
+				return false;
+			}
+			JsonInclude.Include include = provider.getConfig().getDefaultPropertyInclusion(Map.class).getContentInclusion();
+			return include == JsonInclude.Include.ALWAYS || include == JsonInclude.Include.USE_DEFAULTS;
+		}
+	}
+}
@@ -1,17 +1,27 @@
 package org.ssssssss.magicapi.modules;
 
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 import org.ssssssss.magicapi.config.MagicModule;
 import org.ssssssss.script.annotation.Comment;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 /**
  * http 模块
@@ -20,17 +30,41 @@ import java.util.stream.Collectors;
  */
 public class HttpModule implements MagicModule {
 
+	/**
+	 * 按超时时间缓存的RestTemplate最大数量，超出后不再缓存
+	 */
+	private static final int MAX_CACHED_TEMPLATES = 64;
+
 	private final RestTemplate template;
 	private final HttpHeaders httpHeaders = new HttpHeaders();
-	private final Class<?> responseType = Object.class;
 	private final MultiValueMap<String, Object> params = new LinkedMultiValueMap<>();
 	private final MultiValueMap<String, Object> data = new LinkedMultiValueMap<>();
-	private final Map<String, ?> variables = new HashMap<>();
 	private String url;
 	private HttpMethod method = HttpMethod.GET;
 	private HttpEntity<Object> entity = null;
 	private Object requestBody;
 
+	/**
+	 * 单独设置超时时间时创建请求工厂，为null时不支持单独设置
+	 */
+	private RequestFactoryCreator requestFactoryCreator;
+
+	/**
+	 * 异步请求使用的线程池
+	 */
+	private Executor executor;
+
+	/**
+	 * 单独设置超时时间时使用的RestTemplate，key为连接超时时间及读取超时时间，connect创建的模块共用
+	 */
+	private Map<Long, RestTemplate> templates = new ConcurrentHashMap<>();
+
+	/**
+	 * 单独设置的超时时间，单位为毫秒，小于0时使用默认配置
+	 */
+	private int connectTimeout = -1;
+	private int readTimeout = -1;
+
 	public HttpModule(RestTemplate template) {
 		this.template = template;
 	}
@@ -40,6 +74,17 @@ public class HttpModule implements MagicModule {
 		this.url = url;
 	}
 
+	/**
+	 * @param requestFactoryCreator 单独设置超时时间时创建请求工厂，为null时不支持单独设置（如使用自定义的RestTemplate）
+	 * @param executor              异步请求使用的线程池
+	 * @since 1.3.4
+	 */
+	public HttpModule(RestTemplate template, RequestFactoryCreator requestFactoryCreator, Executor executor) {
+		this.template = template;
+		this.requestFactoryCreator = requestFactoryCreator;
+		this.executor = executor;
+	}
+
 	@Override
 	public String getModuleName() {
 		return "http";
@@ -47,7 +92,11 @@ public class HttpModule implements MagicModule {
 
 	@Comment("创建连接")
 	public HttpModule connect(@Comment("目标URL") String url) {
-		return new HttpModule(template, url);
+		HttpModule module = new HttpModule(template, url);
+		module.requestFactoryCreator = this.requestFactoryCreator;
+		module.executor = this.executor;
+		module.templates = this.templates;
+		return module;
 	}
 
 	@Comment("设置URL参数")
@@ -127,6 +176,19 @@ public class HttpModule implements MagicModule {
 		return this;
 	}
 
+	@Comment("设置读取超时时间，使用自定义的RestTemplate时不生效")
+	public HttpModule timeout(@Comment("读取超时时间，单位为毫秒") int readTimeout) {
+		this.readTimeout = readTimeout;
+		return this;
+	}
+
+	@Comment("设置连接及读取超时时间，使用自定义的RestTemplate时不生效")
+	public HttpModule timeout(@Comment("连接超时时间，单位为毫秒") int connectTimeout, @Comment("读取超时时间，单位为毫秒") int readTimeout) {
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+		return this;
+	}
+
 	@Comment("发送`POST`请求")
 	public ResponseEntity<Object> post() {
 		this.method(HttpMethod.POST);
@@ -153,23 +215,135 @@ public class HttpModule implements MagicModule {
 
 	@Comment("执行请求")
 	public ResponseEntity<Object> execute() {
-		if (!this.params.isEmpty()) {
-			String params = this.params.entrySet().stream()
-					.map(it -> it.getValue().stream()
-							.map(value -> it.getKey() + "=" + value)
-							.collect(Collectors.joining("&"))
-					).collect(Collectors.joining("&"));
-			if (StringUtils.isNotBlank(params)) {
-				this.url += (this.url.contains("?") ? "&" : "?") + params;
+		Map<String, Object> variables = new HashMap<>();
+		return getTemplate().exchange(buildUrl(variables), this.method, buildEntity(), Object.class, variables);
+	}
+
+	@Comment("异步执行请求，返回`Future`")
+	public CompletableFuture<ResponseEntity<Object>> executeAsync() {
+		return CompletableFuture.supplyAsync(this::execute, getExecutor());
+	}
+
+	/**
+	 * 并发执行多个请求，按顺序返回结果
+	 *
+	 * @param requests 未执行的请求（http.connect(...)）或executeAsync()返回的Future
+	 */
+	@Comment("并发执行多个请求，如：http.all([http.connect(url1), http.connect(url2)])，按顺序返回结果")
+	public List<Object> all(@Comment("请求列表") List<Object> requests) {
+		List<Future<?>> futures = new ArrayList<>(requests.size());
+		for (Object request : requests) {
+			if (request instanceof HttpModule) {
+				futures.add(((HttpModule) request).executeAsync());
+			} else if (request instanceof Future) {
+				futures.add((Future<?>) request);
+			} else {
+				futures.add(CompletableFuture.completedFuture(request));
+			}
+		}
+		List<Object> results = new ArrayList<>(futures.size());
+		for (Future<?> future : futures) {
+			try {
+				results.add(future instanceof CompletableFuture ? ((CompletableFuture<?>) future).join() : future.get());
+			} catch (CompletionException e) {
+				throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * 以流的方式处理响应体，不缓存到内存中，回调结束后关闭连接
+	 */
+	@Comment("以流的方式处理响应体，如：http.connect(url).stream(is => ...)，回调结束后关闭连接")
+	public ResponseEntity<Object> stream(@Comment("回调函数，参数为`InputStream`") Function<InputStream, Object> function) {
+		Map<String, Object> variables = new HashMap<>();
+		return getTemplate().execute(buildUrl(variables), this.method, getTemplate().httpEntityCallback(buildEntity()), response -> {
+			Object body = function.apply(response.getBody());
+			return ResponseEntity.status(response.getRawStatusCode()).headers(response.getHeaders()).body(body);
+		}, variables);
+	}
+
+	@Comment("将响应体写入到`OutputStream`中，返回写入的字节数")
+	public ResponseEntity<Object> transferTo(@Comment("`OutputStream`") OutputStream outputStream) {
+		return stream(is -> {
+			try {
+				return StreamUtils.copy(is, outputStream);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
+		});
+	}
+
+	/**
+	 * 拼接URL参数，参数值作为变量传入，由{@link RestTemplate}编码
+	 */
+	private String buildUrl(Map<String, Object> variables) {
+		if (this.params.isEmpty()) {
+			return this.url;
 		}
+		UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(this.url);
+		this.params.forEach((key, values) -> {
+			for (Object value : values) {
+				String name = "__param" + variables.size();
+				variables.put(name, value);
+				builder.queryParam(key, "{" + name + "}");
+			}
+		});
+		return builder.build().toUriString();
+	}
+
+	private HttpEntity<Object> buildEntity() {
 		if (!this.data.isEmpty()) {
-			this.entity = new HttpEntity<>(this.data, this.httpHeaders);
-		} else if (this.entity == null && this.requestBody != null) {
-			this.entity = new HttpEntity<>(this.requestBody, this.httpHeaders);
-		} else {
-			this.entity = new HttpEntity<>(null, this.httpHeaders);
+			return new HttpEntity<>(this.data, this.httpHeaders);
+		} else if (this.entity != null) {
+			return this.entity;
+		} else if (this.requestBody != null) {
+			return new HttpEntity<>(this.requestBody, this.httpHeaders);
+		}
+		return new HttpEntity<>(null, this.httpHeaders);
+	}
+
+	/**
+	 * 单独设置了超时时间时，使用共享连接池的新请求工厂，相同超时时间的RestTemplate只创建一次
+	 */
+	private RestTemplate getTemplate() {
+		if ((this.connectTimeout < 0 && this.readTimeout < 0) || this.requestFactoryCreator == null) {
+			return this.template;
+		}
+		long key = ((long) this.connectTimeout << 32) | (this.readTimeout & 0xFFFFFFFFL);
+		RestTemplate restTemplate = this.templates.get(key);
+		if (restTemplate == null) {
+			restTemplate = createTemplate();
+			if (this.templates.size() < MAX_CACHED_TEMPLATES) {
+				RestTemplate exists = this.templates.putIfAbsent(key, restTemplate);
+				restTemplate = exists == null ? restTemplate : exists;
+			}
 		}
-		return template.exchange(url, this.method, entity, Object.class, responseType, variables);
+		return restTemplate;
+	}
+
+	private RestTemplate createTemplate() {
+		RestTemplate restTemplate = new RestTemplate(this.template.getMessageConverters());
+		restTemplate.setErrorHandler(this.template.getErrorHandler());
+		restTemplate.setUriTemplateHandler(this.template.getUriTemplateHandler());
+		restTemplate.setInterceptors(this.template.getInterceptors());
+		restTemplate.setRequestFactory(this.requestFactoryCreator.create(this.connectTimeout, this.readTimeout));
+		return restTemplate;
+	}
+
+	private Executor getExecutor() {
+		return this.executor == null ? ForkJoinPool.commonPool() : this.executor;
+	}
+
+	/**
+	 * 根据超时时间创建请求工厂，小于0时使用默认配置
+	 */
+	@FunctionalInterface
+	public interface RequestFactoryCreator {
+
+		ClientHttpRequestFactory create(int connectTimeout, int readTimeout);
 	}
 }
@@ -1,27 +1,124 @@
 package org.ssssssss.magicapi.modules;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCursor;
 import org.bson.Document;
+import org.ssssssss.magicapi.context.RequestContext;
+import org.ssssssss.magicapi.model.RequestEntity;
 import org.ssssssss.script.annotation.Comment;
+import org.ssssssss.script.functions.ObjectConvertExtension;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.function.Function;
 
 /**
  * Mongo FindIterable 方法扩展
  */
 public class MongoFindIterableExtension {
 
+	/**
+	 * 流式输出时默认每批次获取的数量
+	 */
+	private static final int DEFAULT_BATCH_SIZE = 1000;
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
 	@Comment("结果转为List")
 	public List<Map<String, Object>> list(FindIterable<Document> iterable) {
-		MongoCursor<Document> cursor = iterable.iterator();
 		List<Map<String, Object>> result = new ArrayList<>();
-		while (cursor.hasNext()) {
-			result.add(cursor.next());
+		try (MongoCursor<Document> cursor = iterable.iterator()) {
+			while (cursor.hasNext()) {
+				result.add(cursor.next());
+			}
 		}
 		return result;
 	}
 
+	@Comment("取第一条结果")
+	public Map<String, Object> one(FindIterable<Document> iterable) {
+		return iterable.first();
+	}
+
+	@Comment("排序，如：sort({name: 1, age: -1})")
+	public FindIterable<Document> sort(FindIterable<Document> iterable, @Comment("排序字段，1为升序，-1为降序") Map<String, Object> sort) {
+		return iterable.sort(new Document(sort));
+	}
+
+	@Comment("设置返回字段，如：projection({name: 1, _id: 0})")
+	public FindIterable<Document> projection(FindIterable<Document> iterable, @Comment("返回字段，1为返回，0为排除") Map<String, Object> projection) {
+		return iterable.projection(new Document(projection));
+	}
+
+	@Comment("设置返回字段，如：fields(['name', 'age'])")
+	public FindIterable<Document> fields(FindIterable<Document> iterable, @Comment("返回的字段名") List<String> fields) {
+		Document projection = new Document();
+		fields.forEach(field -> projection.append(field, 1));
+		return iterable.projection(projection);
+	}
+
+	@Comment("分页，跳过offset条后取limit条")
+	public FindIterable<Document> page(FindIterable<Document> iterable, @Comment("跳过条数") int offset, @Comment("限制条数") int limit) {
+		return iterable.skip(offset).limit(limit);
+	}
+
+	/**
+	 * 逐条回调，游标分批获取，不在内存中保留结果
+	 */
+	@Comment("逐条回调处理，如：each(row => ...)，返回处理条数")
+	public int each(FindIterable<Document> iterable, @Comment("回调函数") Function<Object[], Object> function) {
+		int count = 0;
+		try (MongoCursor<Document> cursor = iterable.iterator()) {
+			while (cursor.hasNext()) {
+				function.apply(new Object[]{cursor.next()});
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Comment("流式输出，逐条写入response")
+	public Object stream(FindIterable<Document> iterable) {
+		return stream(iterable, null);
+	}
+
+	/**
+	 * 流式输出，与SQL的stream一致，逐条写入response，不在内存中保留结果
+	 */
+	@Comment("流式输出，逐条写入response，不会在内存中保留结果，输出过程中出错时以`{\"$error\": \"...\"}`结尾")
+	public Object stream(FindIterable<Document> iterable,
+						 @Comment("选项，如`format`(json、ndjson、csv)、`batchSize`、`filename`") Map<String, Object> options) {
+		RequestEntity requestEntity = RequestContext.getRequestEntity();
+		if (requestEntity == null || requestEntity.getResponse() == null || requestEntity.isRequestedFromTest()) {
+			// 非HTTP请求或在线调试时，直接返回查询结果
+			return list(iterable);
+		}
+		options = options == null ? Collections.emptyMap() : options;
+		StreamingResultSetExtractor.Format format = StreamingResultSetExtractor.Format.of(options.get("format"));
+		iterable.batchSize(ObjectConvertExtension.asInt(options.get("batchSize"), DEFAULT_BATCH_SIZE));
+		try (MongoCursor<Document> cursor = iterable.iterator()) {
+			OutputStream outputStream = StreamingRowWriter.prepare(requestEntity.getResponse(), format, options.get("filename"));
+			StreamingRowWriter writer = new StreamingRowWriter(objectMapper, format, outputStream);
+			try {
+				while (cursor.hasNext()) {
+					writer.write(cursor.next());
+				}
+				writer.finish();
+			} catch (RuntimeException e) {
+				writer.fail(requestEntity.getResponse(), e);
+			}
+			outputStream.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		// 已输出，不再对结果进行处理
+		return ResponseModule.NullValue.INSTANCE;
+	}
 }
@@ -13,6 +13,8 @@ import org.ssssssss.script.reflection.JavaInvoker;
 
 import java.lang.reflect.Method;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * mongo模块
@@ -25,6 +27,18 @@ public class MongoModule extends HashMap<String, Object> implements MagicModule
 	private final JavaInvoker<Method> mongoDbFactoryInvoker;
 	private JavaInvoker<Method> invoker;
 
+	/**
+	 * 已解析的数据库，key为数据库名
+	 */
+	private final Map<String, MongoDatabase> databases = new ConcurrentHashMap<>();
+
+	/**
+	 * 已解析的集合，key为数据库名.集合名
+	 */
+	private final Map<String, MongoCollection<Document>> collections = new ConcurrentHashMap<>();
+
+	private final Map<String, Map<String, MongoCollection<Document>>> databaseViews = new ConcurrentHashMap<>();
+
 	public MongoModule(MongoTemplate mongoTemplate) {
 		this.mongoTemplate = mongoTemplate;
 		AbstractReflection reflection = AbstractReflection.getInstance();
@@ -46,21 +60,33 @@ public class MongoModule extends HashMap<String, Object> implements MagicModule
 
 	@Override
 	public Object get(Object databaseName) {
-		return databaseName == null ? null : new HashMap<String, MongoCollection<Document>>() {
+		return databaseName == null ? null : databaseViews.computeIfAbsent(databaseName.toString(), name -> new HashMap<String, MongoCollection<Document>>() {
 			@Override
 			public MongoCollection<Document> get(Object collection) {
-				if (collection == null) {
-					return null;
-				}
-				try {
-					Object factory = mongoDbFactoryInvoker.invoke0(mongoTemplate, null);
-					MongoDatabase database = (MongoDatabase) invoker.invoke0(factory, null, databaseName.toString());
-					return database.getCollection(collection.toString());
-				} catch (Throwable throwable) {
-					throw new RuntimeException(throwable);
-				}
+				return collection == null ? null : getCollection(name, collection.toString());
+			}
+		});
+	}
+
+	/**
+	 * 获取集合，MongoDatabase和MongoCollection均为线程安全的，创建后缓存复用
+	 */
+	public MongoCollection<Document> getCollection(String databaseName, String collectionName) {
+		return collections.computeIfAbsent(databaseName + "." + collectionName, key -> getDatabase(databaseName).getCollection(collectionName));
+	}
+
+	/**
+	 * 获取数据库
+	 */
+	public MongoDatabase getDatabase(String databaseName) {
+		return databases.computeIfAbsent(databaseName, name -> {
+			try {
+				Object factory = mongoDbFactoryInvoker.invoke0(mongoTemplate, null);
+				return (MongoDatabase) invoker.invoke0(factory, null, name);
+			} catch (Throwable throwable) {
+				throw new RuntimeException(throwable);
 			}
-		};
+		});
 	}
 
 	@Override
@@ -1,23 +1,61 @@
 package org.ssssssss.magicapi.modules;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.ssssssss.magicapi.config.MagicModule;
+import org.ssssssss.magicapi.exception.MagicAPIException;
+import org.ssssssss.script.annotation.Comment;
 import org.ssssssss.script.functions.DynamicMethod;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
 
 /**
  * redis模块
+ * <p>
+ * 在pipeline、multi的回调中执行的命令共用同一个连接，批量发送后按顺序返回结果
  */
 public class RedisModule implements MagicModule, DynamicMethod {
 
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	/**
+	 * 结果解码方式：字符串
+	 */
+	private static final int DECODE_STRING = 0;
+
+	/**
+	 * 结果解码方式：原始字节
+	 */
+	private static final int DECODE_BINARY = 1;
+
+	/**
+	 * 结果解码方式：JSON，无法解析时返回字符串
+	 */
+	private static final int DECODE_JSON = 2;
+
+	/**
+	 * 当前线程在pipeline或multi中使用的连接
+	 */
+	private static final ThreadLocal<RedisConnection> CURRENT_CONNECTION = new ThreadLocal<>();
+
 	private final StringRedisTemplate redisTemplate;
 
+	private final int decode;
+
 	public RedisModule(RedisConnectionFactory connectionFactory) {
-		this.redisTemplate = new StringRedisTemplate(connectionFactory);
+		this(new StringRedisTemplate(connectionFactory), DECODE_STRING);
+	}
+
+	private RedisModule(StringRedisTemplate redisTemplate, int decode) {
+		this.redisTemplate = redisTemplate;
+		this.decode = decode;
 	}
 
 	@Override
@@ -25,14 +63,82 @@ public class RedisModule implements MagicModule, DynamicMethod {
 		return "redis";
 	}
 
+	@Comment("返回原始的byte[]结果")
+	public RedisModule binary() {
+		return new RedisModule(this.redisTemplate, DECODE_BINARY);
+	}
+
+	@Comment("将结果按JSON解析，无法解析时返回字符串")
+	public RedisModule json() {
+		return new RedisModule(this.redisTemplate, DECODE_JSON);
+	}
+
+	/**
+	 * 批量执行回调中的命令，命令的返回值为null，执行完毕后按顺序返回所有结果
+	 */
+	@Comment("使用pipeline批量执行命令，如：redis.pipeline(()=>{redis.get('a');redis.get('b')})，按顺序返回结果")
+	public List<Object> pipeline(@Comment("回调函数，如：()=>{....}") Function<?, ?> function) {
+		if (CURRENT_CONNECTION.get() != null) {
+			// 已在pipeline或multi中，直接使用外层的连接
+			function.apply(null);
+			return Collections.emptyList();
+		}
+		return this.redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+			connection.openPipeline();
+			List<Object> results;
+			CURRENT_CONNECTION.set(connection);
+			try {
+				function.apply(null);
+			} finally {
+				CURRENT_CONNECTION.remove();
+				results = connection.closePipeline();
+			}
+			return decodeList(results);
+		});
+	}
+
 	/**
-	 * 序列化
+	 * 在事务中执行回调中的命令，回调出错时放弃事务
+	 */
+	@Comment("使用multi/exec在事务中执行命令，如：redis.multi(()=>{redis.incr('a');redis.incr('b')})，按顺序返回结果")
+	public List<Object> multi(@Comment("回调函数，如：()=>{....}") Function<?, ?> function) {
+		if (CURRENT_CONNECTION.get() != null) {
+			function.apply(null);
+			return Collections.emptyList();
+		}
+		return this.redisTemplate.execute((RedisCallback<List<Object>>) connection -> {
+			connection.multi();
+			CURRENT_CONNECTION.set(connection);
+			try {
+				function.apply(null);
+			} catch (Throwable throwable) {
+				connection.discard();
+				throw throwable;
+			} finally {
+				CURRENT_CONNECTION.remove();
+			}
+			return decodeList(connection.exec());
+		});
+	}
+
+	/**
+	 * 序列化，byte[]原样传递，字符串及基本类型按字符串处理，其它对象转为JSON
 	 */
 	private byte[] serializer(Object value) {
-		if (value == null || value instanceof String) {
-			return redisTemplate.getStringSerializer().serialize((String) value);
+		if (value == null) {
+			return null;
+		}
+		if (value instanceof byte[]) {
+			return (byte[]) value;
+		}
+		if (value instanceof CharSequence || value instanceof Number || value instanceof Boolean || value instanceof Character || value instanceof Enum) {
+			return value.toString().getBytes(StandardCharsets.UTF_8);
+		}
+		try {
+			return MAPPER.writeValueAsBytes(value);
+		} catch (JsonProcessingException e) {
+			throw new MagicAPIException("redis参数序列化失败", e);
 		}
-		return serializer(value.toString());
 	}
 
 	/**
@@ -41,35 +147,72 @@ public class RedisModule implements MagicModule, DynamicMethod {
 	private Object deserialize(Object value) {
 		if (value != null) {
 			if (value instanceof byte[]) {
-				return this.redisTemplate.getStringSerializer().deserialize((byte[]) value);
+				return decode((byte[]) value);
 			}
 			if (value instanceof List) {
-				@SuppressWarnings("unchecked")
-				List<Object> valueList = (List<Object>) value;
-				List<Object> resultList = new ArrayList<>(valueList.size());
-				for (Object val : valueList) {
-					resultList.add(deserialize(val));
+				return decodeList((List<?>) value);
+			}
+			if (value instanceof Set) {
+				Set<?> valueSet = (Set<?>) value;
+				Set<Object> resultSet = new LinkedHashSet<>(valueSet.size());
+				for (Object val : valueSet) {
+					resultSet.add(deserialize(val));
 				}
-				return resultList;
+				return resultSet;
+			}
+			if (value instanceof Map) {
+				Map<?, ?> valueMap = (Map<?, ?>) value;
+				Map<Object, Object> resultMap = new LinkedHashMap<>(valueMap.size());
+				valueMap.forEach((key, val) -> resultMap.put(key instanceof byte[] ? new String((byte[]) key, StandardCharsets.UTF_8) : key, deserialize(val)));
+				return resultMap;
+			}
+		}
+		return value;
+	}
+
+	private List<Object> decodeList(List<?> valueList) {
+		if (valueList == null) {
+			return null;
+		}
+		List<Object> resultList = new ArrayList<>(valueList.size());
+		for (Object val : valueList) {
+			resultList.add(deserialize(val));
+		}
+		return resultList;
+	}
+
+	private Object decode(byte[] bytes) {
+		if (decode == DECODE_BINARY) {
+			return bytes;
+		}
+		String value = new String(bytes, StandardCharsets.UTF_8);
+		if (decode == DECODE_JSON) {
+			try {
+				return MAPPER.readValue(bytes, Object.class);
+			} catch (IOException e) {
+				return value;
 			}
 		}
 		return value;
 	}
 
 	/**
-	 * 执行命令
+	 * 执行命令，在pipeline或multi中时使用其连接，返回值为null
 	 *
 	 * @param methodName 命令名称
 	 * @param parameters 命令参数
 	 */
 	@Override
 	public Object execute(String methodName, List<Object> parameters) {
-		return this.redisTemplate.execute((RedisCallback<Object>) connection -> {
-			byte[][] params = new byte[parameters.size()][];
-			for (int i = 0; i < params.length; i++) {
-				params[i] = serializer(parameters.get(i));
-			}
-			return deserialize(connection.execute(methodName, params));
-		});
+		byte[][] params = new byte[parameters.size()][];
+		for (int i = 0; i < params.length; i++) {
+			params[i] = serializer(parameters.get(i));
+		}
+		RedisConnection connection = CURRENT_CONNECTION.get();
+		if (connection != null) {
+			connection.execute(methodName, params);
+			return null;
+		}
+		return this.redisTemplate.execute((RedisCallback<Object>) it -> deserialize(it.execute(methodName, params)));
 	}
 }
@@ -1,11 +1,18 @@
 package org.ssssssss.magicapi.modules;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.dao.DataRetrievalFailureException;
 import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.ssssssss.magicapi.adapter.ColumnMapperAdapter;
 import org.ssssssss.magicapi.adapter.DialectAdapter;
 import org.ssssssss.magicapi.cache.SqlCache;
@@ -15,6 +22,7 @@ import org.ssssssss.magicapi.config.MagicModule;
 import org.ssssssss.magicapi.context.RequestContext;
 import org.ssssssss.magicapi.dialect.Dialect;
 import org.ssssssss.magicapi.interceptor.SQLInterceptor;
+import org.ssssssss.magicapi.metrics.MagicMetrics;
 import org.ssssssss.magicapi.model.Page;
 import org.ssssssss.magicapi.model.RequestEntity;
 import org.ssssssss.magicapi.modules.table.NamedTable;
@@ -23,22 +31,56 @@ import org.ssssssss.magicapi.provider.ResultProvider;
 import org.ssssssss.script.MagicScriptContext;
 import org.ssssssss.script.annotation.Comment;
 import org.ssssssss.script.annotation.UnableCall;
-
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
+import org.ssssssss.script.functions.ObjectConvertExtension;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * 数据库查询模块
  */
 public class SQLModule extends HashMap<String, SQLModule> implements MagicModule {
 
+	/**
+	 * 流式查询默认每次读取的行数
+	 */
+	private static final int DEFAULT_FETCH_SIZE = 1000;
+
+	/**
+	 * 批量执行默认每批的条数
+	 */
+	private static final int DEFAULT_BATCH_SIZE = 100;
+
+	/**
+	 * 并行查询分页总数的线程池，线程不足时在当前线程执行
+	 */
+	private static final ThreadPoolExecutor COUNT_EXECUTOR = new ThreadPoolExecutor(0, 32, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), new ThreadFactory() {
+
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "magic-sql-count-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}, new ThreadPoolExecutor.CallerRunsPolicy());
+
+	/**
+	 * 关闭查询总数的线程池
+	 */
+	@UnableCall
+	public static void shutdown() {
+		COUNT_EXECUTOR.shutdown();
+	}
+
 	private MagicDynamicDataSource dynamicDataSource;
 
 	private DataSourceNode dataSourceNode;
@@ -63,6 +105,10 @@ public class SQLModule extends HashMap<String, SQLModule> implements MagicModule
 
 	private long ttl;
 
+	private long staleTtl;
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+
 	public SQLModule() {
 
 	}
@@ -111,6 +157,11 @@ public class SQLModule extends HashMap<String, SQLModule> implements MagicModule
 		this.sqlInterceptors = sqlInterceptors;
 	}
 
+	@UnableCall
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
 	private void setDataSourceNode(DataSourceNode dataSourceNode) {
 		this.dataSourceNode = dataSourceNode;
 	}
@@ -131,6 +182,14 @@ public class SQLModule extends HashMap<String, SQLModule> implements MagicModule
 		this.ttl = ttl;
 	}
 
+	protected long getStaleTtl() {
+		return staleTtl;
+	}
+
+	private void setStaleTtl(long staleTtl) {
+		this.staleTtl = staleTtl;
+	}
+
 	protected SqlCache getSqlCache() {
 		return sqlCache;
 	}
@@ -151,9 +210,11 @@ public class SQLModule extends HashMap<String, SQLModule> implements MagicModule
 		sqlModule.setRowMapColumnMapper(this.rowMapColumnMapper);
 		sqlModule.setSqlCache(this.sqlCache);
 		sqlModule.setTtl(this.ttl);
+		sqlModule.setStaleTtl(this.staleTtl);
 		sqlModule.setResultProvider(this.resultProvider);
 		sqlModule.setDialectAdapter(this.dialectAdapter);
 		sqlModule.setSqlInterceptors(this.sqlInterceptors);
+		sqlModule.setObjectMapper(this.objectMapper);
 		return sqlModule;
 	}
 
@@ -191,12 +252,25 @@ public class SQLModule extends HashMap<String, SQLModule> implements MagicModule
 	 */
 	@Comment("使用缓存")
 	public SQLModule cache(@Comment("缓存名") String cacheName, @Comment("过期时间") long ttl) {
+		return cache(cacheName, ttl, 0);
+	}
+
+	/**
+	 * 使用缓存，过期后在staleTtl内仍返回旧数据，并在后台刷新
+	 *
+	 * @param cacheName 缓存名
+	 * @param ttl       过期时间
+	 * @param staleTtl  过期后仍可使用的时间
+	 */
+	@Comment("使用缓存，过期后仍返回旧数据并在后台刷新")
+	public SQLModule cache(@Comment("缓存名") String cacheName, @Comment("过期时间") long ttl, @Comment("过期后仍可使用的时间") long staleTtl) {
 		if (cacheName == null) {
 			return this;
 		}
 		SQLModule sqlModule = cloneSQLModule();
 		sqlModule.setCacheName(cacheName);
 		sqlModule.setTtl(ttl);
+		sqlModule.setStaleTtl(staleTtl);
 		return sqlModule;
 	}
 
@@ -268,7 +342,84 @@ public class SQLModule extends HashMap<String, SQLModule> implements MagicModule
 
 	@UnableCall
 	public List<Map<String, Object>> select(BoundSql boundSql) {
-		return boundSql.getCacheValue(this.sqlInterceptors, () -> dataSourceNode.getJdbcTemplate().query(boundSql.getSql(), this.columnMapRowMapper, boundSql.getParameters()));
+		return boundSql.getCacheValue(this.sqlInterceptors, () -> read(jdbcTemplate -> jdbcTemplate.query(boundSql.getSql(), this.columnMapRowMapper, boundSql.getParameters())));
+	}
+
+	/**
+	 * 流式查询，逐行输出到response
+	 */
+	@Comment("流式查询SQL，逐行输出到response，不会在内存中保留结果，格式为json数组")
+	public Object stream(@Comment("`SQL`语句") String sql) {
+		return stream(sql, null);
+	}
+
+	/**
+	 * 流式查询，逐行输出到response
+	 */
+	@Comment("流式查询SQL，逐行输出到response，不会在内存中保留结果，输出过程中出错时以`{\"$error\": \"...\"}`结尾")
+	public Object stream(@Comment("`SQL`语句") String sql,
+						 @Comment("选项，如`format`(json、ndjson、csv)、`fetchSize`、`filename`") Map<String, Object> options) {
+		BoundSql boundSql = new BoundSql(sql, this);
+		RequestEntity requestEntity = RequestContext.getRequestEntity();
+		if (requestEntity == null || requestEntity.getResponse() == null || requestEntity.isRequestedFromTest()) {
+			// 非HTTP请求或在线调试时，直接返回查询结果
+			return select(boundSql);
+		}
+		options = options == null ? Collections.emptyMap() : options;
+		StreamingResultSetExtractor.Format format = StreamingResultSetExtractor.Format.of(options.get("format"));
+		try {
+			OutputStream outputStream = StreamingRowWriter.prepare(requestEntity.getResponse(), format, options.get("filename"));
+			StreamingRowWriter writer = new StreamingRowWriter(this.objectMapper, format, outputStream);
+			try {
+				query(boundSql, ObjectConvertExtension.asInt(options.get("fetchSize"), DEFAULT_FETCH_SIZE),
+						new StreamingResultSetExtractor(this.columnMapRowMapper, writer));
+			} catch (RuntimeException e) {
+				writer.fail(requestEntity.getResponse(), e);
+			}
+			outputStream.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		// 已输出，不再对结果进行处理
+		return ResponseModule.NullValue.INSTANCE;
+	}
+
+	/**
+	 * 流式查询，逐行回调
+	 */
+	@Comment("流式查询SQL，逐行回调处理，返回处理行数")
+	public int selectStream(@Comment("`SQL`语句") String sql, @Comment("回调函数，如：(row)=>{....}") Function<Object[], Object> function) {
+		return selectStream(sql, DEFAULT_FETCH_SIZE, function);
+	}
+
+	/**
+	 * 流式查询，逐行回调
+	 */
+	@Comment("流式查询SQL，逐行回调处理，返回处理行数")
+	public int selectStream(@Comment("`SQL`语句") String sql, @Comment("每次从数据库读取的行数") int fetchSize,
+							@Comment("回调函数，如：(row)=>{....}") Function<Object[], Object> function) {
+		return query(new BoundSql(sql, this), fetchSize, rs -> {
+			int rowNum = 0;
+			while (rs.next()) {
+				function.apply(new Object[]{this.columnMapRowMapper.mapRow(rs, rowNum++)});
+			}
+			return rowNum;
+		});
+	}
+
+	/**
+	 * 以只进游标执行查询，不走缓存
+	 */
+	private <T> T query(BoundSql boundSql, int fetchSize, ResultSetExtractor<T> extractor) {
+		sqlInterceptors.forEach(sqlInterceptor -> sqlInterceptor.preHandle(boundSql, RequestContext.getRequestEntity()));
+		// 部分数据库（如PostgreSQL）需在事务中才会按fetchSize分批读取，MySQL由方言转换为Integer.MIN_VALUE
+		int streamFetchSize = dataSourceNode.getDialect(dialectAdapter).getStreamFetchSize(fetchSize);
+		return read(jdbcTemplate -> jdbcTemplate.query(con -> {
+			PreparedStatement ps = con.prepareStatement(boundSql.getSql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			ps.setFetchSize(streamFetchSize);
+			new ArgumentPreparedStatementSetter(boundSql.getParameters()).setValues(ps);
+			return ps;
+		}, extractor));
 	}
 
 	/**
@@ -282,13 +433,158 @@ public class SQLModule extends HashMap<String, SQLModule> implements MagicModule
 	@UnableCall
 	public int update(BoundSql boundSql) {
 		sqlInterceptors.forEach(sqlInterceptor -> sqlInterceptor.preHandle(boundSql, RequestContext.getRequestEntity()));
-		int value = dataSourceNode.getJdbcTemplate().update(boundSql.getSql(), boundSql.getParameters());
+		int value = execute(() -> dataSourceNode.getJdbcTemplate().update(boundSql.getSql(), boundSql.getParameters()));
 		if (this.cacheName != null) {
 			this.sqlCache.delete(this.cacheName);
 		}
 		return value;
 	}
 
+	/**
+	 * 批量执行update
+	 */
+	@Comment("批量执行update操作（在同一事务中执行，失败时全部回滚），返回每批受影响行数")
+	public int[] batchUpdate(@Comment("`SQL`语句，参数使用`?`占位") String sql,
+							 @Comment("参数列表，如：[[1,'a'],[2,'b']]") List<Object> args) {
+		return batchUpdate(sql, args, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * 批量执行update
+	 */
+	@Comment("批量执行update操作（在同一事务中执行，失败时全部回滚），返回每批受影响行数")
+	public int[] batchUpdate(@Comment("`SQL`语句，参数使用`?`占位") String sql,
+							 @Comment("参数列表，如：[[1,'a'],[2,'b']]") List<Object> args,
+							 @Comment("每批的条数") int batchSize) {
+		List<Object[]> batchArgs = new ArrayList<>(args.size());
+		for (Object arg : args) {
+			if (arg instanceof Object[]) {
+				batchArgs.add((Object[]) arg);
+			} else if (arg instanceof Collection) {
+				batchArgs.add(((Collection<?>) arg).toArray());
+			} else {
+				batchArgs.add(new Object[]{arg});
+			}
+		}
+		return batchUpdate(Collections.singletonMap(sql, batchArgs), batchSize);
+	}
+
+	/**
+	 * 批量执行update
+	 *
+	 * @param statements SQL及其参数列表
+	 * @param batchSize  每批的条数
+	 * @return 每批受影响行数
+	 */
+	@UnableCall
+	public int[] batchUpdate(Map<String, List<Object[]>> statements, int batchSize) {
+		return executeBatch(statements, null, batchSize, null, null);
+	}
+
+	/**
+	 * 批量插入
+	 *
+	 * @param statements SQL及其参数列表
+	 * @param rows       每条参数在原始数据中的位置，用于按原始顺序返回主键
+	 * @param batchSize  每批的条数
+	 * @param primary    主键列，为空时使用数据库自增主键
+	 */
+	@UnableCall
+	public BatchResult batchInsert(Map<String, List<Object[]>> statements, Map<String, List<Integer>> rows, int batchSize, String primary) {
+		Object[] keys = new Object[rows.values().stream().mapToInt(List::size).sum()];
+		int[] counts = executeBatch(statements, rows, batchSize, new MagicKeyHolder(primary), keys);
+		return new BatchResult(counts, Arrays.stream(keys).anyMatch(Objects::nonNull) ? Arrays.asList(keys) : Collections.emptyList());
+	}
+
+	/**
+	 * 在同一事务中分批执行（已开启事务时加入该事务），任意一批失败时全部回滚，全部执行完毕后清除一次缓存。
+	 * 每条数据都会调用SQL拦截器，同一批中拦截后SQL不同的数据按SQL分组后分别执行
+	 */
+	private int[] executeBatch(Map<String, List<Object[]>> statements, Map<String, List<Integer>> rows, int batchSize, MagicKeyHolder keyHolder, Object[] keys) {
+		List<Integer> counts = new ArrayList<>();
+		JdbcTemplate jdbcTemplate = dataSourceNode.getJdbcTemplate();
+		RequestEntity requestEntity = RequestContext.getRequestEntity();
+		Transaction transaction = transaction();
+		try {
+			statements.forEach((sql, batchArgs) -> {
+				int size = batchArgs.size();
+				int step = batchSize > 0 ? batchSize : Math.max(size, 1);
+				for (int i = 0; i < size; i += step) {
+					int end = Math.min(i + step, size);
+					// 拦截后的SQL -> 参数列表及其在原始数据中的位置
+					Map<String, List<Object[]>> batches = new LinkedHashMap<>();
+					Map<String, List<Integer>> batchPositions = new LinkedHashMap<>();
+					for (int j = i; j < end; j++) {
+						BoundSql boundSql = new BoundSql(sql, new ArrayList<>(Arrays.asList(batchArgs.get(j))), this);
+						sqlInterceptors.forEach(sqlInterceptor -> sqlInterceptor.preHandle(boundSql, requestEntity));
+						batches.computeIfAbsent(boundSql.getSql(), k -> new ArrayList<>()).add(boundSql.getParameters());
+						if (keyHolder != null) {
+							batchPositions.computeIfAbsent(boundSql.getSql(), k -> new ArrayList<>()).add(rows.get(sql).get(j));
+						}
+					}
+					int count = 0;
+					for (Map.Entry<String, List<Object[]>> entry : batches.entrySet()) {
+						count += sumRows(executeBatch(jdbcTemplate, entry.getKey(), entry.getValue(), keyHolder, batchPositions.get(entry.getKey()), keys));
+					}
+					counts.add(count);
+				}
+			});
+			transaction.commit();
+		} catch (Throwable throwable) {
+			transaction.rollback();
+			throw throwable;
+		} finally {
+			if (this.cacheName != null) {
+				this.sqlCache.delete(this.cacheName);
+			}
+		}
+		return counts.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * 执行一批相同SQL的数据，需要返回主键时按positions写入keys
+	 */
+	private int[] executeBatch(JdbcTemplate jdbcTemplate, String sql, List<Object[]> batch, MagicKeyHolder keyHolder, List<Integer> positions, Object[] keys) {
+		if (keyHolder == null) {
+			return execute(() -> jdbcTemplate.batchUpdate(sql, batch));
+		}
+		return execute(() -> jdbcTemplate.execute(con -> keyHolder.createPrepareStatement(con, sql), (PreparedStatementCallback<int[]>) ps -> {
+			for (Object[] args : batch) {
+				new ArgumentPreparedStatementSetter(args).setValues(ps);
+				ps.addBatch();
+			}
+			int[] results = ps.executeBatch();
+			List<Object> generated = new ArrayList<>(batch.size());
+			try (ResultSet rs = ps.getGeneratedKeys()) {
+				while (rs != null && rs.next()) {
+					generated.add(rs.getObject(1));
+				}
+			} catch (SQLFeatureNotSupportedException ignored) {
+				// 驱动不支持批量返回主键
+			}
+			// 返回的主键数与本批条数一致时才能对应到原始数据
+			if (generated.size() == positions.size()) {
+				for (int j = 0; j < positions.size(); j++) {
+					keys[positions.get(j)] = generated.get(j);
+				}
+			}
+			return results;
+		}));
+	}
+
+	/**
+	 * 合计一批的受影响行数，驱动未返回行数时按1计算
+	 */
+	private static int sumRows(int[] rows) {
+		int count = 0;
+		if (rows != null) {
+			for (int row : rows) {
+				count += row == Statement.SUCCESS_NO_INFO ? 1 : Math.max(row, 0);
+			}
+		}
+		return count;
+	}
+
 	/**
 	 * 插入并返回主键
 	 */
@@ -309,11 +605,11 @@ public class SQLModule extends HashMap<String, SQLModule> implements MagicModule
 
 	void insert(BoundSql boundSql, MagicKeyHolder keyHolder) {
 		sqlInterceptors.forEach(sqlInterceptor -> sqlInterceptor.preHandle(boundSql, RequestContext.getRequestEntity()));
-		dataSourceNode.getJdbcTemplate().update(con -> {
+		execute(() -> dataSourceNode.getJdbcTemplate().update(con -> {
 			PreparedStatement ps = keyHolder.createPrepareStatement(con, boundSql.getSql());
 			new ArgumentPreparedStatementSetter(boundSql.getParameters()).setValues(ps);
 			return ps;
-		}, keyHolder);
+		}, keyHolder));
 		if (this.cacheName != null) {
 			this.sqlCache.delete(this.cacheName);
 		}
@@ -343,6 +639,18 @@ public class SQLModule extends HashMap<String, SQLModule> implements MagicModule
 		return page(boundSql, new Page(limit, offset));
 	}
 
+	/**
+	 * 分页查询（可选择不查询总数或并行查询总数）
+	 */
+	@Comment("执行分页查询，可选择不查询总数(count:false)或并行查询总数(parallel:true)")
+	public Object page(@Comment("`SQL`语句") String sql, @Comment("选项，如：{count: false}") Map<String, Object> options) {
+		BoundSql boundSql = new BoundSql(sql, this);
+		Page page = pageProvider.getPage(MagicScriptContext.get());
+		boolean count = options == null || !Boolean.FALSE.equals(options.get("count"));
+		boolean parallel = options != null && Boolean.TRUE.equals(options.get("parallel"));
+		return page(boundSql, page, count, parallel);
+	}
+
 	@UnableCall
 	public Object page(BoundSql boundSql) {
 		Page page = pageProvider.getPage(MagicScriptContext.get());
@@ -350,16 +658,102 @@ public class SQLModule extends HashMap<String, SQLModule> implements MagicModule
 	}
 
 	private Object page(BoundSql boundSql, Page page) {
+		return page(boundSql, page, true, false);
+	}
+
+	/**
+	 * @param count    是否查询总数，不查询时总数为-1
+	 * @param parallel 是否与分页查询并行查询总数（使用不同的连接，事务中不生效）
+	 */
+	private Object page(BoundSql boundSql, Page page, boolean count, boolean parallel) {
 		Dialect dialect = dataSourceNode.getDialect(dialectAdapter);
-		BoundSql countBoundSql = boundSql.copy(dialect.getCountSql(boundSql.getSql()));
-		int count = countBoundSql.getCacheValue(this.sqlInterceptors, () -> dataSourceNode.getJdbcTemplate().query(countBoundSql.getSql(), new SingleRowResultSetExtractor<>(Integer.class), countBoundSql.getParameters()));
+		long total = -1;
 		List<Map<String, Object>> list = null;
-		if (count > 0) {
-			BoundSql pageBoundSql = buildPageBoundSql(dialect, boundSql, page.getOffset(), page.getLimit());
-			list = pageBoundSql.getCacheValue(this.sqlInterceptors, () -> dataSourceNode.getJdbcTemplate().query(pageBoundSql.getSql(), this.columnMapRowMapper, pageBoundSql.getParameters()));
+		if (count) {
+			BoundSql countBoundSql = boundSql.copy(dialect.getCountSql(boundSql.getSql()));
+			Supplier<Integer> countSupplier = () -> read(jdbcTemplate -> jdbcTemplate.query(countBoundSql.getSql(), new SingleRowResultSetExtractor<>(Integer.class), countBoundSql.getParameters()));
+			if (parallel && !COUNT_EXECUTOR.isShutdown() && !TransactionSynchronizationManager.isActualTransactionActive()) {
+				RequestEntity requestEntity = RequestContext.getRequestEntity();
+				// 拦截器在当前线程执行
+				sqlInterceptors.forEach(sqlInterceptor -> sqlInterceptor.preHandle(countBoundSql, requestEntity));
+				// 线程池中的线程会继承创建时的InheritableThreadLocal，需在执行时重新设置
+				MagicScriptContext scriptContext = MagicScriptContext.get();
+				RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+				CompletableFuture<Integer> future = CompletableFuture.supplyAsync(() -> {
+					RequestContext.setRequestEntity(requestEntity);
+					MagicScriptContext.set(scriptContext);
+					RequestContextHolder.setRequestAttributes(requestAttributes);
+					try {
+						return countBoundSql.getCacheValue(Collections.emptyList(), countSupplier);
+					} finally {
+						RequestContext.remove();
+						MagicScriptContext.remove();
+						RequestContextHolder.resetRequestAttributes();
+					}
+				}, COUNT_EXECUTOR);
+				list = selectPage(dialect, boundSql, page);
+				total = joinCount(future);
+			} else {
+				total = countBoundSql.getCacheValue(this.sqlInterceptors, countSupplier);
+				if (total > 0) {
+					list = selectPage(dialect, boundSql, page);
+				}
+			}
+		} else {
+			list = selectPage(dialect, boundSql, page);
 		}
 		RequestEntity requestEntity = RequestContext.getRequestEntity();
-		return resultProvider.buildPageResult(requestEntity, page, count, list);
+		return resultProvider.buildPageResult(requestEntity, page, total, list);
+	}
+
+	private List<Map<String, Object>> selectPage(Dialect dialect, BoundSql boundSql, Page page) {
+		BoundSql pageBoundSql = buildPageBoundSql(dialect, boundSql, page.getOffset(), page.getLimit());
+		return pageBoundSql.getCacheValue(this.sqlInterceptors, () -> read(jdbcTemplate -> jdbcTemplate.query(pageBoundSql.getSql(), this.columnMapRowMapper, pageBoundSql.getParameters())));
+	}
+
+	private static int joinCount(CompletableFuture<Integer> future) {
+		try {
+			Integer value = future.join();
+			return value == null ? 0 : value;
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * 游标分页查询
+	 */
+	@Comment("执行游标分页查询，按指定列升序查询大于lastValue的数据，不查询总数")
+	public Object pageByCursor(@Comment("`SQL`语句") String sql, @Comment("排序列，需唯一") String orderColumn,
+							   @Comment("上一页最后一条记录的值，第一页传null") Object lastValue, @Comment("限制条数") long limit) {
+		BoundSql boundSql = new BoundSql(sql, this);
+		Dialect dialect = dataSourceNode.getDialect(dialectAdapter);
+		BoundSql pageBoundSql = boundSql.copy(dialect.getCursorPageSql(boundSql.getSql(), boundSql, orderColumn, lastValue, limit));
+		List<Map<String, Object>> list = pageBoundSql.getCacheValue(this.sqlInterceptors, () -> read(jdbcTemplate -> jdbcTemplate.query(pageBoundSql.getSql(), this.columnMapRowMapper, pageBoundSql.getParameters())));
+		// 不足一页时没有下一页
+		Object nextCursor = list != null && !list.isEmpty() && list.size() >= limit ? getColumnValue(list.get(list.size() - 1), orderColumn) : null;
+		RequestEntity requestEntity = RequestContext.getRequestEntity();
+		return resultProvider.buildPageResult(requestEntity, new Page(limit, 0), -1, list, nextCursor);
+	}
+
+	/**
+	 * 从结果中获取列的值，结果中的列名经过列名转换，通过转换器的逆转换找到对应的列
+	 */
+	private Object getColumnValue(Map<String, Object> row, String column) {
+		String name = column.substring(column.lastIndexOf('.') + 1);
+		if (row.containsKey(name)) {
+			return row.get(name);
+		}
+		for (Map.Entry<String, Object> entry : row.entrySet()) {
+			// 数据库返回的列名大小写可能与传入的不一致
+			if (name.equalsIgnoreCase(entry.getKey()) || name.equalsIgnoreCase(rowMapColumnMapper.apply(entry.getKey()))) {
+				return entry.getValue();
+			}
+		}
+		return null;
 	}
 
 	/**
@@ -372,7 +766,7 @@ public class SQLModule extends HashMap<String, SQLModule> implements MagicModule
 
 	@UnableCall
 	public Integer selectInt(BoundSql boundSql){
-		return boundSql.getCacheValue(this.sqlInterceptors, () -> dataSourceNode.getJdbcTemplate().query(boundSql.getSql(),new SingleRowResultSetExtractor<>(Integer.class), boundSql.getParameters()));
+		return boundSql.getCacheValue(this.sqlInterceptors, () -> read(jdbcTemplate -> jdbcTemplate.query(boundSql.getSql(),new SingleRowResultSetExtractor<>(Integer.class), boundSql.getParameters())));
 	}
 
 	/**
@@ -388,7 +782,7 @@ public class SQLModule extends HashMap<String, SQLModule> implements MagicModule
 		return boundSql.getCacheValue(this.sqlInterceptors, () -> {
 			Dialect dialect = dataSourceNode.getDialect(dialectAdapter);
 			BoundSql pageBoundSql = buildPageBoundSql(dialect, boundSql, 0, 1);
-			return dataSourceNode.getJdbcTemplate().query(pageBoundSql.getSql(), new SingleRowResultSetExtractor<>(this.columnMapRowMapper), pageBoundSql.getParameters());
+			return read(jdbcTemplate -> jdbcTemplate.query(pageBoundSql.getSql(), new SingleRowResultSetExtractor<>(this.columnMapRowMapper), pageBoundSql.getParameters()));
 		});
 	}
 
@@ -401,7 +795,7 @@ public class SQLModule extends HashMap<String, SQLModule> implements MagicModule
 		return boundSql.getCacheValue(this.sqlInterceptors, () -> {
 			Dialect dialect = dataSourceNode.getDialect(dialectAdapter);
 			BoundSql pageBoundSql = buildPageBoundSql(dialect, boundSql, 0, 1);
-			return dataSourceNode.getJdbcTemplate().query(pageBoundSql.getSql(), new SingleRowResultSetExtractor<>(Object.class), pageBoundSql.getParameters());
+			return read(jdbcTemplate -> jdbcTemplate.query(pageBoundSql.getSql(), new SingleRowResultSetExtractor<>(Object.class), pageBoundSql.getParameters()));
 		});
 	}
 
@@ -410,6 +804,28 @@ public class SQLModule extends HashMap<String, SQLModule> implements MagicModule
 		return new NamedTable(tableName, this, rowMapColumnMapper);
 	}
 
+	/**
+	 * 执行查询，有从库时路由到从库，事务中使用主库
+	 */
+	private <T> T read(Function<JdbcTemplate, T> function) {
+		return execute(() -> dataSourceNode.read(function));
+	}
+
+	/**
+	 * 执行SQL并记录耗时
+	 */
+	private <T> T execute(Supplier<T> supplier) {
+		long start = System.nanoTime();
+		boolean success = false;
+		try {
+			T value = supplier.get();
+			success = true;
+			return value;
+		} finally {
+			MagicMetrics.recordSql(dataSourceNode.getKey(), start, success);
+		}
+	}
+
 	private BoundSql buildPageBoundSql(Dialect dialect, BoundSql boundSql, long offset, long limit) {
 		String pageSql = dialect.getPageSql(boundSql.getSql(), boundSql, offset, limit);
 		return boundSql.copy(pageSql);
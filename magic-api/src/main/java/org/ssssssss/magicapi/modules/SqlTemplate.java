@@ -0,0 +1,298 @@
+package org.ssssssss.magicapi.modules;
+
+import org.ssssssss.magicapi.cache.ConcurrentSqlCache;
+import org.ssssssss.magicapi.script.ScriptManager;
+import org.ssssssss.script.MagicScriptContext;
+import org.ssssssss.script.functions.StreamExtension;
+import org.ssssssss.script.parsing.GenericTokenParser;
+import org.ssssssss.script.parsing.ast.literal.BooleanLiteral;
+
+import javax.script.CompiledScript;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 预解析的SQL模板
+ * <p>
+ * 依次解析?{}、${}、#{}，将SQL拆分为文本、条件块、拼接表达式、参数表达式片段并缓存，
+ * 表达式在首次执行时编译，执行时只需计算表达式并拼接，不再重复解析SQL及编译表达式。
+ */
+final class SqlTemplate {
+
+	private static final GenericTokenParser concatTokenParser = new GenericTokenParser("${", "}", false);
+
+	private static final GenericTokenParser replaceTokenParser = new GenericTokenParser("#{", "}", true);
+
+	private static final GenericTokenParser ifTokenParser = new GenericTokenParser("?{", "}", true);
+
+	private static final GenericTokenParser ifParamTokenParser = new GenericTokenParser("?{", ",", true);
+
+	private static final Pattern REPLACE_MULTI_WHITE_LINE = Pattern.compile("(\r?\n(\\s*\r?\n)+)");
+
+	/**
+	 * 解析时用于标记表达式位置的字符，SQL中不会出现
+	 */
+	private static final char MARKER = '\u0000';
+
+	private static final char TYPE_IF = 'I';
+
+	private static final char TYPE_CONCAT = 'C';
+
+	private static final char TYPE_BIND = 'B';
+
+	/**
+	 * 缓存的最大数量，超出时淘汰最久未使用的（脚本中拼接生成的SQL可能无穷多）
+	 */
+	private static final int MAX_CACHE_SIZE = 4096;
+
+	private static final String CACHE_NAME = "default";
+
+	private static final ConcurrentSqlCache TEMPLATES = new ConcurrentSqlCache(MAX_CACHE_SIZE, -1);
+
+	private final Segment[] segments;
+
+	/**
+	 * 是否包含条件块或拼接表达式，包含时执行后需重新处理首尾空白及多余空行
+	 */
+	private final boolean dynamic;
+
+	private final int estimatedLength;
+
+	private SqlTemplate(Segment[] segments, boolean dynamic, int estimatedLength) {
+		this.segments = segments;
+		this.dynamic = dynamic;
+		this.estimatedLength = estimatedLength;
+	}
+
+	/**
+	 * 获取SQL模板，优先从缓存中获取
+	 */
+	static SqlTemplate of(String sql) {
+		SqlTemplate template = TEMPLATES.get(CACHE_NAME, sql);
+		if (template == null) {
+			template = compile(sql);
+			TEMPLATES.put(CACHE_NAME, sql, template, -1);
+		}
+		return template;
+	}
+
+	/**
+	 * 计算表达式生成SQL，参数追加到parameters中
+	 */
+	String render(MagicScriptContext context, List<Object> parameters) {
+		StringBuilder builder = new StringBuilder(estimatedLength);
+		render(segments, context, builder, parameters);
+		if (!dynamic) {
+			// 文本已在解析时处理过
+			return builder.toString();
+		}
+		String sql = builder.toString().trim();
+		return sql.indexOf('\n') > -1 ? REPLACE_MULTI_WHITE_LINE.matcher(sql).replaceAll("\r\n") : sql;
+	}
+
+	private static void render(Segment[] segments, MagicScriptContext context, StringBuilder builder, List<Object> parameters) {
+		for (Segment segment : segments) {
+			switch (segment.type) {
+				case TYPE_IF:
+					// 与逐个解析时一致，以最后一个条件为准
+					boolean ifTrue = false;
+					for (CompiledScript condition : segment.getCompiledConditions()) {
+						ifTrue = BooleanLiteral.isTrue(ScriptManager.executeScript(condition, context));
+					}
+					if (ifTrue) {
+						render(segment.children, context, builder, parameters);
+					}
+					break;
+				case TYPE_CONCAT:
+					String value = String.valueOf(ScriptManager.executeScript(segment.getCompiledScript(), context));
+					if (value.contains("#{")) {
+						// 与逐个解析时一致，拼接的内容中的#{}参数同样绑定
+						value = replaceTokenParser.parse(value, expression -> {
+							StringBuilder placeholder = new StringBuilder();
+							appendParameter(ScriptManager.executeExpression(expression, context), placeholder, parameters);
+							return placeholder.toString();
+						});
+					}
+					builder.append(value);
+					break;
+				case TYPE_BIND:
+					appendParameter(ScriptManager.executeScript(segment.getCompiledScript(), context), builder, parameters);
+					break;
+				default:
+					builder.append(segment.text);
+			}
+		}
+	}
+
+	private static void appendParameter(Object value, StringBuilder builder, List<Object> parameters) {
+		if (value == null) {
+			parameters.add(null);
+			builder.append('?');
+			return;
+		}
+		List<Object> objects;
+		try {
+			//对集合自动展开
+			objects = StreamExtension.arrayLikeToList(value);
+		} catch (Exception e) {
+			parameters.add(value);
+			builder.append('?');
+			return;
+		}
+		parameters.addAll(objects);
+		for (int i = 0, size = objects.size(); i < size; i++) {
+			if (i > 0) {
+				builder.append(',');
+			}
+			builder.append('?');
+		}
+	}
+
+	private static SqlTemplate compile(String sql) {
+		List<String> ifBlocks = new ArrayList<>();
+		// 处理?{}参数
+		String text = ifTokenParser.parse(sql.trim(), block -> {
+			ifBlocks.add(block);
+			return marker(TYPE_IF, ifBlocks.size() - 1);
+		});
+		List<Segment> segments = new ArrayList<>();
+		boolean hasConcat = compileExpressions(text, ifBlocks, segments);
+		boolean dynamic = hasConcat || !ifBlocks.isEmpty();
+		if (!dynamic) {
+			// 只包含文本和#{}参数时，参数占位符不含空白，可提前处理
+			for (Segment segment : segments) {
+				if (segment.type == 0) {
+					segment.text = REPLACE_MULTI_WHITE_LINE.matcher(segment.text).replaceAll("\r\n");
+				}
+			}
+		}
+		return new SqlTemplate(segments.toArray(new Segment[0]), dynamic, sql.length() + 16);
+	}
+
+	/**
+	 * 处理${}及#{}参数
+	 *
+	 * @return 是否包含${}参数
+	 */
+	private static boolean compileExpressions(String text, List<String> ifBlocks, List<Segment> segments) {
+		if (text == null) {
+			return false;
+		}
+		List<String> concats = new ArrayList<>();
+		List<String> binds = new ArrayList<>();
+		// 处理${}参数
+		text = concatTokenParser.parse(text, expression -> {
+			concats.add(expression);
+			return marker(TYPE_CONCAT, concats.size() - 1);
+		});
+		// 处理#{}参数
+		text = replaceTokenParser.parse(text, expression -> {
+			binds.add(expression);
+			return marker(TYPE_BIND, binds.size() - 1);
+		});
+		boolean dynamic = !concats.isEmpty();
+		int offset = 0;
+		int start;
+		while ((start = text.indexOf(MARKER, offset)) > -1) {
+			int end = text.indexOf(MARKER, start + 2);
+			if (start > offset) {
+				segments.add(new Segment(text.substring(offset, start)));
+			}
+			char type = text.charAt(start + 1);
+			int index = Integer.parseInt(text.substring(start + 2, end));
+			switch (type) {
+				case TYPE_IF:
+					segments.add(compileIf(ifBlocks.get(index)));
+					break;
+				case TYPE_CONCAT:
+					segments.add(new Segment(TYPE_CONCAT, concats.get(index)));
+					break;
+				default:
+					segments.add(new Segment(TYPE_BIND, binds.get(index)));
+			}
+			offset = end + 1;
+		}
+		if (offset < text.length()) {
+			segments.add(new Segment(text.substring(offset)));
+		}
+		return dynamic;
+	}
+
+	private static Segment compileIf(String block) {
+		List<String> conditions = new ArrayList<>();
+		String body = ifParamTokenParser.parse("?{" + block, param -> {
+			conditions.add(param);
+			return null;
+		});
+		List<Segment> children = new ArrayList<>();
+		compileExpressions(body, null, children);
+		Segment segment = new Segment(TYPE_IF, null);
+		segment.conditions = conditions.toArray(new String[0]);
+		segment.children = children.toArray(new Segment[0]);
+		return segment;
+	}
+
+	private static String marker(char type, int index) {
+		return "" + MARKER + type + index + MARKER;
+	}
+
+	static class Segment {
+
+		/**
+		 * 片段类型，0为文本
+		 */
+		final char type;
+
+		/**
+		 * 文本或表达式
+		 */
+		String text;
+
+		/**
+		 * 条件块的条件
+		 */
+		String[] conditions;
+
+		/**
+		 * 条件块的内容
+		 */
+		Segment[] children;
+
+		/**
+		 * 编译后的表达式，首次执行时编译
+		 */
+		private volatile CompiledScript compiledScript;
+
+		private volatile CompiledScript[] compiledConditions;
+
+		Segment(String text) {
+			this((char) 0, text);
+		}
+
+		Segment(char type, String text) {
+			this.type = type;
+			this.text = text;
+		}
+
+		CompiledScript getCompiledScript() {
+			CompiledScript script = compiledScript;
+			if (script == null) {
+				compiledScript = script = ScriptManager.compileExpression(text);
+			}
+			return script;
+		}
+
+		CompiledScript[] getCompiledConditions() {
+			CompiledScript[] scripts = compiledConditions;
+			if (scripts == null) {
+				scripts = new CompiledScript[conditions.length];
+				for (int i = 0; i < scripts.length; i++) {
+					scripts[i] = ScriptManager.compileExpression(conditions[i]);
+				}
+				compiledConditions = scripts;
+			}
+			return scripts;
+		}
+	}
+}
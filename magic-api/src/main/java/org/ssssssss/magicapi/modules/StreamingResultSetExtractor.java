@@ -0,0 +1,72 @@
+package org.ssssssss.magicapi.modules;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * 逐行将查询结果写入输出流，不在内存中保留结果集
+ */
+public class StreamingResultSetExtractor implements ResultSetExtractor<Integer> {
+
+	private final RowMapper<Map<String, Object>> mapper;
+
+	private final StreamingRowWriter writer;
+
+	public StreamingResultSetExtractor(RowMapper<Map<String, Object>> mapper, StreamingRowWriter writer) {
+		this.mapper = mapper;
+		this.writer = writer;
+	}
+
+	@Override
+	public Integer extractData(ResultSet rs) throws SQLException, DataAccessException {
+		try {
+			int rowNum = 0;
+			while (rs.next()) {
+				writer.write(mapper.mapRow(rs, rowNum++));
+			}
+			return writer.finish();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * 输出格式
+	 */
+	public enum Format {
+
+		JSON("application/json"),
+
+		NDJSON("application/x-ndjson"),
+
+		CSV("text/csv");
+
+		private final String contentType;
+
+		Format(String contentType) {
+			this.contentType = contentType;
+		}
+
+		public String getContentType() {
+			return contentType;
+		}
+
+		public static Format of(Object name) {
+			if (name != null) {
+				for (Format format : values()) {
+					if (format.name().equalsIgnoreCase(name.toString())) {
+						return format;
+					}
+				}
+			}
+			return JSON;
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package org.ssssssss.magicapi.modules;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.ssssssss.magicapi.modules.StreamingResultSetExtractor.Format;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 逐行写入输出流，供SQL、Mongo等流式输出使用
+ */
+public class StreamingRowWriter {
+
+	private static final Logger logger = LoggerFactory.getLogger(StreamingRowWriter.class);
+
+	/**
+	 * 输出中断时最后一行的key
+	 */
+	public static final String ERROR_KEY = "$error";
+
+	private static final String ERROR_MESSAGE = "查询出错，数据不完整";
+
+	private static final byte[] LINE_SEPARATOR = "\r\n".getBytes(StandardCharsets.UTF_8);
+
+	private final ObjectMapper objectMapper;
+
+	private final Format format;
+
+	private final OutputStream outputStream;
+
+	private final StringBuilder builder = new StringBuilder();
+
+	private ObjectWriter writer;
+
+	private JsonGenerator generator;
+
+	private int count;
+
+	public StreamingRowWriter(ObjectMapper objectMapper, Format format, OutputStream outputStream) {
+		this.objectMapper = objectMapper;
+		this.format = format;
+		this.outputStream = outputStream;
+	}
+
+	/**
+	 * 设置响应头，返回输出流
+	 *
+	 * @param filename 下载的文件名，为null时不设置
+	 */
+	public static OutputStream prepare(HttpServletResponse response, Format format, Object filename) throws IOException {
+		response.setContentType(format.getContentType());
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		if (filename != null) {
+			try {
+				response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + URLEncoder.encode(filename.toString(), "UTF-8"));
+			} catch (UnsupportedEncodingException ignored) {
+			}
+		}
+		return response.getOutputStream();
+	}
+
+	/**
+	 * 写入一行
+	 */
+	public void write(Map<String, ?> row) throws IOException {
+		switch (format) {
+			case CSV:
+				if (row == null) {
+					return;
+				}
+				builder.setLength(0);
+				if (count == 0) {
+					// 表头，使用转换后的列名
+					appendCsvLine(builder, row.keySet());
+				}
+				appendCsvLine(builder, row.values());
+				outputStream.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+				break;
+			case NDJSON:
+				outputStream.write(objectMapper.writeValueAsBytes(row));
+				outputStream.write(LINE_SEPARATOR);
+				break;
+			default:
+				// 每行写入后不刷新，由输出流自行缓冲
+				start();
+				writer.writeValue(generator, row);
+		}
+		count++;
+	}
+
+	/**
+	 * 结束写入
+	 *
+	 * @return 写入的行数
+	 */
+	public int finish() throws IOException {
+		if (format == Format.JSON) {
+			start();
+			generator.writeEndArray();
+			generator.flush();
+		} else {
+			outputStream.flush();
+		}
+		return count;
+	}
+
+	/**
+	 * 处理输出过程中的异常。尚未提交响应时清空已缓冲的内容并抛出异常，按正常的异常处理；
+	 * 已输出部分数据时无法再修改状态码，以一行{"$error": "..."}（CSV为`$error,...`）结束输出，调用方据此识别数据不完整
+	 */
+	public void fail(HttpServletResponse response, RuntimeException e) {
+		// 写入失败时客户端已断开，无法再输出
+		if (e instanceof UncheckedIOException || !response.isCommitted()) {
+			if (!response.isCommitted()) {
+				response.resetBuffer();
+			}
+			throw e;
+		}
+		logger.error("流式输出中断，已输出{}行", count, e);
+		try {
+			if (format == Format.CSV) {
+				builder.setLength(0);
+				appendCsvLine(builder, Arrays.asList(ERROR_KEY, ERROR_MESSAGE));
+				outputStream.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+			} else {
+				write(Collections.singletonMap(ERROR_KEY, ERROR_MESSAGE));
+			}
+			finish();
+		} catch (IOException | RuntimeException ignored) {
+			// 客户端已断开
+		}
+	}
+
+	private void start() throws IOException {
+		if (generator == null) {
+			writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+			generator = objectMapper.getFactory().createGenerator(outputStream);
+			generator.writeStartArray();
+		}
+	}
+
+	private void appendCsvLine(StringBuilder builder, Iterable<?> values) {
+		boolean first = true;
+		for (Object value : values) {
+			if (!first) {
+				builder.append(',');
+			}
+			first = false;
+			String text = Objects.toString(value, "");
+			if (text.indexOf(',') > -1 || text.indexOf('"') > -1 || text.indexOf('\n') > -1 || text.indexOf('\r') > -1) {
+				builder.append('"').append(text.replace("\"", "\"\"")).append('"');
+			} else {
+				builder.append(text);
+			}
+		}
+		builder.append("\r\n");
+	}
+}
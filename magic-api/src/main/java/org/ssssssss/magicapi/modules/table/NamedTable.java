@@ -2,6 +2,7 @@ package org.ssssssss.magicapi.modules.table;
 
 import org.apache.commons.lang3.StringUtils;
 import org.ssssssss.magicapi.exception.MagicAPIException;
+import org.ssssssss.magicapi.modules.BatchResult;
 import org.ssssssss.magicapi.modules.BoundSql;
 import org.ssssssss.magicapi.modules.SQLModule;
 import org.ssssssss.script.annotation.Comment;
@@ -12,6 +13,8 @@ import java.util.stream.Collectors;
 
 public class NamedTable {
 
+	private static final int DEFAULT_BATCH_SIZE = 100;
+
 	String tableName;
 
 	SQLModule sqlModule;
@@ -110,7 +113,11 @@ public class NamedTable {
 	}
 
 	private List<Map.Entry<String, Object>> filterNotBlanks() {
-		return this.columns.entrySet().stream()
+		return filterNotBlanks(this.columns);
+	}
+
+	private List<Map.Entry<String, Object>> filterNotBlanks(Map<String, Object> columns) {
+		return columns.entrySet().stream()
 				.filter(it -> StringUtils.isNotBlank(Objects.toString(it.getValue(), "")))
 				.collect(Collectors.toList());
 	}
@@ -143,6 +150,85 @@ public class NamedTable {
 		return sqlModule.insert(new BoundSql(builder.toString(), entries.stream().map(Map.Entry::getValue).collect(Collectors.toList()), sqlModule), this.primary);
 	}
 
+	@Comment("批量插入（在同一事务中执行，失败时全部回滚），返回每批插入条数及按原始顺序排列的主键")
+	public BatchResult batchInsert(@Comment("要插入的数据，如：[{name:'a'},{name:'b'}]") Collection<Map<String, Object>> list) {
+		return batchInsert(list, DEFAULT_BATCH_SIZE);
+	}
+
+	@Comment("批量插入（在同一事务中执行，失败时全部回滚），返回每批插入条数及按原始顺序排列的主键")
+	public BatchResult batchInsert(@Comment("要插入的数据，如：[{name:'a'},{name:'b'}]") Collection<Map<String, Object>> list,
+								   @Comment("每批的条数") int batchSize) {
+		Map<String, List<Object[]>> statements = new LinkedHashMap<>();
+		Map<String, List<Integer>> rows = new HashMap<>();
+		int index = 0;
+		for (Map<String, Object> data : list) {
+			Map<String, Object> row = mergeColumns(data);
+			if (this.defaultPrimaryValue != null && StringUtils.isBlank(Objects.toString(row.getOrDefault(this.primary, "")))) {
+				row.put(this.primary, this.defaultPrimaryValue);
+			}
+			List<Map.Entry<String, Object>> entries = filterNotBlanks(row);
+			if (entries.isEmpty()) {
+				throw new MagicAPIException("参数不能为空");
+			}
+			// 列相同的数据合并为同一批
+			StringBuilder builder = new StringBuilder();
+			builder.append("insert into ");
+			builder.append(tableName);
+			builder.append("(");
+			builder.append(StringUtils.join(entries.stream().map(Map.Entry::getKey).toArray(), ","));
+			builder.append(") values (");
+			builder.append(StringUtils.join(Collections.nCopies(entries.size(), "?"), ","));
+			builder.append(")");
+			String sql = builder.toString();
+			statements.computeIfAbsent(sql, key -> new ArrayList<>()).add(entries.stream().map(Map.Entry::getValue).toArray());
+			rows.computeIfAbsent(sql, key -> new ArrayList<>()).add(index++);
+		}
+		return sqlModule.batchInsert(statements, rows, batchSize, this.primary);
+	}
+
+	@Comment("根据主键批量修改（在同一事务中执行，失败时全部回滚），返回每批受影响行数")
+	public int[] batchUpdate(@Comment("要修改的数据，如：[{id:1,name:'a'},{id:2,name:'b'}]") Collection<Map<String, Object>> list) {
+		return batchUpdate(list, DEFAULT_BATCH_SIZE);
+	}
+
+	@Comment("根据主键批量修改（在同一事务中执行，失败时全部回滚），返回每批受影响行数")
+	public int[] batchUpdate(@Comment("要修改的数据，如：[{id:1,name:'a'},{id:2,name:'b'}]") Collection<Map<String, Object>> list,
+							 @Comment("每批的条数") int batchSize) {
+		if (StringUtils.isBlank(this.primary)) {
+			throw new MagicAPIException("请设置主键");
+		}
+		Map<String, List<Object[]>> statements = new LinkedHashMap<>();
+		for (Map<String, Object> data : list) {
+			Map<String, Object> row = mergeColumns(data);
+			Object primaryValue = row.remove(this.primary);
+			if (primaryValue == null) {
+				throw new MagicAPIException("主键值不能为空");
+			}
+			List<Map.Entry<String, Object>> entries = filterNotBlanks(row);
+			if (entries.isEmpty()) {
+				throw new MagicAPIException("要修改的列不能为空");
+			}
+			// 列相同的数据合并为同一批
+			String sql = "update " + tableName + " set " + entries.stream().map(it -> it.getKey() + " = ?").collect(Collectors.joining(",")) + " where " + this.primary + " = ?";
+			List<Object> params = entries.stream().map(Map.Entry::getValue).collect(Collectors.toList());
+			params.add(primaryValue);
+			statements.computeIfAbsent(sql, key -> new ArrayList<>()).add(params.toArray());
+		}
+		return sqlModule.batchUpdate(statements, batchSize);
+	}
+
+	/**
+	 * 合并已设置的列与本行数据
+	 */
+	private Map<String, Object> mergeColumns(Map<String, Object> data) {
+		// 按列名排序，保证相同的列生成相同的SQL
+		Map<String, Object> row = new TreeMap<>(this.columns);
+		if (data != null) {
+			data.forEach((key, value) -> row.put(rowMapColumnMapper.apply(key), value));
+		}
+		return row;
+	}
+
 	@Comment("执行delete语句(物理删除)")
 	public int delete() {
 		if (where.isEmpty()) {
@@ -1,9 +1,8 @@
 package org.ssssssss.magicapi.provider;
 
 import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.ssssssss.magicapi.modules.CompactColumnMapRowMapper;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
 import java.util.function.Function;
 
 public interface ColumnMapperProvider {
@@ -21,17 +20,7 @@ public interface ColumnMapperProvider {
 	}
 
 	default ColumnMapRowMapper getColumnMapRowMapper() {
-		return new ColumnMapRowMapper() {
-			@Override
-			protected Map<String, Object> createColumnMap(int columnCount) {
-				return new LinkedHashMap<>(columnCount);
-			}
-
-			@Override
-			protected String getColumnKey(String columnName) {
-				return mapping(columnName);
-			}
-		};
+		return new CompactColumnMapRowMapper(this::mapping);
 	}
 
 }
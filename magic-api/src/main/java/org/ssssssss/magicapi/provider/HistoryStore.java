@@ -0,0 +1,577 @@
+package org.ssssssss.magicapi.provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ssssssss.magicapi.adapter.Resource;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 历史记录存储
+ * <p>
+ * 每个ID一个目录，保存时每个版本写入一个完整内容的文件（时间戳.ms，与旧版本的历史记录格式相同），
+ * 后台压缩时将最早的snapshotInterval个版本合并为一个分段（起始时间戳-结束时间戳-版本数.seg），
+ * 分段以一个完整快照开头，之后每个版本只保存与上一版本的差异，整体以Base64保存（数据库、Redis按文本存储），分段写入后不再修改。
+ * 所有文件都只新增或删除、不会被覆盖，多个节点共用同一存储（数据库、Redis）时不会互相覆盖。
+ */
+public class HistoryStore {
+
+	private static final Logger logger = LoggerFactory.getLogger(HistoryStore.class);
+
+	private static final String SEGMENT_SUFFIX = ".seg";
+
+	/**
+	 * 未压缩的版本文件后缀
+	 */
+	private static final String VERSION_SUFFIX = ".ms";
+
+	private static final byte TYPE_FULL = 0;
+
+	private static final byte TYPE_DELTA = 1;
+
+	private final Resource root;
+
+	/**
+	 * 每个分段的版本数
+	 */
+	private int snapshotInterval = 20;
+
+	/**
+	 * 每个ID最多保留的版本数，<=0时不限制
+	 */
+	private int maxCount = 0;
+
+	/**
+	 * 最长保留时间，单位为毫秒，<=0时不限制，最新的版本始终保留
+	 */
+	private long maxAge = 0;
+
+	private ScheduledExecutorService scheduler;
+
+	public HistoryStore(Resource root) {
+		this.root = root;
+		if (!this.root.exists()) {
+			this.root.mkdir();
+		}
+	}
+
+	public void setSnapshotInterval(int snapshotInterval) {
+		this.snapshotInterval = Math.max(1, snapshotInterval);
+	}
+
+	public void setMaxCount(int maxCount) {
+		this.maxCount = maxCount;
+	}
+
+	public void setMaxAge(long maxAge) {
+		this.maxAge = maxAge;
+	}
+
+	/**
+	 * 保存一个版本
+	 *
+	 * @param timestamp 版本时间戳，不大于已有版本时自动递增
+	 */
+	public synchronized boolean save(String id, long timestamp, byte[] content) {
+		Resource directory = root.getDirectory(id);
+		if (directory.readonly() || !(directory.exists() || directory.mkdir())) {
+			return false;
+		}
+		long latest = readVersions(directory).keySet().stream().max(Long::compare).orElse(0L);
+		for (Segment segment : readSegments(directory)) {
+			latest = Math.max(latest, segment.last);
+		}
+		timestamp = Math.max(timestamp, latest + 1);
+		Resource resource = directory.getResource(timestamp + VERSION_SUFFIX);
+		while (resource.exists()) {
+			resource = directory.getResource(++timestamp + VERSION_SUFFIX);
+		}
+		return resource.write(content);
+	}
+
+	/**
+	 * 查询历史记录
+	 *
+	 * @return 时间戳列表，倒序
+	 */
+	public synchronized List<Long> list(String id) {
+		Resource directory = root.getDirectory(id);
+		if (!directory.exists()) {
+			return Collections.emptyList();
+		}
+		Set<Long> timestamps = new TreeSet<>(Comparator.reverseOrder());
+		for (Segment segment : readSegments(directory)) {
+			try {
+				for (long timestamp : readTimestamps(segment)) {
+					timestamps.add(timestamp);
+				}
+			} catch (IOException e) {
+				logger.warn("读取历史记录分段{}失败,{}", segment.resource.name(), e.getMessage());
+			}
+		}
+		timestamps.addAll(readVersions(directory).keySet());
+		return new ArrayList<>(timestamps);
+	}
+
+	/**
+	 * 读取指定版本，不存在时返回null
+	 */
+	public synchronized byte[] read(String id, long timestamp) {
+		Resource directory = root.getDirectory(id);
+		if (!directory.exists()) {
+			return null;
+		}
+		Resource resource = directory.getResource(timestamp + VERSION_SUFFIX);
+		if (resource.exists()) {
+			return resource.read();
+		}
+		for (Segment segment : readSegments(directory)) {
+			if (timestamp < segment.first || timestamp > segment.last) {
+				continue;
+			}
+			try {
+				String text = null;
+				for (Entry entry : readEntries(segment)) {
+					text = entry.apply(text);
+					if (entry.timestamp == timestamp) {
+						return text.getBytes(StandardCharsets.UTF_8);
+					}
+				}
+			} catch (IOException e) {
+				logger.warn("读取历史记录分段{}失败,{}", segment.resource.name(), e.getMessage());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 压缩指定ID的历史记录：按保留策略删除过期版本，将未压缩的版本（包括旧版本的.ms文件）合并为分段。
+	 * 是否需要压缩只根据文件名判断，不需要时不读取任何内容
+	 */
+	public synchronized void compact(String id) {
+		Resource directory = root.getDirectory(id);
+		if (directory.readonly() || !directory.exists()) {
+			return;
+		}
+		try {
+			List<Segment> segments = removeOverlapped(readSegments(directory));
+			TreeMap<Long, Resource> versions = removePacked(new TreeMap<>(readVersions(directory)), segments);
+			int total = versions.size() + segments.stream().mapToInt(it -> it.count).sum();
+			if (total == 0) {
+				return;
+			}
+			int removed = applyRetention(directory, segments, versions, total);
+			int packed = 0;
+			while (versions.size() >= snapshotInterval) {
+				List<Map.Entry<Long, Resource>> batch = new ArrayList<>(snapshotInterval);
+				for (int i = 0; i < snapshotInterval; i++) {
+					batch.add(versions.pollFirstEntry());
+				}
+				List<Entry> entries = new ArrayList<>(batch.size());
+				String previous = null;
+				for (Map.Entry<Long, Resource> version : batch) {
+					String text = new String(version.getValue().read(), StandardCharsets.UTF_8);
+					entries.add(previous == null ? Entry.full(version.getKey(), text) : Entry.delta(version.getKey(), previous, text));
+					previous = text;
+				}
+				if (!writeSegment(directory, entries)) {
+					break;
+				}
+				batch.forEach(it -> it.getValue().delete());
+				packed += batch.size();
+			}
+			if (removed > 0 || packed > 0) {
+				logger.debug("压缩历史记录:{}，{}个版本，删除{}个，合并{}个", id, total, removed, packed);
+			}
+		} catch (IOException e) {
+			logger.warn("压缩历史记录{}失败,{}", id, e.getMessage());
+		}
+	}
+
+	/**
+	 * 压缩所有历史记录
+	 */
+	public void compactAll() {
+		long start = System.currentTimeMillis();
+		List<Resource> directories = root.dirs();
+		for (Resource directory : directories) {
+			compact(directory.name());
+		}
+		logger.debug("压缩{}个历史记录，耗时{}ms", directories.size(), System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * 定时在后台压缩
+	 *
+	 * @param interval 间隔时间，单位为毫秒
+	 */
+	public synchronized void startCompaction(long interval) {
+		if (scheduler != null || interval <= 0 || root.readonly()) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "magic-api-history-compaction");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				compactAll();
+			} catch (Exception e) {
+				logger.warn("压缩历史记录失败", e);
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 停止后台压缩
+	 */
+	public synchronized void shutdown() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * 按保留策略从最早的版本开始删除，整个分段过期时直接删除，部分过期时重新生成分段
+	 *
+	 * @return 删除的版本数
+	 */
+	private int applyRetention(Resource directory, List<Segment> segments, TreeMap<Long, Resource> versions, int total) throws IOException {
+		int drop = maxCount > 0 ? Math.max(0, total - maxCount) : 0;
+		long expired = maxAge > 0 ? System.currentTimeMillis() - maxAge : Long.MIN_VALUE;
+		int removed = 0;
+		// 分段总是早于未压缩的版本
+		while (!segments.isEmpty()) {
+			Segment segment = segments.get(0);
+			if (drop <= 0 && segment.first >= expired) {
+				return removed;
+			}
+			boolean newest = versions.isEmpty() && segments.size() == 1;
+			if (!newest && (drop >= segment.count || segment.last < expired)) {
+				segments.remove(0);
+				if (segment.resource.delete()) {
+					removed += segment.count;
+				}
+				drop = Math.max(0, drop - segment.count);
+				continue;
+			}
+			// 部分过期，保留剩余的版本
+			List<Entry> entries = readEntries(segment);
+			List<Entry> kept = new ArrayList<>(entries.size());
+			String text = null;
+			String previous = null;
+			for (int i = 0; i < entries.size(); i++) {
+				Entry entry = entries.get(i);
+				text = entry.apply(text);
+				if ((i >= drop && entry.timestamp >= expired) || (newest && i == entries.size() - 1)) {
+					kept.add(previous == null ? Entry.full(entry.timestamp, text) : Entry.delta(entry.timestamp, previous, text));
+					previous = text;
+				}
+			}
+			if (kept.size() < entries.size() && writeSegment(directory, kept)) {
+				segment.resource.delete();
+				removed += entries.size() - kept.size();
+			}
+			return removed;
+		}
+		// 最新的版本始终保留
+		while (versions.size() > 1 && (drop > 0 || versions.firstKey() < expired)) {
+			if (versions.pollFirstEntry().getValue().delete()) {
+				removed++;
+			}
+			drop--;
+		}
+		return removed;
+	}
+
+	/**
+	 * 多个节点同时按保留策略重新生成同一个分段时，会产生结束时间相同的分段，只保留起始时间最晚的一个
+	 */
+	private List<Segment> removeOverlapped(List<Segment> segments) {
+		Map<Long, Segment> latest = new HashMap<>();
+		for (Segment segment : segments) {
+			Segment exists = latest.get(segment.last);
+			if (exists == null || exists.first < segment.first) {
+				latest.put(segment.last, segment);
+				if (exists != null) {
+					exists.resource.delete();
+				}
+			} else {
+				segment.resource.delete();
+			}
+		}
+		List<Segment> result = new ArrayList<>(latest.values());
+		result.sort(Comparator.comparingLong(it -> it.first));
+		return result;
+	}
+
+	/**
+	 * 合并分段后未能删除的版本文件（如其它节点同时在压缩），在分段中存在时删除
+	 */
+	private TreeMap<Long, Resource> removePacked(TreeMap<Long, Resource> versions, List<Segment> segments) throws IOException {
+		long last = segments.isEmpty() ? Long.MIN_VALUE : segments.get(segments.size() - 1).last;
+		Iterator<Map.Entry<Long, Resource>> iterator = versions.headMap(last, true).entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Long, Resource> version = iterator.next();
+			for (Segment segment : segments) {
+				if (version.getKey() >= segment.first && version.getKey() <= segment.last
+						&& Arrays.binarySearch(readTimestamps(segment), version.getKey()) >= 0) {
+					version.getValue().delete();
+					iterator.remove();
+					break;
+				}
+			}
+		}
+		return versions;
+	}
+
+	/**
+	 * 读取未压缩的版本
+	 */
+	private Map<Long, Resource> readVersions(Resource directory) {
+		Map<Long, Resource> versions = new HashMap<>();
+		for (Resource resource : directory.files(VERSION_SUFFIX)) {
+			Long timestamp = parseTimestamp(resource.name());
+			if (timestamp != null) {
+				versions.put(timestamp, resource);
+			}
+		}
+		return versions;
+	}
+
+	/**
+	 * 根据文件名读取分段信息，按起始时间排序
+	 */
+	private List<Segment> readSegments(Resource directory) {
+		List<Segment> segments = new ArrayList<>();
+		for (Resource resource : directory.files(SEGMENT_SUFFIX)) {
+			Segment segment = Segment.parse(resource);
+			if (segment != null) {
+				segments.add(segment);
+			}
+		}
+		segments.sort(Comparator.comparingLong(it -> it.first));
+		return segments;
+	}
+
+	/**
+	 * 分段格式：版本数、各版本时间戳，之后是gzip压缩的各版本内容，整体以Base64编码，查询列表时只需读取开头部分
+	 */
+	private long[] readTimestamps(Segment segment) throws IOException {
+		try (DataInputStream in = new DataInputStream(Base64.getDecoder().wrap(new BufferedInputStream(segment.resource.getInputStream())))) {
+			return readTimestamps(in);
+		}
+	}
+
+	private long[] readTimestamps(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		if (size < 0 || size > 1 << 20) {
+			throw new IOException("历史记录分段格式错误");
+		}
+		long[] timestamps = new long[size];
+		for (int i = 0; i < size; i++) {
+			timestamps[i] = in.readLong();
+		}
+		return timestamps;
+	}
+
+	private List<Entry> readEntries(Segment segment) throws IOException {
+		byte[] bytes;
+		try {
+			bytes = Base64.getDecoder().decode(segment.resource.read());
+		} catch (IllegalArgumentException e) {
+			throw new IOException("历史记录分段格式错误", e);
+		}
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			long[] timestamps = readTimestamps(in);
+			DataInputStream body = new DataInputStream(new GZIPInputStream(in));
+			List<Entry> entries = new ArrayList<>(timestamps.length);
+			for (long timestamp : timestamps) {
+				byte type = body.readByte();
+				int start = 0;
+				int length = 0;
+				if (type == TYPE_DELTA) {
+					start = body.readInt();
+					length = body.readInt();
+				}
+				byte[] text = new byte[body.readInt()];
+				body.readFully(text);
+				entries.add(new Entry(timestamp, type, start, length, new String(text, StandardCharsets.UTF_8)));
+			}
+			return entries;
+		}
+	}
+
+	/**
+	 * 写入分段，写入后重新读取校验，校验失败时删除该分段，调用方据此决定是否删除原版本
+	 */
+	private boolean writeSegment(Resource directory, List<Entry> entries) throws IOException {
+		if (entries.isEmpty()) {
+			return false;
+		}
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bos);
+		out.writeInt(entries.size());
+		for (Entry entry : entries) {
+			out.writeLong(entry.timestamp);
+		}
+		out.flush();
+		try (DataOutputStream body = new DataOutputStream(new GZIPOutputStream(bos))) {
+			for (Entry entry : entries) {
+				body.writeByte(entry.type);
+				if (entry.type == TYPE_DELTA) {
+					body.writeInt(entry.start);
+					body.writeInt(entry.length);
+				}
+				byte[] bytes = entry.text.getBytes(StandardCharsets.UTF_8);
+				body.writeInt(bytes.length);
+				body.write(bytes);
+			}
+		}
+		String name = entries.get(0).timestamp + "-" + entries.get(entries.size() - 1).timestamp + "-" + entries.size() + SEGMENT_SUFFIX;
+		Resource resource = directory.getResource(name);
+		if (!resource.write(Base64.getEncoder().encodeToString(bos.toByteArray()))) {
+			return false;
+		}
+		List<Entry> written = null;
+		try {
+			written = readEntries(Segment.parse(resource));
+		} catch (IOException e) {
+			logger.warn("校验历史记录分段{}失败,{}", name, e.getMessage());
+		}
+		if (written == null || written.size() != entries.size()) {
+			resource.delete();
+			return false;
+		}
+		for (int i = 0; i < entries.size(); i++) {
+			if (!entries.get(i).isSame(written.get(i))) {
+				logger.warn("校验历史记录分段{}失败,内容不一致", name);
+				resource.delete();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Long parseTimestamp(String name) {
+		if (!name.endsWith(VERSION_SUFFIX)) {
+			return null;
+		}
+		try {
+			return Long.valueOf(name.substring(0, name.length() - VERSION_SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 分段文件，文件名为：起始时间戳-结束时间戳-版本数.seg
+	 */
+	private static class Segment {
+
+		private final Resource resource;
+
+		private final long first;
+
+		private final long last;
+
+		private final int count;
+
+		Segment(Resource resource, long first, long last, int count) {
+			this.resource = resource;
+			this.first = first;
+			this.last = last;
+			this.count = count;
+		}
+
+		static Segment parse(Resource resource) {
+			String name = resource.name();
+			if (!name.endsWith(SEGMENT_SUFFIX)) {
+				return null;
+			}
+			String[] parts = name.substring(0, name.length() - SEGMENT_SUFFIX.length()).split("-");
+			if (parts.length != 3) {
+				return null;
+			}
+			try {
+				return new Segment(resource, Long.parseLong(parts[0]), Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * 分段中的一个版本，快照时text为完整内容，差异时表示将上一版本[start, start + length)替换为text
+	 */
+	private static class Entry {
+
+		private final long timestamp;
+
+		private final byte type;
+
+		private final int start;
+
+		private final int length;
+
+		private final String text;
+
+		Entry(long timestamp, byte type, int start, int length, String text) {
+			this.timestamp = timestamp;
+			this.type = type;
+			this.start = start;
+			this.length = length;
+			this.text = text;
+		}
+
+		static Entry full(long timestamp, String text) {
+			return new Entry(timestamp, TYPE_FULL, 0, 0, text);
+		}
+
+		/**
+		 * 计算差异，只保留首尾相同部分之外的内容
+		 */
+		static Entry delta(long timestamp, String previous, String current) {
+			int max = Math.min(previous.length(), current.length());
+			int prefix = 0;
+			while (prefix < max && previous.charAt(prefix) == current.charAt(prefix)) {
+				prefix++;
+			}
+			int suffix = 0;
+			while (suffix < max - prefix && previous.charAt(previous.length() - 1 - suffix) == current.charAt(current.length() - 1 - suffix)) {
+				suffix++;
+			}
+			// 不拆分代理对，避免单独编码时出错
+			if (prefix > 0 && Character.isHighSurrogate(current.charAt(prefix - 1))) {
+				prefix--;
+			}
+			if (suffix > 0 && Character.isLowSurrogate(current.charAt(current.length() - suffix))) {
+				suffix--;
+			}
+			return new Entry(timestamp, TYPE_DELTA, prefix, previous.length() - prefix - suffix, current.substring(prefix, current.length() - suffix));
+		}
+
+		boolean isSame(Entry entry) {
+			return timestamp == entry.timestamp && type == entry.type && start == entry.start && length == entry.length && text.equals(entry.text);
+		}
+
+		/**
+		 * 在上一版本的基础上得到当前版本的内容
+		 */
+		String apply(String previous) {
+			if (type == TYPE_FULL) {
+				return text;
+			}
+			return previous.substring(0, start) + text + previous.substring(start + length);
+		}
+	}
+}
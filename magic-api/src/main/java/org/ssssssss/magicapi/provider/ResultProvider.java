@@ -2,6 +2,7 @@ package org.ssssssss.magicapi.provider;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.ssssssss.magicapi.model.CursorPageResult;
 import org.ssssssss.magicapi.model.Page;
 import org.ssssssss.magicapi.model.PageResult;
 import org.ssssssss.magicapi.model.RequestEntity;
@@ -106,4 +107,18 @@ public interface ResultProvider {
 		return new PageResult<>(total, data);
 	}
 
+	/**
+	 * 构建游标分页结果
+	 *
+	 * @param requestEntity 请求相关信息
+	 * @param page          分页对象
+	 * @param total         总数，未查询总数时为-1
+	 * @param data          数据内容
+	 * @param nextCursor    下一页的游标，没有下一页时为null
+	 * @since 1.3.4
+	 */
+	default Object buildPageResult(RequestEntity requestEntity, Page page, long total, List<Map<String, Object>> data, Object nextCursor) {
+		return new CursorPageResult<>(total, data, nextCursor);
+	}
+
 }
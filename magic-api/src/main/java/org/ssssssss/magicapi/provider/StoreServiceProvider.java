@@ -3,12 +3,16 @@ package org.ssssssss.magicapi.provider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.ssssssss.magicapi.adapter.Resource;
+import org.ssssssss.magicapi.adapter.ResourceStat;
 import org.ssssssss.magicapi.model.Constants;
 import org.ssssssss.magicapi.model.MagicEntity;
 import org.ssssssss.magicapi.utils.JsonUtils;
+import org.ssssssss.magicapi.utils.ParallelUtils;
 
+import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public abstract class StoreServiceProvider<T extends MagicEntity> {
@@ -16,12 +20,27 @@ public abstract class StoreServiceProvider<T extends MagicEntity> {
 	private static final Logger logger = LoggerFactory.getLogger(StoreServiceProvider.class);
 	protected Resource workspace;
 	protected Resource backupResource;
+	/**
+	 * 历史记录存储，默认保存在backups目录中
+	 */
+	protected HistoryStore historyStore;
 	protected Map<String, Resource> mappings = new HashMap<>();
 	protected Map<String, T> infos = new HashMap<>();
+	/**
+	 * 已加载资源的摘要，key为资源路径，摘要一致时无需重新读取
+	 */
+	protected volatile Map<String, ResourceStat> stats = new ConcurrentHashMap<>();
 	protected GroupServiceProvider groupServiceProvider;
 	protected Class<T> clazz;
 	String separatorWithCRLF = "\r\n================================\r\n";
 	String separatorWithLF = "\n================================\n";
+	byte[] separatorBytesWithCRLF = separatorWithCRLF.getBytes(StandardCharsets.UTF_8);
+	byte[] separatorBytesWithLF = separatorWithLF.getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * 是否延迟加载脚本，开启后启动时只读取元数据，脚本内容在首次使用时读取
+	 */
+	protected boolean lazyLoadScript = false;
 
 	public StoreServiceProvider(Class<T> clazz, Resource workspace, GroupServiceProvider groupServiceProvider) {
 		this.clazz = clazz;
@@ -31,11 +50,25 @@ public abstract class StoreServiceProvider<T extends MagicEntity> {
 			this.workspace.mkdir();
 		}
 		this.backupResource = this.workspace.parent().getDirectory(Constants.PATH_BACKUPS);
-		if (!this.backupResource.exists()) {
-			this.backupResource.mkdir();
-		}
+		this.historyStore = new HistoryStore(this.backupResource);
+	}
+
+
+	public HistoryStore getHistoryStore() {
+		return historyStore;
+	}
+
+	public void setHistoryStore(HistoryStore historyStore) {
+		this.historyStore = historyStore;
+	}
+
+	public boolean isLazyLoadScript() {
+		return lazyLoadScript;
 	}
 
+	public void setLazyLoadScript(boolean lazyLoadScript) {
+		this.lazyLoadScript = lazyLoadScript;
+	}
 
 	/**
 	 * 添加
@@ -48,6 +81,7 @@ public abstract class StoreServiceProvider<T extends MagicEntity> {
 		if (!dest.exists() && dest.write(serialize(info))) {
 			mappings.put(info.getId(), dest);
 			infos.put(info.getId(), info);
+			refreshStat(null, dest);
 			return true;
 		}
 		return false;
@@ -57,14 +91,10 @@ public abstract class StoreServiceProvider<T extends MagicEntity> {
 	 * 备份历史记录
 	 */
 	public boolean backup(T info) {
-		Resource directory = this.backupResource.getDirectory(info.getId());
-		if (!directory.readonly() && (directory.exists() || directory.mkdir())) {
-			Resource resource = directory.getResource(String.format("%s.ms", System.currentTimeMillis()));
-			try {
-				return resource.write(serialize(info));
-			} catch (Exception e) {
-				logger.warn("保存历史记录失败,{}", e.getMessage());
-			}
+		try {
+			return this.historyStore.save(info.getId(), System.currentTimeMillis(), serialize(info));
+		} catch (Exception e) {
+			logger.warn("保存历史记录失败,{}", e.getMessage());
 		}
 		return false;
 	}
@@ -76,12 +106,7 @@ public abstract class StoreServiceProvider<T extends MagicEntity> {
 	 * @return 时间戳列表
 	 */
 	public List<Long> backupList(String id) {
-		Resource directory = this.backupResource.getDirectory(id);
-		List<Resource> resources = directory.files(".ms");
-		return resources.stream()
-				.map(it -> Long.valueOf(it.name().replace(".ms", "")))
-				.sorted(Comparator.reverseOrder())
-				.collect(Collectors.toList());
+		return this.historyStore.list(id);
 	}
 
 	/**
@@ -91,14 +116,8 @@ public abstract class StoreServiceProvider<T extends MagicEntity> {
 	 * @param timestamp 时间戳
 	 */
 	public T backupInfo(String id, Long timestamp) {
-		Resource directory = this.backupResource.getDirectory(id);
-		if (directory.exists()) {
-			Resource resource = directory.getResource(String.format("%s.ms", timestamp));
-			if (resource.exists()) {
-				return deserialize(resource.read());
-			}
-		}
-		return null;
+		byte[] content = timestamp == null ? null : this.historyStore.read(id, timestamp);
+		return content == null ? null : deserialize(content);
 	}
 
 	/**
@@ -117,6 +136,7 @@ public abstract class StoreServiceProvider<T extends MagicEntity> {
 		if (dest.write(serialize(info))) {
 			mappings.put(info.getId(), dest);
 			infos.put(info.getId(), info);
+			refreshStat(src, dest);
 			return true;
 		}
 		return false;
@@ -130,6 +150,7 @@ public abstract class StoreServiceProvider<T extends MagicEntity> {
 		if (resource != null && resource.delete()) {
 			mappings.remove(id);
 			infos.remove(id);
+			refreshStat(resource, null);
 			return true;
 		}
 		return false;
@@ -160,25 +181,208 @@ public abstract class StoreServiceProvider<T extends MagicEntity> {
 		return false;
 	}
 
+	/**
+	 * 重新加载单个资源，用于集群同步
+	 *
+	 * @param id         ID
+	 * @param groupId    分组ID
+	 * @param name       名称
+	 * @param updateTime 修改时间，与已加载的一致时不重新读取
+	 * @return 资源不存在或不是该ID时返回null
+	 */
+	public T reload(String id, String groupId, String name, Long updateTime) {
+		Resource groupResource = groupServiceProvider.getGroupResource(groupId);
+		if (groupResource == null || name == null) {
+			return null;
+		}
+		Resource resource = groupResource.getResource(name + ".ms");
+		T info = infos.get(id);
+		Resource current = mappings.get(id);
+		boolean samePath = current != null && current.getAbsolutePath().equals(resource.getAbsolutePath());
+		if (info != null && updateTime != null && updateTime.equals(info.getUpdateTime()) && samePath) {
+			return info;
+		}
+		// 内容摘要一致时无需重新读取
+		ResourceStat stat = resource.stat();
+		if (info != null && samePath && stat != null && stat.isSame(stats.get(resource.getAbsolutePath()))) {
+			return info;
+		}
+		byte[] data = resource.reload();
+		if (data == null || data.length == 0) {
+			return null;
+		}
+		info = deserialize(data);
+		if (info == null || !id.equals(info.getId())) {
+			return null;
+		}
+		infos.put(id, info);
+		mappings.put(id, resource);
+		if (stat != null) {
+			stats.put(resource.getAbsolutePath(), stat);
+		}
+		return info;
+	}
+
+	/**
+	 * 移除已加载的信息，用于集群同步
+	 */
+	public void evict(String id) {
+		infos.remove(id);
+		refreshStat(mappings.remove(id), null);
+	}
+
 	/**
 	 * 查询所有（内部使用，需要带Script）
+	 * <p>
+	 * 资源摘要与上次加载时一致的直接复用，其余的并行读取并反序列化，延迟加载脚本时只解析元数据
 	 */
 	public List<T> listWithScript() {
+		long start = System.currentTimeMillis();
 		workspace.readAll();
 		List<Resource> resources = workspace.files(".ms");
+		Map<String, ResourceStat> manifest = workspace.manifest(".ms");
+		long loaded = System.currentTimeMillis();
+		boolean lazy = isLazyLoadSupported();
+		Map<String, T> loadedInfos = new HashMap<>();
+		if (manifest != null) {
+			this.mappings.forEach((id, resource) -> {
+				T info = this.infos.get(id);
+				if (info != null) {
+					loadedInfos.put(resource.getAbsolutePath(), info);
+				}
+			});
+		}
+		Map<String, ResourceStat> loadedStats = this.stats;
+		List<T> list = ParallelUtils.map(resources, r -> {
+			String path = r.getAbsolutePath();
+			T info = loadedInfos.get(path);
+			if (info != null && manifest.containsKey(path) && manifest.get(path).isSame(loadedStats.get(path))) {
+				return info;
+			}
+			return lazy ? deserializeMetadata(r) : deserialize(r.read());
+		});
 		Map<String, Resource> mappings = new HashMap<>();
 		Map<String, T> infos = new HashMap<>();
-		List<T> result = resources.stream().map(r -> {
-			T info = deserialize(r.read());
-			infos.put(info.getId(), info);
-			mappings.put(info.getId(), r);
-			return (T) info.clone();
-		}).collect(Collectors.toList());
+		List<T> result = new ArrayList<>(list.size());
+		for (int i = 0, size = list.size(); i < size; i++) {
+			T info = list.get(i);
+			if (info != null) {
+				infos.put(info.getId(), info);
+				mappings.put(info.getId(), resources.get(i));
+				result.add((T) info.clone());
+			}
+		}
 		this.mappings = mappings;
 		this.infos = infos;
+		this.stats = manifest == null ? new ConcurrentHashMap<>() : new ConcurrentHashMap<>(manifest);
+		logger.debug("加载{}个{}，读取耗时{}ms，解析耗时{}ms{}", result.size(), clazz.getSimpleName(), loaded - start, System.currentTimeMillis() - loaded, lazy ? "（延迟加载脚本）" : "");
 		return result;
 	}
 
+	/**
+	 * 是否可以延迟加载脚本，重写了{@link #unwrap(MagicEntity)}时需要完整解析，不延迟加载
+	 */
+	protected boolean isLazyLoadSupported() {
+		if (!lazyLoadScript) {
+			return false;
+		}
+		try {
+			return getClass().getMethod("unwrap", MagicEntity.class).getDeclaringClass() == StoreServiceProvider.class;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 只解析元数据，读取到分隔符为止，脚本内容在首次使用时再读取
+	 */
+	protected T deserializeMetadata(Resource resource) {
+		byte[] header = readHeader(resource);
+		if (header == null) {
+			logger.warn("文件内容格式错误，请检查。");
+			return null;
+		}
+		T info = JsonUtils.readValue(new String(header, StandardCharsets.UTF_8), clazz);
+		if (info != null) {
+			String id = info.getId();
+			info.setScriptLoader(() -> loadScript(id, resource));
+		}
+		return info;
+	}
+
+	/**
+	 * 以流的方式读取分隔符之前的内容，未找到分隔符时返回null
+	 */
+	private byte[] readHeader(Resource resource) {
+		try (InputStream is = new BufferedInputStream(resource.getInputStream())) {
+			ByteArrayOutputStream os = new ByteArrayOutputStream(1024);
+			int b;
+			while ((b = is.read()) != -1) {
+				os.write(b);
+				if (b == '\n') {
+					byte[] data = os.toByteArray();
+					if (endsWith(data, separatorBytesWithCRLF)) {
+						return Arrays.copyOf(data, data.length - separatorBytesWithCRLF.length);
+					}
+					if (endsWith(data, separatorBytesWithLF)) {
+						return Arrays.copyOf(data, data.length - separatorBytesWithLF.length);
+					}
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("读取{}失败", resource.getAbsolutePath(), e);
+		}
+		return null;
+	}
+
+	/**
+	 * 读取脚本内容，优先读取ID当前对应的资源，只截取分隔符之后的部分，无需再解析元数据
+	 */
+	protected String loadScript(String id, Resource resource) {
+		Resource current = mappings.get(id);
+		byte[] data = (current == null ? resource : current).read();
+		byte[] separator = separatorBytesWithCRLF;
+		int index = indexOf(data, separator);
+		if (index == -1) {
+			separator = separatorBytesWithLF;
+			index = indexOf(data, separator);
+		}
+		if (index == -1) {
+			logger.warn("文件内容格式错误，请检查。");
+			return null;
+		}
+		int offset = index + separator.length;
+		return new String(data, offset, data.length - offset, StandardCharsets.UTF_8);
+	}
+
+	private static boolean endsWith(byte[] data, byte[] target) {
+		if (data.length < target.length) {
+			return false;
+		}
+		for (int i = 0, offset = data.length - target.length; i < target.length; i++) {
+			if (data[offset + i] != target[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int indexOf(byte[] data, byte[] target) {
+		if (data == null) {
+			return -1;
+		}
+		outer:
+		for (int i = 0, len = data.length - target.length; i <= len; i++) {
+			for (int j = 0; j < target.length; j++) {
+				if (data[i + j] != target[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
 	/**
 	 * 查询详情（主要给页面使用）
 	 *
@@ -213,10 +417,35 @@ public abstract class StoreServiceProvider<T extends MagicEntity> {
 			return false;
 		}
 		T info = infos.get(id);
+		// 延迟加载时需在移动前读取脚本内容
+		info.getScript();
 		src.renameTo(dest);
 		info.setGroupId(groupId);
 		mappings.put(id, dest);
-		return dest.write(serialize(info));
+		boolean success = dest.write(serialize(info));
+		refreshStat(src, dest);
+		return success;
+	}
+
+	/**
+	 * 修改资源后同步摘要，避免下次加载时复用旧的内容
+	 *
+	 * @param removed  原资源，可为null
+	 * @param resource 写入后的资源，可为null
+	 */
+	protected void refreshStat(Resource removed, Resource resource) {
+		Map<String, ResourceStat> stats = this.stats;
+		if (removed != null) {
+			stats.remove(removed.getAbsolutePath());
+		}
+		if (resource != null) {
+			ResourceStat stat = resource.stat();
+			if (stat == null) {
+				stats.remove(resource.getAbsolutePath());
+			} else {
+				stats.put(resource.getAbsolutePath(), stat);
+			}
+		}
 	}
 
 	/**
@@ -231,7 +460,7 @@ public abstract class StoreServiceProvider<T extends MagicEntity> {
 					.map(T::getId)
 					.collect(Collectors.toList());
 			infoIds.forEach(infos::remove);
-			infoIds.forEach(mappings::remove);
+			infoIds.forEach(id -> refreshStat(mappings.remove(id), null));
 		}
 		return true;
 	}
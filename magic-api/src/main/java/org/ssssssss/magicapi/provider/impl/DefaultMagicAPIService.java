@@ -36,15 +36,12 @@ import org.ssssssss.magicapi.utils.JsonUtils;
 import org.ssssssss.magicapi.utils.PathUtils;
 import org.ssssssss.magicapi.utils.SignUtils;
 import org.ssssssss.script.MagicResourceLoader;
-import org.ssssssss.script.MagicScript;
 import org.ssssssss.script.MagicScriptContext;
 import org.ssssssss.script.functions.ObjectConvertExtension;
 import org.ssssssss.script.parsing.Scope;
 import org.ssssssss.script.parsing.Span;
 import org.ssssssss.script.parsing.ast.Expression;
 
-import javax.script.ScriptContext;
-import javax.script.SimpleScriptContext;
 import javax.sql.DataSource;
 import java.io.*;
 import java.sql.Connection;
@@ -60,6 +57,18 @@ public class DefaultMagicAPIService implements MagicAPIService, JsonCodeConstant
 
 	private final static Logger logger = LoggerFactory.getLogger(DefaultMagicAPIService.class);
 	private static final ClassLoader classLoader = MagicDataSourceController.class.getClassLoader();
+
+	/**
+	 * 从库的负载均衡策略，weighted或least-connections
+	 */
+	private static final String DATASOURCE_LOAD_BALANCE = "loadBalance";
+
+	/**
+	 * 查询从库复制延迟（单位为秒）的SQL
+	 */
+	private static final String DATASOURCE_LAG_SQL = "lagSql";
+
+	private static final String[] DATASOURCE_GROUP_KEYS = {DATASOURCE_LOAD_BALANCE, DATASOURCE_LAG_SQL};
 	// copy from DataSourceBuilder
 	private static final String[] DATA_SOURCE_TYPE_NAMES = new String[]{
 			"com.zaxxer.hikari.HikariDataSource",
@@ -130,11 +139,9 @@ public class DefaultMagicAPIService implements MagicAPIService, JsonCodeConstant
 
 		MagicScriptContext scriptContext = new MagicScriptContext();
 		scriptContext.putMapIntoContext(context);
-		SimpleScriptContext simpleScriptContext = new SimpleScriptContext();
-		simpleScriptContext.setAttribute(MagicScript.CONTEXT_ROOT, scriptContext, ScriptContext.ENGINE_SCOPE);
 		final Object evalVal;
 		try {
-			evalVal = ((MagicScript) ScriptManager.compile("MagicScript", info.getScript())).eval(simpleScriptContext);
+			evalVal = ScriptManager.executeScript(info, scriptContext);
 		} finally {
 			// 恢复原接口上下文，修复当前调完其它接口后原接口上下文丢失的问题
 			MagicScriptContext.set(magicScriptContext);
@@ -197,7 +204,7 @@ public class DefaultMagicAPIService implements MagicAPIService, JsonCodeConstant
 		// 注册接口
 		mappingHandlerMapping.registerMapping(info, true);
 		// 通知更新接口
-		magicNotifyService.sendNotify(new MagicNotify(instanceId, info.getId(), action, Constants.NOTIFY_ACTION_API));
+		magicNotifyService.sendNotify(new MagicNotify(instanceId, info, action, Constants.NOTIFY_ACTION_API));
 		return info.getId();
 	}
 
@@ -239,7 +246,7 @@ public class DefaultMagicAPIService implements MagicAPIService, JsonCodeConstant
 		isTrue(mappingHandlerMapping.move(id, groupId), REQUEST_PATH_CONFLICT);
 		if (apiServiceProvider.move(id, groupId)) {
 			// 通知更新接口
-			magicNotifyService.sendNotify(new MagicNotify(instanceId, id, Constants.NOTIFY_ACTION_UPDATE, Constants.NOTIFY_ACTION_API));
+			magicNotifyService.sendNotify(updateNotify(apiServiceProvider, id, Constants.NOTIFY_ACTION_API));
 			return true;
 		}
 		return false;
@@ -263,7 +270,7 @@ public class DefaultMagicAPIService implements MagicAPIService, JsonCodeConstant
 			functionServiceProvider.backup(functionInfo);
 		}
 		magicFunctionManager.register(functionInfo);
-		magicNotifyService.sendNotify(new MagicNotify(instanceId, functionInfo.getId(), action, Constants.NOTIFY_ACTION_FUNCTION));
+		magicNotifyService.sendNotify(new MagicNotify(instanceId, functionInfo, action, Constants.NOTIFY_ACTION_FUNCTION));
 		return functionInfo.getId();
 	}
 
@@ -299,7 +306,7 @@ public class DefaultMagicAPIService implements MagicAPIService, JsonCodeConstant
 		isTrue(functionServiceProvider.allowMove(id, groupId), NAME_CONFLICT);
 		isTrue(magicFunctionManager.move(id, groupId), FUNCTION_PATH_CONFLICT);
 		if (functionServiceProvider.move(id, groupId)) {
-			magicNotifyService.sendNotify(new MagicNotify(instanceId, id, Constants.NOTIFY_ACTION_UPDATE, Constants.NOTIFY_ACTION_FUNCTION));
+			magicNotifyService.sendNotify(updateNotify(functionServiceProvider, id, Constants.NOTIFY_ACTION_FUNCTION));
 			return true;
 		}
 		return false;
@@ -417,13 +424,57 @@ public class DefaultMagicAPIService implements MagicAPIService, JsonCodeConstant
 			String key = properties.get("key");
 			String name = properties.getOrDefault("name", key);
 			String dsId = properties.remove("id");
-			int maxRows = ObjectConvertExtension.asInt(properties.get("maxRows"), -1);
-			magicDynamicDataSource.put(dsId, key, name, createDataSource(properties), maxRows);
+			registerDataSource(dsId, key, name, properties);
 			return key;
 		}
 		return null;
 	}
 
+	private void registerDataSource(String id, String key, String name, DataSourceInfo properties) {
+		int maxRows = ObjectConvertExtension.asInt(properties.get("maxRows"), -1);
+		DataSource dataSource = createDataSource(properties);
+		List<MagicDynamicDataSource.ReplicaNode> replicas = new ArrayList<>();
+		try {
+			String lagSql = properties.get(DATASOURCE_LAG_SQL);
+			List<DataSourceInfo> replicaProperties = getReplicaProperties(properties);
+			for (int i = 0; i < replicaProperties.size(); i++) {
+				DataSourceInfo replica = replicaProperties.get(i);
+				String replicaName = Objects.toString(replica.remove("name"), key + "#" + i);
+				int weight = ObjectConvertExtension.asInt(replica.remove("weight"), 1);
+				long maxLag = ObjectConvertExtension.asLong(replica.remove("maxLag"), -1);
+				replicas.add(new MagicDynamicDataSource.ReplicaNode(replicaName, createDataSource(replica), weight, lagSql, maxLag));
+			}
+		} catch (RuntimeException e) {
+			IoUtils.closeDataSource(dataSource);
+			replicas.forEach(it -> IoUtils.closeDataSource(it.getDataSource()));
+			throw e;
+		}
+		MagicDynamicDataSource.LoadBalance loadBalance = MagicDynamicDataSource.LoadBalance.of(properties.get(DATASOURCE_LOAD_BALANCE));
+		magicDynamicDataSource.put(id, key, name, dataSource, maxRows, replicas, loadBalance);
+	}
+
+	/**
+	 * 获取从库的配置，未配置的项沿用主库的配置
+	 */
+	private List<DataSourceInfo> getReplicaProperties(DataSourceInfo properties) {
+		List<DataSourceInfo> result = new ArrayList<>();
+		for (Map<String, String> item : properties.getReplicas()) {
+			DataSourceInfo replica = new DataSourceInfo();
+			replica.putAll(properties);
+			Arrays.asList(DATASOURCE_GROUP_KEYS).forEach(replica::remove);
+			replica.remove("id");
+			replica.remove("key");
+			replica.remove("name");
+			// 从库未指定驱动时根据url重新推断
+			if (item.containsKey("url") && !item.containsKey("driverClassName")) {
+				replica.remove("driverClassName");
+			}
+			replica.putAll(item);
+			result.add(replica);
+		}
+		return result;
+	}
+
 	@Override
 	public DataSourceInfo getDataSource(String id) {
 		Resource resource = this.datasourceResource.getResource(id + ".json");
@@ -445,15 +496,20 @@ public class DefaultMagicAPIService implements MagicAPIService, JsonCodeConstant
 
 	@Override
 	public String testDataSource(DataSourceInfo properties) {
-		DataSource dataSource = null;
-		try {
-			dataSource = createDataSource(properties);
-			Connection connection = dataSource.getConnection();
-			DataSourceUtils.doCloseConnection(connection, dataSource);
-		} catch (Exception e) {
-			return e.getMessage();
-		} finally {
-			IoUtils.closeDataSource(dataSource);
+		List<DataSourceInfo> testProperties = new ArrayList<>();
+		testProperties.add(properties);
+		testProperties.addAll(getReplicaProperties(properties));
+		for (DataSourceInfo item : testProperties) {
+			DataSource dataSource = null;
+			try {
+				dataSource = createDataSource(item);
+				Connection connection = dataSource.getConnection();
+				DataSourceUtils.doCloseConnection(connection, dataSource);
+			} catch (Exception e) {
+				return e.getMessage();
+			} finally {
+				IoUtils.closeDataSource(dataSource);
+			}
 		}
 		return null;
 	}
@@ -480,10 +536,9 @@ public class DefaultMagicAPIService implements MagicAPIService, JsonCodeConstant
 		// 验证是否有冲突
 		isTrue(keyStream.noneMatch(key::equals), DATASOURCE_KEY_EXISTS);
 
-		int maxRows = ObjectConvertExtension.asInt(properties.get("maxRows"), -1);
 		properties.remove("id");
 		// 注册数据源
-		magicDynamicDataSource.put(dsId, key, name, createDataSource(properties), maxRows);
+		registerDataSource(dsId, key, name, properties);
 		properties.put("id", dsId);
 		datasourceResource.getResource(dsId + ".json").write(JsonUtils.toJsonString(properties));
 		magicNotifyService.sendNotify(new MagicNotify(instanceId, dsId, action, Constants.NOTIFY_ACTION_DATASOURCE));
@@ -556,10 +611,9 @@ public class DefaultMagicAPIService implements MagicAPIService, JsonCodeConstant
 				groupServiceProvider.insert(group);
 			}
 		}
-		Resource backups = workspace.getDirectory(Constants.PATH_BACKUPS);
 		// 保存
-		write(apiServiceProvider, backups, apiInfos);
-		write(functionServiceProvider, backups, functionInfos);
+		write(apiServiceProvider, apiInfos);
+		write(functionServiceProvider, functionInfos);
 		// 重新注册
 		mappingHandlerMapping.registerAllMapping();
 		magicFunctionManager.registerAllFunction();
@@ -665,9 +719,9 @@ public class DefaultMagicAPIService implements MagicAPIService, JsonCodeConstant
 		int action = magicNotify.getAction();
 		switch (magicNotify.getType()) {
 			case Constants.NOTIFY_ACTION_API:
-				return processApiNotify(id, action);
+				return processApiNotify(magicNotify);
 			case Constants.NOTIFY_ACTION_FUNCTION:
-				return processFunctionNotify(id, action);
+				return processFunctionNotify(magicNotify);
 			case Constants.NOTIFY_ACTION_GROUP:
 				return processGroupNotify(id, action);
 			case Constants.NOTIFY_ACTION_DATASOURCE:
@@ -683,28 +737,53 @@ public class DefaultMagicAPIService implements MagicAPIService, JsonCodeConstant
 		return "magic";
 	}
 
-	private boolean processApiNotify(String id, int action) {
-		// 刷新缓存
-		this.apiList();
-		if (action == Constants.NOTIFY_ACTION_DELETE) {
+	private boolean processApiNotify(MagicNotify magicNotify) {
+		String id = magicNotify.getId();
+		ApiInfo info = magicNotify.getAction() == Constants.NOTIFY_ACTION_DELETE ? null : reloadEntity(apiServiceProvider, magicNotify, this::apiList);
+		if (info == null) {
+			// 已删除，或已被其它节点移动/删除
+			apiServiceProvider.evict(id);
 			mappingHandlerMapping.unregisterMapping(id, true);
 		} else {
-			mappingHandlerMapping.registerMapping(apiServiceProvider.get(id), true);
+			mappingHandlerMapping.registerMapping(info, true);
 		}
 		return true;
 	}
 
-	private boolean processFunctionNotify(String id, int action) {
-		// 刷新缓存
-		this.functionList();
-		if (action == Constants.NOTIFY_ACTION_DELETE) {
+	private boolean processFunctionNotify(MagicNotify magicNotify) {
+		String id = magicNotify.getId();
+		FunctionInfo info = magicNotify.getAction() == Constants.NOTIFY_ACTION_DELETE ? null : reloadEntity(functionServiceProvider, magicNotify, this::functionList);
+		if (info == null) {
+			functionServiceProvider.evict(id);
 			magicFunctionManager.unregister(id);
 		} else {
-			magicFunctionManager.register(functionServiceProvider.get(id));
+			magicFunctionManager.register(info);
 		}
 		return true;
 	}
 
+	/**
+	 * 移动后的更新通知，已被删除时只通知ID，由其它节点重新加载
+	 */
+	private <T extends MagicEntity> MagicNotify updateNotify(StoreServiceProvider<T> provider, String id, int type) {
+		T info = provider.get(id);
+		return info == null ? new MagicNotify(instanceId, id, Constants.NOTIFY_ACTION_UPDATE, type) : new MagicNotify(instanceId, info, Constants.NOTIFY_ACTION_UPDATE, type);
+	}
+
+	/**
+	 * 只重新加载通知对应的资源，无法定位或版本不一致时重新加载全部，重新加载后仍不存在时返回null
+	 */
+	private <T extends MagicEntity> T reloadEntity(StoreServiceProvider<T> provider, MagicNotify magicNotify, Runnable reloadAll) {
+		String id = magicNotify.getId();
+		T info = provider.reload(id, magicNotify.getGroupId(), magicNotify.getName(), magicNotify.getUpdateTime());
+		if (info == null || (magicNotify.getUpdateTime() != null && !magicNotify.getUpdateTime().equals(info.getUpdateTime()))) {
+			logger.info("无法单独加载{}，重新加载全部", id);
+			reloadAll.run();
+			info = provider.get(id);
+		}
+		return info;
+	}
+
 	private boolean processDataSourceNotify(String id, int action) {
 		if (action == Constants.NOTIFY_ACTION_DELETE) {
 			// 查询数据源是否存在
@@ -767,7 +846,10 @@ public class DefaultMagicAPIService implements MagicAPIService, JsonCodeConstant
 			properties.put("driverClassName", driverClass);
 		}
 		DataSource dataSource = BeanUtils.instantiateClass(dataSourceType);
-		ConfigurationPropertySource source = new MapConfigurationPropertySource(properties);
+		Map<String, String> dataSourceProperties = new HashMap<>(properties);
+		// 从库相关配置不绑定到数据源上
+		Arrays.asList(DATASOURCE_GROUP_KEYS).forEach(dataSourceProperties::remove);
+		ConfigurationPropertySource source = new MapConfigurationPropertySource(dataSourceProperties);
 		ConfigurationPropertyNameAliases aliases = new ConfigurationPropertyNameAliases();
 		aliases.addAliases("url", "jdbc-url");
 		aliases.addAliases("username", "user");
@@ -794,25 +876,18 @@ public class DefaultMagicAPIService implements MagicAPIService, JsonCodeConstant
 		throw new InvalidArgumentException(DATASOURCE_TYPE_NOT_SET);
 	}
 
-	private <T extends MagicEntity> void write(StoreServiceProvider<T> provider, Resource backups, Set<T> infos) {
+	private <T extends MagicEntity> void write(StoreServiceProvider<T> provider, Set<T> infos) {
 		for (T info : infos) {
 			Resource resource = groupServiceProvider.getGroupResource(info.getGroupId());
 			resource = resource.getResource(info.getName() + ".ms");
-			byte[] content = null;
 			T oldInfo = provider.get(info.getId());
 			if (oldInfo != null) {
-				content = provider.serialize(oldInfo);
+				// 备份上传前的版本
+				provider.backup(oldInfo);
 				provider.update(info);
 			} else {
 				provider.insert(info);
 			}
-			if (content != null) {
-				Resource directory = backups.getDirectory(info.getId());
-				if (!directory.exists()) {
-					directory.mkdir();
-				}
-				directory.getResource(System.currentTimeMillis() + ".ms").write(content);
-			}
 		}
 	}
 
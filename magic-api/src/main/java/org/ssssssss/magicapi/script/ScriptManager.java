@@ -1,22 +1,38 @@
 package org.ssssssss.magicapi.script;
 
-import org.ssssssss.magicapi.cache.DefaultSqlCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ssssssss.magicapi.cache.ConcurrentSqlCache;
 import org.ssssssss.magicapi.exception.MagicAPIException;
+import org.ssssssss.magicapi.model.MagicEntity;
 import org.ssssssss.magicapi.utils.MD5Utils;
+import org.ssssssss.magicapi.utils.ParallelUtils;
 import org.ssssssss.script.MagicScript;
 import org.ssssssss.script.MagicScriptContext;
 
 import javax.script.*;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ScriptManager {
 
+	private static final Logger logger = LoggerFactory.getLogger(ScriptManager.class);
+
 	private static final ScriptEngineManager scriptEngineManager = new ScriptEngineManager();
 
+	private static final String ENGINE_MAGIC_SCRIPT = "MagicScript";
 
 	/**
 	 * 编译缓存
 	 */
-	private static final DefaultSqlCache compileCache = new DefaultSqlCache(500, -1);
+	private static final ConcurrentSqlCache compileCache = new ConcurrentSqlCache(500, -1);
+
+	/**
+	 * 已注册的接口、函数编译结果，key为ID
+	 */
+	private static final Map<String, CompiledEntity> compiledScripts = new ConcurrentHashMap<>();
 
 	/**
 	 * 编译脚本
@@ -27,42 +43,166 @@ public class ScriptManager {
 		String key = MD5Utils.encrypt(script);    //先对脚本MD5作为key
 		CompiledScript scriptObject = (CompiledScript) compileCache.get("default", key);
 		if (scriptObject == null) {
-			ScriptEngine scriptEngine = scriptEngineManager.getEngineByName(engine);
-			if (scriptEngine != null) {
-				if (scriptEngine instanceof Compilable) {    //判断是否支持编译
-					Compilable compilable = (Compilable) scriptEngine;
-					try {
-						scriptObject = compilable.compile(script);
-					} catch (Exception e) {
-						throw new MagicAPIException(String.format("编译%s出错", engine), e);
-					}
-				} else {
-					scriptObject = new UnCompileScript(script, scriptEngine);
-				}
+			scriptObject = doCompile(engine, script);
+			if (scriptObject != null) {
 				compileCache.put("default", key, scriptObject, -1);
 			}
 		}
 		return scriptObject;
 	}
 
+	private static CompiledScript doCompile(String engine, String script) {
+		ScriptEngine scriptEngine = scriptEngineManager.getEngineByName(engine);
+		if (scriptEngine == null) {
+			return null;
+		}
+		if (scriptEngine instanceof Compilable) {    //判断是否支持编译
+			Compilable compilable = (Compilable) scriptEngine;
+			try {
+				return compilable.compile(script);
+			} catch (Exception e) {
+				throw new MagicAPIException(String.format("编译%s出错", engine), e);
+			}
+		}
+		return new UnCompileScript(script, scriptEngine);
+	}
+
+	/**
+	 * 注册接口或函数时预编译脚本，以ID + 修改时间作为版本
+	 * <p>
+	 * 脚本延迟加载时不编译，首次执行时再读取并编译
+	 *
+	 * @param entity 接口或函数信息
+	 */
+	public static void register(MagicEntity entity) {
+		if (entity == null || entity.getId() == null) {
+			return;
+		}
+		if (!entity.isScriptLoaded()) {
+			compiledScripts.put(entity.getId(), new CompiledEntity(entity.getUpdateTime(), null, null));
+			return;
+		}
+		try {
+			compiledScripts.put(entity.getId(), new CompiledEntity(entity, doCompile(ENGINE_MAGIC_SCRIPT, entity.getScript())));
+		} catch (Exception e) {
+			// 编译失败时不缓存，执行时再抛出异常
+			compiledScripts.remove(entity.getId());
+			logger.warn("预编译脚本[{}]失败", entity.getName(), e);
+		}
+	}
+
+	/**
+	 * 批量注册时并行预编译脚本
+	 *
+	 * @param entities 接口或函数信息
+	 */
+	public static void register(Collection<? extends MagicEntity> entities) {
+		if (entities != null && !entities.isEmpty()) {
+			ParallelUtils.forEach(entities, ScriptManager::register);
+		}
+	}
+
+	/**
+	 * 取消注册时移除预编译的脚本
+	 *
+	 * @param id 接口或函数ID
+	 */
+	public static void unregister(String id) {
+		if (id != null) {
+			compiledScripts.remove(id);
+		}
+	}
+
+	/**
+	 * 获取接口或函数编译后的脚本
+	 */
+	public static CompiledScript getCompiledScript(MagicEntity entity) {
+		CompiledEntity compiled = entity.getId() == null ? null : compiledScripts.get(entity.getId());
+		if (compiled == null) {
+			// 未注册的脚本走编译缓存
+			return compile(ENGINE_MAGIC_SCRIPT, entity.getScript());
+		}
+		if (compiled.isSameVersion(entity)) {
+			return compiled.script;
+		}
+		// 版本不一致或延迟加载时重新编译
+		CompiledScript script = doCompile(ENGINE_MAGIC_SCRIPT, entity.getScript());
+		compiledScripts.replace(entity.getId(), compiled, new CompiledEntity(entity, script));
+		return script;
+	}
+
+	/**
+	 * 执行接口或函数脚本
+	 */
+	public static Object executeScript(MagicEntity entity, MagicScriptContext context) {
+		return eval(getCompiledScript(entity), context);
+	}
+
 	/**
 	 * 执行脚本
 	 */
 	public static Object executeScript(String script, MagicScriptContext context) {
+		return eval(compile(ENGINE_MAGIC_SCRIPT, script), context);
+	}
+
+	private static Object eval(CompiledScript compiledScript, MagicScriptContext context) {
 		SimpleScriptContext simpleScriptContext = new SimpleScriptContext();
 		simpleScriptContext.setAttribute(MagicScript.CONTEXT_ROOT, context, ScriptContext.ENGINE_SCOPE);
 		// 执行脚本
 		try {
-			return compile("MagicScript", script).eval(simpleScriptContext);
+			return compiledScript.eval(simpleScriptContext);
 		} catch (ScriptException e) {
 			throw new MagicAPIException(e.getMessage(), e);
 		}
 	}
 
 	/**
-	 * 执行脚本
+	 * 执行表达式
 	 */
 	public static Object executeExpression(String script, MagicScriptContext context) {
-		return executeScript("/* generated by execute expression */ return " + script, context);
+		return eval(compileExpression(script), context);
+	}
+
+	/**
+	 * 编译表达式
+	 */
+	public static CompiledScript compileExpression(String script) {
+		return compile(ENGINE_MAGIC_SCRIPT, "/* generated by execute expression */ return " + script);
+	}
+
+	/**
+	 * 执行编译后的脚本或表达式
+	 */
+	public static Object executeScript(CompiledScript compiledScript, MagicScriptContext context) {
+		return eval(compiledScript, context);
+	}
+
+	/**
+	 * 预编译的脚本及其版本
+	 */
+	static class CompiledEntity {
+
+		private final Long updateTime;
+
+		private final String source;
+
+		private final CompiledScript script;
+
+		CompiledEntity(MagicEntity entity, CompiledScript script) {
+			this(entity.getUpdateTime(), entity.getScript(), script);
+		}
+
+		CompiledEntity(Long updateTime, String source, CompiledScript script) {
+			this.updateTime = updateTime;
+			this.source = source;
+			this.script = script;
+		}
+
+		/**
+		 * 脚本引用一致时无需比较内容，延迟加载时尚未编译
+		 */
+		boolean isSameVersion(MagicEntity entity) {
+			return script != null && Objects.equals(updateTime, entity.getUpdateTime()) && Objects.equals(source, entity.getScript());
+		}
 	}
 }
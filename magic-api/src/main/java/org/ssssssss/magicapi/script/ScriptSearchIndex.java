@@ -0,0 +1,312 @@
+package org.ssssssss.magicapi.script;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ssssssss.magicapi.model.ApiInfo;
+import org.ssssssss.magicapi.model.MagicEntity;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 接口、函数的全文检索，对脚本、名称、路径建立三元组（trigram）倒排索引
+ * <p>
+ * 注册时只记录待索引的内容，首次搜索时再建立索引，不影响脚本的延迟加载。
+ */
+public class ScriptSearchIndex {
+
+	private static final Logger logger = LoggerFactory.getLogger(ScriptSearchIndex.class);
+
+	/**
+	 * 类型：接口
+	 */
+	public static final int TYPE_API = 1;
+
+	/**
+	 * 类型：函数
+	 */
+	public static final int TYPE_FUNCTION = 2;
+
+	private static final int GRAM_SIZE = 3;
+
+	/**
+	 * 待索引的内容，key为ID，value为empty时表示删除
+	 */
+	private static final Map<String, Optional<PendingEntry>> pending = new ConcurrentHashMap<>();
+
+	/**
+	 * 已索引的内容，key为ID
+	 */
+	private static final Map<String, IndexedEntry> entries = new LinkedHashMap<>();
+
+	/**
+	 * 三元组 -> ID集合
+	 */
+	private static final Map<Long, Set<String>> postings = new HashMap<>();
+
+	private static final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * 添加或更新索引
+	 *
+	 * @param path 请求路径或函数路径
+	 */
+	public static void add(MagicEntity entity, String path) {
+		if (entity != null && entity.getId() != null) {
+			pending.put(entity.getId(), Optional.of(new PendingEntry(entity, path)));
+		}
+	}
+
+	/**
+	 * 删除索引
+	 */
+	public static void remove(String id) {
+		if (id != null) {
+			pending.put(id, Optional.empty());
+		}
+	}
+
+	/**
+	 * 搜索，按匹配程度排序
+	 *
+	 * @param keyword 关键字，脚本区分大小写，名称和路径不区分
+	 * @param type    类型，为null时搜索全部
+	 */
+	public static List<Hit> search(String keyword, Integer type) {
+		if (keyword == null || keyword.isEmpty()) {
+			return Collections.emptyList();
+		}
+		flush();
+		String lowerKeyword = keyword.toLowerCase();
+		List<Hit> hits = new ArrayList<>();
+		lock.readLock().lock();
+		try {
+			for (IndexedEntry entry : candidates(lowerKeyword)) {
+				if (type == null || entry.type == type) {
+					Hit hit = entry.match(keyword, lowerKeyword);
+					if (hit != null) {
+						hits.add(hit);
+					}
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		hits.sort(Comparator.comparingInt(Hit::getScore).reversed());
+		return hits;
+	}
+
+	/**
+	 * 根据三元组求交集得到候选，关键字不足3个字符时返回全部
+	 */
+	private static Collection<IndexedEntry> candidates(String lowerKeyword) {
+		if (lowerKeyword.length() < GRAM_SIZE) {
+			return entries.values();
+		}
+		List<Set<String>> sets = new ArrayList<>();
+		for (Long gram : grams(lowerKeyword)) {
+			Set<String> ids = postings.get(gram);
+			if (ids == null) {
+				return Collections.emptyList();
+			}
+			sets.add(ids);
+		}
+		sets.sort(Comparator.comparingInt(Set::size));
+		List<IndexedEntry> result = new ArrayList<>();
+		for (String id : sets.get(0)) {
+			boolean matched = true;
+			for (int i = 1; i < sets.size() && matched; i++) {
+				matched = sets.get(i).contains(id);
+			}
+			if (matched) {
+				result.add(entries.get(id));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 将待索引的内容写入索引
+	 */
+	private static void flush() {
+		if (pending.isEmpty()) {
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			long start = System.currentTimeMillis();
+			int count = 0;
+			for (String id : new ArrayList<>(pending.keySet())) {
+				// 取出时获取最新的内容
+				Optional<PendingEntry> entry = pending.remove(id);
+				if (entry != null) {
+					unindex(id);
+					if (entry.isPresent()) {
+						index(entry.get());
+						count++;
+					}
+				}
+			}
+			logger.debug("建立搜索索引{}个，耗时{}ms", count, System.currentTimeMillis() - start);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private static void index(PendingEntry pendingEntry) {
+		IndexedEntry entry = new IndexedEntry(pendingEntry.entity, pendingEntry.path);
+		entries.put(entry.id, entry);
+		for (Long gram : entry.grams) {
+			postings.computeIfAbsent(gram, key -> new HashSet<>()).add(entry.id);
+		}
+	}
+
+	private static void unindex(String id) {
+		IndexedEntry entry = entries.remove(id);
+		if (entry != null) {
+			for (Long gram : entry.grams) {
+				Set<String> ids = postings.get(gram);
+				if (ids != null && ids.remove(id) && ids.isEmpty()) {
+					postings.remove(gram);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 提取三元组，每个字符占16位
+	 */
+	private static Set<Long> grams(String text) {
+		Set<Long> grams = new HashSet<>();
+		for (int i = 0; i + GRAM_SIZE <= text.length(); i++) {
+			grams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+		}
+		return grams;
+	}
+
+	private static class PendingEntry {
+
+		private final MagicEntity entity;
+
+		private final String path;
+
+		PendingEntry(MagicEntity entity, String path) {
+			this.entity = entity;
+			this.path = path;
+		}
+	}
+
+	private static class IndexedEntry {
+
+		private final String id;
+
+		private final int type;
+
+		private final String name;
+
+		private final String path;
+
+		private final String script;
+
+		/**
+		 * 每行的起始位置
+		 */
+		private final int[] lineStarts;
+
+		private final Set<Long> grams;
+
+		IndexedEntry(MagicEntity entity, String path) {
+			this.id = entity.getId();
+			this.type = entity instanceof ApiInfo ? TYPE_API : TYPE_FUNCTION;
+			this.name = Objects.toString(entity.getName(), "");
+			this.path = Objects.toString(path, "");
+			this.script = Objects.toString(entity.getScript(), "");
+			List<Integer> starts = new ArrayList<>();
+			starts.add(0);
+			for (int i = 0; i < script.length(); i++) {
+				if (script.charAt(i) == '\n') {
+					starts.add(i + 1);
+				}
+			}
+			this.lineStarts = starts.stream().mapToInt(Integer::intValue).toArray();
+			this.grams = grams(script.toLowerCase() + "\n" + name.toLowerCase() + "\n" + this.path.toLowerCase());
+		}
+
+		/**
+		 * 匹配关键字，名称匹配得分最高，其次是路径，再按脚本中出现的次数
+		 */
+		Hit match(String keyword, String lowerKeyword) {
+			int score = 0;
+			if (name.toLowerCase().contains(lowerKeyword)) {
+				score += 100;
+			}
+			if (path.toLowerCase().contains(lowerKeyword)) {
+				score += 50;
+			}
+			int index = script.indexOf(keyword);
+			if (index < 0) {
+				return score == 0 ? null : new Hit(id, type, name, 0, score);
+			}
+			int occurrences = 0;
+			for (int i = index; i > -1 && occurrences < 50; i = script.indexOf(keyword, i + keyword.length())) {
+				occurrences++;
+			}
+			int line = Arrays.binarySearch(lineStarts, index);
+			line = line < 0 ? -line - 2 : line;
+			int end = line + 1 < lineStarts.length ? lineStarts[line + 1] - 1 : script.length();
+			return new Hit(id, type, script.substring(lineStarts[line], end).trim(), line + 1, score + occurrences);
+		}
+	}
+
+	/**
+	 * 搜索结果
+	 */
+	public static class Hit {
+
+		private final String id;
+
+		private final int type;
+
+		/**
+		 * 匹配的行内容，只匹配名称或路径时为名称
+		 */
+		private final String text;
+
+		/**
+		 * 行号，从1开始，只匹配名称或路径时为0
+		 */
+		private final int line;
+
+		private final int score;
+
+		Hit(String id, int type, String text, int line, int score) {
+			this.id = id;
+			this.type = type;
+			this.text = text;
+			this.line = line;
+			this.score = score;
+		}
+
+		public String getId() {
+			return id;
+		}
+
+		public int getType() {
+			return type;
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		public int getLine() {
+			return line;
+		}
+
+		public int getScore() {
+			return score;
+		}
+	}
+}
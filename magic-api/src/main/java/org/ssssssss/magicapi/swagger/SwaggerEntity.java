@@ -21,7 +21,7 @@ public class SwaggerEntity {
 
 	private Map<String, Map<String, Path>> paths = new HashMap<>();
 
-	private static Map<String, Object> doProcessSchema(Object target) {
+	static Map<String, Object> doProcessSchema(Object target) {
 		Map<String, Object> result = new HashMap<>(3);
 		result.put("type", getType(target));
 		if (target instanceof List) {
@@ -1,18 +1,24 @@
 package org.ssssssss.magicapi.swagger;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.ssssssss.magicapi.config.MappingHandlerMapping;
+import org.ssssssss.magicapi.exception.MagicAPIException;
 import org.ssssssss.magicapi.model.ApiInfo;
 import org.ssssssss.magicapi.model.BaseDefinition;
 import org.ssssssss.magicapi.model.Path;
 import org.ssssssss.magicapi.provider.GroupServiceProvider;
 import org.ssssssss.magicapi.utils.JsonUtils;
+import org.ssssssss.magicapi.utils.MD5Utils;
 import org.ssssssss.script.parsing.ast.literal.BooleanLiteral;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 import static org.ssssssss.magicapi.model.Constants.*;
 
@@ -41,7 +47,30 @@ public class SwaggerProvider {
      */
     private static final String BODY_EMPTY = "{}";
 
-    private final Map<String, Object> DEFINITION_MAP = new ConcurrentHashMap<>();
+	/**
+	 * OpenAPI3 Model定义路径前缀
+	 */
+	private static final String COMPONENTS_SCHEMAS = "#/components/schemas/";
+
+	private static final Logger logger = LoggerFactory.getLogger(SwaggerProvider.class);
+
+	private ObjectMapper objectMapper = new ObjectMapper();
+
+	/**
+	 * 已解析的接口文档，key为接口id
+	 */
+	private Map<String, ApiDocument> documents = new HashMap<>();
+
+	private SwaggerEntity swaggerEntity;
+
+	/**
+	 * 生成{@link #swaggerEntity}时的接口版本
+	 */
+	private long entityVersion = -1;
+
+	private volatile CachedDocument swaggerDocument;
+
+	private volatile CachedDocument openApiDocument;
 
 	public void setMappingHandlerMapping(MappingHandlerMapping mappingHandlerMapping) {
 		this.mappingHandlerMapping = mappingHandlerMapping;
@@ -59,64 +88,157 @@ public class SwaggerProvider {
 		this.basePath = basePath;
 	}
 
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * 输出Swagger2文档，内容未变化时直接返回缓存，支持ETag（If-None-Match）
+	 */
 	@ResponseBody
-	public SwaggerEntity swaggerJson() {
-		this.DEFINITION_MAP.clear();
-		List<ApiInfo> infos = mappingHandlerMapping.getApiInfos();
+	public ResponseEntity<byte[]> swaggerJson() {
+		return toResponse(getSwaggerDocument());
+	}
+
+	/**
+	 * 输出OpenAPI3文档
+	 *
+	 * @since 1.3.4
+	 */
+	@ResponseBody
+	public ResponseEntity<byte[]> openApiJson() {
+		return toResponse(getOpenApiDocument());
+	}
+
+	/**
+	 * 获取Swagger2文档，接口或分组有变化时只重新解析有变化的接口
+	 */
+	public synchronized SwaggerEntity getSwaggerEntity() {
+		long version = mappingHandlerMapping.getVersion();
+		if (this.swaggerEntity != null && this.entityVersion == version) {
+			return this.swaggerEntity;
+		}
+		long start = System.currentTimeMillis();
+		long groupVersion = mappingHandlerMapping.getGroupVersion();
+		List<ApiInfo> infos = new ArrayList<>(mappingHandlerMapping.getApiInfos());
+		Map<String, ApiDocument> documents = new HashMap<>(infos.size());
+		int changed = 0;
+		for (ApiInfo info : infos) {
+			ApiDocument document = this.documents.get(info.getId());
+			if (document == null || document.info != info || document.groupVersion != groupVersion) {
+				document = createDocument(info, groupVersion);
+				changed++;
+			}
+			documents.put(info.getId(), document);
+		}
+		this.documents = documents;
 		SwaggerEntity swaggerEntity = new SwaggerEntity();
-		swaggerEntity.setInfo(info);
+		swaggerEntity.setInfo(this.info);
 		swaggerEntity.setBasePath(this.basePath);
-		ObjectMapper mapper = new ObjectMapper();
 		for (ApiInfo info : infos) {
-			String groupName = groupServiceProvider.getFullName(info.getGroupId()).replace("/", "-");
-			String requestPath = "/" + mappingHandlerMapping.getRequestPath(info.getGroupId(), info.getPath());
-			SwaggerEntity.Path path = new SwaggerEntity.Path();
-			path.addTag(groupName);
-			boolean hasBody = false;
-			try {
-				List<SwaggerEntity.Parameter> parameters = parseParameters(mapper, info);
-				hasBody = parameters.stream().anyMatch(it -> VAR_NAME_REQUEST_BODY.equals(it.getIn()));
-				BaseDefinition baseDefinition = info.getRequestBodyDefinition();
-                if (hasBody && baseDefinition != null) {
-                    doProcessDefinition(baseDefinition, info, "root_" + baseDefinition.getName() , "request", 0);
-                }
-				baseDefinition = info.getResponseBodyDefinition();
-				parameters.forEach(path::addParameter);
-                if(baseDefinition != null){
-					Map responseMap = parseResponse(info);
-					if (!responseMap.isEmpty()) {
-						path.setResponses(responseMap);
-						doProcessDefinition(baseDefinition, info, "root_" + baseDefinition.getName(), "response", 0);
-					}
-				}else{
-					 path.addResponse("200", mapper.readValue(Objects.toString(info.getResponseBody(), BODY_EMPTY), Object.class));
+			ApiDocument document = documents.get(info.getId());
+			swaggerEntity.addPath(document.requestPath, document.method, document.path);
+			document.definitions.forEach((key, value) -> {
+				if (!swaggerEntity.getDefinitions().containsKey(key)) {
+					swaggerEntity.addDefinitions(key, value);
 				}
+			});
+		}
+		this.swaggerEntity = swaggerEntity;
+		this.entityVersion = version;
+		logger.debug("生成接口文档，共{}个接口，重新解析{}个，耗时{}ms", infos.size(), changed, System.currentTimeMillis() - start);
+		return swaggerEntity;
+	}
 
-			} catch (Exception ignored) {
+	private CachedDocument getSwaggerDocument() {
+		CachedDocument document = this.swaggerDocument;
+		if (document != null && document.version == mappingHandlerMapping.getVersion()) {
+			return document;
+		}
+		synchronized (this) {
+			SwaggerEntity entity = getSwaggerEntity();
+			if (this.swaggerDocument == null || this.swaggerDocument.version != this.entityVersion) {
+				this.swaggerDocument = new CachedDocument(this.entityVersion, serialize(entity));
 			}
-			if (hasBody) {
-				path.addConsume("application/json");
-			} else {
-				path.addConsume("*/*");
+			return this.swaggerDocument;
+		}
+	}
+
+	private CachedDocument getOpenApiDocument() {
+		CachedDocument document = this.openApiDocument;
+		if (document != null && document.version == mappingHandlerMapping.getVersion()) {
+			return document;
+		}
+		synchronized (this) {
+			SwaggerEntity entity = getSwaggerEntity();
+			if (this.openApiDocument == null || this.openApiDocument.version != this.entityVersion) {
+				this.openApiDocument = new CachedDocument(this.entityVersion, serialize(toOpenApi(entity)));
 			}
-			path.addProduce("application/json");
-			path.setSummary(info.getName());
-			path.setDescription(StringUtils.defaultIfBlank(info.getDescription(), info.getName()));
+			return this.openApiDocument;
+		}
+	}
 
-			swaggerEntity.addPath(requestPath, info.getMethod(), path);
+	private byte[] serialize(Object value) {
+		try {
+			return objectMapper.writeValueAsBytes(value);
+		} catch (JsonProcessingException e) {
+			throw new MagicAPIException("生成接口文档失败", e);
 		}
+	}
+
+	/**
+	 * 由Spring根据ETag处理If-None-Match，未变化时返回304
+	 */
+	private ResponseEntity<byte[]> toResponse(CachedDocument document) {
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_JSON)
+				.eTag(document.etag)
+				.body(document.content);
+	}
 
-		if (this.DEFINITION_MAP.size() > 0) {
-			Set<Map.Entry> entries = ((Map) this.DEFINITION_MAP).entrySet();
-			for (Map.Entry entry : entries) {
-				swaggerEntity.addDefinitions(Objects.toString(entry.getKey()), entry.getValue());
+	/**
+	 * 解析单个接口的文档及其Model定义
+	 */
+	private ApiDocument createDocument(ApiInfo info, long groupVersion) {
+		Map<String, Object> definitions = new LinkedHashMap<>();
+		String groupName = groupServiceProvider.getFullName(info.getGroupId()).replace("/", "-");
+		String requestPath = "/" + mappingHandlerMapping.getRequestPath(info.getGroupId(), info.getPath());
+		SwaggerEntity.Path path = new SwaggerEntity.Path();
+		path.addTag(groupName);
+		boolean hasBody = false;
+		try {
+			List<SwaggerEntity.Parameter> parameters = parseParameters(groupName, info);
+			hasBody = parameters.stream().anyMatch(it -> VAR_NAME_REQUEST_BODY.equals(it.getIn()));
+			BaseDefinition baseDefinition = info.getRequestBodyDefinition();
+			if (hasBody && baseDefinition != null) {
+				doProcessDefinition(definitions, baseDefinition, groupName, info, "root_" + baseDefinition.getName(), "request", 0);
+			}
+			baseDefinition = info.getResponseBodyDefinition();
+			parameters.forEach(path::addParameter);
+			if (baseDefinition != null) {
+				Map<String, Object> responseMap = parseResponse(groupName, info);
+				if (!responseMap.isEmpty()) {
+					path.setResponses(responseMap);
+					doProcessDefinition(definitions, baseDefinition, groupName, info, "root_" + baseDefinition.getName(), "response", 0);
+				}
+			} else {
+				path.addResponse("200", objectMapper.readValue(Objects.toString(info.getResponseBody(), BODY_EMPTY), Object.class));
 			}
-		}
 
-		return swaggerEntity;
+		} catch (Exception ignored) {
+		}
+		if (hasBody) {
+			path.addConsume("application/json");
+		} else {
+			path.addConsume("*/*");
+		}
+		path.addProduce("application/json");
+		path.setSummary(info.getName());
+		path.setDescription(StringUtils.defaultIfBlank(info.getDescription(), info.getName()));
+		return new ApiDocument(info, groupVersion, requestPath, info.getMethod(), path, definitions);
 	}
 
-	private List<SwaggerEntity.Parameter> parseParameters(ObjectMapper mapper, ApiInfo info) {
+	private List<SwaggerEntity.Parameter> parseParameters(String groupName, ApiInfo info) {
 		List<SwaggerEntity.Parameter> parameters = new ArrayList<>();
 		info.getParameters().forEach(it -> parameters.add(new SwaggerEntity.Parameter(it.isRequired(), it.getName(), VAR_NAME_QUERY, it.getDataType().getJavascriptType(), it.getDescription(), it.getValue())));
 		info.getHeaders().forEach(it -> parameters.add(new SwaggerEntity.Parameter(it.isRequired(), it.getName(), VAR_NAME_HEADER, it.getDataType().getJavascriptType(), it.getDescription(), it.getValue())));
@@ -135,8 +257,7 @@ public class SwaggerProvider {
 			if (baseDefinition!= null && baseDefinition.getChildren().size() > 0) {
 				SwaggerEntity.Parameter parameter = new SwaggerEntity.Parameter(baseDefinition.isRequired(), StringUtils.isNotBlank(baseDefinition.getName()) ? baseDefinition.getName() : VAR_NAME_REQUEST_BODY, VAR_NAME_REQUEST_BODY, baseDefinition.getDataType().getJavascriptType(), baseDefinition.getDescription(), baseDefinition);
 				Map<String, Object> schema = new HashMap<>(2);
-				String groupName = groupServiceProvider.getFullName(info.getGroupId()).replace("/", "-");
-				String voName =  groupName + "«" + info.getPath().replaceFirst("/", "").replaceAll("/", "_") + "«request«";
+				String voName = definitionPrefix(groupName, info) + "«request«";
 				if (VAR_NAME_REQUEST_BODY_VALUE_TYPE_ARRAY.equalsIgnoreCase(baseDefinition.getDataType().getJavascriptType())) {
 					voName += "root_" + (StringUtils.isNotBlank(baseDefinition.getChildren().get(0).getName()) ? "_" + baseDefinition.getChildren().get(0).getName() : "") +  "»»»";
 				} else {
@@ -148,7 +269,7 @@ public class SwaggerProvider {
 				parameter.setSchema(schema);
 				parameters.add(parameter);
 			}else{
-				Object object = mapper.readValue(info.getRequestBody(), Object.class);
+				Object object = objectMapper.readValue(info.getRequestBody(), Object.class);
 				if ((object instanceof List || object instanceof Map) && BooleanLiteral.isTrue(object)) {
 					parameters.add(new SwaggerEntity.Parameter(false, VAR_NAME_REQUEST_BODY, VAR_NAME_REQUEST_BODY, object instanceof List ? VAR_NAME_REQUEST_BODY_VALUE_TYPE_ARRAY : VAR_NAME_REQUEST_BODY_VALUE_TYPE_OBJECT, null, object));
 				}
@@ -159,13 +280,12 @@ public class SwaggerProvider {
 		return parameters;
 	}
 
-	private Map<String, Object> parseResponse(ApiInfo info) {
+	private Map<String, Object> parseResponse(String groupName, ApiInfo info) {
 		Map<String, Object> result = new HashMap<>();
 
 		BaseDefinition baseDefinition = info.getResponseBodyDefinition();
 		if (baseDefinition.getChildren().size() > 0) {
-			String groupName = groupServiceProvider.getFullName(info.getGroupId()).replace("/", "-");
-			String voName =  groupName + "«" + info.getPath().replaceFirst("/", "").replaceAll("/", "_") + "«response«";
+			String voName = definitionPrefix(groupName, info) + "«response«";
 			voName += "root_" + baseDefinition.getName() + "»»»";
 
 			Map<String, Object> schema = new HashMap<>(2);
@@ -180,35 +300,41 @@ public class SwaggerProvider {
 
 		return result;
 	}
-    private Map<String, Object> doProcessDefinition(BaseDefinition target, ApiInfo info, String parentName, String definitionType, int level) {
+
+	/**
+	 * Model定义名称的前缀，包含请求方法，同一路径的不同请求方法不会共用定义
+	 */
+	private String definitionPrefix(String groupName, ApiInfo info) {
+		return groupName + "«" + StringUtils.lowerCase(info.getMethod()) + "_" + info.getPath().replaceFirst("/", "").replaceAll("/", "_");
+	}
+
+    private Map<String, Object> doProcessDefinition(Map<String, Object> definitions, BaseDefinition target, String groupName, ApiInfo info, String parentName, String definitionType, int level) {
         Map<String, Object> result = new HashMap<>(3);
         result.put("description", target.getDescription());
         if (VAR_NAME_REQUEST_BODY_VALUE_TYPE_ARRAY.equalsIgnoreCase(target.getDataType().getJavascriptType())) {
             if (target.getChildren().size() > 0) {
-                result.put("items", doProcessDefinition(target.getChildren().get(0), info, parentName + target.getName() + "_", definitionType, level + 1));
+                result.put("items", doProcessDefinition(definitions, target.getChildren().get(0), groupName, info, parentName + target.getName() + "_", definitionType, level + 1));
             } else {
                 result.put("items", Collections.emptyList());
             }
 			result.put("type", target.getDataType().getJavascriptType());
         } else if (VAR_NAME_REQUEST_BODY_VALUE_TYPE_OBJECT.equalsIgnoreCase(target.getDataType().getJavascriptType())) {
-            String groupName = groupServiceProvider.getFullName(info.getGroupId()).replace("/", "-");
-            String voName = groupName + "«" + info.getPath().replaceFirst("/", "").replaceAll("/", "_") + (StringUtils.equals("response", definitionType) ? "«response«" : "«request«") + parentName + target.getName()  + "»»»";
+            String voName = definitionPrefix(groupName, info) + (StringUtils.equals("response", definitionType) ? "«response«" : "«request«") + parentName + target.getName()  + "»»»";
 
 			Map<String, Object> definition = new HashMap<>(3);
 			Map<String, Map<String, Object>> properties = new HashMap<>(target.getChildren().size());
 			for (BaseDefinition obj : target.getChildren()) {
-				properties.put(obj.getName(), doProcessDefinition(obj, info, parentName + target.getName() + "_", definitionType, level + 1));
+				properties.put(obj.getName(), doProcessDefinition(definitions, obj, groupName, info, parentName + target.getName() + "_", definitionType, level + 1));
 			}
 			definition.put("properties", properties);
 			definition.put("description", target.getDescription());
 			definition.put("type", target.getDataType().getJavascriptType());
 
-            if (this.DEFINITION_MAP.containsKey(voName)) {
-				// TODO 应该不会出现名字都一样的
+            if (definitions.containsKey(voName)) {
 				voName = voName.replace("»»»", "_" + level + "»»»");
 			}
 
-			this.DEFINITION_MAP.put(voName, definition);
+			definitions.put(voName, definition);
             result.put("originalRef", voName);
             result.put("$ref", DEFINITION + voName);
 
@@ -218,4 +344,160 @@ public class SwaggerProvider {
         }
         return result;
     }
+
+	/**
+	 * 将Swagger2文档转换为OpenAPI3文档
+	 */
+	private Map<String, Object> toOpenApi(SwaggerEntity entity) {
+		Map<String, Object> document = new LinkedHashMap<>();
+		document.put("openapi", "3.0.1");
+		SwaggerEntity.Info info = entity.getInfo();
+		if (info != null) {
+			Map<String, Object> infoMap = new LinkedHashMap<>();
+			infoMap.put("title", info.getTitle());
+			infoMap.put("description", info.getDescription());
+			infoMap.put("version", info.getVersion());
+			if (info.getConcat() != null) {
+				Map<String, Object> contact = new LinkedHashMap<>();
+				contact.put("name", info.getConcat().getName());
+				contact.put("url", info.getConcat().getUrl());
+				contact.put("email", info.getConcat().getEmail());
+				infoMap.put("contact", contact);
+			}
+			if (info.getLicense() != null) {
+				Map<String, Object> license = new LinkedHashMap<>();
+				license.put("name", info.getLicense().getName());
+				license.put("url", info.getLicense().getUrl());
+				infoMap.put("license", license);
+			}
+			document.put("info", infoMap);
+		}
+		if (StringUtils.isNotBlank(entity.getBasePath())) {
+			document.put("servers", Collections.singletonList(Collections.singletonMap("url", entity.getBasePath())));
+		}
+		Map<String, Object> paths = new LinkedHashMap<>();
+		entity.getPaths().forEach((requestPath, methods) -> {
+			Map<String, Object> operations = new LinkedHashMap<>();
+			methods.forEach((method, path) -> operations.put(method, toOpenApiOperation(path)));
+			paths.put(requestPath, operations);
+		});
+		document.put("paths", paths);
+		document.put("components", Collections.singletonMap("schemas", toOpenApiSchema(entity.getDefinitions())));
+		return document;
+	}
+
+	private Map<String, Object> toOpenApiOperation(SwaggerEntity.Path path) {
+		Map<String, Object> operation = new LinkedHashMap<>();
+		operation.put("tags", path.getTags());
+		operation.put("summary", path.getSummary());
+		operation.put("description", path.getDescription());
+		operation.put("operationId", path.getOperationId());
+		List<Map<String, Object>> parameters = new ArrayList<>();
+		for (SwaggerEntity.Parameter parameter : path.getParameters()) {
+			if (VAR_NAME_REQUEST_BODY.equals(parameter.getIn())) {
+				Object schema = parameter.getSchema() instanceof Map ? toOpenApiSchema(parameter.getSchema()) : SwaggerEntity.doProcessSchema(parameter.getExample());
+				Map<String, Object> body = new LinkedHashMap<>();
+				body.put("description", parameter.getDescription());
+				body.put("required", parameter.isRequired());
+				body.put("content", Collections.singletonMap("application/json", Collections.singletonMap("schema", schema)));
+				operation.put("requestBody", body);
+			} else {
+				Map<String, Object> item = new LinkedHashMap<>();
+				item.put("name", parameter.getName());
+				item.put("in", parameter.getIn());
+				item.put("required", VAR_NAME_PATH_VARIABLE.equals(parameter.getIn()) || parameter.isRequired());
+				item.put("description", parameter.getDescription());
+				item.put("schema", Collections.singletonMap("type", parameter.getType()));
+				if (parameter.getExample() != null) {
+					item.put("example", parameter.getExample());
+				}
+				parameters.add(item);
+			}
+		}
+		operation.put("parameters", parameters);
+		Map<String, Object> responses = new LinkedHashMap<>();
+		path.getResponses().forEach((status, value) -> {
+			Map<?, ?> response = value instanceof Map ? (Map<?, ?>) value : Collections.emptyMap();
+			Map<String, Object> media = new LinkedHashMap<>();
+			media.put("schema", toOpenApiSchema(response.get("schema")));
+			if (response.get("example") != null) {
+				media.put("example", response.get("example"));
+			}
+			Map<String, Object> item = new LinkedHashMap<>();
+			item.put("description", Objects.toString(response.get("description"), "OK"));
+			item.put("content", Collections.singletonMap("application/json", media));
+			responses.put(status, item);
+		});
+		operation.put("responses", responses);
+		return operation;
+	}
+
+	/**
+	 * 复制Schema，将Model引用改为OpenAPI3的路径
+	 */
+	@SuppressWarnings("unchecked")
+	private Object toOpenApiSchema(Object schema) {
+		if (schema instanceof Map) {
+			Map<String, Object> result = new LinkedHashMap<>();
+			((Map<String, Object>) schema).forEach((key, value) -> {
+				if ("$ref".equals(key) && value instanceof String) {
+					result.put(key, ((String) value).replace(DEFINITION, COMPONENTS_SCHEMAS));
+				} else if (!"originalRef".equals(key)) {
+					result.put(key, toOpenApiSchema(value));
+				}
+			});
+			return result;
+		}
+		if (schema instanceof List) {
+			List<Object> result = new ArrayList<>(((List<?>) schema).size());
+			((List<?>) schema).forEach(it -> result.add(toOpenApiSchema(it)));
+			return result;
+		}
+		return schema;
+	}
+
+	/**
+	 * 单个接口的文档，接口信息未变化时复用
+	 */
+	private static class ApiDocument {
+
+		private final ApiInfo info;
+
+		private final long groupVersion;
+
+		private final String requestPath;
+
+		private final String method;
+
+		private final SwaggerEntity.Path path;
+
+		private final Map<String, Object> definitions;
+
+		ApiDocument(ApiInfo info, long groupVersion, String requestPath, String method, SwaggerEntity.Path path, Map<String, Object> definitions) {
+			this.info = info;
+			this.groupVersion = groupVersion;
+			this.requestPath = requestPath;
+			this.method = method;
+			this.path = path;
+			this.definitions = definitions;
+		}
+	}
+
+	/**
+	 * 已序列化的文档
+	 */
+	private static class CachedDocument {
+
+		private final long version;
+
+		private final byte[] content;
+
+		private final String etag;
+
+		CachedDocument(long version, byte[] content) {
+			this.version = version;
+			this.content = content;
+			this.etag = MD5Utils.encrypt(content);
+		}
+	}
 }
@@ -0,0 +1,82 @@
+package org.ssssssss.magicapi.utils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 启动及批量加载时使用的并行处理工具
+ * <p>
+ * 使用独立的ForkJoinPool，避免读取资源时占用公共线程池。
+ */
+public class ParallelUtils {
+
+	private static volatile ForkJoinPool pool;
+
+	/**
+	 * 并行转换，结果与输入顺序一致
+	 */
+	public static <T, R> List<R> map(Collection<T> items, Function<T, R> mapper) {
+		return invoke(() -> items.parallelStream().map(mapper).collect(Collectors.toList()));
+	}
+
+	/**
+	 * 并行处理
+	 */
+	public static <T> void forEach(Collection<T> items, Consumer<T> consumer) {
+		invoke(() -> {
+			items.parallelStream().forEach(consumer);
+			return null;
+		});
+	}
+
+	/**
+	 * 关闭线程池，再次使用时重新创建
+	 */
+	public static synchronized void shutdown() {
+		ForkJoinPool current = pool;
+		if (current != null) {
+			pool = null;
+			current.shutdownNow();
+		}
+	}
+
+	private static <R> R invoke(Callable<R> task) {
+		try {
+			return getPool().submit(task).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		}
+	}
+
+	private static ForkJoinPool getPool() {
+		if (pool == null) {
+			synchronized (ParallelUtils.class) {
+				if (pool == null) {
+					pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), it -> {
+						ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(it);
+						thread.setName("magic-api-loader-" + thread.getPoolIndex());
+						return thread;
+					}, null, false);
+				}
+			}
+		}
+		return pool;
+	}
+}
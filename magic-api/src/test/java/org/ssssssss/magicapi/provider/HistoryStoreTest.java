@@ -0,0 +1,227 @@
+package org.ssssssss.magicapi.provider;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.ssssssss.magicapi.adapter.Resource;
+import org.ssssssss.magicapi.adapter.resource.FileResource;
+import org.ssssssss.magicapi.adapter.resource.KeyValueResource;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryStoreTest {
+
+	private static final String ID = "api";
+
+	/**
+	 * 包含代理对的字符，用于验证差异不会拆分代理对
+	 */
+	private static final String[] TOKENS = {"a", "b", "中", "文", "😀", "😁", "👍", "\n", " "};
+
+	@TempDir
+	File directory;
+
+	private Resource root() {
+		return new FileResource(directory, false, directory.getAbsolutePath());
+	}
+
+	@Test
+	void roundTrip() {
+		HistoryStore store = new HistoryStore(root());
+		store.setSnapshotInterval(5);
+		Random random = new Random(20210501);
+		TreeMap<Long, String> expected = new TreeMap<>();
+		String text = "";
+		for (int i = 0; i < 63; i++) {
+			text = edit(random, text);
+			assertTrue(store.save(ID, 1000, text.getBytes(StandardCharsets.UTF_8)));
+			if (i % 7 == 0) {
+				store.compact(ID);
+			}
+			expected.put(store.list(ID).get(0), text);
+		}
+		store.compact(ID);
+		assertVersions(store, expected);
+		assertEquals(3, directory(ID).listFiles((dir, name) -> name.endsWith(".ms")).length);
+	}
+
+	/**
+	 * 数据库、Redis等按文本存储，分段需能完整读回
+	 */
+	@Test
+	void keyValueRoundTrip() {
+		Map<String, String> storage = new ConcurrentHashMap<>();
+		HistoryStore store = new HistoryStore(new MemoryResource(storage, "backup:", null));
+		store.setSnapshotInterval(4);
+		Random random = new Random(20210502);
+		TreeMap<Long, String> expected = new TreeMap<>();
+		String text = "";
+		for (int i = 0; i < 10; i++) {
+			text = edit(random, text);
+			store.save(ID, i + 1, text.getBytes(StandardCharsets.UTF_8));
+			expected.put(i + 1L, text);
+		}
+		store.compact(ID);
+		assertEquals(2L, storage.keySet().stream().filter(it -> it.endsWith(".seg")).count());
+		assertEquals(2L, storage.keySet().stream().filter(it -> it.endsWith(".ms")).count());
+		assertVersions(store, expected);
+		// 重新创建，确保从存储中读取
+		assertVersions(new HistoryStore(new MemoryResource(storage, "backup:", null)), expected);
+	}
+
+	@Test
+	void surrogatePairs() {
+		HistoryStore store = new HistoryStore(root());
+		store.setSnapshotInterval(4);
+		String[] texts = {"😀", "😁", "x😁", "x👍😁", "😁😁"};
+		TreeMap<Long, String> expected = new TreeMap<>();
+		for (int i = 0; i < texts.length; i++) {
+			store.save(ID, i + 1, texts[i].getBytes(StandardCharsets.UTF_8));
+			expected.put(i + 1L, texts[i]);
+		}
+		store.compact(ID);
+		assertVersions(store, expected);
+	}
+
+	@Test
+	void legacyMigration() {
+		Resource id = root().getDirectory(ID);
+		id.mkdir();
+		TreeMap<Long, String> expected = new TreeMap<>();
+		for (int i = 1; i <= 6; i++) {
+			String text = "legacy version " + i;
+			id.getResource(i + ".ms").write(text);
+			expected.put((long) i, text);
+		}
+		HistoryStore store = new HistoryStore(root());
+		store.setSnapshotInterval(4);
+		assertVersions(store, expected);
+		store.save(ID, 3, "new version".getBytes(StandardCharsets.UTF_8));
+		expected.put(7L, "new version");
+		store.compact(ID);
+		assertVersions(store, expected);
+		assertEquals(1, directory(ID).listFiles((dir, name) -> name.endsWith(".seg")).length);
+		assertEquals(3, directory(ID).listFiles((dir, name) -> name.endsWith(".ms")).length);
+	}
+
+	@Test
+	void retainMaxCount() {
+		HistoryStore store = new HistoryStore(root());
+		store.setSnapshotInterval(5);
+		TreeMap<Long, String> expected = new TreeMap<>();
+		for (int i = 1; i <= 23; i++) {
+			store.save(ID, i, ("version " + i).getBytes(StandardCharsets.UTF_8));
+			expected.put((long) i, "version " + i);
+		}
+		store.compact(ID);
+		store.setMaxCount(12);
+		store.compact(ID);
+		assertVersions(store, new TreeMap<>(expected.tailMap(12L)));
+		store.setMaxCount(1);
+		store.compact(ID);
+		assertVersions(store, new TreeMap<>(expected.tailMap(23L)));
+	}
+
+	@Test
+	void retainMaxAge() {
+		HistoryStore store = new HistoryStore(root());
+		store.setSnapshotInterval(3);
+		long now = System.currentTimeMillis();
+		TreeMap<Long, String> expected = new TreeMap<>();
+		for (int i = 0; i < 10; i++) {
+			long timestamp = now - TimeUnit.DAYS.toMillis(10 - i);
+			store.save(ID, timestamp, ("version " + i).getBytes(StandardCharsets.UTF_8));
+			expected.put(timestamp, "version " + i);
+		}
+		store.compact(ID);
+		store.setMaxAge(TimeUnit.DAYS.toMillis(5) + TimeUnit.HOURS.toMillis(1));
+		store.compact(ID);
+		assertVersions(store, new TreeMap<>(expected.tailMap(now - TimeUnit.DAYS.toMillis(5))));
+		// 全部过期时保留最新的版本
+		store.setMaxAge(1);
+		store.compact(ID);
+		assertVersions(store, new TreeMap<>(expected.tailMap(expected.lastKey())));
+	}
+
+	private File directory(String id) {
+		return new File(directory, id);
+	}
+
+	private void assertVersions(HistoryStore store, TreeMap<Long, String> expected) {
+		assertEquals(new ArrayList<>(expected.descendingKeySet()), store.list(ID));
+		expected.forEach((timestamp, text) -> assertEquals(text, new String(store.read(ID, timestamp), StandardCharsets.UTF_8), "version " + timestamp));
+	}
+
+	/**
+	 * 随机插入、删除或替换一段内容
+	 */
+	private String edit(Random random, String text) {
+		StringBuilder insert = new StringBuilder();
+		for (int i = random.nextInt(6); i > 0; i--) {
+			insert.append(TOKENS[random.nextInt(TOKENS.length)]);
+		}
+		int[] codePoints = text.codePoints().toArray();
+		int start = codePoints.length == 0 ? 0 : random.nextInt(codePoints.length + 1);
+		int end = Math.min(codePoints.length, start + random.nextInt(4));
+		return new String(codePoints, 0, start) + insert + new String(codePoints, end, codePoints.length - end);
+	}
+
+	/**
+	 * 内存中的KeyValueResource，与数据库、Redis一样按文本保存内容
+	 */
+	private static class MemoryResource extends KeyValueResource {
+
+		private final Map<String, String> storage;
+
+		MemoryResource(Map<String, String> storage, String path, MemoryResource parent) {
+			super(":", path, parent);
+			this.storage = storage;
+		}
+
+		@Override
+		public byte[] read() {
+			String value = storage.get(path);
+			return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public boolean write(String content) {
+			storage.put(path, content);
+			return true;
+		}
+
+		@Override
+		public boolean exists() {
+			return storage.containsKey(path);
+		}
+
+		@Override
+		protected boolean deleteByKey(String key) {
+			return storage.remove(key) != null;
+		}
+
+		@Override
+		protected boolean renameTo(Map<String, String> renameKeys) {
+			renameKeys.forEach((oldKey, newKey) -> storage.put(newKey, storage.remove(oldKey)));
+			return true;
+		}
+
+		@Override
+		protected Function<String, Resource> mappedFunction() {
+			return it -> new MemoryResource(storage, it, this);
+		}
+
+		@Override
+		protected Set<String> keys() {
+			String prefix = isDirectory() ? path : path + separator;
+			return storage.keySet().stream().filter(it -> it.startsWith(prefix)).collect(Collectors.toSet());
+		}
+	}
+}